@@ -0,0 +1,10 @@
+-- V10__Standard_Codes_Response_Gzip.sql
+-- Gzip copy of each stored response document, computed once when a version
+-- is written and served to clients that send Accept-Encoding: gzip
+
+-- Set search path
+SET search_path TO "code-bridge";
+
+ALTER TABLE standard_codes_responses ADD COLUMN IF NOT EXISTS api_response_gzip BYTEA;
+
+COMMENT ON COLUMN standard_codes_responses.api_response_gzip IS 'Gzip of api_response::text; NULL for rows written before gzip copies were stored, which are compressed once when first cached';
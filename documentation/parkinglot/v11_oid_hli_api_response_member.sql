@@ -0,0 +1,25 @@
+-- V11__Oid_Hli_Api_Response_Member.sql
+-- One row per member of a stored HLI response so getStandardCodes can serve
+-- pages by primary key seek instead of reading the whole response document
+
+-- Set search path
+SET search_path TO "code-bridge";
+
+CREATE TABLE IF NOT EXISTS oid_hli_api_response_member (
+    response_id INTEGER NOT NULL REFERENCES oid_hli_api_response(id) ON DELETE CASCADE,
+    ordinal INTEGER NOT NULL,
+    member JSONB NOT NULL,
+    PRIMARY KEY (response_id, ordinal)
+);
+
+-- Backfill successful responses stored before members were split out
+INSERT INTO oid_hli_api_response_member (response_id, ordinal, member)
+SELECT r.id, m.ordinality, m.value
+FROM oid_hli_api_response r
+CROSS JOIN LATERAL jsonb_array_elements(r.api_response -> 'results') WITH ORDINALITY AS m(value, ordinality)
+WHERE r.http_status_code = 200
+  AND jsonb_typeof(r.api_response -> 'results') = 'array'
+ON CONFLICT (response_id, ordinal) DO NOTHING;
+
+COMMENT ON TABLE oid_hli_api_response_member IS 'Members (elements of api_response.results) of stored HLI responses, paged by (response_id, ordinal)';
+COMMENT ON COLUMN oid_hli_api_response_member.ordinal IS '1-based position of the member in api_response.results; getStandardCodes cursors encode the last ordinal returned';
@@ -0,0 +1,15 @@
+-- V12__Api_Consumer_Response_Projection.sql
+-- Each successful HLI response is projected once into the consumer
+-- getStandardCodes shape and stored in api_consumer_response, versioned with
+-- is_current, so consumer reads fetch ready-made JSON by key
+
+-- Set search path
+SET search_path TO "code-bridge";
+
+ALTER TABLE api_consumer_response ADD COLUMN IF NOT EXISTS hli_response_id INTEGER REFERENCES oid_hli_api_response(id) ON DELETE CASCADE;
+ALTER TABLE api_consumer_response ADD COLUMN IF NOT EXISTS member_count INTEGER;
+
+CREATE UNIQUE INDEX IF NOT EXISTS idx_api_consumer_response_hli_response_id ON api_consumer_response(hli_response_id);
+
+COMMENT ON COLUMN api_consumer_response.hli_response_id IS 'The oid_hli_api_response row this consumer response was projected from';
+COMMENT ON COLUMN api_consumer_response.member_count IS 'Number of members in consumer_response.results, excluding the leading type indicator; whole lists up to the page size are served from this row';
@@ -0,0 +1,17 @@
+-- V13__Oid_Master_Search.sql
+-- Trigram indexes so case-insensitive substring search over the code, code
+-- group name and content set of oid_master is an index scan instead of a
+-- sequential scan with LIKE '%term%'
+
+-- Set search path
+SET search_path TO "code-bridge";
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX IF NOT EXISTS idx_oid_master_code_trgm ON oid_master USING gin (lower(code) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_oid_master_code_group_name_trgm ON oid_master USING gin (lower(code_group_name) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_oid_master_code_group_content_set_trgm ON oid_master USING gin (lower(code_group_content_set) gin_trgm_ops);
+
+COMMENT ON INDEX idx_oid_master_code_trgm IS 'Trigram index for OID master search and searchByCodeOrCodeGroupName; matches compare lower(code)';
+COMMENT ON INDEX idx_oid_master_code_group_name_trgm IS 'Trigram index for OID master search and searchByCodeOrCodeGroupName; matches compare lower(code_group_name)';
+COMMENT ON INDEX idx_oid_master_code_group_content_set_trgm IS 'Trigram index for OID master search; matches compare lower(code_group_content_set)';
@@ -0,0 +1,18 @@
+-- V14__Oid_Master_Search_Prefix.sql
+-- B-tree indexes for the prefix path of OID master search. Terms shorter than
+-- three characters have no trigrams for the V13 indexes to narrow, and the
+-- search takes a bounded number of prefix candidates per column in index
+-- order. The C collation makes these indexes serve LIKE 'term%' the way
+-- text_pattern_ops would while also returning rows in the order the search
+-- reads them; id is included so ties come back in a stable order
+
+-- Set search path
+SET search_path TO "code-bridge";
+
+CREATE INDEX IF NOT EXISTS idx_oid_master_code_prefix ON oid_master (lower(code) COLLATE "C", id);
+CREATE INDEX IF NOT EXISTS idx_oid_master_code_group_name_prefix ON oid_master (lower(code_group_name) COLLATE "C", id);
+CREATE INDEX IF NOT EXISTS idx_oid_master_code_group_content_set_prefix ON oid_master (lower(code_group_content_set) COLLATE "C", id);
+
+COMMENT ON INDEX idx_oid_master_code_prefix IS 'Prefix index for OID master search; serves lower(code) LIKE ''term%'' in lower(code) COLLATE "C", id order';
+COMMENT ON INDEX idx_oid_master_code_group_name_prefix IS 'Prefix index for OID master search; serves lower(code_group_name) LIKE ''term%'' in lower(code_group_name) COLLATE "C", id order';
+COMMENT ON INDEX idx_oid_master_code_group_content_set_prefix IS 'Prefix index for OID master search; serves lower(code_group_content_set) LIKE ''term%'' in lower(code_group_content_set) COLLATE "C", id order';
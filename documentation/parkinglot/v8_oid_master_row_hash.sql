@@ -0,0 +1,10 @@
+-- V8__Oid_Master_Row_Hash.sql
+-- Content hash of the CSV row each OID was last imported from, used to skip
+-- unchanged rows when the master CSV is re-uploaded
+
+-- Set search path
+SET search_path TO "code-bridge";
+
+ALTER TABLE oid_master ADD COLUMN IF NOT EXISTS row_hash VARCHAR(64);
+
+COMMENT ON COLUMN oid_master.row_hash IS 'SHA-256 of the persisted CSV fields from the last import; rows with a matching hash are not rewritten';
@@ -0,0 +1,34 @@
+-- V9__Code_System_Registry.sql
+-- Code systems used to derive fhir_identifier and service_method_name for
+-- imported OIDs. The service re-reads active rows periodically, so new code
+-- systems can be added here without a deploy.
+
+-- Set search path
+SET search_path TO "code-bridge";
+
+CREATE TABLE IF NOT EXISTS code_system_registry (
+    id SERIAL PRIMARY KEY,
+    code_system_name VARCHAR(100) NOT NULL UNIQUE,
+    oid_root VARCHAR(255),
+    fhir_identifier VARCHAR(255) NOT NULL,
+    service_method_name VARCHAR(100),
+    aliases VARCHAR(500),
+    is_active BOOLEAN DEFAULT TRUE,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_by VARCHAR(100)
+);
+
+COMMENT ON TABLE code_system_registry IS 'Code systems matched against OID roots and the member code system column during OID import';
+COMMENT ON COLUMN code_system_registry.oid_root IS 'OID root of the code system; OIDs under this root match by longest prefix';
+COMMENT ON COLUMN code_system_registry.aliases IS 'Comma separated names matched case-insensitively, ignoring spaces, hyphens and underscores, within the member code system';
+COMMENT ON COLUMN code_system_registry.service_method_name IS 'OidProcessingService method used to fetch OIDs of this code system; defaultProcessOid when empty';
+
+INSERT INTO code_system_registry (code_system_name, oid_root, fhir_identifier, service_method_name, aliases, updated_by) VALUES
+('LOINC', '2.16.840.1.113883.6.1', 'http://loinc.org', 'processLoincOid', 'loinc', 'SYSTEM'),
+('SNOMED CT', '2.16.840.1.113883.6.96', 'http://snomed.info/sct', 'processSnomedOid', 'snomed', 'SYSTEM'),
+('RxNorm', '2.16.840.1.113883.6.88', 'http://www.nlm.nih.gov/research/umls/rxnorm', 'processRxNormOid', 'rxnorm', 'SYSTEM'),
+('ICD-10-CM', '2.16.840.1.113883.6.90', 'http://hl7.org/fhir/sid/icd-10-cm', 'processIcdOid', 'icd-10', 'SYSTEM'),
+('ICD-9-CM', '2.16.840.1.113883.6.103', 'http://hl7.org/fhir/sid/icd-9-cm', 'processIcdOid', 'icd-9', 'SYSTEM'),
+('CPT', '2.16.840.1.113883.6.12', 'http://www.ama-assn.org/go/cpt', 'processCptOid', 'cpt', 'SYSTEM'),
+('HCPCS', '2.16.840.1.113883.6.285', 'http://www.cms.gov/Medicare/Coding/HCPCSReleaseCodeSets', 'processCptOid', 'hcpcs', 'SYSTEM')
+ON CONFLICT (code_system_name) DO NOTHING;
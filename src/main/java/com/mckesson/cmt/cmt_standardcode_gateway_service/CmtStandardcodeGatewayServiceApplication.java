@@ -2,6 +2,8 @@ package com.mckesson.cmt.cmt_standardcode_gateway_service;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.redis.RedisRepositoriesAutoConfiguration;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
@@ -14,7 +16,8 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 @EnableJpaAuditing
 @EnableMethodSecurity
-@SpringBootApplication
+// The shared response cache configures its own Redis connection when enabled
+@SpringBootApplication(exclude = { RedisAutoConfiguration.class, RedisRepositoriesAutoConfiguration.class })
 @EnableScheduling // Add this annotation to enable scheduling
 @ComponentScan(basePackages = "com.mckesson.cmt.cmt_standardcode_gateway_service")
 @EnableJpaRepositories(basePackages = "com.mckesson.cmt.cmt_standardcode_gateway_service.repository")
@@ -13,6 +13,7 @@ import reactor.core.scheduler.Schedulers;
 
 import java.time.Duration;
 import java.util.List;
+import java.util.function.BooleanSupplier;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -26,6 +27,19 @@ public class BatchProcessor {
             int batchSize,
             int delayMs,
             Function<T, Mono<R>> processor) {
+        processBatches(items, batchSize, delayMs, processor, () -> false);
+    }
+
+    /**
+     * Process items in batches, checking {@code cancelled} before each batch is
+     * started. Items of a batch already in flight are allowed to finish.
+     */
+    public <T, R> void processBatches(
+            List<T> items,
+            int batchSize,
+            int delayMs,
+            Function<T, Mono<R>> processor,
+            BooleanSupplier cancelled) {
 
         if (items.isEmpty()) {
             log.info("No items to process");
@@ -40,6 +54,13 @@ public class BatchProcessor {
 
         // Process each batch with delay between batches
         Flux.fromIterable(batches)
+                .takeWhile(batch -> {
+                    if (cancelled.getAsBoolean()) {
+                        log.info("Batch processing cancelled, remaining batches skipped");
+                        return false;
+                    }
+                    return true;
+                })
                 .concatMap(batch -> {
                     log.info("Processing batch of {} items", batch.size());
 
@@ -0,0 +1,209 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.component;
+
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.CacheStatisticsRepository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fills the cache_statistics table from the response cache's counters. Once
+ * an hour the counters accumulated since the previous run are added to the row
+ * of the hour that just ended; every replica adds its own share.
+ *
+ * <p>
+ * Consumer columns count requested UUIDs served from either cache tier
+ * against those read from the database. Backend columns count the shared
+ * (Redis) tier, which is only consulted for in-process misses. Response times
+ * are per search request, split by whether it was served without reading the
+ * database. Percentiles are taken from a fixed-size random sample of the
+ * hour's requests.
+ */
+@Component
+public class CacheStatisticsRecorder {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheStatisticsRecorder.class);
+
+    private static final int SAMPLE_SIZE = 4096;
+    private static final BigDecimal BYTES_PER_MB = BigDecimal.valueOf(1024L * 1024L);
+
+    private final StandardCodesResponseCache responseCache;
+    private final CacheStatisticsRepository cacheStatisticsRepository;
+    private final boolean enabled;
+
+    // Cache counters at the previous run
+    private long lastHits;
+    private long lastMisses;
+    private long lastSharedHits;
+    private long lastSharedMisses;
+
+    // Request times of the current hour, guarded by this
+    private ResponseTimes responseTimes = new ResponseTimes();
+
+    public CacheStatisticsRecorder(
+            StandardCodesResponseCache responseCache,
+            CacheStatisticsRepository cacheStatisticsRepository,
+            @Value("${standard-codes.cache.statistics.enabled:true}") boolean enabled) {
+        this.responseCache = responseCache;
+        this.cacheStatisticsRepository = cacheStatisticsRepository;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Record the time taken by one search request
+     *
+     * @param cached       true if every document came from the cache
+     * @param elapsedNanos The time taken in nanoseconds
+     */
+    public synchronized void recordResponseTime(boolean cached, long elapsedNanos) {
+        responseTimes.record(cached, elapsedNanos);
+    }
+
+    /**
+     * Add the counters of the hour that just ended to cache_statistics
+     */
+    @Scheduled(cron = "${standard-codes.cache.statistics.cron:0 0 * * * *}")
+    public void recordHour() {
+        if (!enabled) {
+            return;
+        }
+
+        LocalDateTime hourEnded = LocalDateTime.now().minusHours(1);
+
+        long hits = responseCache.getHitCount();
+        long misses = responseCache.getMissCount();
+        long sharedHits = responseCache.getSharedHitCount();
+        long sharedMisses = responseCache.getSharedMissCount();
+        long usedMemoryBytes = responseCache.getSharedUsedMemoryBytes();
+
+        // Requests finishing during the write are recorded into a fresh hour
+        ResponseTimes hourTimes;
+        synchronized (this) {
+            hourTimes = responseTimes;
+            responseTimes = new ResponseTimes();
+        }
+        long[] hourSamples = hourTimes.sortedSamples();
+
+        long hourHits = hits - lastHits;
+        long hourMisses = misses - lastMisses;
+        long hourSharedHits = sharedHits - lastSharedHits;
+        long hourSharedMisses = sharedMisses - lastSharedMisses;
+
+        try {
+            cacheStatisticsRepository.addHourlyCounters(
+                    hourEnded.toLocalDate(),
+                    hourEnded.getHour(),
+                    hourSharedHits,
+                    hourSharedMisses,
+                    hourHits,
+                    hourMisses,
+                    usedMemoryBytes >= 0
+                            ? BigDecimal.valueOf(usedMemoryBytes).divide(BYTES_PER_MB, 2, RoundingMode.HALF_UP)
+                            : null,
+                    averageMillis(hourTimes.cachedTotalNanos, hourTimes.cachedCount),
+                    averageMillis(hourTimes.uncachedTotalNanos, hourTimes.uncachedCount),
+                    percentileMillis(hourSamples, 0.95),
+                    percentileMillis(hourSamples, 0.99));
+        } catch (RuntimeException e) {
+            // Keep the previous baseline and this hour's response times so they
+            // are added on the next run
+            synchronized (this) {
+                hourTimes.addAll(responseTimes);
+                responseTimes = hourTimes;
+            }
+            log.error("Failed to record cache statistics for {} hour {}: {}", hourEnded.toLocalDate(),
+                    hourEnded.getHour(), e.getMessage());
+            return;
+        }
+
+        lastHits = hits;
+        lastMisses = misses;
+        lastSharedHits = sharedHits;
+        lastSharedMisses = sharedMisses;
+
+        log.info("Recorded cache statistics for {} hour {}: {} hits, {} misses, {} shared hits, {} shared misses",
+                hourEnded.toLocalDate(), hourEnded.getHour(), hourHits, hourMisses, hourSharedHits, hourSharedMisses);
+    }
+
+    private static Integer averageMillis(long totalNanos, long count) {
+        return count > 0 ? (int) TimeUnit.NANOSECONDS.toMillis(totalNanos / count) : null;
+    }
+
+    private static Integer percentileMillis(long[] sortedNanos, double percentile) {
+        if (sortedNanos.length == 0) {
+            return null;
+        }
+        int index = (int) Math.ceil(percentile * sortedNanos.length) - 1;
+        return (int) TimeUnit.NANOSECONDS.toMillis(sortedNanos[Math.max(index, 0)]);
+    }
+
+    /**
+     * Response time counters and sample accumulated since the last successful
+     * write
+     */
+    private static final class ResponseTimes {
+        private long cachedCount;
+        private long cachedTotalNanos;
+        private long uncachedCount;
+        private long uncachedTotalNanos;
+        private long sampledCount;
+        private final long[] samples = new long[SAMPLE_SIZE];
+
+        void record(boolean cached, long elapsedNanos) {
+            if (cached) {
+                cachedCount++;
+                cachedTotalNanos += elapsedNanos;
+            } else {
+                uncachedCount++;
+                uncachedTotalNanos += elapsedNanos;
+            }
+            sample(elapsedNanos);
+        }
+
+        void sample(long elapsedNanos) {
+            // Reservoir sampling keeps every request equally likely to be in the sample
+            sampledCount++;
+            if (sampledCount <= SAMPLE_SIZE) {
+                samples[(int) sampledCount - 1] = elapsedNanos;
+            } else {
+                long slot = ThreadLocalRandom.current().nextLong(sampledCount);
+                if (slot < SAMPLE_SIZE) {
+                    samples[(int) slot] = elapsedNanos;
+                }
+            }
+        }
+
+        /**
+         * Add the requests recorded in {@code later}. Its sampled requests are
+         * offered to this reservoir one by one, which is exact as long as it
+         * sampled no more than {@link #SAMPLE_SIZE} requests.
+         */
+        void addAll(ResponseTimes later) {
+            cachedCount += later.cachedCount;
+            cachedTotalNanos += later.cachedTotalNanos;
+            uncachedCount += later.uncachedCount;
+            uncachedTotalNanos += later.uncachedTotalNanos;
+
+            int held = (int) Math.min(later.sampledCount, SAMPLE_SIZE);
+            for (int i = 0; i < held; i++) {
+                sample(later.samples[i]);
+            }
+            sampledCount += later.sampledCount - held;
+        }
+
+        long[] sortedSamples() {
+            long[] sorted = Arrays.copyOf(samples, (int) Math.min(sampledCount, SAMPLE_SIZE));
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+}
@@ -0,0 +1,415 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.component;
+
+import com.mckesson.cmt.cmt_standardcode_gateway_service.entities.CodeSystemRegistryEntry;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.model.CodeSystemDefinition;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.CodeSystemRegistryEntryRepository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Registry of the code systems used to derive the FHIR identifier and the
+ * processing method of an OID. Entries are read from the code_system_registry
+ * table and compiled into an OID-arc prefix trie and a normalized alias trie,
+ * so a lookup walks the input once and allocates nothing. The table is
+ * re-read periodically, so code systems can be added without a deploy; when it
+ * is empty or unreachable the built-in definitions are used.
+ */
+@Component
+public class CodeSystemRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(CodeSystemRegistry.class);
+
+    public static final String DEFAULT_SERVICE_METHOD = "defaultProcessOid";
+
+    // Marks characters that are skipped when matching aliases
+    private static final char IGNORED = '\0';
+
+    private static final List<CodeSystemDefinition> BUILT_IN_CODE_SYSTEMS = List.of(
+            CodeSystemDefinition.builder().name("LOINC").oidRoot("2.16.840.1.113883.6.1")
+                    .fhirIdentifier("http://loinc.org").serviceMethodName("processLoincOid")
+                    .alias("loinc").build(),
+            CodeSystemDefinition.builder().name("SNOMED CT").oidRoot("2.16.840.1.113883.6.96")
+                    .fhirIdentifier("http://snomed.info/sct").serviceMethodName("processSnomedOid")
+                    .alias("snomed").build(),
+            CodeSystemDefinition.builder().name("RxNorm").oidRoot("2.16.840.1.113883.6.88")
+                    .fhirIdentifier("http://www.nlm.nih.gov/research/umls/rxnorm").serviceMethodName("processRxNormOid")
+                    .alias("rxnorm").build(),
+            CodeSystemDefinition.builder().name("ICD-10-CM").oidRoot("2.16.840.1.113883.6.90")
+                    .fhirIdentifier("http://hl7.org/fhir/sid/icd-10-cm").serviceMethodName("processIcdOid")
+                    .alias("icd-10").build(),
+            CodeSystemDefinition.builder().name("ICD-9-CM").oidRoot("2.16.840.1.113883.6.103")
+                    .fhirIdentifier("http://hl7.org/fhir/sid/icd-9-cm").serviceMethodName("processIcdOid")
+                    .alias("icd-9").build(),
+            CodeSystemDefinition.builder().name("CPT").oidRoot("2.16.840.1.113883.6.12")
+                    .fhirIdentifier("http://www.ama-assn.org/go/cpt").serviceMethodName("processCptOid")
+                    .alias("cpt").build(),
+            CodeSystemDefinition.builder().name("HCPCS").oidRoot("2.16.840.1.113883.6.285")
+                    .fhirIdentifier("http://www.cms.gov/Medicare/Coding/HCPCSReleaseCodeSets")
+                    .serviceMethodName("processCptOid").alias("hcpcs").build());
+
+    // Member code systems that only choose a service method when no registered
+    // code system matches: any ICD variant (ICD-11, ICD-O-3, ...) is fetched
+    // like ICD-10, but keeps its own name and an OID-based FHIR identifier
+    private static final CompiledRegistry SERVICE_METHOD_FALLBACKS = CompiledRegistry.compile(List.of(
+            CodeSystemDefinition.builder().name("ICD").serviceMethodName("processIcdOid").alias("icd").build()));
+
+    private final CodeSystemRegistryEntryRepository codeSystemRegistryEntryRepository;
+
+    private volatile CompiledRegistry compiled;
+
+    @Autowired
+    public CodeSystemRegistry(CodeSystemRegistryEntryRepository codeSystemRegistryEntryRepository) {
+        this.codeSystemRegistryEntryRepository = codeSystemRegistryEntryRepository;
+        this.compiled = CompiledRegistry.compile(BUILT_IN_CODE_SYSTEMS);
+    }
+
+    /**
+     * Re-read the registry table and swap in a freshly compiled lookup. Runs
+     * once at startup and then every {@code code-system.registry.refresh-ms}.
+     * 
+     * @return The number of code systems now registered
+     */
+    @Scheduled(fixedDelayString = "${code-system.registry.refresh-ms:300000}")
+    public int reload() {
+        try {
+            List<CodeSystemRegistryEntry> entries = codeSystemRegistryEntryRepository.findByIsActiveTrue();
+            if (entries.isEmpty()) {
+                log.debug("Code system registry table is empty, using built-in definitions");
+                compiled = CompiledRegistry.compile(BUILT_IN_CODE_SYSTEMS);
+                return BUILT_IN_CODE_SYSTEMS.size();
+            }
+
+            List<CodeSystemDefinition> definitions = new ArrayList<>(entries.size());
+            for (CodeSystemRegistryEntry entry : entries) {
+                definitions.add(toDefinition(entry));
+            }
+            compiled = CompiledRegistry.compile(definitions);
+            log.debug("Loaded {} code systems into the registry", definitions.size());
+            return definitions.size();
+        } catch (Exception e) {
+            // Keep serving the previous definitions
+            log.error("Unable to reload code system registry", e);
+            return compiled.size;
+        }
+    }
+
+    /**
+     * Resolve the code system of an OID, preferring the longest registered OID
+     * prefix and falling back to an alias found in the member code system
+     * 
+     * @param oid              The OID, optionally followed by ":code"
+     * @param memberCodeSystem The member code system column of the CSV
+     *                         (optional)
+     * @return The matching code system, or null if none matches
+     */
+    public CodeSystemDefinition resolve(String oid, String memberCodeSystem) {
+        CompiledRegistry registry = compiled;
+        CodeSystemDefinition byOid = oid != null ? registry.findByOid(oid) : null;
+        if (byOid != null) {
+            return byOid;
+        }
+        return memberCodeSystem != null ? registry.findByAlias(memberCodeSystem) : null;
+    }
+
+    /**
+     * Service method that fetches an OID: the one of its resolved code system,
+     * else the one of a fallback alias in the member code system, else
+     * {@link #DEFAULT_SERVICE_METHOD}
+     * 
+     * @param oid              The OID, optionally followed by ":code"
+     * @param memberCodeSystem The member code system column of the CSV
+     *                         (optional)
+     * @return The service method name
+     */
+    public String serviceMethodName(String oid, String memberCodeSystem) {
+        CodeSystemDefinition codeSystem = resolve(oid, memberCodeSystem);
+        if (codeSystem == null && memberCodeSystem != null) {
+            codeSystem = SERVICE_METHOD_FALLBACKS.findByAlias(memberCodeSystem);
+        }
+        return codeSystem != null ? codeSystem.getServiceMethodName() : DEFAULT_SERVICE_METHOD;
+    }
+
+    /**
+     * Canonical key of a code system given as an OID root, a FHIR system URI or
+     * a name, so that differently written references to one code system compare
+     * equal
+     * 
+     * @param system The code system reference
+     * @return The registered code system name, or the trimmed, lower-cased
+     *         reference if no code system matches
+     */
+    public String canonicalName(String system) {
+        if (system == null) {
+            return "";
+        }
+        CodeSystemDefinition definition = resolve(system, system);
+        return definition != null ? definition.getName() : system.trim().toLowerCase();
+    }
+
+    private CodeSystemDefinition toDefinition(CodeSystemRegistryEntry entry) {
+        CodeSystemDefinition.CodeSystemDefinitionBuilder builder = CodeSystemDefinition.builder()
+                .name(entry.getCodeSystemName())
+                .oidRoot(entry.getOidRoot())
+                .fhirIdentifier(entry.getFhirIdentifier())
+                .serviceMethodName(entry.getServiceMethodName() != null ? entry.getServiceMethodName()
+                        : DEFAULT_SERVICE_METHOD);
+
+        if (entry.getAliases() != null) {
+            for (String alias : entry.getAliases().split(",")) {
+                if (!alias.isBlank()) {
+                    builder.alias(alias.trim());
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Lower-case letters and digits, map separators to {@link #IGNORED}
+     */
+    private static char normalize(char c) {
+        if (c >= 'A' && c <= 'Z') {
+            return (char) (c + ('a' - 'A'));
+        }
+        if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+            return c;
+        }
+        if (c == ' ' || c == '-' || c == '_' || c == '.' || c == '/') {
+            return IGNORED;
+        }
+        return Character.toLowerCase(c);
+    }
+
+    /**
+     * Immutable lookup structures built from one set of definitions
+     */
+    private static final class CompiledRegistry {
+        private final OidNode oidRoot;
+        private final AliasNode aliasRoot;
+        private final int size;
+
+        private CompiledRegistry(OidNode oidRoot, AliasNode aliasRoot, int size) {
+            this.oidRoot = oidRoot;
+            this.aliasRoot = aliasRoot;
+            this.size = size;
+        }
+
+        static CompiledRegistry compile(List<CodeSystemDefinition> definitions) {
+            MutableOidNode oids = new MutableOidNode();
+            MutableAliasNode aliases = new MutableAliasNode();
+
+            for (CodeSystemDefinition definition : definitions) {
+                if (definition.getOidRoot() != null && !definition.getOidRoot().isBlank()) {
+                    addOid(oids, definition);
+                }
+                for (String alias : definition.getAliases()) {
+                    addAlias(aliases, alias, definition);
+                }
+            }
+            return new CompiledRegistry(oids.freeze(), aliases.freeze(), definitions.size());
+        }
+
+        private static void addOid(MutableOidNode root, CodeSystemDefinition definition) {
+            MutableOidNode node = root;
+            for (String arc : definition.getOidRoot().trim().split("\\.")) {
+                try {
+                    node = node.children.computeIfAbsent(Integer.parseInt(arc), key -> new MutableOidNode());
+                } catch (NumberFormatException e) {
+                    log.warn("Ignoring invalid OID root for code system {}: {}", definition.getName(),
+                            definition.getOidRoot());
+                    return;
+                }
+            }
+            if (node.value != null) {
+                log.warn("OID root {} is registered by both {} and {}, keeping {}", definition.getOidRoot(),
+                        node.value.getName(), definition.getName(), node.value.getName());
+                return;
+            }
+            node.value = definition;
+        }
+
+        private static void addAlias(MutableAliasNode root, String alias, CodeSystemDefinition definition) {
+            MutableAliasNode node = root;
+            for (int i = 0; i < alias.length(); i++) {
+                char c = normalize(alias.charAt(i));
+                if (c != IGNORED) {
+                    node = node.children.computeIfAbsent(c, key -> new MutableAliasNode());
+                }
+            }
+            if (node == root) {
+                return;
+            }
+            if (node.value != null) {
+                log.warn("Alias '{}' is registered by both {} and {}, keeping {}", alias,
+                        node.value.getName(), definition.getName(), node.value.getName());
+                return;
+            }
+            node.value = definition;
+        }
+
+        /**
+         * Walk the arcs of the OID root (up to any ':' code suffix) and return the
+         * deepest registered prefix
+         */
+        CodeSystemDefinition findByOid(String oid) {
+            OidNode node = oidRoot;
+            CodeSystemDefinition best = null;
+            int length = oid.length();
+            int i = 0;
+
+            while (i < length) {
+                int start = i;
+                long arc = 0;
+                while (i < length) {
+                    char c = oid.charAt(i);
+                    if (c < '0' || c > '9') {
+                        break;
+                    }
+                    arc = arc * 10 + (c - '0');
+                    if (arc > Integer.MAX_VALUE) {
+                        return best;
+                    }
+                    i++;
+                }
+                if (i == start) {
+                    return best;
+                }
+
+                node = node.child((int) arc);
+                if (node == null) {
+                    return best;
+                }
+                if (node.value != null) {
+                    best = node.value;
+                }
+
+                if (i == length || oid.charAt(i) != '.') {
+                    return best;
+                }
+                i++;
+            }
+            return best;
+        }
+
+        /**
+         * Find the leftmost, longest registered alias contained in the text,
+         * ignoring case and separators
+         */
+        CodeSystemDefinition findByAlias(String text) {
+            int length = text.length();
+            for (int start = 0; start < length; start++) {
+                char first = normalize(text.charAt(start));
+                if (first == IGNORED) {
+                    continue;
+                }
+
+                AliasNode node = aliasRoot.child(first);
+                CodeSystemDefinition best = null;
+                int i = start + 1;
+                while (node != null) {
+                    if (node.value != null) {
+                        best = node.value;
+                    }
+                    char c = IGNORED;
+                    while (i < length && (c = normalize(text.charAt(i))) == IGNORED) {
+                        i++;
+                    }
+                    if (i >= length) {
+                        break;
+                    }
+                    node = node.child(c);
+                    i++;
+                }
+                if (best != null) {
+                    return best;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Trie node keyed by OID arc; children are held in sorted arrays and found
+     * by binary search so that lookups do not box the arc
+     */
+    private static final class OidNode {
+        private final int[] arcs;
+        private final OidNode[] children;
+        private final CodeSystemDefinition value;
+
+        OidNode(int[] arcs, OidNode[] children, CodeSystemDefinition value) {
+            this.arcs = arcs;
+            this.children = children;
+            this.value = value;
+        }
+
+        OidNode child(int arc) {
+            int index = Arrays.binarySearch(arcs, arc);
+            return index >= 0 ? children[index] : null;
+        }
+    }
+
+    /**
+     * Trie node keyed by normalized alias character
+     */
+    private static final class AliasNode {
+        private final char[] keys;
+        private final AliasNode[] children;
+        private final CodeSystemDefinition value;
+
+        AliasNode(char[] keys, AliasNode[] children, CodeSystemDefinition value) {
+            this.keys = keys;
+            this.children = children;
+            this.value = value;
+        }
+
+        AliasNode child(char key) {
+            int index = Arrays.binarySearch(keys, key);
+            return index >= 0 ? children[index] : null;
+        }
+    }
+
+    private static final class MutableOidNode {
+        private final Map<Integer, MutableOidNode> children = new TreeMap<>();
+        private CodeSystemDefinition value;
+
+        OidNode freeze() {
+            int[] arcs = new int[children.size()];
+            OidNode[] frozen = new OidNode[children.size()];
+            int i = 0;
+            for (Map.Entry<Integer, MutableOidNode> child : children.entrySet()) {
+                arcs[i] = child.getKey();
+                frozen[i] = child.getValue().freeze();
+                i++;
+            }
+            return new OidNode(arcs, frozen, value);
+        }
+    }
+
+    private static final class MutableAliasNode {
+        private final Map<Character, MutableAliasNode> children = new TreeMap<>();
+        private CodeSystemDefinition value;
+
+        AliasNode freeze() {
+            char[] keys = new char[children.size()];
+            AliasNode[] frozen = new AliasNode[children.size()];
+            int i = 0;
+            for (Map.Entry<Character, MutableAliasNode> child : children.entrySet()) {
+                keys[i] = child.getKey();
+                frozen[i] = child.getValue().freeze();
+                i++;
+            }
+            return new AliasNode(keys, frozen, value);
+        }
+    }
+}
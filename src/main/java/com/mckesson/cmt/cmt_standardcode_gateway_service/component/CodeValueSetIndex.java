@@ -0,0 +1,397 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.component;
+
+import com.mckesson.cmt.cmt_standardcode_gateway_service.dto.ValueSetReference;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.StandardCodesActiveResponsesRow;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.StandardCodesMemberCodeRow;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.StandardCodesResponseRepository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Inverted index from (code system, code) to the value sets containing the
+ * code, answering "which value sets include LOINC 96777-8" without scanning
+ * the stored documents.
+ *
+ * <p>
+ * Value sets are the OIDs with a current HLI response, fed by
+ * {@link ValueSetMembershipIndex}, and the active standard codes masters,
+ * loaded here from the compose and expansion of their active responses. Code
+ * systems and value sets are interned to ints: each code maps to a sorted
+ * {@code int[]} of value set ids, replaced on write so reads need no lock.
+ * When a value set changes only the codes added or removed since its previous
+ * members are touched. The display names of the members are passed on to
+ * {@link ConceptNameIndex}.
+ *
+ * <p>
+ * The code system ids are shared with {@link ValueSetMembershipIndex}, so a
+ * FHIR URI, an OID root and a name of one code system are equivalent here too.
+ */
+@Component
+public class CodeValueSetIndex {
+
+    public static final String OID = "oid";
+    public static final String STANDARD_CODES_MASTER = "standard-codes-master";
+
+    private static final Logger log = LoggerFactory.getLogger(CodeValueSetIndex.class);
+
+    private static final int RELOAD_SLICE_SIZE = 1000;
+
+    private final StandardCodesResponseRepository standardCodesResponseRepository;
+    private final CodeSystemRegistry codeSystemRegistry;
+    private final ConceptNameIndex conceptNameIndex;
+    private final TransactionTemplate readOnlyTransaction;
+    private final boolean enabled;
+
+    private final Map<String, Integer> systemIds = new ConcurrentHashMap<>();
+    private final AtomicInteger nextSystemId = new AtomicInteger();
+
+    // Written under the instance lock only
+    private final Map<String, Integer> valueSetIds = new HashMap<>();
+    private final Map<Integer, MembershipSet> indexed = new HashMap<>();
+    private volatile ValueSetReference[] valueSets = new ValueSetReference[256];
+    private int valueSetCount;
+
+    // Code system id -> code -> ascending value set ids
+    private final Map<Integer, Map<String, int[]>> postings = new ConcurrentHashMap<>();
+
+    // Master UUID -> the active response ids its members were read from
+    private final Map<String, String> masterResponseIds = new ConcurrentHashMap<>();
+    private volatile boolean mastersLoaded;
+
+    public CodeValueSetIndex(
+            StandardCodesResponseRepository standardCodesResponseRepository,
+            CodeSystemRegistry codeSystemRegistry,
+            ConceptNameIndex conceptNameIndex,
+            PlatformTransactionManager transactionManager,
+            @Value("${standard-codes.reverse-index.enabled:true}") boolean enabled) {
+        this.standardCodesResponseRepository = standardCodesResponseRepository;
+        this.codeSystemRegistry = codeSystemRegistry;
+        this.conceptNameIndex = conceptNameIndex;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.enabled = enabled;
+    }
+
+    /**
+     * Find the value sets containing a code
+     *
+     * @param system The code system, as a FHIR URI, OID root or name
+     * @param code   The code
+     * @return The OIDs and standard codes masters holding the code, in the
+     *         order they were first indexed
+     */
+    public List<ValueSetReference> find(String system, String code) {
+        Integer systemId = findSystemId(system);
+        Map<String, int[]> codes = systemId != null ? postings.get(systemId) : null;
+        int[] ids = codes != null ? codes.get(code) : null;
+        if (ids == null) {
+            return Collections.emptyList();
+        }
+
+        ValueSetReference[] references = valueSets;
+        List<ValueSetReference> found = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            found.add(references[id]);
+        }
+        return found;
+    }
+
+    /**
+     * @return Whether the standard codes masters have been loaded; OIDs are
+     *         complete once {@link ValueSetMembershipIndex} is loaded
+     */
+    public boolean isLoaded() {
+        return mastersLoaded;
+    }
+
+    /**
+     * @return Whether value sets are indexed at all
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Intern a code system by its canonical registry name
+     *
+     * @param codeSystem The code system, as a FHIR URI, OID root or name
+     * @return The code system id
+     */
+    int systemId(String codeSystem) {
+        return systemIds.computeIfAbsent(codeSystemRegistry.canonicalName(codeSystem),
+                name -> nextSystemId.getAndIncrement());
+    }
+
+    /**
+     * @return The code system id, or null if no value set has a member of the
+     *         code system
+     */
+    Integer findSystemId(String codeSystem) {
+        return systemIds.get(codeSystemRegistry.canonicalName(codeSystem));
+    }
+
+    /**
+     * Replace the indexed members of a value set
+     *
+     * @param type    {@link #OID} or {@link #STANDARD_CODES_MASTER}
+     * @param id      The OID or master UUID
+     * @param members The new members, or null to drop the value set
+     * @param names   The display names of the new members, or null
+     */
+    synchronized void update(String type, String id, MembershipSet members, ConceptNameIndex.ConceptNames names) {
+        conceptNameIndex.update(type, id, members != null ? names : null);
+        if (!enabled) {
+            return;
+        }
+
+        Integer valueSetId = valueSetIds.get(type + '|' + id);
+        if (valueSetId == null) {
+            if (members == null) {
+                return;
+            }
+            valueSetId = intern(type, id);
+        }
+
+        MembershipSet previous = members != null ? indexed.put(valueSetId, members) : indexed.remove(valueSetId);
+        if (previous != null) {
+            for (int i = 0; i < previous.size(); i++) {
+                if (members == null || !members.contains(previous.systemAt(i), previous.codeAt(i))) {
+                    removePosting(previous.systemAt(i), previous.codeAt(i), valueSetId);
+                }
+            }
+        }
+        if (members != null) {
+            for (int i = 0; i < members.size(); i++) {
+                if (previous == null || !previous.contains(members.systemAt(i), members.codeAt(i))) {
+                    addPosting(members.systemAt(i), members.codeAt(i), valueSetId);
+                }
+            }
+        }
+    }
+
+    /**
+     * Load all active standard codes masters on the first run, then reload
+     * those whose active responses changed and drop those without any
+     */
+    @Scheduled(fixedDelayString = "${standard-codes.reverse-index.refresh-ms:60000}")
+    public void refresh() {
+        if (!enabled) {
+            return;
+        }
+
+        try {
+            if (!mastersLoaded) {
+                loadAllMasters();
+                mastersLoaded = true;
+                return;
+            }
+
+            Map<String, String> current = new HashMap<>();
+            for (StandardCodesActiveResponsesRow row : standardCodesResponseRepository.findActiveResponseIds()) {
+                current.put(row.getMasterUuid(), row.getResponseIds());
+            }
+
+            List<String> changed = new ArrayList<>();
+            current.forEach((masterUuid, responseIds) -> {
+                if (!responseIds.equals(masterResponseIds.get(masterUuid))) {
+                    changed.add(masterUuid);
+                }
+            });
+            for (String masterUuid : new ArrayList<>(masterResponseIds.keySet())) {
+                if (!current.containsKey(masterUuid)) {
+                    masterResponseIds.remove(masterUuid);
+                    update(STANDARD_CODES_MASTER, masterUuid, null, null);
+                }
+            }
+
+            if (!changed.isEmpty()) {
+                reloadMasters(changed);
+                log.info("Reindexed codes of {} changed standard codes masters", changed.size());
+            }
+        } catch (RuntimeException e) {
+            // Keep answering from the codes already indexed
+            log.error("Failed to refresh the code to value set index: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reindex a standard codes master once the current transaction commits
+     *
+     * @param masterUuid The master whose responses changed
+     */
+    public void reloadMasterAfterCommit(UUID masterUuid) {
+        if (!enabled || masterUuid == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    reloadMasterQuietly(masterUuid.toString());
+                }
+            });
+        } else {
+            reloadMasterQuietly(masterUuid.toString());
+        }
+    }
+
+    private void reloadMasterQuietly(String masterUuid) {
+        try {
+            reloadMasters(List.of(masterUuid));
+        } catch (RuntimeException e) {
+            // The next scheduled refresh picks the change up
+            log.warn("Failed to reindex codes of standard codes master {}: {}", masterUuid, e.getMessage());
+        }
+    }
+
+    private void loadAllMasters() {
+        long start = System.currentTimeMillis();
+        Map<String, String> responseIds = new HashMap<>();
+        for (StandardCodesActiveResponsesRow row : standardCodesResponseRepository.findActiveResponseIds()) {
+            responseIds.put(row.getMasterUuid(), row.getResponseIds());
+        }
+
+        Map<String, MembershipSet> built = new HashMap<>();
+        Map<String, ConceptNameIndex.ConceptNames> names = new HashMap<>();
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<StandardCodesMemberCodeRow> rows = standardCodesResponseRepository.streamActiveMemberCodes()) {
+                String[] masterUuid = new String[1];
+                MembershipSet.Builder[] builder = new MembershipSet.Builder[1];
+                rows.forEach(row -> {
+                    if (!row.getMasterUuid().equals(masterUuid[0])) {
+                        if (builder[0] != null) {
+                            built.put(masterUuid[0], builder[0].build(0));
+                        }
+                        masterUuid[0] = row.getMasterUuid();
+                        builder[0] = new MembershipSet.Builder(null);
+                        names.put(masterUuid[0], new ConceptNameIndex.ConceptNames());
+                    }
+                    int systemId = systemId(row.getCodeSystem());
+                    builder[0].add(systemId, row.getCode());
+                    names.get(masterUuid[0]).add(systemId, row.getCodeSystem(), row.getCode(), row.getDisplay());
+                });
+                if (builder[0] != null) {
+                    built.put(masterUuid[0], builder[0].build(0));
+                }
+            }
+        });
+
+        built.forEach((masterUuid, members) -> update(STANDARD_CODES_MASTER, masterUuid, members,
+                names.get(masterUuid)));
+        masterResponseIds.putAll(responseIds);
+        log.info("Indexed codes of {} standard codes masters in {} ms; {} value sets indexed in total",
+                built.size(), System.currentTimeMillis() - start, valueSetCount);
+    }
+
+    private void reloadMasters(Collection<String> masterUuids) {
+        List<String> all = new ArrayList<>(masterUuids);
+        for (int from = 0; from < all.size(); from += RELOAD_SLICE_SIZE) {
+            List<String> slice = all.subList(from, Math.min(from + RELOAD_SLICE_SIZE, all.size()));
+            UUID[] uuids = slice.stream().map(UUID::fromString).toArray(UUID[]::new);
+
+            Map<String, String> responseIds = new HashMap<>();
+            for (StandardCodesActiveResponsesRow row : standardCodesResponseRepository.findActiveResponseIds(uuids)) {
+                responseIds.put(row.getMasterUuid(), row.getResponseIds());
+            }
+
+            Map<String, MembershipSet.Builder> builders = new HashMap<>();
+            Map<String, ConceptNameIndex.ConceptNames> names = new HashMap<>();
+            for (StandardCodesMemberCodeRow row : standardCodesResponseRepository.findActiveMemberCodes(uuids)) {
+                int systemId = systemId(row.getCodeSystem());
+                builders.computeIfAbsent(row.getMasterUuid(), masterUuid -> new MembershipSet.Builder(null))
+                        .add(systemId, row.getCode());
+                names.computeIfAbsent(row.getMasterUuid(), masterUuid -> new ConceptNameIndex.ConceptNames())
+                        .add(systemId, row.getCodeSystem(), row.getCode(), row.getDisplay());
+            }
+
+            Set<String> found = new HashSet<>();
+            builders.forEach((masterUuid, builder) -> {
+                update(STANDARD_CODES_MASTER, masterUuid, builder.build(0), names.get(masterUuid));
+                found.add(masterUuid);
+            });
+            for (String masterUuid : slice) {
+                if (!found.contains(masterUuid)) {
+                    update(STANDARD_CODES_MASTER, masterUuid, null, null);
+                }
+                String ids = responseIds.get(masterUuid);
+                if (ids != null) {
+                    masterResponseIds.put(masterUuid, ids);
+                } else {
+                    masterResponseIds.remove(masterUuid);
+                }
+            }
+        }
+    }
+
+    private int intern(String type, String id) {
+        int valueSetId = valueSetCount++;
+        ValueSetReference[] references = valueSets;
+        if (valueSetId == references.length) {
+            references = Arrays.copyOf(references, references.length * 2);
+        }
+        references[valueSetId] = new ValueSetReference(type, id);
+        valueSets = references;
+        valueSetIds.put(type + '|' + id, valueSetId);
+        return valueSetId;
+    }
+
+    private void addPosting(int systemId, String code, int valueSetId) {
+        Map<String, int[]> codes = postings.computeIfAbsent(systemId, key -> new ConcurrentHashMap<>());
+        int[] ids = codes.get(code);
+        if (ids == null) {
+            codes.put(code, new int[] { valueSetId });
+            return;
+        }
+
+        int i = Arrays.binarySearch(ids, valueSetId);
+        if (i >= 0) {
+            return;
+        }
+        int at = -i - 1;
+        int[] grown = new int[ids.length + 1];
+        System.arraycopy(ids, 0, grown, 0, at);
+        grown[at] = valueSetId;
+        System.arraycopy(ids, at, grown, at + 1, ids.length - at);
+        codes.put(code, grown);
+    }
+
+    private void removePosting(int systemId, String code, int valueSetId) {
+        Map<String, int[]> codes = postings.get(systemId);
+        int[] ids = codes != null ? codes.get(code) : null;
+        int i = ids != null ? Arrays.binarySearch(ids, valueSetId) : -1;
+        if (i < 0) {
+            return;
+        }
+        if (ids.length == 1) {
+            codes.remove(code);
+            return;
+        }
+
+        int[] shrunk = new int[ids.length - 1];
+        System.arraycopy(ids, 0, shrunk, 0, i);
+        System.arraycopy(ids, i + 1, shrunk, i, ids.length - i - 1);
+        codes.put(code, shrunk);
+    }
+}
@@ -0,0 +1,519 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.component;
+
+import com.mckesson.cmt.cmt_standardcode_gateway_service.dto.ConceptSuggestion;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Type-ahead over the display names of the concepts in the current versions of
+ * all value sets: the HLI group member names of OIDs and the concept displays
+ * of standard codes masters, fed by {@link CodeValueSetIndex}.
+ *
+ * <p>
+ * Concepts are counted per value set as value sets change, touching only the
+ * concepts added or removed. A search snapshot is rebuilt from the counts in
+ * the background when they changed: every word start of every lower-cased
+ * display is one entry, a (concept, offset) pair packed in a {@code long}, and
+ * the entries are sorted by the text from that offset. A prefix is then a
+ * contiguous range found by two binary searches, and the top suggestions of
+ * the range, by number of value sets holding the concept, come from a max
+ * segment tree over the entries, so a lookup costs O(k log n) whatever the
+ * range size.
+ */
+@Component
+public class ConceptNameIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(ConceptNameIndex.class);
+
+    private final boolean enabled;
+
+    // Written under the instance lock only
+    private final Map<String, Integer> conceptIds = new HashMap<>();
+    private final Deque<Integer> freeConceptIds = new ArrayDeque<>();
+    private int[] conceptSystemIds = new int[1024];
+    private String[] conceptSystems = new String[1024];
+    private String[] conceptCodes = new String[1024];
+    private String[] conceptDisplays = new String[1024];
+    private int[] valueSetCounts = new int[1024];
+    private int conceptCount;
+    private final Map<String, int[]> valueSetConcepts = new HashMap<>();
+    private boolean dirty;
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    public ConceptNameIndex(@Value("${standard-codes.type-ahead.enabled:true}") boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Suggest concepts whose display name has a word starting with the prefix
+     *
+     * @param prefix The typed text; case and repeated spaces are ignored
+     * @param limit  The most suggestions to return
+     * @return The suggestions, the concepts held by the most value sets first
+     */
+    public List<ConceptSuggestion> suggest(String prefix, int limit) {
+        String normalized = normalize(prefix);
+        if (normalized.isEmpty() || limit < 1) {
+            return Collections.emptyList();
+        }
+        return snapshot.suggest(normalized, limit);
+    }
+
+    /**
+     * @return The number of concepts searchable in the current snapshot
+     */
+    public int size() {
+        return snapshot.conceptCount;
+    }
+
+    /**
+     * Replace the concepts of a value set
+     *
+     * @param type     {@link CodeValueSetIndex#OID} or
+     *                 {@link CodeValueSetIndex#STANDARD_CODES_MASTER}
+     * @param id       The OID or master UUID
+     * @param concepts The new concepts, or null to drop the value set
+     */
+    synchronized void update(String type, String id, ConceptNames concepts) {
+        if (!enabled) {
+            return;
+        }
+
+        String key = type + '|' + id;
+        int[] next = concepts != null ? intern(concepts) : null;
+        int[] previous = next != null ? valueSetConcepts.put(key, next) : valueSetConcepts.remove(key);
+        if (previous == null) {
+            previous = new int[0];
+        }
+        if (next == null) {
+            next = new int[0];
+        }
+
+        // Both are sorted, so one merge finds the concepts added and removed
+        int i = 0;
+        int j = 0;
+        while (i < previous.length || j < next.length) {
+            if (j == next.length || (i < previous.length && previous[i] < next[j])) {
+                release(previous[i++]);
+            } else if (i == previous.length || next[j] < previous[i]) {
+                valueSetCounts[next[j++]]++;
+                dirty = true;
+            } else {
+                i++;
+                j++;
+            }
+        }
+    }
+
+    /**
+     * Publish a new search snapshot if any value set changed since the last
+     */
+    @Scheduled(fixedDelayString = "${standard-codes.type-ahead.rebuild-ms:5000}")
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+
+        int count;
+        String[] systems;
+        String[] codes;
+        String[] displays;
+        int[] counts;
+        synchronized (this) {
+            if (!dirty) {
+                return;
+            }
+            dirty = false;
+            count = conceptCount;
+            systems = Arrays.copyOf(conceptSystems, count);
+            codes = Arrays.copyOf(conceptCodes, count);
+            displays = Arrays.copyOf(conceptDisplays, count);
+            counts = Arrays.copyOf(valueSetCounts, count);
+        }
+
+        try {
+            long start = System.currentTimeMillis();
+            Snapshot built = Snapshot.build(systems, codes, displays, counts);
+            snapshot = built;
+            log.info("Rebuilt concept type-ahead over {} concepts ({} name entries) in {} ms", built.conceptCount,
+                    built.entries.length, System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            // Keep serving the previous snapshot; retry on the next run
+            synchronized (this) {
+                dirty = true;
+            }
+            log.error("Failed to rebuild concept type-ahead: {}", e.getMessage(), e);
+        }
+    }
+
+    private int[] intern(ConceptNames concepts) {
+        int[] ids = new int[concepts.size];
+        for (int i = 0; i < concepts.size; i++) {
+            String key = concepts.systemIds[i] + "|" + concepts.codes[i];
+            Integer id = conceptIds.get(key);
+            if (id == null) {
+                id = allocate();
+                conceptIds.put(key, id);
+                conceptSystemIds[id] = concepts.systemIds[i];
+                conceptSystems[id] = concepts.systems[i];
+                conceptCodes[id] = concepts.codes[i];
+            }
+            String display = concepts.displays[i];
+            if (display != null && !display.equals(conceptDisplays[id])) {
+                // The latest version of any value set names the concept
+                conceptDisplays[id] = display;
+                dirty = true;
+            }
+            ids[i] = id;
+        }
+
+        Arrays.sort(ids);
+        int distinct = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (distinct == 0 || ids[distinct - 1] != ids[i]) {
+                ids[distinct++] = ids[i];
+            }
+        }
+        return Arrays.copyOf(ids, distinct);
+    }
+
+    private int allocate() {
+        if (!freeConceptIds.isEmpty()) {
+            return freeConceptIds.pop();
+        }
+        if (conceptCount == conceptCodes.length) {
+            int length = conceptCount * 2;
+            conceptSystemIds = Arrays.copyOf(conceptSystemIds, length);
+            conceptSystems = Arrays.copyOf(conceptSystems, length);
+            conceptCodes = Arrays.copyOf(conceptCodes, length);
+            conceptDisplays = Arrays.copyOf(conceptDisplays, length);
+            valueSetCounts = Arrays.copyOf(valueSetCounts, length);
+        }
+        return conceptCount++;
+    }
+
+    private void release(int id) {
+        dirty = true;
+        if (--valueSetCounts[id] > 0) {
+            return;
+        }
+        conceptIds.remove(conceptSystemIds[id] + "|" + conceptCodes[id]);
+        conceptSystems[id] = null;
+        conceptCodes[id] = null;
+        conceptDisplays[id] = null;
+        freeConceptIds.push(id);
+    }
+
+    /**
+     * Lower-case and collapse whitespace, so typed text and display names
+     * compare the same way
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder normalized = new StringBuilder(text.length());
+        boolean space = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = normalized.length() > 0;
+            } else {
+                if (space) {
+                    normalized.append(' ');
+                    space = false;
+                }
+                normalized.append(c);
+            }
+        }
+        return normalized.toString().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * The concepts of one value set, with the code system as written and the
+     * display name, before they are interned
+     */
+    static final class ConceptNames {
+        private int[] systemIds = new int[16];
+        private String[] systems = new String[16];
+        private String[] codes = new String[16];
+        private String[] displays = new String[16];
+        private int size;
+
+        ConceptNames add(int systemId, String system, String code, String display) {
+            if (code == null) {
+                return this;
+            }
+            if (size == codes.length) {
+                systemIds = Arrays.copyOf(systemIds, size * 2);
+                systems = Arrays.copyOf(systems, size * 2);
+                codes = Arrays.copyOf(codes, size * 2);
+                displays = Arrays.copyOf(displays, size * 2);
+            }
+            systemIds[size] = systemId;
+            systems[size] = system;
+            codes[size] = code;
+            displays[size] = display;
+            size++;
+            return this;
+        }
+    }
+
+    /**
+     * Immutable search structure over the concepts with a display name
+     */
+    private static final class Snapshot {
+
+        static final Snapshot EMPTY = build(new String[0], new String[0], new String[0], new int[0]);
+
+        private final String[] systems;
+        private final String[] codes;
+        private final String[] displays;
+        private final int[] counts;
+        // Lower-cased display per concept id, null when the concept is not searchable
+        private final String[] names;
+        // (concept id << 32 | offset of a word start), sorted by the name from that offset
+        private final long[] entries;
+        // Max segment tree of the entry holding the highest count in each node's range
+        private final int[] tree;
+        private final int leaves;
+        private final int conceptCount;
+
+        private Snapshot(String[] systems, String[] codes, String[] displays, int[] counts, String[] names,
+                long[] entries, int conceptCount) {
+            this.systems = systems;
+            this.codes = codes;
+            this.displays = displays;
+            this.counts = counts;
+            this.names = names;
+            this.entries = entries;
+            this.conceptCount = conceptCount;
+
+            int n = Math.max(1, entries.length);
+            this.leaves = Integer.highestOneBit(n) == n ? n : Integer.highestOneBit(n) << 1;
+            this.tree = new int[leaves * 2];
+            Arrays.fill(tree, -1);
+            for (int i = 0; i < entries.length; i++) {
+                tree[leaves + i] = i;
+            }
+            for (int node = leaves - 1; node > 0; node--) {
+                tree[node] = better(tree[node * 2], tree[node * 2 + 1]);
+            }
+        }
+
+        static Snapshot build(String[] systems, String[] codes, String[] displays, int[] counts) {
+            String[] names = new String[displays.length];
+            int entryCount = 0;
+            int conceptCount = 0;
+            for (int id = 0; id < displays.length; id++) {
+                if (counts[id] > 0 && displays[id] != null) {
+                    String name = normalize(displays[id]);
+                    if (!name.isEmpty()) {
+                        names[id] = name;
+                        entryCount += wordStarts(name);
+                        conceptCount++;
+                    }
+                }
+            }
+
+            long[] entries = new long[entryCount];
+            int at = 0;
+            for (int id = 0; id < names.length; id++) {
+                if (names[id] != null) {
+                    at = fill(names[id], id, entries, at);
+                }
+            }
+
+            sort(entries, names);
+            return new Snapshot(systems, codes, displays, counts, names, entries, conceptCount);
+        }
+
+        List<ConceptSuggestion> suggest(String prefix, int limit) {
+            int from = bound(prefix, false);
+            int to = bound(prefix, true);
+            if (from >= to) {
+                return Collections.emptyList();
+            }
+
+            // Best entry of a range first; taking one splits its range in two
+            PriorityQueue<int[]> ranges = new PriorityQueue<>(
+                    (a, b) -> Integer.compare(count(b[0]), count(a[0])));
+            ranges.add(new int[] { best(from, to), from, to });
+            List<ConceptSuggestion> suggestions = new ArrayList<>(limit);
+            Set<Integer> seen = new HashSet<>();
+            while (suggestions.size() < limit && !ranges.isEmpty()) {
+                int[] range = ranges.poll();
+                int entry = range[0];
+                int id = (int) (entries[entry] >>> 32);
+                if (seen.add(id)) {
+                    ConceptSuggestion suggestion = new ConceptSuggestion();
+                    suggestion.setDisplay(displays[id]);
+                    suggestion.setSystem(systems[id]);
+                    suggestion.setCode(codes[id]);
+                    suggestion.setValueSetCount(counts[id]);
+                    suggestions.add(suggestion);
+                }
+                if (range[1] < entry) {
+                    ranges.add(new int[] { best(range[1], entry), range[1], entry });
+                }
+                if (entry + 1 < range[2]) {
+                    ranges.add(new int[] { best(entry + 1, range[2]), entry + 1, range[2] });
+                }
+            }
+            return suggestions;
+        }
+
+        /**
+         * @param after false for the first entry whose name from its offset
+         *              starts with or sorts after the prefix, true for the first
+         *              that sorts after every name starting with it
+         */
+        private int bound(String prefix, boolean after) {
+            int low = 0;
+            int high = entries.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                int c = comparePrefix(entries[mid], prefix);
+                if (c < 0 || (after && c == 0)) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private int comparePrefix(long entry, String prefix) {
+            String name = names[(int) (entry >>> 32)];
+            int offset = (int) entry;
+            int length = Math.min(name.length() - offset, prefix.length());
+            for (int k = 0; k < length; k++) {
+                int c = name.charAt(offset + k) - prefix.charAt(k);
+                if (c != 0) {
+                    return c;
+                }
+            }
+            return name.length() - offset >= prefix.length() ? 0 : -1;
+        }
+
+        /**
+         * The entry with the highest count in [from, to)
+         */
+        private int best(int from, int to) {
+            int result = -1;
+            for (int low = from + leaves, high = to + leaves; low < high; low >>= 1, high >>= 1) {
+                if ((low & 1) == 1) {
+                    result = better(result, tree[low++]);
+                }
+                if ((high & 1) == 1) {
+                    result = better(result, tree[--high]);
+                }
+            }
+            return result;
+        }
+
+        private int better(int a, int b) {
+            if (a < 0) {
+                return b;
+            }
+            if (b < 0) {
+                return a;
+            }
+            // Ties go to the entry that sorts first
+            int c = Integer.compare(count(a), count(b));
+            return c > 0 || (c == 0 && a < b) ? a : b;
+        }
+
+        private int count(int entry) {
+            return counts[(int) (entries[entry] >>> 32)];
+        }
+
+        private static int wordStarts(String name) {
+            int starts = 0;
+            for (int i = 0; i < name.length(); i++) {
+                if (isWordStart(name, i)) {
+                    starts++;
+                }
+            }
+            return starts;
+        }
+
+        /**
+         * Write one entry per word start of a name
+         *
+         * @return The position after the last entry written
+         */
+        private static int fill(String name, int id, long[] entries, int at) {
+            for (int i = 0; i < name.length(); i++) {
+                if (isWordStart(name, i)) {
+                    entries[at++] = (long) id << 32 | i;
+                }
+            }
+            return at;
+        }
+
+        private static boolean isWordStart(String name, int i) {
+            return Character.isLetterOrDigit(name.charAt(i))
+                    && (i == 0 || !Character.isLetterOrDigit(name.charAt(i - 1)));
+        }
+
+        /**
+         * Merge sort of the packed entries by the name text from their offset
+         */
+        private static void sort(long[] entries, String[] names) {
+            long[] buffer = new long[entries.length];
+            for (int width = 1; width < entries.length; width *= 2) {
+                for (int low = 0; low < entries.length; low += width * 2) {
+                    int mid = Math.min(low + width, entries.length);
+                    int high = Math.min(low + width * 2, entries.length);
+                    int i = low;
+                    int j = mid;
+                    int k = low;
+                    while (i < mid && j < high) {
+                        buffer[k++] = compare(entries[j], entries[i], names) < 0 ? entries[j++] : entries[i++];
+                    }
+                    while (i < mid) {
+                        buffer[k++] = entries[i++];
+                    }
+                    while (j < high) {
+                        buffer[k++] = entries[j++];
+                    }
+                }
+                System.arraycopy(buffer, 0, entries, 0, entries.length);
+            }
+        }
+
+        private static int compare(long a, long b, String[] names) {
+            String nameA = names[(int) (a >>> 32)];
+            String nameB = names[(int) (b >>> 32)];
+            int offsetA = (int) a;
+            int offsetB = (int) b;
+            int length = Math.min(nameA.length() - offsetA, nameB.length() - offsetB);
+            for (int k = 0; k < length; k++) {
+                int c = nameA.charAt(offsetA + k) - nameB.charAt(offsetB + k);
+                if (c != 0) {
+                    return c;
+                }
+            }
+            return (nameA.length() - offsetA) - (nameB.length() - offsetB);
+        }
+    }
+}
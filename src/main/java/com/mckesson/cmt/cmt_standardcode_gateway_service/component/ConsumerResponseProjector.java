@@ -0,0 +1,185 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.contract.StandardCodeResponse;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.contract.groups.CodingInfo;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.contract.groups.GroupMemberHLIRes;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.contract.groups.Property;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.entities.ApiConsumerResponse;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.entities.OidHliApiResponse;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.entities.OidMaster;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.ApiConsumerResponseRepository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Turns HLI group members into the consumer getStandardCodes contract. Each
+ * new HLI response is projected once when it is stored and saved to
+ * api_consumer_response, versioned alongside it, so consumer reads fetch
+ * ready-made JSON by key. The same mapping is used for member pages that are
+ * served from oid_hli_api_response_member.
+ *
+ * <p>
+ * Projection runs after the HLI response commits, in its own transaction, so
+ * a failed projection cannot roll back the stored response; getStandardCodes
+ * serves member pages until a projection exists.
+ */
+@Component
+public class ConsumerResponseProjector {
+
+    private static final Logger log = LoggerFactory.getLogger(ConsumerResponseProjector.class);
+
+    private final ApiConsumerResponseRepository apiConsumerResponseRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    public ConsumerResponseProjector(ApiConsumerResponseRepository apiConsumerResponseRepository,
+            ObjectMapper objectMapper, PlatformTransactionManager transactionManager) {
+        this.apiConsumerResponseRepository = apiConsumerResponseRepository;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Project a stored HLI response once the current transaction commits, or
+     * immediately when there is none. A failure is logged and leaves the OID
+     * without a current consumer response.
+     *
+     * @param hliResponse The stored HLI response, with its OidMaster
+     * @param response    The HLI response body that was stored
+     */
+    public void storeAfterCommit(OidHliApiResponse hliResponse, GroupMemberHLIRes response) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    storeSafely(hliResponse, response);
+                }
+            });
+        } else {
+            storeSafely(hliResponse, response);
+        }
+    }
+
+    private void storeSafely(OidHliApiResponse hliResponse, GroupMemberHLIRes response) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> store(hliResponse, response));
+        } catch (RuntimeException e) {
+            log.warn("Failed to project consumer response for OID {}: {}", hliResponse.getOidMaster().getOid(),
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Project a stored HLI response into the consumer shape and save it as the
+     * current consumer response of its OID
+     *
+     * @param hliResponse The stored HLI response, with its OidMaster
+     * @param response    The HLI response body that was stored
+     * @return The saved consumer response
+     */
+    private ApiConsumerResponse store(OidHliApiResponse hliResponse, GroupMemberHLIRes response) {
+        OidMaster oidMaster = hliResponse.getOidMaster();
+        List<CodingInfo> members = response.getResults() != null ? response.getResults() : Collections.emptyList();
+
+        StandardCodeResponse.StandardCodeData data = project(oidMaster.getOid(),
+                hliResponse.getCreatedAt().format(DateTimeFormatter.BASIC_ISO_DATE), oidMaster.getCodeSubType(),
+                members);
+
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(data);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException("Failed to serialise consumer response for OID " + oidMaster.getOid(), e);
+        }
+
+        apiConsumerResponseRepository.clearCurrent(oidMaster);
+
+        ApiConsumerResponse consumerResponse = new ApiConsumerResponse(oidMaster, json);
+        consumerResponse.setVersion(hliResponse.getVersion());
+        consumerResponse.setHliResponseId(hliResponse.getId());
+        consumerResponse.setMemberCount(members.size());
+        consumerResponse.setUpdatedAt(LocalDateTime.now());
+        ApiConsumerResponse saved = apiConsumerResponseRepository.save(consumerResponse);
+
+        log.info("Projected {} members of HLI response {} for OID {} into consumer response {}", members.size(),
+                hliResponse.getId(), oidMaster.getOid(), saved.getId());
+        return saved;
+    }
+
+    /**
+     * Build the consumer data for one OID revision
+     *
+     * @param oid         The OID
+     * @param revisionDay The revision as YYYYMMDD
+     * @param codeSubType The code sub type of the OID master
+     * @param members     The group members, in order
+     * @return The data with the type indicator first, then one result per member
+     */
+    public StandardCodeResponse.StandardCodeData project(String oid, String revisionDay, String codeSubType,
+            List<CodingInfo> members) {
+        List<StandardCodeResponse.StandardCodeResult> results = new ArrayList<>(members.size() + 1);
+        results.add(typeIndicator(codeSubType));
+        for (CodingInfo member : members) {
+            results.add(toResult(member));
+        }
+        return new StandardCodeResponse.StandardCodeData(oid, revisionDay, results, null);
+    }
+
+    /**
+     * The first result of every page, saying whether the OID is a questionnaire
+     *
+     * @param codeSubType The code sub type of the OID master
+     * @return The type indicator result
+     */
+    public StandardCodeResponse.StandardCodeResult typeIndicator(String codeSubType) {
+        StandardCodeResponse.StandardCodeResult typeIndicator = new StandardCodeResponse.StandardCodeResult();
+        typeIndicator.setIsQuestionnaire(codeSubType != null && codeSubType.toLowerCase().contains("questionnaire"));
+        return typeIndicator;
+    }
+
+    /**
+     * Map one HLI group member to a consumer result
+     *
+     * @param member The group member
+     * @return The consumer result
+     */
+    public StandardCodeResponse.StandardCodeResult toResult(CodingInfo member) {
+        StandardCodeResponse.StandardCodeResult item = new StandardCodeResponse.StandardCodeResult();
+        item.setId(member.getId());
+        item.setName(member.getName());
+        item.setCode(member.getCode());
+        item.setDefinition(propertyValue(member, "definition"));
+        item.setCodeSystemId(member.getCodeSystemId());
+        item.setOptions(new ArrayList<>());
+        return item;
+    }
+
+    private static String propertyValue(CodingInfo member, String name) {
+        if (member.getProperties() == null) {
+            return null;
+        }
+        for (Property property : member.getProperties()) {
+            if (name.equalsIgnoreCase(property.getName())) {
+                return property.getValue();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,192 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.component;
+
+import java.util.Arrays;
+
+/**
+ * Immutable members of one value set, as a sorted array of 64-bit hashes of
+ * (code system id, code) with the code system ids and codes in aligned arrays
+ * to confirm a hash match. Large sets also carry a Bloom filter so most misses
+ * are answered without the binary search.
+ */
+final class MembershipSet {
+
+    private final Integer responseId;
+    private final long[] hashes;
+    private final int[] systems;
+    private final String[] codes;
+    // Null when the set is too small for a filter to pay off
+    private final long[] bloom;
+    private final int bloomMask;
+
+    private MembershipSet(Integer responseId, long[] hashes, int[] systems, String[] codes, long[] bloom) {
+        this.responseId = responseId;
+        this.hashes = hashes;
+        this.systems = systems;
+        this.codes = codes;
+        this.bloom = bloom;
+        this.bloomMask = bloom != null ? bloom.length * 64 - 1 : 0;
+    }
+
+    /**
+     * @return The stored response the members were read from
+     */
+    Integer getResponseId() {
+        return responseId;
+    }
+
+    int size() {
+        return hashes.length;
+    }
+
+    int systemAt(int index) {
+        return systems[index];
+    }
+
+    String codeAt(int index) {
+        return codes[index];
+    }
+
+    boolean contains(int systemId, String code) {
+        long h = hash(systemId, code);
+        if (bloom != null && !mightContain(bloom, bloomMask, h)) {
+            return false;
+        }
+
+        int i = Arrays.binarySearch(hashes, h);
+        if (i < 0) {
+            return false;
+        }
+        while (i > 0 && hashes[i - 1] == h) {
+            i--;
+        }
+        for (; i < hashes.length && hashes[i] == h; i++) {
+            if (systems[i] == systemId && codes[i].equals(code)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 64-bit hash of a code within a code system: FNV-1a over the code, mixed
+     * with the system id and finished with the MurmurHash3 finaliser
+     */
+    static long hash(int systemId, String code) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < code.length(); i++) {
+            h ^= code.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= systemId * 0x9e3779b97f4a7c15L;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Three probes derived from the two halves of the hash
+     */
+    private static boolean mightContain(long[] bloom, int mask, long h) {
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32);
+        for (int k = 0; k < 3; k++) {
+            int bit = (h1 + k * h2) & mask;
+            if ((bloom[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void put(long[] bloom, int mask, long h) {
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32);
+        for (int k = 0; k < 3; k++) {
+            int bit = (h1 + k * h2) & mask;
+            bloom[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Collects the members of one value set before sorting them
+     */
+    static final class Builder {
+        private final Integer responseId;
+        private long[] hashes = new long[16];
+        private int[] systems = new int[16];
+        private String[] codes = new String[16];
+        private int size;
+
+        Builder(Integer responseId) {
+            this.responseId = responseId;
+        }
+
+        Builder add(int systemId, String code) {
+            if (code == null) {
+                return this;
+            }
+            if (size == hashes.length) {
+                hashes = Arrays.copyOf(hashes, size * 2);
+                systems = Arrays.copyOf(systems, size * 2);
+                codes = Arrays.copyOf(codes, size * 2);
+            }
+            hashes[size] = hash(systemId, code);
+            systems[size] = systemId;
+            codes[size] = code;
+            size++;
+            return this;
+        }
+
+        /**
+         * @param bloomMinSize The member count from which a Bloom filter is
+         *                     built, or 0 for never
+         */
+        MembershipSet build(int bloomMinSize) {
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Long.compare(hashes[a], hashes[b]));
+
+            long[] sortedHashes = new long[size];
+            int[] sortedSystems = new int[size];
+            String[] sortedCodes = new String[size];
+            int count = 0;
+            for (Integer index : order) {
+                if (isDuplicate(sortedHashes, sortedSystems, sortedCodes, count, index)) {
+                    continue;
+                }
+                sortedHashes[count] = hashes[index];
+                sortedSystems[count] = systems[index];
+                sortedCodes[count] = codes[index];
+                count++;
+            }
+
+            long[] bloom = null;
+            if (bloomMinSize > 0 && count >= bloomMinSize) {
+                // About ten bits per member keeps false positives near 1.5% with three probes
+                int bits = Math.max(64, Integer.highestOneBit(count * 10 - 1) << 1);
+                bloom = new long[bits / 64];
+                for (int i = 0; i < count; i++) {
+                    put(bloom, bits - 1, sortedHashes[i]);
+                }
+            }
+
+            return new MembershipSet(responseId, Arrays.copyOf(sortedHashes, count),
+                    Arrays.copyOf(sortedSystems, count), Arrays.copyOf(sortedCodes, count), bloom);
+        }
+
+        private boolean isDuplicate(long[] sortedHashes, int[] sortedSystems, String[] sortedCodes, int count,
+                int index) {
+            for (int j = count - 1; j >= 0 && sortedHashes[j] == hashes[index]; j--) {
+                if (sortedSystems[j] == systems[index] && sortedCodes[j].equals(codes[index])) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
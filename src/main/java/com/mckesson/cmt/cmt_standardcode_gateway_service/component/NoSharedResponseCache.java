@@ -0,0 +1,48 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.component;
+
+import com.mckesson.cmt.cmt_standardcode_gateway_service.model.CachedPayload;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Shared tier used when {@code standard-codes.cache.l2.type=none}: every
+ * lookup misses, so each replica only has its in-process cache
+ */
+public class NoSharedResponseCache implements SharedResponseCache {
+
+    @Override
+    public String name() {
+        return "none";
+    }
+
+    @Override
+    public Map<UUID, Long> getGenerations(Collection<UUID> uuids) {
+        return null;
+    }
+
+    @Override
+    public Map<UUID, List<CachedPayload>> getAll(Collection<UUID> uuids) {
+        return Map.of();
+    }
+
+    @Override
+    public void putAll(Map<UUID, List<CachedPayload>> payloads, Map<UUID, Long> generations) {
+    }
+
+    @Override
+    public void invalidate(Collection<UUID> uuids) {
+    }
+
+    @Override
+    public void addInvalidationListener(Consumer<Collection<UUID>> listener) {
+    }
+
+    @Override
+    public long usedMemoryBytes() {
+        return -1;
+    }
+}
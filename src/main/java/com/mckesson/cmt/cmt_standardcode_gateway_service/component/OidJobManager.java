@@ -0,0 +1,410 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.component;
+
+import com.mckesson.cmt.cmt_standardcode_gateway_service.dto.BatchUploadResult;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.dto.OidJobStatus;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.entities.OidBatchProcessLog;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.exception.ResourceNotFoundException;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.OidBatchProcessLogRepository;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.services.OidBatchService;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.services.OidProcessingService;
+
+import jakarta.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs CSV uploads and OID refreshes as background jobs on a bounded executor.
+ * Submitting returns immediately with a job ID; progress is kept in memory
+ * while the job runs and persisted to oid_batch_process_log under the same ID,
+ * so finished jobs can still be looked up after they are evicted from memory.
+ */
+@Component
+public class OidJobManager {
+
+    private static final Logger log = LoggerFactory.getLogger(OidJobManager.class);
+
+    public static final String TYPE_CSV_UPLOAD = "CSV_UPLOAD";
+    public static final String TYPE_OID_REFRESH = "OID_REFRESH";
+
+    public static final String STATUS_QUEUED = "QUEUED";
+    public static final String STATUS_PROCESSING = "PROCESSING";
+    public static final String STATUS_COMPLETED = "COMPLETED";
+    public static final String STATUS_FAILED = "FAILED";
+    public static final String STATUS_CANCELLED = "CANCELLED";
+
+    private final OidBatchService oidBatchService;
+    private final OidProcessingService oidProcessingService;
+    private final ScheduledOidProcessor scheduledOidProcessor;
+    private final OidBatchProcessLogRepository oidBatchProcessLogRepository;
+    private final OidRefreshPipeline oidRefreshPipeline;
+    private final ThreadPoolTaskExecutor executor;
+    private final long retentionMinutes;
+    private final long fetchTimeoutMinutes;
+
+    private final Map<String, OidJob> jobs = new ConcurrentHashMap<>();
+
+    public OidJobManager(
+            OidBatchService oidBatchService,
+            OidProcessingService oidProcessingService,
+            ScheduledOidProcessor scheduledOidProcessor,
+            OidBatchProcessLogRepository oidBatchProcessLogRepository,
+            OidRefreshPipeline oidRefreshPipeline,
+            @Value("${oid.jobs.pool-size:2}") int poolSize,
+            @Value("${oid.jobs.queue-capacity:10}") int queueCapacity,
+            @Value("${oid.jobs.retention-minutes:60}") long retentionMinutes,
+            @Value("${oid.jobs.fetch-timeout-minutes:120}") long fetchTimeoutMinutes) {
+        this.oidBatchService = oidBatchService;
+        this.oidProcessingService = oidProcessingService;
+        this.scheduledOidProcessor = scheduledOidProcessor;
+        this.oidBatchProcessLogRepository = oidBatchProcessLogRepository;
+        this.oidRefreshPipeline = oidRefreshPipeline;
+        this.retentionMinutes = retentionMinutes;
+        this.fetchTimeoutMinutes = fetchTimeoutMinutes;
+
+        // Kept private rather than exposed as a bean so it does not replace the
+        // application task executor used by Spring MVC
+        this.executor = new ThreadPoolTaskExecutor();
+        this.executor.setCorePoolSize(poolSize);
+        this.executor.setMaxPoolSize(poolSize);
+        this.executor.setQueueCapacity(queueCapacity);
+        this.executor.setThreadNamePrefix("oid-job-");
+        this.executor.initialize();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Submit a CSV upload job. The upload is spooled to a temporary file first
+     * because the multipart part is removed once the request completes. OIDs
+     * created or changed by each committed chunk are fetched from HLI while the
+     * rest of the file is imported; the job completes once both are done.
+     *
+     * @param file           The uploaded CSV file
+     * @param hliApiConfigId The HLI API Config ID to associate with the records
+     *                       (optional)
+     * @param batchSize      The number of rows committed per transaction
+     * @param username       The username performing the upload
+     * @return The status of the newly queued job
+     * @throws TaskRejectedException if the job queue is full
+     */
+    public OidJobStatus submitUpload(MultipartFile file, Long hliApiConfigId, int batchSize, String username)
+            throws IOException {
+        Path spoolFile = Files.createTempFile("oid-upload-", ".csv");
+        file.transferTo(spoolFile);
+
+        OidJob job = new OidJob(TYPE_CSV_UPLOAD, username);
+        try {
+            submit(job, () -> runUpload(job, spoolFile, hliApiConfigId, batchSize, username));
+        } catch (TaskRejectedException e) {
+            Files.deleteIfExists(spoolFile);
+            throw e;
+        }
+        return job.toStatus();
+    }
+
+    /**
+     * Submit a refresh of all pending OIDs. Only one refresh runs at a time; if
+     * one is already queued or running its status is returned instead.
+     *
+     * @param username The username requesting the refresh
+     * @return The status of the queued or already active refresh job
+     * @throws TaskRejectedException if the job queue is full
+     */
+    public synchronized OidJobStatus submitRefresh(String username) {
+        for (OidJob existing : jobs.values()) {
+            if (TYPE_OID_REFRESH.equals(existing.jobType) && !existing.isFinished()) {
+                log.info("Refresh job {} is already active", existing.jobId);
+                return existing.toStatus();
+            }
+        }
+
+        OidJob job = new OidJob(TYPE_OID_REFRESH, username);
+        submit(job, () -> runRefresh(job));
+        return job.toStatus();
+    }
+
+    /**
+     * Get the status of a job
+     *
+     * @param jobId The job ID
+     * @return The current status of the job
+     * @throws ResourceNotFoundException if no job with that ID is known
+     */
+    public OidJobStatus getStatus(String jobId) {
+        OidJob job = jobs.get(jobId);
+        if (job != null) {
+            return job.toStatus();
+        }
+
+        return oidBatchProcessLogRepository.findFirstByBatchIdOrderByIdAsc(jobId)
+                .map(this::toStatus)
+                .orElseThrow(() -> new ResourceNotFoundException("Job not found with ID: " + jobId));
+    }
+
+    /**
+     * Cancel a job. A queued job is cancelled immediately; a running job stops
+     * before its next chunk or batch, keeping the work already committed.
+     *
+     * @param jobId The job ID
+     * @return The status of the job after the cancellation request
+     * @throws ResourceNotFoundException if the job is not held by this instance
+     */
+    public OidJobStatus cancel(String jobId) {
+        OidJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new ResourceNotFoundException("No active job found with ID: " + jobId);
+        }
+
+        if (job.isFinished()) {
+            return job.toStatus();
+        }
+
+        log.info("Cancelling job {}", jobId);
+        job.cancel();
+        if (job.isFinished()) {
+            // Cancelled while queued; it will never start
+            return job.toStatus();
+        }
+        if (TYPE_OID_REFRESH.equals(job.jobType)) {
+            oidProcessingService.requestCancellation(jobId);
+        } else {
+            oidRefreshPipeline.cancel(jobId);
+        }
+        return job.toStatus();
+    }
+
+    private void submit(OidJob job, Runnable work) {
+        evictFinishedJobs();
+        jobs.put(job.jobId, job);
+
+        try {
+            executor.execute(() -> {
+                if (!job.start()) {
+                    log.info("Job {} was cancelled before it started", job.jobId);
+                    return;
+                }
+                try {
+                    work.run();
+                } catch (Exception e) {
+                    log.error("Job {} failed", job.jobId, e);
+                    job.finish(STATUS_FAILED, e.getMessage());
+                }
+            });
+        } catch (TaskRejectedException e) {
+            jobs.remove(job.jobId);
+            log.warn("Rejected {} job, queue is full", job.jobType);
+            throw e;
+        }
+
+        log.info("Queued {} job {} for {}", job.jobType, job.jobId, job.submittedBy);
+    }
+
+    private void runUpload(OidJob job, Path spoolFile, Long hliApiConfigId, int batchSize, String username) {
+        OidBatchProcessLog batchLog = new OidBatchProcessLog();
+        batchLog.setBatchId(job.jobId);
+        batchLog.setBatchStartTime(LocalDateTime.now());
+        batchLog.setTotalOids(0);
+        batchLog.setSuccessfulOids(0);
+        batchLog.setFailedOids(0);
+        batchLog.setStatus(STATUS_PROCESSING);
+        OidBatchProcessLog savedLog = oidBatchProcessLogRepository.save(batchLog);
+
+        try (InputStream inputStream = Files.newInputStream(spoolFile)) {
+            BatchUploadResult result = oidBatchService.processCsvStream(
+                    inputStream, hliApiConfigId, batchSize, username, job.jobId,
+                    progress -> {
+                        job.updateUpload(progress);
+                        saveUploadProgress(savedLog, progress, STATUS_PROCESSING);
+                    },
+                    job::isCancelRequested);
+
+            job.updateUpload(result);
+            saveUploadProgress(savedLog, result, STATUS_PROCESSING);
+
+            // Wait for the fetches of the last chunks to drain from the pipeline
+            // before recording the final status
+            if (!oidRefreshPipeline.awaitCompletion(job.jobId, fetchTimeoutMinutes, TimeUnit.MINUTES)) {
+                String message = "Upload committed but fetching changed OIDs did not finish within "
+                        + fetchTimeoutMinutes + " minutes";
+                savedLog.setBatchEndTime(LocalDateTime.now());
+                savedLog.setErrorMessage(message);
+                saveUploadProgress(savedLog, result, STATUS_FAILED);
+                job.finish(STATUS_FAILED, message);
+                return;
+            }
+
+            String finalStatus = job.isCancelRequested() ? STATUS_CANCELLED : STATUS_COMPLETED;
+            savedLog.setBatchEndTime(LocalDateTime.now());
+            saveUploadProgress(savedLog, result, finalStatus);
+            job.finish(finalStatus, null);
+        } catch (Exception e) {
+            log.error("Upload job {} failed", job.jobId, e);
+            savedLog.setBatchEndTime(LocalDateTime.now());
+            savedLog.setStatus(STATUS_FAILED);
+            savedLog.setErrorMessage(e.getMessage());
+            oidBatchProcessLogRepository.save(savedLog);
+            job.finish(STATUS_FAILED, e.getMessage());
+        } finally {
+            oidRefreshPipeline.close(job.jobId);
+            try {
+                Files.deleteIfExists(spoolFile);
+            } catch (IOException e) {
+                log.warn("Unable to delete spooled upload {}", spoolFile, e);
+            }
+        }
+    }
+
+    private void saveUploadProgress(OidBatchProcessLog batchLog, BatchUploadResult result, String status) {
+        batchLog.setTotalOids(result.getTotalRecords());
+        batchLog.setSuccessfulOids(
+                result.getCreatedCount() + result.getUpdatedCount() + result.getUnchangedCount());
+        batchLog.setFailedOids(result.getFailedCount());
+        batchLog.setStatus(status);
+        oidBatchProcessLogRepository.save(batchLog);
+    }
+
+    private void runRefresh(OidJob job) {
+        try {
+            scheduledOidProcessor.manualProcessing(job.jobId);
+        } finally {
+            oidProcessingService.clearCancellation(job.jobId);
+        }
+
+        // Copy the final counters from the persisted batch log, if one was written
+        oidBatchProcessLogRepository.findFirstByBatchIdOrderByIdAsc(job.jobId)
+                .ifPresent(job::updateRefresh);
+        job.finish(job.isCancelRequested() ? STATUS_CANCELLED : STATUS_COMPLETED, null);
+    }
+
+    private void evictFinishedJobs() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(retentionMinutes);
+        jobs.values().removeIf(job -> job.isFinished() && job.finishedAt.isBefore(cutoff));
+    }
+
+    private OidJobStatus toStatus(OidBatchProcessLog batchLog) {
+        OidJobStatus status = new OidJobStatus();
+        status.setJobId(batchLog.getBatchId());
+        status.setStatus(batchLog.getStatus());
+        status.setStartedAt(batchLog.getBatchStartTime());
+        status.setFinishedAt(batchLog.getBatchEndTime());
+        status.setTotalItems(batchLog.getTotalOids());
+        status.setSucceededItems(batchLog.getSuccessfulOids());
+        status.setFailedItems(batchLog.getFailedOids());
+        status.setErrorMessage(batchLog.getErrorMessage());
+        return status;
+    }
+
+    /**
+     * In-memory state of a submitted job
+     */
+    private class OidJob {
+        private final String jobId = UUID.randomUUID().toString();
+        private final String jobType;
+        private final String submittedBy;
+        private final LocalDateTime submittedAt = LocalDateTime.now();
+
+        private volatile String status = STATUS_QUEUED;
+        private volatile boolean cancelRequested;
+        private volatile LocalDateTime startedAt;
+        private volatile LocalDateTime finishedAt;
+        private volatile BatchUploadResult uploadResult;
+        private volatile Integer totalItems;
+        private volatile Integer succeededItems;
+        private volatile Integer failedItems;
+        private volatile String errorMessage;
+
+        OidJob(String jobType, String submittedBy) {
+            this.jobType = jobType;
+            this.submittedBy = submittedBy;
+        }
+
+        synchronized boolean start() {
+            if (cancelRequested) {
+                return false;
+            }
+            status = STATUS_PROCESSING;
+            startedAt = LocalDateTime.now();
+            return true;
+        }
+
+        synchronized void cancel() {
+            cancelRequested = true;
+            if (STATUS_QUEUED.equals(status)) {
+                finish(STATUS_CANCELLED, null);
+            }
+        }
+
+        synchronized void finish(String finalStatus, String message) {
+            status = finalStatus;
+            errorMessage = message;
+            finishedAt = LocalDateTime.now();
+        }
+
+        boolean isCancelRequested() {
+            return cancelRequested;
+        }
+
+        boolean isFinished() {
+            return finishedAt != null;
+        }
+
+        void updateUpload(BatchUploadResult result) {
+            // Publish a copy so pollers never see the live result mid-update
+            BatchUploadResult snapshot = result.copySummary();
+            uploadResult = snapshot;
+            totalItems = snapshot.getTotalRecords();
+            succeededItems = snapshot.getCreatedCount() + snapshot.getUpdatedCount()
+                    + snapshot.getUnchangedCount();
+            failedItems = snapshot.getFailedCount();
+        }
+
+        void updateRefresh(OidBatchProcessLog batchLog) {
+            totalItems = batchLog.getTotalOids();
+            succeededItems = batchLog.getSuccessfulOids();
+            failedItems = batchLog.getFailedOids();
+        }
+
+        OidJobStatus toStatus() {
+            if (TYPE_OID_REFRESH.equals(jobType) && !isFinished()) {
+                oidProcessingService.findRunningBatch(jobId).ifPresent(this::updateRefresh);
+            }
+
+            OidJobStatus jobStatus = new OidJobStatus();
+            jobStatus.setJobId(jobId);
+            jobStatus.setJobType(jobType);
+            jobStatus.setStatus(status);
+            jobStatus.setSubmittedBy(submittedBy);
+            jobStatus.setSubmittedAt(submittedAt);
+            jobStatus.setStartedAt(startedAt);
+            jobStatus.setFinishedAt(finishedAt);
+            jobStatus.setTotalItems(totalItems);
+            jobStatus.setSucceededItems(succeededItems);
+            jobStatus.setFailedItems(failedItems);
+            if (TYPE_CSV_UPLOAD.equals(jobType)) {
+                jobStatus.setPendingFetchChunks(oidRefreshPipeline.getPendingChunks(jobId));
+            }
+            jobStatus.setUploadResult(uploadResult);
+            jobStatus.setErrorMessage(errorMessage);
+            return jobStatus;
+        }
+    }
+}
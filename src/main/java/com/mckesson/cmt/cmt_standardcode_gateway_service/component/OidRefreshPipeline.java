@@ -0,0 +1,242 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.component;
+
+import com.mckesson.cmt.cmt_standardcode_gateway_service.services.OidProcessingService;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands OIDs created or changed by a CSV import to HLI fetching while the
+ * import is still running. The import publishes each committed chunk into a
+ * bounded queue and worker threads refresh the chunks from HLI, so fetching
+ * overlaps with the rest of the import. When fetching falls behind, the queue
+ * fills up and publishing blocks, which slows the import down instead of
+ * buffering without limit.
+ */
+@Component
+public class OidRefreshPipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(OidRefreshPipeline.class);
+
+    private final OidProcessingService oidProcessingService;
+    private final boolean enabled;
+    private final int workerCount;
+    private final BlockingQueue<RefreshChunk> queue;
+
+    // Chunks published but not yet fetched, per import
+    private final Map<String, AtomicInteger> pendingChunks = new ConcurrentHashMap<>();
+
+    // Imports whose remaining chunks should be dropped
+    private final Set<String> cancelledImports = ConcurrentHashMap.newKeySet();
+
+    // Imports that will publish no more chunks; forgotten once drained
+    private final Set<String> closedImports = ConcurrentHashMap.newKeySet();
+
+    // Batch IDs currently being fetched, per import; with several workers an
+    // import can have more than one chunk in flight
+    private final Map<String, Set<String>> activeBatchIds = new ConcurrentHashMap<>();
+
+    private final List<Thread> workers = new ArrayList<>();
+    private final AtomicInteger batchSequence = new AtomicInteger();
+    private volatile boolean running;
+
+    public OidRefreshPipeline(
+            OidProcessingService oidProcessingService,
+            @Value("${oid.refresh.pipeline.enabled:true}") boolean enabled,
+            @Value("${oid.refresh.pipeline.queue-capacity:50}") int queueCapacity,
+            @Value("${oid.refresh.pipeline.workers:1}") int workerCount) {
+        this.oidProcessingService = oidProcessingService;
+        this.enabled = enabled;
+        this.workerCount = workerCount;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            log.info("OID refresh pipeline is disabled");
+            return;
+        }
+
+        running = true;
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(this::runWorker, "oid-refresh-" + (i + 1));
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+        log.info("Started OID refresh pipeline with {} workers", workerCount);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        workers.forEach(Thread::interrupt);
+    }
+
+    /**
+     * Queue OIDs from a committed import chunk for fetching. Blocks while the
+     * queue is full.
+     *
+     * @param importId The import the OIDs belong to
+     * @param oids     The OIDs created or changed by the chunk
+     */
+    public void publish(String importId, Collection<String> oids) {
+        if (!enabled || oids.isEmpty() || cancelledImports.contains(importId)) {
+            return;
+        }
+
+        RefreshChunk chunk = new RefreshChunk(importId, new ArrayList<>(oids));
+        pendingChunks.compute(importId, (key, pending) -> {
+            AtomicInteger counter = pending != null ? pending : new AtomicInteger();
+            counter.incrementAndGet();
+            return counter;
+        });
+        try {
+            queue.put(chunk);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            completeChunk(importId);
+            log.warn("Interrupted while queueing {} OIDs of import {}", oids.size(), importId);
+        }
+    }
+
+    /**
+     * Drop the queued chunks of an import and stop the fetch in progress before
+     * its next HLI batch
+     *
+     * @param importId The import to cancel
+     */
+    public void cancel(String importId) {
+        cancelledImports.add(importId);
+        // A worker registers its batch before checking the flag, so either it
+        // sees the flag or the batch is found here
+        Set<String> batchIds = activeBatchIds.get(importId);
+        if (batchIds != null) {
+            batchIds.forEach(oidProcessingService::requestCancellation);
+        }
+        releaseIfDrained(importId);
+    }
+
+    /**
+     * Mark an import as done publishing, whether it completed, failed, timed
+     * out or was cancelled. Its state is dropped once its last chunk is
+     * fetched or skipped.
+     *
+     * @param importId The import ID
+     */
+    public void close(String importId) {
+        closedImports.add(importId);
+        releaseIfDrained(importId);
+    }
+
+    /**
+     * Get the number of chunks of an import that are queued or being fetched
+     *
+     * @param importId The import ID
+     * @return The number of chunks not yet fetched
+     */
+    public int getPendingChunks(String importId) {
+        AtomicInteger pending = pendingChunks.get(importId);
+        return pending != null ? pending.get() : 0;
+    }
+
+    /**
+     * Wait until every chunk published for an import has been fetched
+     *
+     * @param importId The import ID
+     * @param timeout  The maximum time to wait
+     * @param unit     The unit of the timeout
+     * @return true if all chunks were fetched within the timeout
+     */
+    public boolean awaitCompletion(String importId, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (this) {
+            while (getPendingChunks(importId) > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+        }
+        return true;
+    }
+
+    private void runWorker() {
+        while (running) {
+            RefreshChunk chunk;
+            try {
+                chunk = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            String batchId = chunk.importId + "-refresh-" + batchSequence.incrementAndGet();
+            activeBatchIds.compute(chunk.importId, (key, batchIds) -> {
+                Set<String> active = batchIds != null ? batchIds : ConcurrentHashMap.newKeySet();
+                active.add(batchId);
+                return active;
+            });
+            try {
+                if (cancelledImports.contains(chunk.importId)) {
+                    log.debug("Skipping {} OIDs of cancelled import {}", chunk.oids.size(), chunk.importId);
+                    continue;
+                }
+                oidProcessingService.processChangedOids(chunk.oids, batchId);
+            } catch (Exception e) {
+                // The batch log records the failure; keep draining the queue
+                log.error("Error fetching {} OIDs of import {}", chunk.oids.size(), chunk.importId, e);
+            } finally {
+                activeBatchIds.computeIfPresent(chunk.importId,
+                        (key, batchIds) -> batchIds.remove(batchId) && batchIds.isEmpty() ? null : batchIds);
+                oidProcessingService.clearCancellation(batchId);
+                completeChunk(chunk.importId);
+            }
+        }
+    }
+
+    private void completeChunk(String importId) {
+        // Drop the counter once the import has nothing left in flight
+        pendingChunks.computeIfPresent(importId,
+                (key, pending) -> pending.decrementAndGet() == 0 ? null : pending);
+        releaseIfDrained(importId);
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    private void releaseIfDrained(String importId) {
+        if (closedImports.contains(importId) && !pendingChunks.containsKey(importId)) {
+            cancelledImports.remove(importId);
+            closedImports.remove(importId);
+        }
+    }
+
+    private static final class RefreshChunk {
+        private final String importId;
+        private final List<String> oids;
+
+        RefreshChunk(String importId, List<String> oids) {
+            this.importId = importId;
+            this.oids = oids;
+        }
+    }
+}
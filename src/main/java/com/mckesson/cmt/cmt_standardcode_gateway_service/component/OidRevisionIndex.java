@@ -0,0 +1,283 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.OidHliApiResponseRepository;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.OidRevisionRow;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.OidRevisionStamp;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Per-OID cache of the stored successful HLI responses, without payloads, so
+ * that OID-revision pairs can be resolved to response ids in memory. OIDs not
+ * yet cached are loaded together in one query. Entries are dropped when a new
+ * HLI response is stored for the OID. Responses can be stored by another
+ * replica, so cached entries are checked on every lookup against the newest
+ * response id of each OID, read in one query without payloads, and reloaded
+ * if it moved on. Loading only reads; responses without member rows are
+ * paged from their stored document by the member repository.
+ */
+@Component
+public class OidRevisionIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(OidRevisionIndex.class);
+
+    private final OidHliApiResponseRepository oidHliApiResponseRepository;
+    private final Cache<String, OidRevisions> cache;
+
+    public OidRevisionIndex(
+            OidHliApiResponseRepository oidHliApiResponseRepository,
+            @Value("${standard-codes.revision-index.max-oids:20000}") long maxOids,
+            @Value("${standard-codes.revision-index.expire-after-write-minutes:30}") long expireAfterWriteMinutes) {
+        this.oidHliApiResponseRepository = oidHliApiResponseRepository;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxOids)
+                .expireAfterWrite(Duration.ofMinutes(expireAfterWriteMinutes))
+                .build();
+    }
+
+    /**
+     * Get the stored revisions of the given OIDs, loading the ones not cached
+     * in a single query
+     *
+     * @param oids The OIDs to look up
+     * @return The revisions per OID; OIDs not in oid_master are absent
+     */
+    public Map<String, OidRevisions> getRevisions(Collection<String> oids) {
+        Set<String> requested = new LinkedHashSet<>(oids);
+        Map<String, OidRevisions> found = new HashMap<>(cache.getAllPresent(requested));
+        dropStale(found);
+
+        List<String> missing = new ArrayList<>();
+        for (String oid : requested) {
+            if (!found.containsKey(oid)) {
+                missing.add(oid);
+            }
+        }
+        if (missing.isEmpty()) {
+            return found;
+        }
+
+        Map<String, OidRevisions> loaded = new HashMap<>();
+        for (OidRevisionRow row : oidHliApiResponseRepository.findRevisionsByOids(missing.toArray(String[]::new))) {
+            OidRevisions revisions = loaded.computeIfAbsent(row.getOid(),
+                    oid -> new OidRevisions(oid, row.getCodeSubType()));
+            if (row.getResponseId() != null) {
+                revisions.add(new Revision(row.getResponseId(), row.getVersion(), row.getRevisionDay(),
+                        Boolean.TRUE.equals(row.getIsCurrent()), row.getConsumerResponseId(), row.getMemberCount()));
+            }
+        }
+        log.debug("Loaded revisions of {} of {} uncached OIDs", loaded.size(), missing.size());
+
+        cache.putAll(loaded);
+        found.putAll(loaded);
+        return found;
+    }
+
+    private void dropStale(Map<String, OidRevisions> cached) {
+        if (cached.isEmpty()) {
+            return;
+        }
+
+        Map<String, OidRevisionStamp> stamps = new HashMap<>();
+        for (OidRevisionStamp stamp : oidHliApiResponseRepository
+                .findRevisionStampsByOids(cached.keySet().toArray(String[]::new))) {
+            stamps.put(stamp.getOid(), stamp);
+        }
+
+        cached.values().removeIf(revisions -> {
+            if (revisions.matches(stamps.get(revisions.getOid()))) {
+                return false;
+            }
+            cache.invalidate(revisions.getOid());
+            return true;
+        });
+    }
+
+    /**
+     * Drop the cached revisions of an OID once the current transaction commits
+     *
+     * @param oid The OID a new response was stored for
+     */
+    public void invalidateAfterCommit(String oid) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidate(oid);
+                }
+            });
+        } else {
+            cache.invalidate(oid);
+        }
+    }
+
+    /**
+     * The stored successful responses of one OID, in ascending version order
+     */
+    public static final class OidRevisions {
+        private final String oid;
+        private final String codeSubType;
+        private final List<Revision> revisions = new ArrayList<>();
+
+        OidRevisions(String oid, String codeSubType) {
+            this.oid = oid;
+            this.codeSubType = codeSubType;
+        }
+
+        void add(Revision revision) {
+            revisions.add(revision);
+        }
+
+        /**
+         * @return true if these revisions were loaded from the state the stamp
+         *         describes
+         */
+        boolean matches(OidRevisionStamp stamp) {
+            if (stamp == null || !Objects.equals(codeSubType, stamp.getCodeSubType())) {
+                return false;
+            }
+
+            Revision latest = null;
+            for (Revision revision : revisions) {
+                if (latest == null || revision.getResponseId() > latest.getResponseId()) {
+                    latest = revision;
+                }
+            }
+            if (latest == null) {
+                return stamp.getLatestResponseId() == null;
+            }
+            return latest.getResponseId().equals(stamp.getLatestResponseId())
+                    && Objects.equals(latest.getConsumerResponseId(), stamp.getConsumerResponseId());
+        }
+
+        public String getOid() {
+            return oid;
+        }
+
+        public String getCodeSubType() {
+            return codeSubType;
+        }
+
+        /**
+         * Find a stored response of this OID by id
+         *
+         * @param responseId The oid_hli_api_response row id
+         * @return The revision, or null if the response is not one of this OID's
+         */
+        public Revision find(int responseId) {
+            for (Revision revision : revisions) {
+                if (revision.getResponseId() == responseId) {
+                    return revision;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Find a stored response of this OID by version
+         *
+         * @param version The oid_hli_api_response version
+         * @return The revision, or null if no response has that version
+         */
+        public Revision findVersion(int version) {
+            for (Revision revision : revisions) {
+                if (revision.getVersion() != null && revision.getVersion() == version) {
+                    return revision;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Resolve a requested revision to a stored response
+         *
+         * @param revisionDay The revision as YYYYMMDD, or null for the latest
+         * @return The current response for the latest, otherwise the newest
+         *         response stored on or before that day; null if there is none
+         */
+        public Revision resolve(String revisionDay) {
+            if (revisionDay == null) {
+                for (Revision revision : revisions) {
+                    if (revision.isCurrent()) {
+                        return revision;
+                    }
+                }
+                return revisions.isEmpty() ? null : revisions.get(revisions.size() - 1);
+            }
+
+            for (int i = revisions.size() - 1; i >= 0; i--) {
+                Revision revision = revisions.get(i);
+                if (revision.getRevisionDay() != null && revision.getRevisionDay().compareTo(revisionDay) <= 0) {
+                    return revision;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * One stored successful response of an OID
+     */
+    public static final class Revision {
+        private final Integer responseId;
+        private final Integer version;
+        private final String revisionDay;
+        private final boolean current;
+        private final Integer consumerResponseId;
+        private final Integer memberCount;
+
+        Revision(Integer responseId, Integer version, String revisionDay, boolean current,
+                Integer consumerResponseId, Integer memberCount) {
+            this.responseId = responseId;
+            this.version = version;
+            this.revisionDay = revisionDay;
+            this.current = current;
+            this.consumerResponseId = consumerResponseId;
+            this.memberCount = memberCount;
+        }
+
+        public Integer getResponseId() {
+            return responseId;
+        }
+
+        public Integer getVersion() {
+            return version;
+        }
+
+        public String getRevisionDay() {
+            return revisionDay;
+        }
+
+        public boolean isCurrent() {
+            return current;
+        }
+
+        /**
+         * @return The precomputed api_consumer_response row, or null if none
+         */
+        public Integer getConsumerResponseId() {
+            return consumerResponseId;
+        }
+
+        public Integer getMemberCount() {
+            return memberCount;
+        }
+    }
+}
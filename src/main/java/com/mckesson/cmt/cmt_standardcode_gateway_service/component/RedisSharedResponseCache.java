@@ -0,0 +1,321 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.component;
+
+import com.mckesson.cmt.cmt_standardcode_gateway_service.model.CachedPayload;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Shared response cache tier on Redis, through Spring Data Redis. Each
+ * requested UUID has a document key, written with the same time to live as
+ * the in-process tier, and a generation key incremented by every
+ * invalidation. Documents carry the generation they were loaded under and are
+ * only served while it is still current. Invalidations are also published on a
+ * channel so other replicas drop their in-process copies.
+ *
+ * <p>
+ * After a failed command Redis is skipped for {@code retryAfterMillis}, with
+ * lookups missing and loads not written, instead of every request waiting for
+ * a timeout. Invalidations made meanwhile are kept and sent before the next
+ * command once Redis is back.
+ */
+public class RedisSharedResponseCache implements SharedResponseCache, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(RedisSharedResponseCache.class);
+
+    private final RedisTemplate<String, byte[]> template;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final long ttlMillis;
+    private final String keyPrefix;
+    private final String channel;
+    private final long retryAfterMillis;
+
+    // Identifies this replica's invalidation messages, which it already applied
+    private final String instanceId = UUID.randomUUID().toString();
+
+    // Invalidations not yet acknowledged by Redis
+    private final Set<UUID> pendingInvalidations = ConcurrentHashMap.newKeySet();
+    private volatile long unavailableUntil;
+
+    public RedisSharedResponseCache(RedisConnectionFactory connectionFactory, long ttlMillis, String keyPrefix,
+            long retryAfterMillis) {
+        this.template = new RedisTemplate<>();
+        template.setConnectionFactory(connectionFactory);
+        template.setKeySerializer(RedisSerializer.string());
+        template.setValueSerializer(RedisSerializer.byteArray());
+        template.afterPropertiesSet();
+
+        this.listenerContainer = new RedisMessageListenerContainer();
+        listenerContainer.setConnectionFactory(connectionFactory);
+        listenerContainer.setRecoveryInterval(retryAfterMillis);
+        listenerContainer.afterPropertiesSet();
+        listenerContainer.start();
+
+        this.ttlMillis = ttlMillis;
+        this.keyPrefix = keyPrefix;
+        this.channel = keyPrefix + "invalidations";
+        this.retryAfterMillis = retryAfterMillis;
+        log.info("Using shared response cache on Redis with key prefix {}", keyPrefix);
+    }
+
+    @Override
+    public String name() {
+        return "redis";
+    }
+
+    @Override
+    public Map<UUID, Long> getGenerations(Collection<UUID> uuids) {
+        if (!isAvailable()) {
+            return null;
+        }
+
+        List<UUID> keys = new ArrayList<>(uuids);
+        List<String> generationKeys = keys.stream().map(this::generationKey).toList();
+        List<byte[]> values = call(() -> template.opsForValue().multiGet(generationKeys));
+
+        Map<UUID, Long> generations = new HashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            generations.put(keys.get(i), generation(values.get(i)));
+        }
+        return generations;
+    }
+
+    @Override
+    public Map<UUID, List<CachedPayload>> getAll(Collection<UUID> uuids) {
+        if (uuids.isEmpty() || !isAvailable()) {
+            return Map.of();
+        }
+
+        // Documents and their current generations in one round trip
+        List<UUID> keys = new ArrayList<>(uuids);
+        List<String> redisKeys = new ArrayList<>(keys.size() * 2);
+        keys.forEach(uuid -> redisKeys.add(documentKey(uuid)));
+        keys.forEach(uuid -> redisKeys.add(generationKey(uuid)));
+        List<byte[]> values = call(() -> template.opsForValue().multiGet(redisKeys));
+
+        Map<UUID, List<CachedPayload>> found = new HashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            byte[] value = values.get(i);
+            if (value != null) {
+                List<CachedPayload> documents = decode(value, generation(values.get(keys.size() + i)));
+                if (documents != null) {
+                    found.put(keys.get(i), documents);
+                }
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public void putAll(Map<UUID, List<CachedPayload>> payloads, Map<UUID, Long> generations) {
+        if (payloads.isEmpty() || !isAvailable()) {
+            return;
+        }
+
+        Expiration ttl = Expiration.milliseconds(ttlMillis);
+        call(() -> template.executePipelined((RedisCallback<Object>) connection -> {
+            payloads.forEach((uuid, documents) -> {
+                Long generation = generations.get(uuid);
+                if (generation != null) {
+                    connection.stringCommands().set(bytes(documentKey(uuid)), encode(generation, documents), ttl,
+                            RedisStringCommands.SetOption.upsert());
+                }
+            });
+            return null;
+        }));
+    }
+
+    @Override
+    public void invalidate(Collection<UUID> uuids) {
+        if (uuids.isEmpty()) {
+            return;
+        }
+
+        // Kept until Redis has them, so a document changed during an outage
+        // is not served from Redis afterwards
+        pendingInvalidations.addAll(uuids);
+        if (System.currentTimeMillis() >= unavailableUntil) {
+            sendPendingInvalidations();
+        }
+    }
+
+    @Override
+    public void addInvalidationListener(Consumer<Collection<UUID>> listener) {
+        listenerContainer.addMessageListener((message, pattern) -> {
+            String body = new String(message.getBody(), StandardCharsets.UTF_8);
+            int separator = body.indexOf(' ');
+            if (separator < 0 || body.substring(0, separator).equals(instanceId)) {
+                return;
+            }
+
+            List<UUID> uuids = new ArrayList<>();
+            for (String uuid : body.substring(separator + 1).split(",")) {
+                uuids.add(UUID.fromString(uuid));
+            }
+            listener.accept(uuids);
+        }, new ChannelTopic(channel));
+    }
+
+    @Override
+    public long usedMemoryBytes() {
+        if (!isAvailable()) {
+            return -1;
+        }
+
+        Properties info = call(() -> template.execute(
+                (RedisCallback<Properties>) connection -> connection.serverCommands().info("memory")));
+        String usedMemory = info != null ? info.getProperty("used_memory") : null;
+        return usedMemory != null ? Long.parseLong(usedMemory.trim()) : -1;
+    }
+
+    @Override
+    public void close() {
+        try {
+            listenerContainer.destroy();
+        } catch (Exception e) {
+            log.warn("Could not stop the shared response cache listener: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @return false while Redis is skipped after a failure
+     */
+    private boolean isAvailable() {
+        if (System.currentTimeMillis() < unavailableUntil) {
+            return false;
+        }
+        if (!pendingInvalidations.isEmpty()) {
+            sendPendingInvalidations();
+        }
+        return true;
+    }
+
+    private synchronized void sendPendingInvalidations() {
+        if (pendingInvalidations.isEmpty()) {
+            return;
+        }
+
+        List<UUID> uuids = new ArrayList<>(pendingInvalidations);
+        byte[] message = bytes(instanceId + " " + String.join(",", uuids.stream().map(UUID::toString).toList()));
+        call(() -> template.executePipelined((RedisCallback<Object>) connection -> {
+            for (UUID uuid : uuids) {
+                connection.stringCommands().incr(bytes(generationKey(uuid)));
+                connection.keyCommands().del(bytes(documentKey(uuid)));
+            }
+            connection.publish(bytes(channel), message);
+            return null;
+        }));
+        pendingInvalidations.removeAll(uuids);
+    }
+
+    private <T> T call(Supplier<T> command) {
+        try {
+            return command.get();
+        } catch (RuntimeException e) {
+            unavailableUntil = System.currentTimeMillis() + retryAfterMillis;
+            log.info("Skipping the shared response cache for {} ms after a failure", retryAfterMillis);
+            throw e;
+        }
+    }
+
+    private String documentKey(UUID uuid) {
+        return keyPrefix + uuid;
+    }
+
+    // Never expires, so a generation is not reused while old documents live
+    private String generationKey(UUID uuid) {
+        return keyPrefix + "gen:" + uuid;
+    }
+
+    private static long generation(byte[] value) {
+        return value != null ? Long.parseLong(new String(value, StandardCharsets.US_ASCII)) : 0;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Documents of one UUID as: generation, count, then per document its row
+     * id, JSON length and bytes, and gzip length (-1 if none) and bytes
+     */
+    static byte[] encode(long generation, List<CachedPayload> documents) {
+        int size = 12;
+        for (CachedPayload document : documents) {
+            size += 12 + document.getJson().length + document.gzipLength();
+        }
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(size);
+        try (DataOutputStream out = new DataOutputStream(buffer)) {
+            out.writeLong(generation);
+            out.writeInt(documents.size());
+            for (CachedPayload document : documents) {
+                out.writeInt(document.getResponseId());
+                out.writeInt(document.getJson().length);
+                out.write(document.getJson());
+                // Only share a gzip copy that already exists; do not compress here
+                if (document.gzipLength() > 0) {
+                    byte[] gzip = document.getGzip();
+                    out.writeInt(gzip.length);
+                    out.write(gzip);
+                } else {
+                    out.writeInt(-1);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * @return The documents, or null if they were loaded under an older
+     *         generation
+     */
+    static List<CachedPayload> decode(byte[] value, long currentGeneration) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(value))) {
+            if (in.readLong() != currentGeneration) {
+                return null;
+            }
+            int count = in.readInt();
+            List<CachedPayload> documents = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int responseId = in.readInt();
+                byte[] json = in.readNBytes(in.readInt());
+                int gzipLength = in.readInt();
+                byte[] gzip = gzipLength >= 0 ? in.readNBytes(gzipLength) : null;
+                documents.add(new CachedPayload(responseId, json, gzip));
+            }
+            return documents;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupt shared cache entry", e);
+        }
+    }
+}
@@ -63,4 +63,22 @@ public class ScheduledOidProcessor {
             throw e;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Run OID processing manually under a caller-supplied batch ID, so that the
+     * run can be tracked and cancelled through its batch process log
+     * 
+     * @param batchId The batch ID to record the run under
+     */
+    public void manualProcessing(String batchId) {
+        log.info("Starting manual OID processing for batch {}", batchId);
+
+        try {
+            oidProcessingService.processAllPendingOids(batchId);
+            log.info("Completed manual OID processing for batch {}", batchId);
+        } catch (Exception e) {
+            log.error("Error during manual OID processing for batch {}", batchId, e);
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.component;
+
+import com.mckesson.cmt.cmt_standardcode_gateway_service.model.CachedPayload;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Shared (L2) tier of the standard codes response cache, visible to every
+ * replica. Selected with {@code standard-codes.cache.l2.type}. Implementations
+ * may fail with runtime exceptions; the two-tier cache treats a failure as a
+ * miss and carries on with the database.
+ *
+ * <p>
+ * Every UUID has a generation that moves on with each invalidation. A load
+ * reads the generations before it reads the database and writes its documents
+ * under them, so a load that raced with an invalidation on any replica writes
+ * documents that are never served.
+ */
+public interface SharedResponseCache {
+
+    /**
+     * @return A short name for logs and metrics
+     */
+    String name();
+
+    /**
+     * Read the current generations of the given UUIDs, before reading their
+     * documents from the database
+     *
+     * @param uuids The requested master or version UUIDs
+     * @return The generation per UUID, or null if nothing loaded now should be
+     *         written to this tier
+     */
+    Map<UUID, Long> getGenerations(Collection<UUID> uuids);
+
+    /**
+     * Look up documents for the given UUIDs
+     *
+     * @param uuids The requested master or version UUIDs
+     * @return The documents of the UUIDs that were present in their current
+     *         generation
+     */
+    Map<UUID, List<CachedPayload>> getAll(Collection<UUID> uuids);
+
+    /**
+     * Store documents loaded from the database
+     *
+     * @param payloads    The documents per requested UUID
+     * @param generations The generations read with {@link #getGenerations}
+     *                    before the load
+     */
+    void putAll(Map<UUID, List<CachedPayload>> payloads, Map<UUID, Long> generations);
+
+    /**
+     * Move the given UUIDs to a new generation, dropping their documents, and
+     * tell the other replicas
+     *
+     * @param uuids The master and version UUIDs whose documents changed
+     */
+    void invalidate(Collection<UUID> uuids);
+
+    /**
+     * Register a listener for invalidations made by other replicas, so they can
+     * be applied to this replica's in-process tier
+     *
+     * @param listener Called with the UUIDs another replica invalidated
+     */
+    void addInvalidationListener(Consumer<Collection<UUID>> listener);
+
+    /**
+     * @return The memory used by the shared tier in bytes, or -1 if unknown
+     */
+    long usedMemoryBytes();
+}
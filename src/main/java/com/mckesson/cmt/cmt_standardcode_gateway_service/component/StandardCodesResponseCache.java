@@ -0,0 +1,344 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.model.CachedPayload;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Two-tier cache of stored standard code response documents, keyed by the
+ * master or version UUID a consumer searched for. Values are the documents as
+ * UTF-8 JSON bytes plus their gzip copies.
+ *
+ * <p>
+ * L1 is a bounded in-process Caffeine cache weighted by document size, with
+ * W-TinyLFU eviction. L2 is a {@link SharedResponseCache} shared by all
+ * replicas, so a replica that misses L1 can take a document another replica
+ * already loaded instead of reading Postgres. L1 misses go to L2, and L2 hits
+ * are copied into L1. Documents loaded from the database are written to both
+ * tiers. An L2 failure counts as a miss. Invalidation reaches L1 on this
+ * replica, L2 for everyone, and other replicas' L1 through the invalidation
+ * messages of L2.
+ *
+ * <p>
+ * Writes to responses invalidate the affected UUIDs after their transaction
+ * commits. A read that started before an invalidation must not put back what
+ * it read, so loads carry a {@link LoadStamp} taken before the database read:
+ * the local invalidation epoch, and the L2 generations that keep a load which
+ * raced with another replica's invalidation from being served.
+ */
+@Slf4j
+@Component
+public class StandardCodesResponseCache {
+
+    public static final String CACHE_NAME = "standardCodesResponses";
+
+    // Rough per-entry overhead of key, list and payload objects
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+
+    private final Cache<UUID, List<CachedPayload>> cache;
+    private final SharedResponseCache sharedCache;
+    private final AtomicLong invalidationEpoch = new AtomicLong();
+
+    // Per requested UUID, across both tiers
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    // L2 lookups, made for L1 misses only
+    private final LongAdder sharedHits = new LongAdder();
+    private final LongAdder sharedMisses = new LongAdder();
+    private final LongAdder sharedErrors = new LongAdder();
+
+    public StandardCodesResponseCache(
+            MeterRegistry meterRegistry,
+            SharedResponseCache sharedCache,
+            @Value("${standard-codes.cache.max-weight-bytes:268435456}") long maxWeightBytes,
+            @Value("${standard-codes.cache.expire-after-write-minutes:60}") long expireAfterWriteMinutes) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeightBytes)
+                .weigher(StandardCodesResponseCache::weigh)
+                .expireAfterWrite(Duration.ofMinutes(expireAfterWriteMinutes))
+                .recordStats()
+                .build();
+        this.sharedCache = sharedCache;
+        sharedCache.addInvalidationListener(this::invalidateLocal);
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        Gauge.builder("cache.weight", cache, c -> c.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L))
+                .orElse(0L))
+                .tag("cache", CACHE_NAME)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+
+        FunctionCounter.builder("cache.l2.gets", sharedHits, LongAdder::sum)
+                .tag("cache", CACHE_NAME).tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("cache.l2.gets", sharedMisses, LongAdder::sum)
+                .tag("cache", CACHE_NAME).tag("result", "miss")
+                .register(meterRegistry);
+        FunctionCounter.builder("cache.l2.errors", sharedErrors, LongAdder::sum)
+                .tag("cache", CACHE_NAME)
+                .register(meterRegistry);
+
+        log.info("Initialized {} cache with max L1 weight {} bytes and L2 {}", CACHE_NAME, maxWeightBytes,
+                sharedCache.name());
+    }
+
+    /**
+     * Look up cached documents for the given UUIDs in L1, then in L2 for the
+     * ones L1 does not have
+     *
+     * @param uuids The requested master or version UUIDs
+     * @return The cached documents of the UUIDs that were present
+     */
+    public Map<UUID, List<CachedPayload>> getAllPresent(Collection<UUID> uuids) {
+        Map<UUID, List<CachedPayload>> found = cache.getAllPresent(uuids);
+
+        Set<UUID> requested = new LinkedHashSet<>(uuids);
+        List<UUID> localMisses = new ArrayList<>(requested.size() - found.size());
+        for (UUID uuid : requested) {
+            if (!found.containsKey(uuid)) {
+                localMisses.add(uuid);
+            }
+        }
+        if (!localMisses.isEmpty()) {
+            long epoch = invalidationEpoch.get();
+            Map<UUID, List<CachedPayload>> shared = getShared(localMisses);
+            if (!shared.isEmpty()) {
+                found = new HashMap<>(found);
+                found.putAll(shared);
+                putLocal(shared, epoch);
+            }
+        }
+
+        hits.add(found.size());
+        misses.add(requested.size() - found.size());
+        return found;
+    }
+
+    /**
+     * Take the stamp to pass to {@link #putAll} for a load that is about to
+     * read the database
+     *
+     * @param uuids The UUIDs about to be loaded
+     * @return The local epoch and L2 generations of the UUIDs
+     */
+    public LoadStamp beginLoad(Collection<UUID> uuids) {
+        long epoch = invalidationEpoch.get();
+        Map<UUID, Long> generations;
+        try {
+            generations = sharedCache.getGenerations(uuids);
+        } catch (RuntimeException e) {
+            sharedErrors.increment();
+            log.warn("Could not read {} UUID generations from the {} shared cache: {}", uuids.size(),
+                    sharedCache.name(), e.getMessage());
+            generations = null;
+        }
+        return new LoadStamp(epoch, generations);
+    }
+
+    /**
+     * Take the stamp to pass to {@link #putAll} for a load that is only cached
+     * in L1, such as one from the response snapshot, which may be older than
+     * what other replicas would put in L2
+     *
+     * @return The local epoch, without L2 generations
+     */
+    public LoadStamp beginLocalLoad() {
+        return new LoadStamp(invalidationEpoch.get(), null);
+    }
+
+    /**
+     * Cache documents loaded from the database, unless an invalidation happened
+     * since {@code stamp} was taken
+     *
+     * @param loaded The documents per requested UUID
+     * @param stamp  The value of {@link #beginLoad} or {@link #beginLocalLoad}
+     *               before the load
+     */
+    public void putAll(Map<UUID, List<CachedPayload>> loaded, LoadStamp stamp) {
+        if (!putLocal(loaded, stamp.epoch) || stamp.generations == null) {
+            return;
+        }
+
+        try {
+            sharedCache.putAll(loaded, stamp.generations);
+        } catch (RuntimeException e) {
+            sharedErrors.increment();
+            log.warn("Could not write {} UUIDs to the {} shared cache: {}", loaded.size(), sharedCache.name(),
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Invalidate the given UUIDs once the current transaction commits, or
+     * immediately when there is none
+     *
+     * @param uuids The master and version UUIDs whose documents changed
+     */
+    public void invalidateAfterCommit(Collection<UUID> uuids) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidate(uuids);
+                }
+            });
+        } else {
+            invalidate(uuids);
+        }
+    }
+
+    /**
+     * Invalidate the given UUIDs immediately
+     *
+     * @param uuids The master and version UUIDs whose documents changed
+     */
+    public void invalidate(Collection<UUID> uuids) {
+        invalidateLocal(uuids);
+        try {
+            sharedCache.invalidate(uuids);
+        } catch (RuntimeException e) {
+            sharedErrors.increment();
+            log.error("Could not invalidate {} UUIDs in the {} shared cache: {}", uuids.size(), sharedCache.name(),
+                    e.getMessage());
+        }
+        log.debug("Invalidated {} cached UUIDs", uuids.size());
+    }
+
+    /**
+     * @return L1 hit, miss, load and eviction counters since startup
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * @return Requested UUIDs found in either tier since startup
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return Requested UUIDs found in neither tier since startup
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return L2 lookups that found the UUID since startup
+     */
+    public long getSharedHitCount() {
+        return sharedHits.sum();
+    }
+
+    /**
+     * @return L2 lookups that did not find the UUID since startup, including
+     *         lookups that failed
+     */
+    public long getSharedMissCount() {
+        return sharedMisses.sum();
+    }
+
+    /**
+     * @return The memory used by L2 in bytes, or -1 if unknown or unreachable
+     */
+    public long getSharedUsedMemoryBytes() {
+        try {
+            return sharedCache.usedMemoryBytes();
+        } catch (RuntimeException e) {
+            sharedErrors.increment();
+            return -1;
+        }
+    }
+
+    private Map<UUID, List<CachedPayload>> getShared(List<UUID> uuids) {
+        Map<UUID, List<CachedPayload>> shared;
+        try {
+            shared = sharedCache.getAll(uuids);
+        } catch (RuntimeException e) {
+            sharedErrors.increment();
+            log.warn("Could not read {} UUIDs from the {} shared cache: {}", uuids.size(), sharedCache.name(),
+                    e.getMessage());
+            shared = Map.of();
+        }
+        sharedHits.add(shared.size());
+        sharedMisses.add(uuids.size() - shared.size());
+        return shared;
+    }
+
+    /**
+     * Drop UUIDs from L1 and discard loads of this replica still in progress
+     */
+    private void invalidateLocal(Collection<UUID> uuids) {
+        invalidationEpoch.incrementAndGet();
+        cache.invalidateAll(uuids);
+    }
+
+    /**
+     * @return false if nothing was cached because of an invalidation since
+     *         {@code epoch}
+     */
+    private boolean putLocal(Map<UUID, List<CachedPayload>> payloads, long epoch) {
+        if (payloads.isEmpty() || invalidationEpoch.get() != epoch) {
+            return false;
+        }
+
+        cache.putAll(payloads);
+
+        // An invalidation may have run between the check and the put
+        if (invalidationEpoch.get() != epoch) {
+            cache.invalidateAll(payloads.keySet());
+            return false;
+        }
+        return true;
+    }
+
+    private static int weigh(UUID key, List<CachedPayload> payloads) {
+        long weight = ENTRY_OVERHEAD_BYTES;
+        for (CachedPayload payload : payloads) {
+            weight += payload.getJson().length + payload.gzipLength() + ENTRY_OVERHEAD_BYTES;
+        }
+        return (int) Math.min(weight, Integer.MAX_VALUE);
+    }
+
+    /**
+     * State observed before a database load, deciding where its documents
+     * may still be cached
+     */
+    public static final class LoadStamp {
+        private final long epoch;
+
+        // Null when the documents must not be written to L2
+        private final Map<UUID, Long> generations;
+
+        private LoadStamp(long epoch, Map<UUID, Long> generations) {
+            this.epoch = epoch;
+            this.generations = generations;
+        }
+    }
+}
@@ -0,0 +1,601 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.component;
+
+import com.mckesson.cmt.cmt_standardcode_gateway_service.model.CachedPayload;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.StandardCodesActiveResponsesRow;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.StandardCodesResponseRepository;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.StandardCodesSnapshotRow;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Snapshot file of every active standard codes response, memory-mapped and
+ * consulted for UUIDs the response cache does not have before Postgres is
+ * read. A restarted replica maps the last snapshot written and serves from it
+ * at once, instead of reading every document from the database again.
+ *
+ * <p>
+ * The file is a fixed header, the documents with their gzip copies, a table of
+ * responses sorted by version UUID and a table of masters sorted by master
+ * UUID, each master pointing at its active responses in id order. Lookups
+ * binary search the tables and copy the document bytes out of the mapping. A
+ * new snapshot is written every {@code write-interval-ms} to a temporary file
+ * that then replaces the old one in one atomic move, so a partial file is
+ * never mapped.
+ *
+ * <p>
+ * Versions never change once written, so a version UUID in the snapshot is
+ * always answered from it. A master UUID is no longer answered once its active
+ * responses may differ from the snapshot's: writes on this replica mark the
+ * master when they commit, and a catch-up every {@code catch-up-ms}, the first
+ * right after startup, compares the active response ids in Postgres with the
+ * snapshot to find masters changed elsewhere. Marked masters are read from the
+ * database until a newer snapshot includes them. A snapshot mapped at startup
+ * may be arbitrarily old, so it answers no master until the first catch-up
+ * has completed against it. Until a catch-up sees a change made on another
+ * replica, the master's document may be as stale as that replica's L1 cache
+ * copies.
+ *
+ * <p>
+ * After a failed write, such as one that would exceed 2 GB, the next attempt
+ * waits a full {@code write-interval-ms} instead of the next catch-up.
+ */
+@Slf4j
+@Component
+public class StandardCodesResponseSnapshot {
+
+    private static final int MAGIC = 0x53435253; // "SCRS"
+    private static final int FORMAT_VERSION = 1;
+
+    // Magic, format version, write time, entry counts and table offsets
+    private static final int HEADER_BYTES = 40;
+    // Version UUID, row id, document offset, document length, gzip length
+    private static final int RESPONSE_ENTRY_BYTES = 32;
+    // Master UUID, first response reference, reference count
+    private static final int MASTER_ENTRY_BYTES = 24;
+
+    private final StandardCodesResponseRepository responseRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final boolean enabled;
+    private final Path path;
+    private final long writeIntervalMs;
+
+    // Orders master changes against the start of snapshot writes
+    private final AtomicLong sequence = new AtomicLong();
+    // Masters whose active responses changed, with the sequence they changed at
+    private final ConcurrentMap<UUID, Long> changedMasters = new ConcurrentHashMap<>();
+
+    private volatile Snapshot current;
+    // Only touched by refresh, which never runs concurrently with itself
+    private long retryWriteAt;
+
+    public StandardCodesResponseSnapshot(
+            StandardCodesResponseRepository responseRepository,
+            PlatformTransactionManager transactionManager,
+            @Value("${standard-codes.snapshot.enabled:true}") boolean enabled,
+            @Value("${standard-codes.snapshot.path:${java.io.tmpdir}/standard-codes-responses.snapshot}") String path,
+            @Value("${standard-codes.snapshot.write-interval-ms:900000}") long writeIntervalMs) {
+        this.responseRepository = responseRepository;
+        this.transactionManager = transactionManager;
+        this.enabled = enabled;
+        this.path = Path.of(path).toAbsolutePath();
+        this.writeIntervalMs = writeIntervalMs;
+
+        if (enabled && Files.exists(this.path)) {
+            try {
+                current = open(this.path, 0, false);
+                log.info("Mapped response snapshot {} of {} responses written at {}", this.path,
+                        current.responseCount, Instant.ofEpochMilli(current.writtenAt));
+            } catch (IOException | RuntimeException e) {
+                log.warn("Ignoring unreadable response snapshot {}: {}", this.path, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Look up the documents of a UUID in the snapshot
+     *
+     * @param uuid A master or version UUID
+     * @return The documents in id order, or null if the snapshot cannot answer
+     *         for the UUID
+     */
+    public List<CachedPayload> get(UUID uuid) {
+        Snapshot snapshot = current;
+        if (snapshot == null) {
+            return null;
+        }
+
+        List<CachedPayload> payloads = null;
+        int master = snapshot.findMaster(uuid);
+        if (master >= 0) {
+            if (isChanged(uuid, snapshot)) {
+                return null;
+            }
+            payloads = new ArrayList<>();
+            for (int response : snapshot.responsesOf(master)) {
+                payloads.add(snapshot.payload(response));
+            }
+        }
+        int response = snapshot.findResponse(uuid);
+        if (response >= 0) {
+            if (payloads == null) {
+                payloads = new ArrayList<>(1);
+            }
+            payloads.add(snapshot.payload(response));
+        }
+        return payloads;
+    }
+
+    /**
+     * Look up the documents of several UUIDs in the snapshot
+     *
+     * @param uuids The requested master or version UUIDs
+     * @return The documents of the UUIDs the snapshot can answer for
+     */
+    public Map<UUID, List<CachedPayload>> getAllPresent(Collection<UUID> uuids) {
+        Map<UUID, List<CachedPayload>> found = new HashMap<>();
+        if (current == null) {
+            return found;
+        }
+        for (UUID uuid : uuids) {
+            List<CachedPayload> payloads = get(uuid);
+            if (payloads != null) {
+                found.put(uuid, payloads);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Get the version UUID of the current response of a master from the
+     * snapshot
+     *
+     * @param masterUuid The master UUID
+     * @return The newest active version UUID, or null if the snapshot cannot
+     *         answer for the master
+     */
+    public UUID findCurrentVersionUuid(UUID masterUuid) {
+        Snapshot snapshot = current;
+        if (snapshot == null) {
+            return null;
+        }
+        int master = snapshot.findMaster(masterUuid);
+        if (master < 0 || isChanged(masterUuid, snapshot)) {
+            return null;
+        }
+        int[] responses = snapshot.responsesOf(master);
+        return snapshot.versionUuid(responses[responses.length - 1]);
+    }
+
+    /**
+     * Stop answering for a master from the current snapshot once the current
+     * transaction commits, or immediately when there is none. Must be called
+     * before the response cache is invalidated for the master, so a read in
+     * between cannot cache the snapshot's document again.
+     *
+     * @param masterUuid The master whose active responses changed
+     */
+    public void invalidateAfterCommit(UUID masterUuid) {
+        if (!enabled || masterUuid == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidate(masterUuid);
+                }
+            });
+        } else {
+            invalidate(masterUuid);
+        }
+    }
+
+    /**
+     * Stop answering for a master from the current snapshot
+     *
+     * @param masterUuid The master whose active responses changed
+     */
+    public void invalidate(UUID masterUuid) {
+        changedMasters.put(masterUuid, sequence.incrementAndGet());
+    }
+
+    /**
+     * Catch up with masters changed since the snapshot was written, then write
+     * a new snapshot if there is none yet or it is older than
+     * {@code write-interval-ms}, unless the last write failed less than
+     * {@code write-interval-ms} ago
+     */
+    @Scheduled(fixedDelayString = "${standard-codes.snapshot.catch-up-ms:60000}")
+    public void refresh() {
+        if (!enabled) {
+            return;
+        }
+
+        Snapshot snapshot = current;
+        try {
+            if (snapshot != null) {
+                catchUp(snapshot);
+            }
+        } catch (RuntimeException e) {
+            // Keep serving version UUIDs and the masters already caught up
+            log.error("Failed to catch up the response snapshot {}: {}", path, e.getMessage(), e);
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        if ((snapshot == null || now - snapshot.writtenAt >= writeIntervalMs) && now >= retryWriteAt) {
+            try {
+                write();
+            } catch (IOException | RuntimeException e) {
+                // A snapshot too large now is too large at the next catch-up too
+                retryWriteAt = now + writeIntervalMs;
+                log.error("Failed to write the response snapshot {}, retrying in {} ms: {}", path, writeIntervalMs,
+                        e.getMessage(), e);
+            }
+        }
+    }
+
+    private boolean isChanged(UUID masterUuid, Snapshot snapshot) {
+        // Until a catch-up has compared it with Postgres, any master may have changed
+        return !snapshot.caughtUp || isMarked(masterUuid, snapshot);
+    }
+
+    private boolean isMarked(UUID masterUuid, Snapshot snapshot) {
+        Long changedAt = changedMasters.get(masterUuid);
+        return changedAt != null && changedAt > snapshot.sequence;
+    }
+
+    /**
+     * Mark the snapshot's masters whose active response ids in Postgres differ
+     * from the snapshot's. Masters missing from the snapshot need no mark,
+     * since their UUIDs are not found in it anyway.
+     */
+    private void catchUp(Snapshot snapshot) {
+        Map<UUID, String> active = new HashMap<>();
+        for (StandardCodesActiveResponsesRow row : responseRepository.findActiveResponseIds()) {
+            active.put(UUID.fromString(row.getMasterUuid()), row.getResponseIds());
+        }
+
+        int changed = 0;
+        for (int master = 0; master < snapshot.masterCount; master++) {
+            UUID masterUuid = snapshot.masterUuid(master);
+            if (!isMarked(masterUuid, snapshot) && !snapshot.responseIds(master).equals(active.get(masterUuid))) {
+                invalidate(masterUuid);
+                changed++;
+            }
+        }
+        if (!snapshot.caughtUp) {
+            snapshot.caughtUp = true;
+            log.info("Response snapshot caught up; answering its {} masters", snapshot.masterCount);
+        }
+        if (changed > 0) {
+            log.info("{} standard codes masters changed since the response snapshot was written", changed);
+        }
+    }
+
+    /**
+     * Write a new snapshot next to the current file, map it and move it into
+     * place
+     */
+    private void write() throws IOException {
+        long start = System.currentTimeMillis();
+        // Changes counted up to here are committed, so the read below sees them
+        long startSequence = sequence.get();
+
+        Files.createDirectories(path.getParent());
+        Path temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            writeFile(temp, start);
+            // Read after every change counted up to startSequence, so already caught up
+            Snapshot written = open(temp, startSequence, true);
+            // An existing mapping stays valid after its file is replaced
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+            current = written;
+            changedMasters.values().removeIf(changedAt -> changedAt <= startSequence);
+
+            log.info("Wrote response snapshot {} of {} responses and {} masters, {} bytes, in {} ms", path,
+                    written.responseCount, written.masterCount, written.buffer.capacity(),
+                    System.currentTimeMillis() - start);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void writeFile(Path file, long writtenAt) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        long[] position = { HEADER_BYTES };
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            out.write(new byte[HEADER_BYTES]);
+
+            // Documents first, in id order, so each master's entries are in id order too
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    try (Stream<StandardCodesSnapshotRow> rows = responseRepository
+                            .streamActiveResponsesForSnapshot()) {
+                        rows.forEach(row -> {
+                            byte[] json = row.getPayload().getBytes(StandardCharsets.UTF_8);
+                            byte[] gzip = row.getPayloadGzip() != null ? row.getPayloadGzip() : new byte[0];
+                            checkSize(position[0] + json.length + gzip.length);
+                            try {
+                                out.write(json);
+                                out.write(gzip);
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                            entries.add(new Entry(UUID.fromString(row.getMasterUuid()),
+                                    UUID.fromString(row.getVersionUuid()), row.getId(), (int) position[0],
+                                    json.length, gzip.length));
+                            position[0] += json.length + gzip.length;
+                        });
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            List<Entry> byVersion = new ArrayList<>(entries);
+            byVersion.sort(Comparator.comparing(entry -> entry.versionUuid, StandardCodesResponseSnapshot::compare));
+            for (int i = 0; i < byVersion.size(); i++) {
+                byVersion.get(i).index = i;
+            }
+
+            Map<UUID, List<Entry>> byMaster = new LinkedHashMap<>();
+            for (Entry entry : entries) {
+                byMaster.computeIfAbsent(entry.masterUuid, uuid -> new ArrayList<>()).add(entry);
+            }
+            List<UUID> masterUuids = new ArrayList<>(byMaster.keySet());
+            masterUuids.sort(StandardCodesResponseSnapshot::compare);
+
+            long responseTable = position[0];
+            long masterTable = responseTable + (long) RESPONSE_ENTRY_BYTES * entries.size();
+            long refTable = masterTable + (long) MASTER_ENTRY_BYTES * masterUuids.size();
+            checkSize(refTable + 4L * entries.size());
+
+            for (Entry entry : byVersion) {
+                out.writeLong(entry.versionUuid.getMostSignificantBits());
+                out.writeLong(entry.versionUuid.getLeastSignificantBits());
+                out.writeInt(entry.id);
+                out.writeInt(entry.offset);
+                out.writeInt(entry.jsonLength);
+                out.writeInt(entry.gzipLength);
+            }
+            int firstRef = 0;
+            for (UUID masterUuid : masterUuids) {
+                int refCount = byMaster.get(masterUuid).size();
+                out.writeLong(masterUuid.getMostSignificantBits());
+                out.writeLong(masterUuid.getLeastSignificantBits());
+                out.writeInt(firstRef);
+                out.writeInt(refCount);
+                firstRef += refCount;
+            }
+            for (UUID masterUuid : masterUuids) {
+                for (Entry entry : byMaster.get(masterUuid)) {
+                    out.writeInt(entry.index);
+                }
+            }
+
+            // The header is filled in last, once the table offsets are known
+            out.flush();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                    .putInt(MAGIC)
+                    .putInt(FORMAT_VERSION)
+                    .putLong(writtenAt)
+                    .putInt(entries.size())
+                    .putInt(masterUuids.size())
+                    .putInt(entries.size())
+                    .putInt((int) responseTable)
+                    .putInt((int) masterTable)
+                    .putInt((int) refTable)
+                    .flip();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.write(header, 0);
+                channel.force(true);
+            }
+        }
+    }
+
+    private static void checkSize(long size) {
+        // A single mapping, addressed with int offsets
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalStateException("The response snapshot would exceed 2 GB");
+        }
+    }
+
+    private static Snapshot open(Path file, long sequence, boolean caughtUp) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException("Unexpected snapshot size " + size);
+            }
+            // The mapping stays valid after the channel is closed
+            return new Snapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), sequence, caughtUp);
+        }
+    }
+
+    private static int compare(UUID a, UUID b) {
+        return compare(a.getMostSignificantBits(), a.getLeastSignificantBits(), b.getMostSignificantBits(),
+                b.getLeastSignificantBits());
+    }
+
+    private static int compare(long aMost, long aLeast, long bMost, long bLeast) {
+        int c = Long.compare(aMost, bMost);
+        return c != 0 ? c : Long.compare(aLeast, bLeast);
+    }
+
+    /**
+     * One response while a snapshot is being written
+     */
+    private static final class Entry {
+        private final UUID masterUuid;
+        private final UUID versionUuid;
+        private final int id;
+        private final int offset;
+        private final int jsonLength;
+        private final int gzipLength;
+        // Position in the response table
+        private int index;
+
+        Entry(UUID masterUuid, UUID versionUuid, int id, int offset, int jsonLength, int gzipLength) {
+            this.masterUuid = masterUuid;
+            this.versionUuid = versionUuid;
+            this.id = id;
+            this.offset = offset;
+            this.jsonLength = jsonLength;
+            this.gzipLength = gzipLength;
+        }
+    }
+
+    /**
+     * A mapped snapshot file. Only absolute reads are used, so it is shared by
+     * all request threads.
+     */
+    private static final class Snapshot {
+        private final ByteBuffer buffer;
+        // Master changes counted after this may be missing from the snapshot
+        private final long sequence;
+        // Whether a catch-up has marked the masters changed since it was written
+        private volatile boolean caughtUp;
+        private final long writtenAt;
+        private final int responseCount;
+        private final int masterCount;
+        private final int responseTable;
+        private final int masterTable;
+        private final int refTable;
+
+        Snapshot(ByteBuffer buffer, long sequence, boolean caughtUp) {
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+                throw new IllegalStateException("Not a version " + FORMAT_VERSION + " response snapshot");
+            }
+            this.buffer = buffer;
+            this.sequence = sequence;
+            this.caughtUp = caughtUp;
+            this.writtenAt = buffer.getLong(8);
+            this.responseCount = buffer.getInt(16);
+            this.masterCount = buffer.getInt(20);
+            int refCount = buffer.getInt(24);
+            this.responseTable = buffer.getInt(28);
+            this.masterTable = buffer.getInt(32);
+            this.refTable = buffer.getInt(36);
+            if ((long) responseTable + (long) RESPONSE_ENTRY_BYTES * responseCount != masterTable
+                    || (long) masterTable + (long) MASTER_ENTRY_BYTES * masterCount != refTable
+                    || (long) refTable + 4L * refCount != buffer.capacity()) {
+                throw new IllegalStateException("Truncated response snapshot");
+            }
+        }
+
+        int findResponse(UUID versionUuid) {
+            return find(responseTable, RESPONSE_ENTRY_BYTES, responseCount, versionUuid);
+        }
+
+        int findMaster(UUID masterUuid) {
+            return find(masterTable, MASTER_ENTRY_BYTES, masterCount, masterUuid);
+        }
+
+        private int find(int table, int entryBytes, int count, UUID uuid) {
+            long most = uuid.getMostSignificantBits();
+            long least = uuid.getLeastSignificantBits();
+            int low = 0;
+            int high = count - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int at = table + mid * entryBytes;
+                int c = compare(buffer.getLong(at), buffer.getLong(at + 8), most, least);
+                if (c < 0) {
+                    low = mid + 1;
+                } else if (c > 0) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+
+        UUID masterUuid(int master) {
+            int at = masterTable + master * MASTER_ENTRY_BYTES;
+            return new UUID(buffer.getLong(at), buffer.getLong(at + 8));
+        }
+
+        UUID versionUuid(int response) {
+            int at = responseTable + response * RESPONSE_ENTRY_BYTES;
+            return new UUID(buffer.getLong(at), buffer.getLong(at + 8));
+        }
+
+        /**
+         * @return The positions of the master's responses in the response
+         *         table, in id order
+         */
+        int[] responsesOf(int master) {
+            int at = masterTable + master * MASTER_ENTRY_BYTES;
+            int firstRef = buffer.getInt(at + 16);
+            int[] responses = new int[buffer.getInt(at + 20)];
+            for (int i = 0; i < responses.length; i++) {
+                responses[i] = buffer.getInt(refTable + (firstRef + i) * 4);
+            }
+            return responses;
+        }
+
+        /**
+         * @return The master's response ids the way
+         *         {@link StandardCodesActiveResponsesRow#getResponseIds()} lists
+         *         them
+         */
+        String responseIds(int master) {
+            StringJoiner ids = new StringJoiner(",");
+            for (int response : responsesOf(master)) {
+                ids.add(Integer.toString(buffer.getInt(responseTable + response * RESPONSE_ENTRY_BYTES + 16)));
+            }
+            return ids.toString();
+        }
+
+        CachedPayload payload(int response) {
+            int at = responseTable + response * RESPONSE_ENTRY_BYTES;
+            int offset = buffer.getInt(at + 20);
+            byte[] json = new byte[buffer.getInt(at + 24)];
+            buffer.get(offset, json);
+            int gzipLength = buffer.getInt(at + 28);
+            byte[] gzip = null;
+            if (gzipLength > 0) {
+                gzip = new byte[gzipLength];
+                buffer.get(offset + json.length, gzip);
+            }
+            return new CachedPayload(buffer.getInt(at + 16), json, gzip);
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.component;
+
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.OidCurrentResponseRow;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.OidHliApiResponseRepository;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.OidMemberCodeRow;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * In-memory membership sets of the value sets (OIDs) with a current HLI
+ * response, answering "is code C of system S in value set V" without touching
+ * the database.
+ *
+ * <p>
+ * Each value set holds its members as a {@link MembershipSet}. Sets of at
+ * least {@code standard-codes.membership.bloom-min-size} members also get a
+ * Bloom filter so most misses are answered without the binary search. Code
+ * systems are interned by {@link CodeValueSetIndex} under their canonical
+ * registry name, so a FHIR URI, an OID root and a name of one code system are
+ * equivalent. Every change of a set is passed on to that index.
+ *
+ * <p>
+ * All sets are loaded by the first scheduled refresh; later refreshes reload
+ * only value sets whose current response changed. A value set is also reloaded
+ * as soon as a new response for it is committed on this instance. Lookups never
+ * read the database: until the first refresh completes, or when the index is
+ * disabled, value sets not yet loaded are unknown. A current response without
+ * members gives an empty set.
+ */
+@Component
+public class ValueSetMembershipIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(ValueSetMembershipIndex.class);
+
+    private static final int RELOAD_SLICE_SIZE = 1000;
+
+    private final OidHliApiResponseRepository oidHliApiResponseRepository;
+    private final CodeValueSetIndex codeValueSetIndex;
+    private final TransactionTemplate readOnlyTransaction;
+    private final boolean enabled;
+    private final int bloomMinSize;
+
+    private final Map<String, MembershipSet> sets = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+
+    public ValueSetMembershipIndex(
+            OidHliApiResponseRepository oidHliApiResponseRepository,
+            CodeValueSetIndex codeValueSetIndex,
+            PlatformTransactionManager transactionManager,
+            @Value("${standard-codes.membership.enabled:true}") boolean enabled,
+            @Value("${standard-codes.membership.bloom-min-size:1024}") int bloomMinSize) {
+        this.oidHliApiResponseRepository = oidHliApiResponseRepository;
+        this.codeValueSetIndex = codeValueSetIndex;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.enabled = enabled;
+        this.bloomMinSize = bloomMinSize;
+    }
+
+    /**
+     * Check whether a code is a member of a value set
+     *
+     * @param oid    The value set OID
+     * @param system The code system, as a FHIR URI, OID root or name
+     * @param code   The code
+     * @return true or false, or null if the value set has no current response
+     *         or is not loaded yet
+     */
+    public Boolean contains(String oid, String system, String code) {
+        MembershipSet set = sets.get(oid);
+        if (set == null) {
+            return null;
+        }
+
+        Integer systemId = codeValueSetIndex.findSystemId(system);
+        if (systemId == null) {
+            // No value set has a member of this code system
+            return false;
+        }
+        return set.contains(systemId, code);
+    }
+
+    /**
+     * @return The current response id the value set was built from, or null if
+     *         the value set is not loaded
+     */
+    public Integer getResponseId(String oid) {
+        MembershipSet set = sets.get(oid);
+        return set != null ? set.getResponseId() : null;
+    }
+
+    /**
+     * @return Whether membership checks are enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return Whether all value sets have been loaded
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * @return The number of value sets held in memory
+     */
+    public int size() {
+        return sets.size();
+    }
+
+    /**
+     * Load all value sets on the first run, then reload those whose current
+     * response changed and drop those without one
+     */
+    @Scheduled(fixedDelayString = "${standard-codes.membership.refresh-ms:60000}")
+    public void refresh() {
+        if (!enabled) {
+            return;
+        }
+
+        try {
+            if (!loaded) {
+                loadAll();
+                loaded = true;
+                return;
+            }
+
+            Map<String, Integer> current = new HashMap<>();
+            for (OidCurrentResponseRow row : oidHliApiResponseRepository.findCurrentResponseIds()) {
+                current.put(row.getOid(), row.getResponseId());
+            }
+
+            List<String> changed = new ArrayList<>();
+            current.forEach((oid, responseId) -> {
+                MembershipSet set = sets.get(oid);
+                if (set == null || !set.getResponseId().equals(responseId)) {
+                    changed.add(oid);
+                }
+            });
+            for (String oid : new ArrayList<>(sets.keySet())) {
+                if (!current.containsKey(oid)) {
+                    drop(oid);
+                }
+            }
+
+            if (!changed.isEmpty()) {
+                reload(changed);
+                log.info("Reloaded {} changed value set membership sets", changed.size());
+            }
+        } catch (RuntimeException e) {
+            // Keep answering from the sets already loaded
+            log.error("Failed to refresh value set membership sets: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reload a value set once the current transaction commits
+     *
+     * @param oid The OID a new response was stored for
+     */
+    public void reloadAfterCommit(String oid) {
+        if (!enabled) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    reloadQuietly(oid);
+                }
+            });
+        } else {
+            reloadQuietly(oid);
+        }
+    }
+
+    private void reloadQuietly(String oid) {
+        try {
+            reload(List.of(oid));
+        } catch (RuntimeException e) {
+            // The next scheduled refresh picks the change up
+            log.warn("Failed to reload value set membership for OID {}: {}", oid, e.getMessage());
+        }
+    }
+
+    private void loadAll() {
+        long start = System.currentTimeMillis();
+        Map<String, MembershipSet> built = new HashMap<>();
+        Map<String, ConceptNameIndex.ConceptNames> names = new HashMap<>();
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<OidMemberCodeRow> rows = oidHliApiResponseRepository.streamCurrentMemberCodes()) {
+                String[] oid = new String[1];
+                MembershipSet.Builder[] builder = new MembershipSet.Builder[1];
+                rows.forEach(row -> {
+                    if (!row.getOid().equals(oid[0])) {
+                        if (builder[0] != null) {
+                            built.put(oid[0], builder[0].build(bloomMinSize));
+                        }
+                        oid[0] = row.getOid();
+                        builder[0] = new MembershipSet.Builder(row.getResponseId());
+                        names.put(oid[0], new ConceptNameIndex.ConceptNames());
+                    }
+                    if (row.getCode() != null) {
+                        int systemId = codeValueSetIndex.systemId(row.getCodeSystemId());
+                        builder[0].add(systemId, row.getCode());
+                        names.get(oid[0]).add(systemId, row.getCodeSystemId(), row.getCode(), row.getName());
+                    }
+                });
+                if (builder[0] != null) {
+                    built.put(oid[0], builder[0].build(bloomMinSize));
+                }
+            }
+        });
+
+        built.forEach((oid, set) -> store(oid, set, names.get(oid)));
+        for (String oid : new ArrayList<>(sets.keySet())) {
+            if (!built.containsKey(oid)) {
+                drop(oid);
+            }
+        }
+        log.info("Loaded membership sets of {} value sets in {} ms", built.size(),
+                System.currentTimeMillis() - start);
+    }
+
+    private void reload(Collection<String> oids) {
+        List<String> all = new ArrayList<>(oids);
+        for (int from = 0; from < all.size(); from += RELOAD_SLICE_SIZE) {
+            List<String> slice = all.subList(from, Math.min(from + RELOAD_SLICE_SIZE, all.size()));
+
+            Map<String, MembershipSet.Builder> builders = new HashMap<>();
+            Map<String, ConceptNameIndex.ConceptNames> names = new HashMap<>();
+            for (OidMemberCodeRow row : oidHliApiResponseRepository
+                    .findCurrentMemberCodes(slice.toArray(String[]::new))) {
+                MembershipSet.Builder builder = builders.computeIfAbsent(row.getOid(),
+                        oid -> new MembershipSet.Builder(row.getResponseId()));
+                ConceptNameIndex.ConceptNames oidNames = names.computeIfAbsent(row.getOid(),
+                        oid -> new ConceptNameIndex.ConceptNames());
+                if (row.getCode() != null) {
+                    int systemId = codeValueSetIndex.systemId(row.getCodeSystemId());
+                    builder.add(systemId, row.getCode());
+                    oidNames.add(systemId, row.getCodeSystemId(), row.getCode(), row.getName());
+                }
+            }
+
+            Set<String> found = new HashSet<>();
+            builders.forEach((oid, builder) -> {
+                store(oid, builder.build(bloomMinSize), names.get(oid));
+                found.add(oid);
+            });
+            for (String oid : slice) {
+                if (!found.contains(oid)) {
+                    drop(oid);
+                }
+            }
+        }
+    }
+
+    /**
+     * Swap a set in and update the code index to match; synchronized so both
+     * see value set changes in the same order
+     */
+    private synchronized void store(String oid, MembershipSet set, ConceptNameIndex.ConceptNames names) {
+        sets.put(oid, set);
+        codeValueSetIndex.update(CodeValueSetIndex.OID, oid, set, names);
+    }
+
+    private synchronized void drop(String oid) {
+        if (sets.remove(oid) != null) {
+            codeValueSetIndex.update(CodeValueSetIndex.OID, oid, null, null);
+        }
+    }
+}
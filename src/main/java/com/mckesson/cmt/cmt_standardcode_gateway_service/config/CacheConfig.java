@@ -1,18 +1,33 @@
 package com.mckesson.cmt.cmt_standardcode_gateway_service.config;
 
+import com.mckesson.cmt.cmt_standardcode_gateway_service.component.NoSharedResponseCache;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.component.RedisSharedResponseCache;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.component.SharedResponseCache;
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.SocketOptions;
+import io.lettuce.core.api.StatefulConnection;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.cache.concurrent.ConcurrentMapCache;
 import org.springframework.cache.support.SimpleCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisPassword;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettucePoolingClientConfiguration;
 
+import java.time.Duration;
 import java.util.Arrays;
 
 /**
- * Configuration for caching scheduler configurations
+ * Configuration for caching scheduler configurations and for the shared (L2)
+ * tier of the standard codes response cache
  */
 @Configuration
 @EnableCaching
@@ -35,4 +50,75 @@ public class CacheConfig {
 
         return cacheManager;
     }
-}
\ No newline at end of file
+
+    /**
+     * Shared response cache tier when none is configured; every replica only
+     * uses its in-process cache
+     *
+     * @return A shared tier that always misses
+     */
+    @Bean
+    @ConditionalOnProperty(name = "standard-codes.cache.l2.type", havingValue = "none", matchIfMissing = true)
+    public SharedResponseCache noSharedResponseCache() {
+        return new NoSharedResponseCache();
+    }
+
+    /**
+     * Connection factory for the shared response cache. Commands share one
+     * multiplexed connection and pipelines borrow from a pool of at most
+     * {@code pool-size} connections. Commands fail at once while the
+     * connection is down instead of queueing until it is back.
+     *
+     * @return The Lettuce connection factory for the shared tier
+     */
+    @Bean
+    @ConditionalOnProperty(name = "standard-codes.cache.l2.type", havingValue = "redis")
+    public LettuceConnectionFactory sharedResponseCacheConnectionFactory(
+            @Value("${standard-codes.cache.l2.redis.host}") String host,
+            @Value("${standard-codes.cache.l2.redis.port:6379}") int port,
+            @Value("${standard-codes.cache.l2.redis.ssl:false}") boolean ssl,
+            @Value("${standard-codes.cache.l2.redis.password:}") String password,
+            @Value("${standard-codes.cache.l2.redis.timeout-ms:500}") int timeoutMs,
+            @Value("${standard-codes.cache.l2.redis.pool-size:16}") int poolSize) {
+        GenericObjectPoolConfig<StatefulConnection<?, ?>> poolConfig = new GenericObjectPoolConfig<>();
+        poolConfig.setMaxTotal(poolSize);
+        poolConfig.setMaxIdle(poolSize);
+        poolConfig.setMaxWait(Duration.ofMillis(timeoutMs));
+
+        LettucePoolingClientConfiguration.LettucePoolingClientConfigurationBuilder clientConfig =
+                LettucePoolingClientConfiguration.builder()
+                        .poolConfig(poolConfig)
+                        .commandTimeout(Duration.ofMillis(timeoutMs))
+                        .clientOptions(ClientOptions.builder()
+                                .disconnectedBehavior(ClientOptions.DisconnectedBehavior.REJECT_COMMANDS)
+                                .socketOptions(SocketOptions.builder()
+                                        .connectTimeout(Duration.ofMillis(timeoutMs))
+                                        .build())
+                                .build());
+        if (ssl) {
+            clientConfig.useSsl();
+        }
+
+        RedisStandaloneConfiguration server = new RedisStandaloneConfiguration(host, port);
+        if (!password.isEmpty()) {
+            server.setPassword(RedisPassword.of(password));
+        }
+        return new LettuceConnectionFactory(server, clientConfig.build());
+    }
+
+    /**
+     * Shared response cache tier on an external Redis server
+     *
+     * @return The Redis backed shared tier
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "standard-codes.cache.l2.type", havingValue = "redis")
+    public SharedResponseCache redisSharedResponseCache(
+            LettuceConnectionFactory sharedResponseCacheConnectionFactory,
+            @Value("${standard-codes.cache.l2.expire-after-write-minutes:60}") long expireAfterWriteMinutes,
+            @Value("${standard-codes.cache.l2.key-prefix:scr:}") String keyPrefix,
+            @Value("${standard-codes.cache.l2.redis.retry-after-ms:10000}") long retryAfterMs) {
+        return new RedisSharedResponseCache(sharedResponseCacheConnectionFactory,
+                Duration.ofMinutes(expireAfterWriteMinutes).toMillis(), keyPrefix, retryAfterMs);
+    }
+}
@@ -37,6 +37,9 @@ public class JpaConfig {
     @Value("${spring.jpa.properties.hibernate.format_sql:true}")
     private String formatSql;
 
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:100}")
+    private String jdbcBatchSize;
+
     /**
      * Configures the EntityManagerFactory with proper entity scanning and Hibernate
      * settings
@@ -64,6 +67,9 @@ public class JpaConfig {
         properties.setProperty("hibernate.hbm2ddl.auto", hbm2ddlAuto);
         properties.setProperty("hibernate.show_sql", showSql);
         properties.setProperty("hibernate.format_sql", formatSql);
+        // Group chunked upload writes into JDBC batches
+        properties.setProperty("hibernate.jdbc.batch_size", jdbcBatchSize);
+        properties.setProperty("hibernate.order_updates", "true");
         em.setJpaProperties(properties);
 
         return em;
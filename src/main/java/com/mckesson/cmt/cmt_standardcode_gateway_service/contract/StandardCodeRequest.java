@@ -51,6 +51,8 @@ public class StandardCodeRequest extends BaseRequest {
     // Inner classes
     public static class Parameters {
         private List<OidRevision> oidRevisions;
+        // Maximum number of members returned per OID-revision pair
+        private Integer count;
 
         // Constructors
         public Parameters() {
@@ -68,12 +70,22 @@ public class StandardCodeRequest extends BaseRequest {
         public void setOidRevisions(List<OidRevision> oidRevisions) {
             this.oidRevisions = oidRevisions;
         }
+
+        public Integer getCount() {
+            return count;
+        }
+
+        public void setCount(Integer count) {
+            this.count = count;
+        }
     }
 
     public static class OidRevision {
         @JsonProperty("oId")
         private String oId;
         private String revision;
+        // nextCursor of the previous page, absent for the first page
+        private String cursor;
 
         // Constructors
         public OidRevision() {
@@ -100,5 +112,13 @@ public class StandardCodeRequest extends BaseRequest {
         public void setRevision(String revision) {
             this.revision = revision;
         }
+
+        public String getCursor() {
+            return cursor;
+        }
+
+        public void setCursor(String cursor) {
+            this.cursor = cursor;
+        }
     }
 }
\ No newline at end of file
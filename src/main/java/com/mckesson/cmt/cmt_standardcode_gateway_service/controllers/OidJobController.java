@@ -0,0 +1,111 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.controllers;
+
+import com.mckesson.cmt.cmt_standardcode_gateway_service.component.OidJobManager;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.dto.OidJobStatus;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.exception.BadRequestException;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.URI;
+import java.security.Principal;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+@Slf4j
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/v1/oid-jobs")
+@Tag(name = "OID Jobs", description = "API endpoints for submitting OID CSV uploads and OID refreshes as background jobs. "
+        + "Submitting returns a job ID immediately; the job can then be polled for progress or cancelled.")
+public class OidJobController {
+
+    private final OidJobManager jobManager;
+
+    @PostMapping(value = "/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Submit a CSV upload job", description = "Queues an OID master CSV upload and returns its job ID. "
+            + "Rows are committed in chunks of batchSize while the job runs.", security = @SecurityRequirement(name = "oauth2"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Upload job accepted"),
+            @ApiResponse(responseCode = "503", description = "Job queue is full, retry later")
+    })
+    @PreAuthorize("hasAuthority('SCOPE_ccmt:api')")
+    public ResponseEntity<OidJobStatus> submitUpload(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "hliApiConfigId", required = false) Long hliApiConfigId,
+            @RequestParam(value = "batchSize", defaultValue = "0") int batchSize,
+            Principal principal) throws IOException {
+        if (file.isEmpty()) {
+            throw new BadRequestException("Uploaded file is empty");
+        }
+
+        log.info("Received CSV upload job for file {} ({} bytes)", file.getOriginalFilename(), file.getSize());
+        OidJobStatus status = jobManager.submitUpload(file, hliApiConfigId, batchSize, username(principal));
+        return accepted(status);
+    }
+
+    @PostMapping(value = "/refresh", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Submit an OID refresh job", description = "Queues processing of all pending OIDs against HLI. "
+            + "If a refresh is already queued or running, that job is returned instead.", security = @SecurityRequirement(name = "oauth2"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Refresh job accepted"),
+            @ApiResponse(responseCode = "503", description = "Job queue is full, retry later")
+    })
+    @PreAuthorize("hasAuthority('SCOPE_ccmt:api')")
+    public ResponseEntity<OidJobStatus> submitRefresh(Principal principal) {
+        log.info("Received OID refresh job request");
+        return accepted(jobManager.submitRefresh(username(principal)));
+    }
+
+    @GetMapping(value = "/{jobId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Get job status", description = "Returns the status and progress counters of a job.", security = @SecurityRequirement(name = "oauth2"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Job status returned"),
+            @ApiResponse(responseCode = "404", description = "Job not found")
+    })
+    @PreAuthorize("hasAuthority('SCOPE_ccmt:api')")
+    public ResponseEntity<OidJobStatus> getStatus(@PathVariable String jobId) {
+        return ResponseEntity.ok(jobManager.getStatus(jobId));
+    }
+
+    @DeleteMapping(value = "/{jobId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Cancel a job", description = "Cancels a queued job, or stops a running job before its next chunk. "
+            + "Work already committed is kept.", security = @SecurityRequirement(name = "oauth2"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Cancellation requested"),
+            @ApiResponse(responseCode = "404", description = "No active job with that ID")
+    })
+    @PreAuthorize("hasAuthority('SCOPE_ccmt:api')")
+    public ResponseEntity<OidJobStatus> cancel(@PathVariable String jobId) {
+        return ResponseEntity.accepted().body(jobManager.cancel(jobId));
+    }
+
+    private ResponseEntity<OidJobStatus> accepted(OidJobStatus status) {
+        URI location = ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/api/v1/oid-jobs/{jobId}")
+                .buildAndExpand(status.getJobId())
+                .toUri();
+        return ResponseEntity.accepted().location(location).body(status);
+    }
+
+    private String username(Principal principal) {
+        return principal != null ? principal.getName() : "SYSTEM";
+    }
+}
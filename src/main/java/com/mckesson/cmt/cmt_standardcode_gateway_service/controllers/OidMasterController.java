@@ -0,0 +1,49 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.controllers;
+
+import com.mckesson.cmt.cmt_standardcode_gateway_service.dto.OidMasterSearchResult;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.services.OidMasterService;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@Slf4j
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/v1/oid-masters")
+@Tag(name = "OID Masters", description = "API endpoints for finding OID master records.")
+public class OidMasterController {
+
+    private final OidMasterService oidMasterService;
+
+    @GetMapping(value = "/search", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Search OID masters", description = "Case-insensitive search over code, code group name and "
+            + "content set, best match first: exact code, then code or group name prefix, then trigram similarity. "
+            + "Terms shorter than three characters match prefixes only. Pass nextCursor back as cursor for the next page.", security = @SecurityRequirement(name = "oauth2"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Matches returned"),
+            @ApiResponse(responseCode = "400", description = "Blank term, limit out of range or malformed cursor")
+    })
+    @PreAuthorize("hasAuthority('SCOPE_ccmt:api')")
+    public ResponseEntity<OidMasterSearchResult> search(
+            @RequestParam("q") String query,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "activeOnly", defaultValue = "false") boolean activeOnly) {
+        OidMasterSearchResult result = oidMasterService.search(query, cursor, limit, activeOnly);
+        log.debug("OID master search '{}' returned {} matches", query, result.getResults().size());
+        return ResponseEntity.ok(result);
+    }
+}
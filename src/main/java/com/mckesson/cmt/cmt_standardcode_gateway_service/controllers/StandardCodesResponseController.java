@@ -1,8 +1,11 @@
 package com.mckesson.cmt.cmt_standardcode_gateway_service.controllers;
 
+import com.mckesson.cmt.cmt_standardcode_gateway_service.exception.ResourceNotFoundException;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.model.CachedPayload;
 import com.mckesson.cmt.cmt_standardcode_gateway_service.model.JsonResponse;
 import com.mckesson.cmt.cmt_standardcode_gateway_service.model.MasterUuidRequest;
 import com.mckesson.cmt.cmt_standardcode_gateway_service.services.StandardCodesResponseService;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.utils.JsonProjection;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -17,15 +20,24 @@ import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import java.time.Duration;
 import java.time.ZonedDateTime;
+import java.util.List;
 import java.util.UUID;
 
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @Slf4j
 @RestController
@@ -37,13 +49,21 @@ import org.springframework.web.bind.annotation.RestController;
         "and receive consolidated responses.")
 public class StandardCodesResponseController {
 
+    // A version's document never changes once written
+    private static final CacheControl VERSION_CACHE_CONTROL = CacheControl.maxAge(Duration.ofDays(365)).immutable();
+
+    // A master moves to new versions, so clients revalidate with its ETag
+    private static final CacheControl MASTER_CACHE_CONTROL = CacheControl.noCache();
+
     private final StandardCodesResponseService responseService;
 
     @PostMapping(value = "/search", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
     @Operation(summary = "Search responses by UUIDs", description = "Retrieves standard code responses using a list of master UUIDs. "
             +
             "The service searches both master and version UUIDs to provide comprehensive results. " +
-            "Returns consolidated JSON responses for all matching UUIDs.", security = @SecurityRequirement(name = "oauth2"))
+            "Returns consolidated JSON responses for all matching UUIDs. " +
+            "Set parameters.elements (or _elements) to element paths such as \"id\" or " +
+            "\"compose.include.concept.code\" to return only those parts of each response.", security = @SecurityRequirement(name = "oauth2"))
     @RequestBody(description = "Request containing UUIDs to search for", required = true, content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = MasterUuidRequest.class), examples = @ExampleObject(name = "Search Request Example", summary = "Example request with multiple UUIDs", value = """
             {
               "operation": "SEARCH",
@@ -52,7 +72,8 @@ public class StandardCodesResponseController {
                   "550e8400-e29b-41d4-a716-446655440001",
                   "550e8400-e29b-41d4-a716-446655440002",
                   "550e8400-e29b-41d4-a716-446655440003"
-                ]
+                ],
+                "elements": ["id", "version", "status"]
               },
               "priority": "HIGH"
             }
@@ -140,7 +161,8 @@ public class StandardCodesResponseController {
                         : 0);
 
         JsonResponse response = responseService.getResponses(
-                request.getParameters().getUuids());
+                request.getParameters().getUuids(),
+                JsonProjection.of(request.getParameters().getElements()));
 
         // Enhance response with additional fields
         response.setResponseId(UUID.randomUUID().toString());
@@ -153,4 +175,131 @@ public class StandardCodesResponseController {
 
         return ResponseEntity.ok(response);
     }
-}
\ No newline at end of file
+
+    @PostMapping(value = "/search/stream", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Stream responses by UUIDs", description = "Same lookup as /search, but the matching standard code responses "
+            +
+            "are written as newline-delimited JSON, one response document per line, as soon as each is read. " +
+            "Use this for requests with many UUIDs; memory use and time to first byte do not grow with the request size.", security = @SecurityRequirement(name = "oauth2"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Matching responses streamed as NDJSON", content = @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE)),
+            @ApiResponse(responseCode = "400", description = "Invalid request - Missing required fields or invalid UUID format"),
+            @ApiResponse(responseCode = "401", description = "Unauthorized - Invalid or missing authentication token"),
+            @ApiResponse(responseCode = "403", description = "Forbidden - Insufficient permissions")
+    })
+    @PreAuthorize("hasAuthority('SCOPE_ccmt:api')")
+    public ResponseEntity<StreamingResponseBody> streamResponses(
+            @Valid @org.springframework.web.bind.annotation.RequestBody MasterUuidRequest request) {
+        List<UUID> uuids = request.getParameters().getUuids();
+        JsonProjection projection = JsonProjection.of(request.getParameters().getElements());
+        log.info("Processing streaming search request for {} UUIDs", uuids.size());
+
+        StreamingResponseBody body = out -> {
+            int count = responseService.streamResponses(uuids, projection, out);
+            log.info("Successfully streamed search request. Found {} responses", count);
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    @GetMapping(value = "/masters/{masterUuid}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Get the current response of a master", description = "Returns the current response document of a master UUID. "
+            +
+            "The ETag is the current version UUID; send it back in If-None-Match to get 304 Not Modified "
+            +
+            "while the master has not moved to a new version.", security = @SecurityRequirement(name = "oauth2"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Current response document returned"),
+            @ApiResponse(responseCode = "304", description = "The version in If-None-Match is still current"),
+            @ApiResponse(responseCode = "404", description = "No active response for the master UUID")
+    })
+    @PreAuthorize("hasAuthority('SCOPE_ccmt:api')")
+    public ResponseEntity<byte[]> getMasterResponse(@PathVariable UUID masterUuid, WebRequest webRequest) {
+        UUID versionUuid = responseService.findCurrentVersionUuid(masterUuid)
+                .orElseThrow(() -> new ResourceNotFoundException(
+                        "No active response found for master UUID: " + masterUuid));
+
+        return payloadResponse(versionUuid, MASTER_CACHE_CONTROL, webRequest);
+    }
+
+    @GetMapping(value = "/versions/{versionUuid}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Get a response version", description = "Returns the response document of a version UUID. "
+            +
+            "Versions never change, so the response may be cached for a year and revalidates with 304 Not Modified "
+            +
+            "without reading the database.", security = @SecurityRequirement(name = "oauth2"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Response document returned"),
+            @ApiResponse(responseCode = "304", description = "The client already has this version"),
+            @ApiResponse(responseCode = "404", description = "Response version not found")
+    })
+    @PreAuthorize("hasAuthority('SCOPE_ccmt:api')")
+    public ResponseEntity<byte[]> getVersionResponse(@PathVariable UUID versionUuid, WebRequest webRequest) {
+        return payloadResponse(versionUuid, VERSION_CACHE_CONTROL, webRequest);
+    }
+
+    private ResponseEntity<byte[]> payloadResponse(UUID versionUuid, CacheControl cacheControl, WebRequest webRequest) {
+        // Every version has a gzip copy, so the encoding is decided from the request alone
+        boolean gzip = acceptsGzip(webRequest.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        String etag = gzip ? versionUuid + "-gzip" : versionUuid.toString();
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .cacheControl(cacheControl)
+                    .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                    .build();
+        }
+
+        CachedPayload payload = responseService.findVersionPayload(versionUuid)
+                .orElseThrow(() -> new ResourceNotFoundException(
+                        "Response not found with version UUID: " + versionUuid));
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(cacheControl)
+                .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                .contentType(MediaType.APPLICATION_JSON);
+        if (gzip) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(payload.getGzip());
+        }
+        return response.body(payload.getJson());
+    }
+
+    /**
+     * Check whether an Accept-Encoding header allows gzip, honouring q=0. An
+     * explicit gzip entry takes precedence over the * wildcard.
+     */
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Boolean wildcard = null;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            String name = parts[0].trim();
+            if (name.equalsIgnoreCase("gzip")) {
+                return qualityOf(parts) > 0;
+            }
+            if (name.equals("*")) {
+                wildcard = qualityOf(parts) > 0;
+            }
+        }
+        return Boolean.TRUE.equals(wildcard);
+    }
+
+    private static double qualityOf(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String param = parts[i].trim();
+            if (param.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(param.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+}
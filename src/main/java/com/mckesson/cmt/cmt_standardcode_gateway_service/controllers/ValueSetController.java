@@ -0,0 +1,204 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.controllers;
+
+import com.mckesson.cmt.cmt_standardcode_gateway_service.component.CodeValueSetIndex;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.component.ConceptNameIndex;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.component.ValueSetMembershipIndex;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.dto.CodeValueSetsResult;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.dto.ConceptSuggestion;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.dto.ValidateCodeRequest;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.dto.ValidateCodeResult;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.dto.ValueSetDiff;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.exception.BadRequestException;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.exception.ResourceNotFoundException;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.exception.ServiceUnavailableException;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.services.ValueSetDiffService;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/v1/value-sets")
+@Tag(name = "Value Sets", description = "API endpoints answering questions about the members of value sets (OIDs) "
+        + "from in-memory indexes of their current HLI responses, without a database round trip.")
+public class ValueSetController {
+
+    // A diff between two given versions never changes; one to the current version does
+    private static final CacheControl VERSION_PAIR_CACHE_CONTROL = CacheControl.maxAge(Duration.ofDays(365)).immutable();
+
+    private final ValueSetMembershipIndex membershipIndex;
+    private final CodeValueSetIndex codeValueSetIndex;
+    private final ConceptNameIndex conceptNameIndex;
+    private final ValueSetDiffService valueSetDiffService;
+    private final int maxBatchSize;
+    private final int maxSuggestions;
+
+    public ValueSetController(ValueSetMembershipIndex membershipIndex, CodeValueSetIndex codeValueSetIndex,
+            ConceptNameIndex conceptNameIndex, ValueSetDiffService valueSetDiffService,
+            @Value("${standard-codes.membership.max-batch-size:10000}") int maxBatchSize,
+            @Value("${standard-codes.type-ahead.max-suggestions:50}") int maxSuggestions) {
+        this.membershipIndex = membershipIndex;
+        this.codeValueSetIndex = codeValueSetIndex;
+        this.conceptNameIndex = conceptNameIndex;
+        this.valueSetDiffService = valueSetDiffService;
+        this.maxBatchSize = maxBatchSize;
+        this.maxSuggestions = maxSuggestions;
+    }
+
+    @GetMapping(value = "/{oid}/$validate-code", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Check whether a code is in a value set", description = "Answers from the in-memory membership set "
+            + "of the value set's current HLI response. The system may be a FHIR URI, an OID root or a code system name.", security = @SecurityRequirement(name = "oauth2"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Membership result returned"),
+            @ApiResponse(responseCode = "400", description = "Missing system or code"),
+            @ApiResponse(responseCode = "404", description = "The value set has no current response"),
+            @ApiResponse(responseCode = "503", description = "Membership sets are still loading or disabled")
+    })
+    @PreAuthorize("hasAuthority('SCOPE_ccmt:api')")
+    public ResponseEntity<ValidateCodeResult> validateCode(
+            @PathVariable String oid,
+            @RequestParam String system,
+            @RequestParam String code) {
+        ValidateCodeResult result = check(oid, system, code);
+        if (result.getMessage() != null) {
+            if (!membershipIndex.isLoaded()) {
+                throw new ServiceUnavailableException(result.getMessage());
+            }
+            throw new ResourceNotFoundException(result.getMessage());
+        }
+        return ResponseEntity.ok(result);
+    }
+
+    @PostMapping(value = "/$validate-code", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Check many codes against value sets", description = "Answers each check in request order. "
+            + "Checks against unknown value sets return result false with a message.", security = @SecurityRequirement(name = "oauth2"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Membership results returned"),
+            @ApiResponse(responseCode = "400", description = "Empty or oversized batch, or a check without oid, system or code")
+    })
+    @PreAuthorize("hasAuthority('SCOPE_ccmt:api')")
+    public ResponseEntity<List<ValidateCodeResult>> validateCodes(@RequestBody List<ValidateCodeRequest> requests) {
+        if (requests == null || requests.isEmpty()) {
+            throw new BadRequestException("At least one code check is required");
+        }
+        if (requests.size() > maxBatchSize) {
+            throw new BadRequestException("At most " + maxBatchSize + " code checks are allowed per request");
+        }
+
+        List<ValidateCodeResult> results = new ArrayList<>(requests.size());
+        for (ValidateCodeRequest request : requests) {
+            results.add(check(request.getOid(), request.getSystem(), request.getCode()));
+        }
+        return ResponseEntity.ok(results);
+    }
+
+    @GetMapping(value = "/containing", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Find the value sets containing a code", description = "Answers from the in-memory reverse index "
+            + "of the current HLI responses of OIDs and the active responses of standard codes masters. The system may be "
+            + "a FHIR URI, an OID root or a code system name.", security = @SecurityRequirement(name = "oauth2"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Value sets returned; complete is false while the index is loading"),
+            @ApiResponse(responseCode = "400", description = "Missing system or code")
+    })
+    @PreAuthorize("hasAuthority('SCOPE_ccmt:api')")
+    public ResponseEntity<CodeValueSetsResult> findValueSets(
+            @RequestParam String system,
+            @RequestParam String code) {
+        if (system.isBlank() || code.isBlank()) {
+            throw new BadRequestException("system and code are required");
+        }
+
+        CodeValueSetsResult result = new CodeValueSetsResult();
+        result.setSystem(system);
+        result.setCode(code);
+        result.setValueSets(codeValueSetIndex.find(system, code.trim()));
+        result.setComplete(codeValueSetIndex.isEnabled() && codeValueSetIndex.isLoaded() && membershipIndex.isLoaded());
+        return ResponseEntity.ok(result);
+    }
+
+    @GetMapping(value = "/concept-suggestions", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Suggest concepts by display name", description = "Type-ahead over the display names of the "
+            + "concepts in the current versions of all value sets. Matches names with a word starting with the prefix, "
+            + "ignoring case; concepts held by the most value sets come first.", security = @SecurityRequirement(name = "oauth2"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Suggestions returned"),
+            @ApiResponse(responseCode = "400", description = "Blank prefix or limit out of range")
+    })
+    @PreAuthorize("hasAuthority('SCOPE_ccmt:api')")
+    public ResponseEntity<List<ConceptSuggestion>> suggestConcepts(
+            @RequestParam String prefix,
+            @RequestParam(defaultValue = "10") int limit) {
+        if (prefix.isBlank()) {
+            throw new BadRequestException("prefix is required");
+        }
+        if (limit < 1 || limit > maxSuggestions) {
+            throw new BadRequestException("limit must be between 1 and " + maxSuggestions);
+        }
+        return ResponseEntity.ok(conceptNameIndex.suggest(prefix, limit));
+    }
+
+    @GetMapping(value = "/{oid}/diff", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Diff two versions of a value set", description = "Returns the members added, removed and changed "
+            + "between two stored HLI response versions of an OID, or from a version to the current one when toVersion is "
+            + "omitted. Members are matched by code system id and code.", security = @SecurityRequirement(name = "oauth2"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Diff returned"),
+            @ApiResponse(responseCode = "404", description = "The OID or a version is not stored")
+    })
+    @PreAuthorize("hasAuthority('SCOPE_ccmt:api')")
+    public ResponseEntity<ValueSetDiff> diff(
+            @PathVariable String oid,
+            @RequestParam int fromVersion,
+            @RequestParam(required = false) Integer toVersion) {
+        ValueSetDiff diff = valueSetDiffService.diff(oid.trim(), fromVersion, toVersion);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        return (toVersion != null ? response.cacheControl(VERSION_PAIR_CACHE_CONTROL) : response).body(diff);
+    }
+
+    private ValidateCodeResult check(String oid, String system, String code) {
+        if (oid == null || oid.isBlank() || system == null || system.isBlank() || code == null || code.isBlank()) {
+            throw new BadRequestException("oid, system and code are required");
+        }
+
+        ValidateCodeResult result = new ValidateCodeResult();
+        result.setOid(oid);
+        result.setSystem(system);
+        result.setCode(code);
+
+        Boolean member = membershipIndex.contains(oid.trim(), system, code.trim());
+        if (member == null) {
+            if (!membershipIndex.isEnabled()) {
+                result.setMessage("Value set membership checks are disabled");
+            } else if (!membershipIndex.isLoaded()) {
+                result.setMessage("Value set membership sets are still loading; retry shortly");
+            } else {
+                result.setMessage("No current members are known for value set " + oid);
+            }
+        } else {
+            result.setResult(member);
+            result.setResponseId(membershipIndex.getResponseId(oid.trim()));
+        }
+        return result;
+    }
+}
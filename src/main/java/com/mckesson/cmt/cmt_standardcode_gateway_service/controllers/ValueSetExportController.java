@@ -0,0 +1,105 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.controllers;
+
+import com.mckesson.cmt.cmt_standardcode_gateway_service.exception.BadRequestException;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.services.ValueSetExportService;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.concurrent.Callable;
+
+@Slf4j
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/api/v1/exports")
+@Tag(name = "Exports", description = "API endpoints for bulk export of every current value set response in one "
+        + "streamed download, instead of searching for them in batches of UUIDs.")
+public class ValueSetExportController {
+
+    private static final MediaType APPLICATION_ZIP = MediaType.parseMediaType("application/zip");
+
+    private final ValueSetExportService exportService;
+
+    @GetMapping(value = "/current-responses", produces = { MediaType.APPLICATION_NDJSON_VALUE, "application/zip" })
+    @Operation(summary = "Export all current responses", description = "Streams every current response document in row id "
+            + "order, read in short batches. source is standard-codes (active responses of active masters) or oid "
+            + "(current HLI responses). As ndjson, each line is {id, masterUuid|oid, versionUuid|version, response}; "
+            + "as zip, each document is an entry named <value set>.<id>.json. To resume an interrupted export, request "
+            + "again with afterId set to the id of the last complete line or entry. A download stops at a complete line or "
+            + "entry before the request timeout; keep requesting after the last id until a download is empty.", security = @SecurityRequirement(name = "oauth2"))
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Responses streamed", content = {
+                    @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE),
+                    @Content(mediaType = "application/zip") }),
+            @ApiResponse(responseCode = "400", description = "Unknown source or format, or a negative afterId"),
+            @ApiResponse(responseCode = "503", description = "Too many exports are running")
+    })
+    @PreAuthorize("hasAuthority('SCOPE_ccmt:api')")
+    public ResponseEntity<StreamingResponseBody> exportCurrentResponses(
+            @RequestParam(defaultValue = "standard-codes") String source,
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(defaultValue = "0") int afterId,
+            HttpServletRequest request) {
+        ValueSetExportService.Source exportSource = ValueSetExportService.Source.parse(source);
+        ValueSetExportService.Format exportFormat = ValueSetExportService.Format.parse(format);
+        if (afterId < 0) {
+            throw new BadRequestException("afterId must not be negative");
+        }
+        log.info("Exporting current {} responses after id {} as {}", exportSource, afterId, exportFormat);
+
+        // Taken before the response starts so a busy service can still answer 503
+        ValueSetExportService.ExportSlot slot = exportService.acquireSlot();
+        // Given back when the async request ends in case the body never runs
+        WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor(ValueSetExportController.class.getName(),
+                new CallableProcessingInterceptor() {
+                    @Override
+                    public <T> void afterCompletion(NativeWebRequest webRequest, Callable<T> task) {
+                        slot.releaseIfNotStarted();
+                    }
+                });
+        StreamingResponseBody body = out -> {
+            if (!slot.start()) {
+                return;
+            }
+            try {
+                exportService.export(exportSource, exportFormat, afterId, out);
+            } finally {
+                slot.release();
+            }
+        };
+
+        if (exportFormat == ValueSetExportService.Format.ZIP) {
+            String filename = source.trim().toLowerCase() + "-current" + (afterId > 0 ? "-after-" + afterId : "")
+                    + ".zip";
+            return ResponseEntity.ok()
+                    .contentType(APPLICATION_ZIP)
+                    .header(HttpHeaders.CONTENT_DISPOSITION,
+                            ContentDisposition.attachment().filename(filename).build().toString())
+                    .body(body);
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+}
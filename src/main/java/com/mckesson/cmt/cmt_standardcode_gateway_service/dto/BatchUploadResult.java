@@ -1,20 +1,36 @@
 package com.mckesson.cmt.cmt_standardcode_gateway_service.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Data Transfer Object for batch upload results
  */
 public class BatchUploadResult {
 
+    /**
+     * Upper bound on retained error messages so that a badly formed upload
+     * cannot grow the result without limit
+     */
+    public static final int MAX_ERROR_MESSAGES = 1000;
+
     private int totalRecords;
     private int createdCount;
     private int updatedCount;
+    private int unchangedCount;
     private int skippedCount;
     private int failedCount;
+    private int suppressedErrorCount;
     private List<String> errorMessages = new ArrayList<>();
 
+    // OIDs created or updated by a single chunk; not carried over by merge
+    @JsonIgnore
+    private Set<String> changedOids = new LinkedHashSet<>();
+
     public BatchUploadResult() {
         // Default constructor
     }
@@ -29,6 +45,11 @@ public class BatchUploadResult {
         this.totalRecords++;
     }
 
+    public void incrementUnchanged() {
+        this.unchangedCount++;
+        this.totalRecords++;
+    }
+
     public void incrementSkipped() {
         this.skippedCount++;
         this.totalRecords++;
@@ -40,7 +61,43 @@ public class BatchUploadResult {
     }
 
     public void addErrorMessage(String errorMessage) {
-        errorMessages.add(errorMessage);
+        if (errorMessages.size() < MAX_ERROR_MESSAGES) {
+            errorMessages.add(errorMessage);
+        } else {
+            suppressedErrorCount++;
+        }
+    }
+
+    /**
+     * Fold the counters and messages of another result (e.g. a committed chunk)
+     * into this one. Changed OIDs are published per chunk and are not merged.
+     */
+    public void merge(BatchUploadResult other) {
+        this.totalRecords += other.totalRecords;
+        this.createdCount += other.createdCount;
+        this.updatedCount += other.updatedCount;
+        this.unchangedCount += other.unchangedCount;
+        this.skippedCount += other.skippedCount;
+        this.failedCount += other.failedCount;
+        this.suppressedErrorCount += other.suppressedErrorCount;
+        other.errorMessages.forEach(this::addErrorMessage);
+    }
+
+    /**
+     * Copy the counters and error messages, leaving out the changed OID set, for
+     * publishing progress while the upload is still running
+     */
+    public BatchUploadResult copySummary() {
+        BatchUploadResult copy = new BatchUploadResult();
+        copy.totalRecords = this.totalRecords;
+        copy.createdCount = this.createdCount;
+        copy.updatedCount = this.updatedCount;
+        copy.unchangedCount = this.unchangedCount;
+        copy.skippedCount = this.skippedCount;
+        copy.failedCount = this.failedCount;
+        copy.suppressedErrorCount = this.suppressedErrorCount;
+        copy.errorMessages = new ArrayList<>(this.errorMessages);
+        return copy;
     }
 
     // Getters and setters
@@ -68,6 +125,14 @@ public class BatchUploadResult {
         this.updatedCount = updatedCount;
     }
 
+    public int getUnchangedCount() {
+        return unchangedCount;
+    }
+
+    public void setUnchangedCount(int unchangedCount) {
+        this.unchangedCount = unchangedCount;
+    }
+
     public int getSkippedCount() {
         return skippedCount;
     }
@@ -84,6 +149,14 @@ public class BatchUploadResult {
         this.failedCount = failedCount;
     }
 
+    public int getSuppressedErrorCount() {
+        return suppressedErrorCount;
+    }
+
+    public void setSuppressedErrorCount(int suppressedErrorCount) {
+        this.suppressedErrorCount = suppressedErrorCount;
+    }
+
     public List<String> getErrorMessages() {
         return errorMessages;
     }
@@ -92,15 +165,25 @@ public class BatchUploadResult {
         this.errorMessages = errorMessages;
     }
 
+    public Set<String> getChangedOids() {
+        return changedOids;
+    }
+
+    public void setChangedOids(Set<String> changedOids) {
+        this.changedOids = changedOids;
+    }
+
     @Override
     public String toString() {
         return "BatchUploadResult{" +
                 "totalRecords=" + totalRecords +
                 ", createdCount=" + createdCount +
                 ", updatedCount=" + updatedCount +
+                ", unchangedCount=" + unchangedCount +
                 ", skippedCount=" + skippedCount +
                 ", failedCount=" + failedCount +
                 ", errorMessages.size=" + errorMessages.size() +
+                ", suppressedErrorCount=" + suppressedErrorCount +
                 '}';
     }
 }
\ No newline at end of file
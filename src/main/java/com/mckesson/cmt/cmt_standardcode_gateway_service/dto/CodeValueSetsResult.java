@@ -0,0 +1,19 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * The value sets containing one code
+ */
+@Getter
+@Setter
+public class CodeValueSetsResult {
+    private String system;
+    private String code;
+    private List<ValueSetReference> valueSets;
+    // False while the index is still being loaded after startup
+    private boolean complete;
+}
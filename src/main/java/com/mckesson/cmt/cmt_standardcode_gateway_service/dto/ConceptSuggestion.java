@@ -0,0 +1,19 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * One type-ahead suggestion: a concept whose display name matched the typed
+ * prefix
+ */
+@Getter
+@Setter
+public class ConceptSuggestion {
+    private String display;
+    // The code system as written in the value set
+    private String system;
+    private String code;
+    // Number of current value sets holding the concept
+    private int valueSetCount;
+}
@@ -1,7 +1,12 @@
 package com.mckesson.cmt.cmt_standardcode_gateway_service.dto;
 
 import com.opencsv.bean.CsvBindByName;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
+import java.util.HexFormat;
 
 /**
  * Class representing a row from a CSV file for OidMaster import
@@ -82,6 +87,46 @@ public class OidCsvRecord {
         return null;
     }
 
+    /**
+     * Compute a hash of everything an import copies onto OidMaster, so that a
+     * re-imported row can be compared with the stored one without reading the
+     * individual columns. Columns that are not persisted (description,
+     * revision end) are left out so that changes to them do not cause a write.
+     * The import's HLI API config and the values resolved from the code system
+     * registry are included, so a row is rewritten when they change even if
+     * its CSV fields did not.
+     * 
+     * @param hliApiConfigId    The HLI API config of the import, or null
+     * @param fhirIdentifier    The FHIR identifier resolved for the row
+     * @param serviceMethodName The service method resolved for the row
+     * @return Hex encoded SHA-256 of the persisted fields
+     */
+    public String computeRowHash(Long hliApiConfigId, String fhirIdentifier, String serviceMethodName) {
+        String content = String.join("\u001F",
+                nullToEmpty(oid),
+                nullToEmpty(codeGroupContentSet),
+                nullToEmpty(codeGroupContentSetVersion),
+                nullToEmpty(codeSubType),
+                nullToEmpty(codeGroupName),
+                nullToEmpty(codeGroupRevisionName),
+                nullToEmpty(memberCodeSystem),
+                nullToEmpty(revisionStart),
+                hliApiConfigId == null ? "" : hliApiConfigId.toString(),
+                nullToEmpty(fhirIdentifier),
+                nullToEmpty(serviceMethodName));
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(content.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            // Every JVM is required to provide SHA-256
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
     // Getters and setters
     public String getCodeGroupContentSet() {
         return codeGroupContentSet;
@@ -0,0 +1,29 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Status of an asynchronous OID upload or refresh job, as returned by the job
+ * polling endpoint
+ */
+@Getter
+@Setter
+public class OidJobStatus {
+    private String jobId;
+    private String jobType;
+    private String status;
+    private String submittedBy;
+    private LocalDateTime submittedAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private Integer totalItems;
+    private Integer succeededItems;
+    private Integer failedItems;
+    // Upload jobs only: committed chunks whose OIDs are still waiting to be fetched
+    private Integer pendingFetchChunks;
+    private BatchUploadResult uploadResult;
+    private String errorMessage;
+}
@@ -0,0 +1,21 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * One OID master matching a search
+ */
+@Getter
+@Setter
+public class OidMasterSearchHit {
+    private Long id;
+    private String oid;
+    private String code;
+    private String codeGroupName;
+    private String codeGroupContentSet;
+    private String codeSubType;
+    private Boolean isActive;
+    // Higher ranks first: exact code, code or group name prefix, then similarity
+    private int score;
+}
@@ -0,0 +1,18 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * One page of ranked OID master search matches
+ */
+@Getter
+@Setter
+public class OidMasterSearchResult {
+    private String query;
+    private List<OidMasterSearchHit> results;
+    // Pass back as cursor for the next page; null on the last page
+    private String nextCursor;
+}
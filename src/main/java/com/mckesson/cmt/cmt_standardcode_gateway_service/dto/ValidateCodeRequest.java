@@ -0,0 +1,17 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * One code membership check of a batch $validate-code request
+ */
+@Getter
+@Setter
+public class ValidateCodeRequest {
+    // Value set OID
+    private String oid;
+    // Code system as a FHIR URI, OID root or name
+    private String system;
+    private String code;
+}
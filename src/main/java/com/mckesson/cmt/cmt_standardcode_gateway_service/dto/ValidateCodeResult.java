@@ -0,0 +1,21 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Answer to one code membership check, in the spirit of the FHIR ValueSet
+ * $validate-code operation
+ */
+@Getter
+@Setter
+public class ValidateCodeResult {
+    private String oid;
+    private String system;
+    private String code;
+    private boolean result;
+    // The HLI response the value set members were loaded from
+    private Integer responseId;
+    // Set when the value set is unknown
+    private String message;
+}
@@ -0,0 +1,29 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.dto;
+
+import com.mckesson.cmt.cmt_standardcode_gateway_service.contract.StandardCodeResponse;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * The members added, removed and changed between two stored versions of a
+ * value set (OID). Members are matched by code system id and code; a member
+ * is changed when any other field of it differs.
+ */
+@Getter
+@Setter
+public class ValueSetDiff {
+    private String oid;
+    private Integer fromVersion;
+    private String fromRevision;
+    private Integer toVersion;
+    private String toRevision;
+    // In the order of the newer version
+    private List<StandardCodeResponse.StandardCodeResult> added;
+    // In the order of the older version, as they were there
+    private List<StandardCodeResponse.StandardCodeResult> removed;
+    // In the order of the newer version, as they are now
+    private List<StandardCodeResponse.StandardCodeResult> changed;
+}
@@ -0,0 +1,16 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.dto;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * A value set holding a code: an OID or a standard codes master
+ */
+@Getter
+@RequiredArgsConstructor
+public class ValueSetReference {
+    // "oid" or "standard-codes-master"
+    private final String type;
+    // The OID or the master UUID
+    private final String id;
+}
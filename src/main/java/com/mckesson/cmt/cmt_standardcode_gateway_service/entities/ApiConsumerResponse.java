@@ -42,6 +42,14 @@ public class ApiConsumerResponse {
     @Column(name = "is_current")
     private Boolean isCurrent;
 
+    // The oid_hli_api_response row this consumer response was projected from
+    @Column(name = "hli_response_id", unique = true)
+    private Integer hliResponseId;
+
+    // Number of members in the results, excluding the leading type indicator
+    @Column(name = "member_count")
+    private Integer memberCount;
+
     // Default constructor
     public ApiConsumerResponse() {
     }
@@ -112,11 +120,28 @@ public class ApiConsumerResponse {
         this.isCurrent = isCurrent;
     }
 
+    public Integer getHliResponseId() {
+        return hliResponseId;
+    }
+
+    public void setHliResponseId(Integer hliResponseId) {
+        this.hliResponseId = hliResponseId;
+    }
+
+    public Integer getMemberCount() {
+        return memberCount;
+    }
+
+    public void setMemberCount(Integer memberCount) {
+        this.memberCount = memberCount;
+    }
+
     @Override
     public String toString() {
         return "ApiConsumerResponse{" +
                 "id=" + id +
                 ", oidMasterId=" + (oidMaster != null ? oidMaster.getId() : null) +
+                ", hliResponseId=" + hliResponseId +
                 ", version=" + version +
                 ", isCurrent=" + isCurrent +
                 '}';
@@ -0,0 +1,126 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.entities;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Entity representing a code system known to the OID import and processing,
+ * identified by its OID root or by aliases found in the member code system
+ * column of the master CSV
+ */
+@Entity
+@Table(name = "code_system_registry", schema = "code-bridge")
+public class CodeSystemRegistryEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    @Column(name = "code_system_name", unique = true, nullable = false)
+    private String codeSystemName;
+
+    @Column(name = "oid_root")
+    private String oidRoot;
+
+    @Column(name = "fhir_identifier", nullable = false)
+    private String fhirIdentifier;
+
+    @Column(name = "service_method_name")
+    private String serviceMethodName;
+
+    // Comma separated, matched case-insensitively ignoring spaces, '-' and '_'
+    @Column(name = "aliases")
+    private String aliases;
+
+    @Column(name = "is_active")
+    private Boolean isActive;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @Column(name = "updated_by")
+    private String updatedBy;
+
+    // Getters and Setters
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public String getCodeSystemName() {
+        return codeSystemName;
+    }
+
+    public void setCodeSystemName(String codeSystemName) {
+        this.codeSystemName = codeSystemName;
+    }
+
+    public String getOidRoot() {
+        return oidRoot;
+    }
+
+    public void setOidRoot(String oidRoot) {
+        this.oidRoot = oidRoot;
+    }
+
+    public String getFhirIdentifier() {
+        return fhirIdentifier;
+    }
+
+    public void setFhirIdentifier(String fhirIdentifier) {
+        this.fhirIdentifier = fhirIdentifier;
+    }
+
+    public String getServiceMethodName() {
+        return serviceMethodName;
+    }
+
+    public void setServiceMethodName(String serviceMethodName) {
+        this.serviceMethodName = serviceMethodName;
+    }
+
+    public String getAliases() {
+        return aliases;
+    }
+
+    public void setAliases(String aliases) {
+        this.aliases = aliases;
+    }
+
+    public Boolean getIsActive() {
+        return isActive;
+    }
+
+    public void setIsActive(Boolean isActive) {
+        this.isActive = isActive;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    public String getUpdatedBy() {
+        return updatedBy;
+    }
+
+    public void setUpdatedBy(String updatedBy) {
+        this.updatedBy = updatedBy;
+    }
+
+    @Override
+    public String toString() {
+        return "CodeSystemRegistryEntry{" +
+                "id=" + id +
+                ", codeSystemName='" + codeSystemName + '\'' +
+                ", oidRoot='" + oidRoot + '\'' +
+                ", fhirIdentifier='" + fhirIdentifier + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,96 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.entities;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+
+/**
+ * One member (an element of {@code results}) of a stored HLI response, split
+ * out so members can be paged by primary key without reading the whole
+ * response document
+ */
+@Entity
+@Table(name = "oid_hli_api_response_member", schema = "code-bridge")
+@IdClass(OidHliApiResponseMember.Key.class)
+public class OidHliApiResponseMember {
+    @Id
+    @Column(name = "response_id")
+    private Integer responseId;
+
+    @Id
+    @Column(name = "ordinal")
+    private Integer ordinal;
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "member", columnDefinition = "jsonb")
+    private String member;
+
+    // Default constructor
+    public OidHliApiResponseMember() {
+    }
+
+    // Getters and Setters
+    public Integer getResponseId() {
+        return responseId;
+    }
+
+    public void setResponseId(Integer responseId) {
+        this.responseId = responseId;
+    }
+
+    public Integer getOrdinal() {
+        return ordinal;
+    }
+
+    public void setOrdinal(Integer ordinal) {
+        this.ordinal = ordinal;
+    }
+
+    public String getMember() {
+        return member;
+    }
+
+    public void setMember(String member) {
+        this.member = member;
+    }
+
+    /**
+     * Primary key: the response id and the 1-based position in its results
+     */
+    public static class Key implements Serializable {
+        private Integer responseId;
+        private Integer ordinal;
+
+        public Key() {
+        }
+
+        public Key(Integer responseId, Integer ordinal) {
+            this.responseId = responseId;
+            this.ordinal = ordinal;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key key)) {
+                return false;
+            }
+            return Objects.equals(responseId, key.responseId) && Objects.equals(ordinal, key.ordinal);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(responseId, ordinal);
+        }
+    }
+}
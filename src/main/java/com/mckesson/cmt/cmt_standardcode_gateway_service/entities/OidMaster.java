@@ -68,6 +68,10 @@ public class OidMaster {
     @Column(name = "last_modified_by")
     private String lastModifiedBy;
 
+    // SHA-256 of the CSV fields this row was last imported from
+    @Column(name = "row_hash", length = 64)
+    private String rowHash;
+
     // Many-to-one relationship with HliApiConfig
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "hli_api_config_id")
@@ -281,6 +285,14 @@ public class OidMaster {
         this.oidRequestLogs = oidRequestLogs;
     }
 
+    public String getRowHash() {
+        return rowHash;
+    }
+
+    public void setRowHash(String rowHash) {
+        this.rowHash = rowHash;
+    }
+
     public String getServiceMethodName() {
         return serviceMethodName;
     }
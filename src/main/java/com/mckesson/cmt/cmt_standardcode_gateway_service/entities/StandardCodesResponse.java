@@ -33,6 +33,10 @@ public class StandardCodesResponse {
     @Column(name = "api_response", columnDefinition = "jsonb")
     private String apiResponse;
 
+    // Gzip of the stored api_response text, computed once when the version is written
+    @Column(name = "api_response_gzip")
+    private byte[] apiResponseGzip;
+
     private LocalDateTime effectiveStartDate;
     private LocalDateTime effectiveEndDate;
     private LocalDateTime createdDatetime;
@@ -0,0 +1,14 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.exception;
+
+/**
+ * Thrown when a request's input is invalid; mapped to 400 Bad Request
+ */
+public class BadRequestException extends RuntimeException {
+    public BadRequestException(String message) {
+        super(message);
+    }
+
+    public BadRequestException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,12 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.exception;
+
+/**
+ * Thrown when a request cannot be served yet, such as while an in-memory index
+ * is loading or too many requests of a kind are running; mapped to 503
+ * Service Unavailable
+ */
+public class ServiceUnavailableException extends RuntimeException {
+    public ServiceUnavailableException(String message) {
+        super(message);
+    }
+}
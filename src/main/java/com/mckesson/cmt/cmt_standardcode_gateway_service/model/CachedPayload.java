@@ -0,0 +1,48 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.model;
+
+import com.mckesson.cmt.cmt_standardcode_gateway_service.utils.GzipUtils;
+import lombok.Getter;
+
+/**
+ * A stored response document held by the response cache as UTF-8 JSON bytes,
+ * together with the row id it was read from and its gzip encoding
+ */
+@Getter
+public class CachedPayload {
+    private final Integer responseId;
+    private final byte[] json;
+
+    // Stored at write time; rows written before that are compressed on first use
+    private volatile byte[] gzip;
+
+    public CachedPayload(Integer responseId, byte[] json) {
+        this(responseId, json, null);
+    }
+
+    public CachedPayload(Integer responseId, byte[] json, byte[] gzip) {
+        this.responseId = responseId;
+        this.json = json;
+        this.gzip = gzip;
+    }
+
+    /**
+     * @return The document gzip encoded, compressing it once if it was stored
+     *         without a gzip copy
+     */
+    public byte[] getGzip() {
+        byte[] encoded = gzip;
+        if (encoded == null) {
+            encoded = GzipUtils.compress(json);
+            gzip = encoded;
+        }
+        return encoded;
+    }
+
+    /**
+     * @return The size of the gzip copy held so far, without compressing
+     */
+    public int gzipLength() {
+        byte[] encoded = gzip;
+        return encoded != null ? encoded.length : 0;
+    }
+}
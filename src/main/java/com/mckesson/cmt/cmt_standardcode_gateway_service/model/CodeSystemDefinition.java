@@ -0,0 +1,24 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.model;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Singular;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * Immutable view of a code system registry entry as used by the compiled
+ * lookup structures
+ */
+@Getter
+@Builder
+@ToString
+public class CodeSystemDefinition {
+    private final String name;
+    private final String oidRoot;
+    private final String fhirIdentifier;
+    private final String serviceMethodName;
+    @Singular
+    private final List<String> aliases;
+}
@@ -0,0 +1,142 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.model;
+
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.util.RawValue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A complete JSON document held as UTF-8 bytes that Jackson writes verbatim.
+ * Wrapped in a raw value node it can sit in a {@code List<JsonNode>} and be
+ * spliced into the response envelope without being parsed into a tree and
+ * serialized again. The bytes must already be valid JSON; stored jsonb always
+ * is.
+ */
+public final class RawJsonBytes implements SerializableString {
+
+    private final byte[] json;
+
+    public RawJsonBytes(byte[] json) {
+        this.json = json;
+    }
+
+    /**
+     * Wrap stored JSON bytes in a node that serializes them as-is
+     *
+     * @param json The UTF-8 encoded JSON document
+     * @return A node that writes the bytes verbatim
+     */
+    public static JsonNode node(byte[] json) {
+        return JsonNodeFactory.instance.rawValueNode(new RawValue(new RawJsonBytes(json)));
+    }
+
+    public byte[] getBytes() {
+        return json;
+    }
+
+    @Override
+    public String getValue() {
+        return new String(json, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public int charLength() {
+        return getValue().length();
+    }
+
+    @Override
+    public char[] asQuotedChars() {
+        return JsonStringEncoder.getInstance().quoteAsString(getValue());
+    }
+
+    @Override
+    public byte[] asUnquotedUTF8() {
+        return json;
+    }
+
+    @Override
+    public byte[] asQuotedUTF8() {
+        return JsonStringEncoder.getInstance().quoteAsUTF8(getValue());
+    }
+
+    @Override
+    public int appendQuotedUTF8(byte[] buffer, int offset) {
+        return append(asQuotedUTF8(), buffer, offset);
+    }
+
+    @Override
+    public int appendQuoted(char[] buffer, int offset) {
+        char[] quoted = asQuotedChars();
+        if (quoted.length > buffer.length - offset) {
+            return -1;
+        }
+        System.arraycopy(quoted, 0, buffer, offset, quoted.length);
+        return quoted.length;
+    }
+
+    @Override
+    public int appendUnquotedUTF8(byte[] buffer, int offset) {
+        return append(json, buffer, offset);
+    }
+
+    @Override
+    public int appendUnquoted(char[] buffer, int offset) {
+        String value = getValue();
+        if (value.length() > buffer.length - offset) {
+            return -1;
+        }
+        value.getChars(0, value.length(), buffer, offset);
+        return value.length();
+    }
+
+    @Override
+    public int writeQuotedUTF8(OutputStream out) throws IOException {
+        byte[] quoted = asQuotedUTF8();
+        out.write(quoted);
+        return quoted.length;
+    }
+
+    @Override
+    public int writeUnquotedUTF8(OutputStream out) throws IOException {
+        out.write(json);
+        return json.length;
+    }
+
+    @Override
+    public int putQuotedUTF8(ByteBuffer buffer) {
+        return put(asQuotedUTF8(), buffer);
+    }
+
+    @Override
+    public int putUnquotedUTF8(ByteBuffer buffer) {
+        return put(json, buffer);
+    }
+
+    @Override
+    public String toString() {
+        return getValue();
+    }
+
+    private static int append(byte[] source, byte[] buffer, int offset) {
+        // Returning -1 makes the generator write the bytes directly instead
+        if (source.length > buffer.length - offset) {
+            return -1;
+        }
+        System.arraycopy(source, 0, buffer, offset, source.length);
+        return source.length;
+    }
+
+    private static int put(byte[] source, ByteBuffer buffer) {
+        if (source.length > buffer.remaining()) {
+            return -1;
+        }
+        buffer.put(source);
+        return source.length;
+    }
+}
@@ -1,5 +1,6 @@
 package com.mckesson.cmt.cmt_standardcode_gateway_service.model;
 
+import com.fasterxml.jackson.annotation.JsonAlias;
 import lombok.Data;
 import jakarta.validation.constraints.NotEmpty;
 
@@ -10,4 +11,8 @@ import java.util.UUID;
 public class UuidParameters {
     @NotEmpty(message = "Master UUIDs cannot be empty")
     private List<UUID> uuids;
+
+    // Optional projection: element paths to keep in each returned document
+    @JsonAlias("_elements")
+    private List<String> elements;
 }
\ No newline at end of file
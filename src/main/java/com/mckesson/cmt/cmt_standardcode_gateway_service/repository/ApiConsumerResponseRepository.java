@@ -1,6 +1,9 @@
 package com.mckesson.cmt.cmt_standardcode_gateway_service.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.mckesson.cmt.cmt_standardcode_gateway_service.entities.ApiConsumerResponse;
@@ -48,4 +51,15 @@ public interface ApiConsumerResponseRepository extends JpaRepository<ApiConsumer
      * @return An Optional containing the ApiConsumerResponse if found
      */
     Optional<ApiConsumerResponse> findByOidMasterAndVersion(OidMaster oidMaster, Integer version);
+
+    /**
+     * Mark every current ApiConsumerResponse of an OidMaster as not current
+     * 
+     * @param oidMaster The OidMaster entity
+     * @return The number of rows updated
+     */
+    @Modifying
+    @Query("UPDATE ApiConsumerResponse c SET c.isCurrent = false, c.updatedAt = CURRENT_TIMESTAMP "
+            + "WHERE c.oidMaster = :oidMaster AND c.isCurrent = true")
+    int clearCurrent(@Param("oidMaster") OidMaster oidMaster);
 }
\ No newline at end of file
@@ -1,12 +1,15 @@
 package com.mckesson.cmt.cmt_standardcode_gateway_service.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.mckesson.cmt.cmt_standardcode_gateway_service.entities.CacheStatistics;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
 
@@ -112,4 +115,77 @@ public interface CacheStatisticsRepository extends JpaRepository<CacheStatistics
             +
             "FROM CacheStatistics c WHERE c.date = :date AND c.avgUncachedResponseTimeMs > 0")
     Double calculateCachingImprovementPercentage(@Param("date") LocalDate date);
-}
\ No newline at end of file
+
+    /**
+     * Add one replica's counters for an hour to that hour's row, creating it if
+     * needed. Hits and misses are summed and the hit rates recomputed from the
+     * totals. Average response times are combined using the consumer hit and
+     * miss counts as weights, which approximates a per-request average.
+     * Percentiles keep the highest value reported and the Redis memory usage
+     * keeps the latest one.
+     *
+     * @param date                       The date of the hour
+     * @param hour                       The hour (0-23)
+     * @param backendCacheHits           Shared cache tier hits in the hour
+     * @param backendCacheMisses         Shared cache tier misses in the hour
+     * @param consumerCacheHits          Requested UUIDs served from cache in the hour
+     * @param consumerCacheMisses        Requested UUIDs read from the database in the hour
+     * @param redisMemoryUsageMb         Shared cache memory usage in MB, or null if unknown
+     * @param avgCachedResponseTimeMs    Average time of requests served fully from cache, or null
+     * @param avgUncachedResponseTimeMs  Average time of requests that read the database, or null
+     * @param p95ResponseTimeMs          95th percentile request time, or null
+     * @param p99ResponseTimeMs          99th percentile request time, or null
+     * @return The number of rows inserted or updated
+     */
+    @Modifying
+    @Transactional
+    @Query(value = """
+            INSERT INTO "code-bridge".cache_statistics AS c (
+                date, hour, backend_cache_hits, backend_cache_misses, backend_cache_hit_rate,
+                consumer_cache_hits, consumer_cache_misses, consumer_cache_hit_rate,
+                redis_memory_usage_mb, avg_cached_response_time_ms, avg_uncached_response_time_ms,
+                p95_response_time_ms, p99_response_time_ms)
+            VALUES (
+                :date, :hour, :backendCacheHits, :backendCacheMisses,
+                ROUND(100.0 * :backendCacheHits / NULLIF(:backendCacheHits + :backendCacheMisses, 0), 2),
+                :consumerCacheHits, :consumerCacheMisses,
+                ROUND(100.0 * :consumerCacheHits / NULLIF(:consumerCacheHits + :consumerCacheMisses, 0), 2),
+                :redisMemoryUsageMb, :avgCachedResponseTimeMs, :avgUncachedResponseTimeMs,
+                :p95ResponseTimeMs, :p99ResponseTimeMs)
+            ON CONFLICT (date, hour) DO UPDATE SET
+                backend_cache_hits = COALESCE(c.backend_cache_hits, 0) + EXCLUDED.backend_cache_hits,
+                backend_cache_misses = COALESCE(c.backend_cache_misses, 0) + EXCLUDED.backend_cache_misses,
+                backend_cache_hit_rate = ROUND(100.0 * (COALESCE(c.backend_cache_hits, 0) + EXCLUDED.backend_cache_hits)
+                    / NULLIF(COALESCE(c.backend_cache_hits, 0) + EXCLUDED.backend_cache_hits
+                        + COALESCE(c.backend_cache_misses, 0) + EXCLUDED.backend_cache_misses, 0), 2),
+                consumer_cache_hits = COALESCE(c.consumer_cache_hits, 0) + EXCLUDED.consumer_cache_hits,
+                consumer_cache_misses = COALESCE(c.consumer_cache_misses, 0) + EXCLUDED.consumer_cache_misses,
+                consumer_cache_hit_rate = ROUND(100.0 * (COALESCE(c.consumer_cache_hits, 0) + EXCLUDED.consumer_cache_hits)
+                    / NULLIF(COALESCE(c.consumer_cache_hits, 0) + EXCLUDED.consumer_cache_hits
+                        + COALESCE(c.consumer_cache_misses, 0) + EXCLUDED.consumer_cache_misses, 0), 2),
+                redis_memory_usage_mb = COALESCE(EXCLUDED.redis_memory_usage_mb, c.redis_memory_usage_mb),
+                avg_cached_response_time_ms = COALESCE(ROUND(
+                    (COALESCE(c.avg_cached_response_time_ms, 0) * COALESCE(c.consumer_cache_hits, 0)
+                        + COALESCE(EXCLUDED.avg_cached_response_time_ms, 0) * EXCLUDED.consumer_cache_hits)
+                    / NULLIF(COALESCE(c.consumer_cache_hits, 0) + EXCLUDED.consumer_cache_hits, 0)),
+                    EXCLUDED.avg_cached_response_time_ms, c.avg_cached_response_time_ms),
+                avg_uncached_response_time_ms = COALESCE(ROUND(
+                    (COALESCE(c.avg_uncached_response_time_ms, 0) * COALESCE(c.consumer_cache_misses, 0)
+                        + COALESCE(EXCLUDED.avg_uncached_response_time_ms, 0) * EXCLUDED.consumer_cache_misses)
+                    / NULLIF(COALESCE(c.consumer_cache_misses, 0) + EXCLUDED.consumer_cache_misses, 0)),
+                    EXCLUDED.avg_uncached_response_time_ms, c.avg_uncached_response_time_ms),
+                p95_response_time_ms = GREATEST(c.p95_response_time_ms, EXCLUDED.p95_response_time_ms),
+                p99_response_time_ms = GREATEST(c.p99_response_time_ms, EXCLUDED.p99_response_time_ms)
+            """, nativeQuery = true)
+    int addHourlyCounters(@Param("date") LocalDate date,
+            @Param("hour") int hour,
+            @Param("backendCacheHits") long backendCacheHits,
+            @Param("backendCacheMisses") long backendCacheMisses,
+            @Param("consumerCacheHits") long consumerCacheHits,
+            @Param("consumerCacheMisses") long consumerCacheMisses,
+            @Param("redisMemoryUsageMb") BigDecimal redisMemoryUsageMb,
+            @Param("avgCachedResponseTimeMs") Integer avgCachedResponseTimeMs,
+            @Param("avgUncachedResponseTimeMs") Integer avgUncachedResponseTimeMs,
+            @Param("p95ResponseTimeMs") Integer p95ResponseTimeMs,
+            @Param("p99ResponseTimeMs") Integer p99ResponseTimeMs);
+}
@@ -0,0 +1,22 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.mckesson.cmt.cmt_standardcode_gateway_service.entities.CodeSystemRegistryEntry;
+
+import java.util.List;
+
+/**
+ * Repository for CodeSystemRegistryEntry entities that provides CRUD operations
+ */
+@Repository
+public interface CodeSystemRegistryEntryRepository extends JpaRepository<CodeSystemRegistryEntry, Integer> {
+
+    /**
+     * Find all active code system registry entries
+     * 
+     * @return A list of active CodeSystemRegistryEntry records
+     */
+    List<CodeSystemRegistryEntry> findByIsActiveTrue();
+}
@@ -26,6 +26,14 @@ public interface OidBatchProcessLogRepository extends JpaRepository<OidBatchProc
      */
     Optional<OidBatchProcessLog> findByBatchId(String batchId);
 
+    /**
+     * Find the first OidBatchProcessLog recorded for a batch ID
+     * 
+     * @param batchId The batch ID to search for
+     * @return An Optional containing the earliest OidBatchProcessLog if found
+     */
+    Optional<OidBatchProcessLog> findFirstByBatchIdOrderByIdAsc(String batchId);
+
     /**
      * Find all OidBatchProcessLog records for a specific HliApiConfig
      * 
@@ -0,0 +1,17 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.repository;
+
+/**
+ * Projection of the current successful HLI response id of an OID
+ */
+public interface OidCurrentResponseRow {
+
+    /**
+     * @return The OID
+     */
+    String getOid();
+
+    /**
+     * @return The oid_hli_api_response row id of the current response
+     */
+    Integer getResponseId();
+}
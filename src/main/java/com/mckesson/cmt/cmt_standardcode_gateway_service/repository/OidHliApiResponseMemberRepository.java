@@ -0,0 +1,133 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.mckesson.cmt.cmt_standardcode_gateway_service.entities.OidHliApiResponseMember;
+
+import java.util.List;
+
+/**
+ * Repository for the members of stored HLI responses, paged by primary key.
+ * Reads fall back to the elements of the stored api_response for responses
+ * that have no member rows, such as ones stored by an instance still running
+ * the code from before members were split out.
+ */
+@Repository
+public interface OidHliApiResponseMemberRepository
+        extends JpaRepository<OidHliApiResponseMember, OidHliApiResponseMember.Key> {
+
+    /**
+     * Split the results of a stored response into member rows. Does nothing
+     * for members already stored.
+     *
+     * @param responseId The oid_hli_api_response row id
+     * @return The number of member rows written
+     */
+    @Modifying
+    @Transactional
+    @Query(value = """
+            INSERT INTO "code-bridge".oid_hli_api_response_member (response_id, ordinal, member)
+            SELECT r.id, m.ordinality, m.value
+            FROM "code-bridge".oid_hli_api_response r
+            CROSS JOIN LATERAL jsonb_array_elements(
+                CASE WHEN jsonb_typeof(r.api_response -> 'results') = 'array'
+                     THEN r.api_response -> 'results' ELSE '[]'::jsonb END) WITH ORDINALITY AS m(value, ordinality)
+            WHERE r.id = :responseId
+            ON CONFLICT (response_id, ordinal) DO NOTHING
+            """, nativeQuery = true)
+    int storeMembers(@Param("responseId") Integer responseId);
+
+    /**
+     * Read one page of members for each (response, after ordinal) pair in a
+     * single query. Every page is a primary key range scan, or a scan of the
+     * stored document if the response has no member rows.
+     *
+     * @param responseIds   The response ids
+     * @param afterOrdinals The ordinal each page starts after, 0 for the first page
+     * @param limit         The maximum number of members per page
+     * @return The members, ordered by pair and ordinal
+     */
+    @Query(value = """
+            SELECT p.response_id AS responseId, p.after_ordinal AS afterOrdinal,
+                   m.ordinal AS ordinal, m.member::text AS member
+            FROM unnest(CAST(:responseIds AS integer[]), CAST(:afterOrdinals AS integer[]))
+                AS p(response_id, after_ordinal)
+            CROSS JOIN LATERAL (
+                SELECT am.ordinal, am.member
+                FROM "code-bridge".oid_hli_api_response_member am
+                WHERE am.response_id = p.response_id AND am.ordinal > p.after_ordinal
+                UNION ALL
+                SELECT CAST(d.ordinality AS integer), d.value
+                FROM "code-bridge".oid_hli_api_response r
+                CROSS JOIN LATERAL jsonb_array_elements(
+                    CASE WHEN jsonb_typeof(r.api_response -> 'results') = 'array'
+                         THEN r.api_response -> 'results' ELSE '[]'::jsonb END) WITH ORDINALITY AS d(value, ordinality)
+                WHERE r.id = p.response_id AND d.ordinality > p.after_ordinal
+                  AND NOT EXISTS (SELECT 1 FROM "code-bridge".oid_hli_api_response_member x
+                                  WHERE x.response_id = r.id)
+                ORDER BY 1
+                LIMIT :limit) m
+            ORDER BY p.response_id, p.after_ordinal, m.ordinal
+            """, nativeQuery = true)
+    List<OidMemberPageRow> findPages(@Param("responseIds") Integer[] responseIds,
+            @Param("afterOrdinals") Integer[] afterOrdinals, @Param("limit") int limit);
+
+    /**
+     * Read the member keys of a stored response, sorted by code system id and
+     * code in byte order, so two responses can be compared in one merge
+     *
+     * @param responseId The oid_hli_api_response row id
+     * @return The member keys; members without a code system or code sort last
+     */
+    @Query(value = """
+            SELECT ordinal AS ordinal, member ->> 'codeSystemId' AS codeSystemId, member ->> 'code' AS code,
+                   md5(member::text) AS memberHash
+            FROM (
+                SELECT am.ordinal, am.member
+                FROM "code-bridge".oid_hli_api_response_member am
+                WHERE am.response_id = :responseId
+                UNION ALL
+                SELECT CAST(d.ordinality AS integer), d.value
+                FROM "code-bridge".oid_hli_api_response r
+                CROSS JOIN LATERAL jsonb_array_elements(
+                    CASE WHEN jsonb_typeof(r.api_response -> 'results') = 'array'
+                         THEN r.api_response -> 'results' ELSE '[]'::jsonb END) WITH ORDINALITY AS d(value, ordinality)
+                WHERE r.id = :responseId
+                  AND NOT EXISTS (SELECT 1 FROM "code-bridge".oid_hli_api_response_member x
+                                  WHERE x.response_id = r.id)) members
+            ORDER BY member ->> 'codeSystemId' COLLATE "C", member ->> 'code' COLLATE "C", ordinal
+            """, nativeQuery = true)
+    List<OidMemberKeyRow> findMemberKeys(@Param("responseId") Integer responseId);
+
+    /**
+     * Read some members of a stored response by position
+     *
+     * @param responseId The oid_hli_api_response row id
+     * @param ordinals   The member positions
+     * @return The members, ordered by ordinal, with afterOrdinal 0
+     */
+    @Query(value = """
+            SELECT response_id AS responseId, 0 AS afterOrdinal, ordinal AS ordinal, member::text AS member
+            FROM (
+                SELECT am.response_id, am.ordinal, am.member
+                FROM "code-bridge".oid_hli_api_response_member am
+                WHERE am.response_id = :responseId AND am.ordinal = ANY(:ordinals)
+                UNION ALL
+                SELECT r.id, CAST(d.ordinality AS integer), d.value
+                FROM "code-bridge".oid_hli_api_response r
+                CROSS JOIN LATERAL jsonb_array_elements(
+                    CASE WHEN jsonb_typeof(r.api_response -> 'results') = 'array'
+                         THEN r.api_response -> 'results' ELSE '[]'::jsonb END) WITH ORDINALITY AS d(value, ordinality)
+                WHERE r.id = :responseId AND d.ordinality = ANY(:ordinals)
+                  AND NOT EXISTS (SELECT 1 FROM "code-bridge".oid_hli_api_response_member x
+                                  WHERE x.response_id = r.id)) members
+            ORDER BY ordinal
+            """, nativeQuery = true)
+    List<OidMemberPageRow> findMembers(@Param("responseId") Integer responseId,
+            @Param("ordinals") Integer[] ordinals);
+}
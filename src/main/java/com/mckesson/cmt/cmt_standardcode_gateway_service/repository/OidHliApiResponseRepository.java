@@ -1,13 +1,20 @@
 package com.mckesson.cmt.cmt_standardcode_gateway_service.repository;
 
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.mckesson.cmt.cmt_standardcode_gateway_service.entities.OidHliApiResponse;
 import com.mckesson.cmt.cmt_standardcode_gateway_service.entities.OidMaster;
 
+import jakarta.persistence.QueryHint;
+
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Repository for OidHliApiResponse entities that provides CRUD operations
@@ -56,4 +63,115 @@ public interface OidHliApiResponseRepository extends JpaRepository<OidHliApiResp
      * @return A list of matching OidHliApiResponse records
      */
     List<OidHliApiResponse> findByHttpStatusCode(Integer httpStatusCode);
-}
\ No newline at end of file
+
+    /**
+     * List the successful stored responses of many OIDs in one query, without
+     * their payloads. OIDs that exist but have no successful response are
+     * returned once with a null response id.
+     *
+     * @param oids The OIDs to look up
+     * @return One row per OID and stored response, ordered by OID and version
+     */
+    @Query(value = """
+            SELECT om.oid AS oid, om.code_sub_type AS codeSubType, r.id AS responseId, r.version AS version,
+                   to_char(r.created_at, 'YYYYMMDD') AS revisionDay, r.is_current AS isCurrent,
+                   c.id AS consumerResponseId, c.member_count AS memberCount
+            FROM "code-bridge".oid_master om
+            LEFT JOIN "code-bridge".oid_hli_api_response r
+                ON r.oid_master_id = om.id AND r.http_status_code = 200
+            LEFT JOIN "code-bridge".api_consumer_response c ON c.hli_response_id = r.id
+            WHERE om.oid = ANY(:oids)
+            ORDER BY om.oid, r.version
+            """, nativeQuery = true)
+    List<OidRevisionRow> findRevisionsByOids(@Param("oids") String[] oids);
+
+    /**
+     * Get the newest successful response id of many OIDs in one query, without
+     * reading any payload, to tell whether cached revisions are still current
+     *
+     * @param oids The OIDs to look up
+     * @return One row per OID in oid_master
+     */
+    @Query(value = """
+            SELECT om.oid AS oid, om.code_sub_type AS codeSubType, r.id AS latestResponseId,
+                   c.id AS consumerResponseId
+            FROM "code-bridge".oid_master om
+            LEFT JOIN LATERAL (
+                SELECT id FROM "code-bridge".oid_hli_api_response
+                WHERE oid_master_id = om.id AND http_status_code = 200
+                ORDER BY id DESC
+                LIMIT 1
+            ) r ON true
+            LEFT JOIN "code-bridge".api_consumer_response c ON c.hli_response_id = r.id
+            WHERE om.oid = ANY(:oids)
+            """, nativeQuery = true)
+    List<OidRevisionStamp> findRevisionStampsByOids(@Param("oids") String[] oids);
+
+    /**
+     * Current successful responses joined to the code and code system of each
+     * of their members, straight from the stored jsonb. A response without
+     * members gives one row with a null code.
+     */
+    String CURRENT_MEMBER_CODES = """
+            SELECT om.oid AS oid, r.id AS responseId,
+                   e.value ->> 'codeSystemId' AS codeSystemId, e.value ->> 'code' AS code,
+                   e.value ->> 'name' AS name
+            FROM "code-bridge".oid_master om
+            JOIN "code-bridge".oid_hli_api_response r
+                ON r.oid_master_id = om.id AND r.is_current = true AND r.http_status_code = 200
+            LEFT JOIN LATERAL jsonb_array_elements(
+                CASE WHEN jsonb_typeof(r.api_response -> 'results') = 'array'
+                     THEN r.api_response -> 'results' ELSE '[]'::jsonb END) AS e(value) ON true
+            """;
+
+    /**
+     * Read the member codes of every current response through a database
+     * cursor, grouped by OID. Must be consumed and closed inside a transaction.
+     *
+     * @return The member codes, ordered by OID
+     */
+    @Query(value = CURRENT_MEMBER_CODES + "ORDER BY om.oid", nativeQuery = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "5000"))
+    Stream<OidMemberCodeRow> streamCurrentMemberCodes();
+
+    /**
+     * Read the member codes of the current responses of some OIDs
+     *
+     * @param oids The OIDs
+     * @return The member codes, ordered by OID
+     */
+    @Query(value = CURRENT_MEMBER_CODES + "WHERE om.oid = ANY(:oids) ORDER BY om.oid", nativeQuery = true)
+    List<OidMemberCodeRow> findCurrentMemberCodes(@Param("oids") String[] oids);
+
+    /**
+     * List the current successful response id of every OID that has one
+     *
+     * @return One row per OID
+     */
+    @Query(value = """
+            SELECT om.oid AS oid, r.id AS responseId
+            FROM "code-bridge".oid_master om
+            JOIN "code-bridge".oid_hli_api_response r
+                ON r.oid_master_id = om.id AND r.is_current = true AND r.http_status_code = 200
+            """, nativeQuery = true)
+    List<OidCurrentResponseRow> findCurrentResponseIds();
+
+    /**
+     * Read the current successful responses after a row id, one batch in id
+     * order.
+     *
+     * @param afterId The id to start after, 0 for all
+     * @param limit   The most rows to return
+     * @return The responses with their OID and version
+     */
+    @Query(value = """
+            SELECT r.id AS id, om.oid AS valueSetId, r.version::text AS version, r.api_response::text AS payload
+            FROM "code-bridge".oid_hli_api_response r
+            JOIN "code-bridge".oid_master om ON om.id = r.oid_master_id
+            WHERE r.is_current = true AND r.http_status_code = 200
+            AND r.id > :afterId
+            ORDER BY r.id
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<ValueSetExportRow> findCurrentResponsesForExport(@Param("afterId") int afterId, @Param("limit") int limit);
+}
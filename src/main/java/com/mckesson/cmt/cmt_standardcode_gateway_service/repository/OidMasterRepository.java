@@ -74,14 +74,86 @@ public interface OidMasterRepository extends JpaRepository<OidMaster, Long> {
 
     /**
      * Search for OidMaster records containing code or code group name like the
-     * search term
+     * search term, ignoring case. Compares lower(...) so the trigram indexes
+     * from v13_oid_master_search.sql apply.
      * 
      * @param searchTerm The search term to use
      * @return A list of matching OidMaster records
      */
-    @Query("SELECT o FROM OidMaster o WHERE o.code LIKE %:searchTerm% OR o.codeGroupName LIKE %:searchTerm%")
+    @Query("SELECT o FROM OidMaster o WHERE LOWER(o.code) LIKE LOWER(CONCAT('%', :searchTerm, '%')) "
+            + "OR LOWER(o.codeGroupName) LIKE LOWER(CONCAT('%', :searchTerm, '%'))")
     List<OidMaster> searchByCodeOrCodeGroupName(@Param("searchTerm") String searchTerm);
 
+    /**
+     * Ranked, case-insensitive search over code, code group name and content
+     * set, one keyset page at a time. Rows match when a column starts with the
+     * term or, for substring searches, contains it; they are ranked by an exact
+     * code match, then a code or group name prefix match, then the best trigram
+     * similarity of the three columns, with the id breaking ties.
+     *
+     * <p>
+     * Only a bounded candidate set is scored: up to {@code candidateLimit}
+     * prefix matches per column, read in index order from the C-collation
+     * indexes, plus up to {@code candidateLimit} substring matches by id from
+     * the trigram indexes. The candidates depend only on the term, so every
+     * page ranks the same set.
+     *
+     * @param term           The lower-cased search term
+     * @param pattern        The LIKE pattern of a substring match
+     * @param prefix         The LIKE pattern of a prefix match
+     * @param substring      Whether to add substring matches to the candidates
+     * @param activeOnly     Whether to skip inactive OIDs
+     * @param candidateLimit The most candidates taken from each index
+     * @param afterScore     The score of the last row of the previous page
+     * @param afterId        The id of the last row of the previous page
+     * @param limit          The page size
+     * @return The page, best match first
+     */
+    @Query(value = """
+            WITH candidates AS (
+                (SELECT o.id FROM "code-bridge".oid_master o
+                 WHERE lower(o.code) LIKE :prefix AND (:activeOnly = false OR o.is_active = true)
+                 ORDER BY lower(o.code) COLLATE "C", o.id LIMIT :candidateLimit)
+                UNION
+                (SELECT o.id FROM "code-bridge".oid_master o
+                 WHERE lower(o.code_group_name) LIKE :prefix AND (:activeOnly = false OR o.is_active = true)
+                 ORDER BY lower(o.code_group_name) COLLATE "C", o.id LIMIT :candidateLimit)
+                UNION
+                (SELECT o.id FROM "code-bridge".oid_master o
+                 WHERE lower(o.code_group_content_set) LIKE :prefix AND (:activeOnly = false OR o.is_active = true)
+                 ORDER BY lower(o.code_group_content_set) COLLATE "C", o.id LIMIT :candidateLimit)
+                UNION
+                (SELECT o.id FROM "code-bridge".oid_master o
+                 WHERE :substring = true
+                 AND (lower(o.code) LIKE :pattern
+                      OR lower(o.code_group_name) LIKE :pattern
+                      OR lower(o.code_group_content_set) LIKE :pattern)
+                 AND (:activeOnly = false OR o.is_active = true)
+                 ORDER BY o.id LIMIT :candidateLimit)
+            )
+            SELECT s.* FROM (
+                SELECT o.id AS id, o.oid AS oid, o.code AS code, o.code_group_name AS codeGroupName,
+                       o.code_group_content_set AS codeGroupContentSet, o.code_sub_type AS codeSubType,
+                       o.is_active AS isActive,
+                       (CASE WHEN lower(o.code) = :term THEN 3000
+                             WHEN lower(o.code) LIKE :prefix THEN 2000
+                             WHEN lower(o.code_group_name) LIKE :prefix THEN 1000
+                             ELSE 0 END
+                        + round(1000 * coalesce(greatest(similarity(lower(o.code), :term),
+                                                         similarity(lower(o.code_group_name), :term),
+                                                         similarity(lower(o.code_group_content_set), :term)), 0)))::int AS score
+                FROM candidates c
+                JOIN "code-bridge".oid_master o ON o.id = c.id
+            ) s
+            WHERE s.score < :afterScore OR (s.score = :afterScore AND s.id > :afterId)
+            ORDER BY s.score DESC, s.id
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<OidMasterSearchRow> search(@Param("term") String term, @Param("pattern") String pattern,
+            @Param("prefix") String prefix, @Param("substring") boolean substring,
+            @Param("activeOnly") boolean activeOnly, @Param("candidateLimit") int candidateLimit,
+            @Param("afterScore") int afterScore, @Param("afterId") long afterId, @Param("limit") int limit);
+
     /**
      * Custom query to find active OidMaster records by version and content set
      * 
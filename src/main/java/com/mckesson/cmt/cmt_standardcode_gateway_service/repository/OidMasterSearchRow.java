@@ -0,0 +1,27 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.repository;
+
+/**
+ * Projection of one ranked OID master search match
+ */
+public interface OidMasterSearchRow {
+
+    Long getId();
+
+    String getOid();
+
+    String getCode();
+
+    String getCodeGroupName();
+
+    String getCodeGroupContentSet();
+
+    String getCodeSubType();
+
+    Boolean getIsActive();
+
+    /**
+     * @return The match rank; exact and prefix code matches rank first, then
+     *         closer trigram similarity
+     */
+    Integer getScore();
+}
@@ -0,0 +1,33 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.repository;
+
+/**
+ * Projection of the code and code system of one member of an OID's current
+ * HLI response
+ */
+public interface OidMemberCodeRow {
+
+    /**
+     * @return The OID
+     */
+    String getOid();
+
+    /**
+     * @return The oid_hli_api_response row id of the current response
+     */
+    Integer getResponseId();
+
+    /**
+     * @return The member code system id as stored by HLI
+     */
+    String getCodeSystemId();
+
+    /**
+     * @return The member code
+     */
+    String getCode();
+
+    /**
+     * @return The member display name
+     */
+    String getName();
+}
@@ -0,0 +1,28 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.repository;
+
+/**
+ * Projection of the key and content hash of one member of a stored HLI
+ * response
+ */
+public interface OidMemberKeyRow {
+
+    /**
+     * @return The 1-based position of the member in the response results
+     */
+    Integer getOrdinal();
+
+    /**
+     * @return The member code system id as stored by HLI
+     */
+    String getCodeSystemId();
+
+    /**
+     * @return The member code
+     */
+    String getCode();
+
+    /**
+     * @return MD5 of the member JSON, to tell changed members apart
+     */
+    String getMemberHash();
+}
@@ -0,0 +1,27 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.repository;
+
+/**
+ * Projection of one member on a requested page of a stored HLI response
+ */
+public interface OidMemberPageRow {
+
+    /**
+     * @return The oid_hli_api_response row id
+     */
+    Integer getResponseId();
+
+    /**
+     * @return The ordinal the page starts after
+     */
+    Integer getAfterOrdinal();
+
+    /**
+     * @return The 1-based position of the member in the response results
+     */
+    Integer getOrdinal();
+
+    /**
+     * @return The member JSON
+     */
+    String getMember();
+}
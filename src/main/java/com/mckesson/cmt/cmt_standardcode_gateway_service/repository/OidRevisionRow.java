@@ -0,0 +1,50 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.repository;
+
+/**
+ * Projection of one stored successful HLI response of an OID, without its
+ * payload, used to resolve requested revisions
+ */
+public interface OidRevisionRow {
+
+    /**
+     * @return The OID
+     */
+    String getOid();
+
+    /**
+     * @return The code sub type of the OID master
+     */
+    String getCodeSubType();
+
+    /**
+     * @return The oid_hli_api_response row id, or null if the OID has no
+     *         successful response
+     */
+    Integer getResponseId();
+
+    /**
+     * @return The response version
+     */
+    Integer getVersion();
+
+    /**
+     * @return The day the response was stored, as YYYYMMDD
+     */
+    String getRevisionDay();
+
+    /**
+     * @return Whether the response is the current one
+     */
+    Boolean getIsCurrent();
+
+    /**
+     * @return The api_consumer_response row projected from the response, or
+     *         null if it has not been projected
+     */
+    Integer getConsumerResponseId();
+
+    /**
+     * @return The number of members in the projected consumer response
+     */
+    Integer getMemberCount();
+}
@@ -0,0 +1,30 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.repository;
+
+/**
+ * Projection of the ids that change whenever the cached revisions of an OID
+ * go stale, used to check cached revisions against the database
+ */
+public interface OidRevisionStamp {
+
+    /**
+     * @return The OID
+     */
+    String getOid();
+
+    /**
+     * @return The code sub type of the OID master
+     */
+    String getCodeSubType();
+
+    /**
+     * @return The newest successful oid_hli_api_response row id, or null if the
+     *         OID has no successful response
+     */
+    Integer getLatestResponseId();
+
+    /**
+     * @return The api_consumer_response row projected from the newest response,
+     *         or null if it has not been projected
+     */
+    Integer getConsumerResponseId();
+}
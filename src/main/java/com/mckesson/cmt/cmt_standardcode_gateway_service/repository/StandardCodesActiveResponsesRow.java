@@ -0,0 +1,17 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.repository;
+
+/**
+ * Projection of the active response ids of an active standard codes master
+ */
+public interface StandardCodesActiveResponsesRow {
+
+    /**
+     * @return The master UUID
+     */
+    String getMasterUuid();
+
+    /**
+     * @return The ids of the active responses, ascending and comma separated
+     */
+    String getResponseIds();
+}
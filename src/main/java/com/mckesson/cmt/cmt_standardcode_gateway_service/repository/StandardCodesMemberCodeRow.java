@@ -0,0 +1,28 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.repository;
+
+/**
+ * Projection of the code and code system of one concept in an active
+ * standard codes response
+ */
+public interface StandardCodesMemberCodeRow {
+
+    /**
+     * @return The master UUID of the response
+     */
+    String getMasterUuid();
+
+    /**
+     * @return The code system, as written in the document
+     */
+    String getCodeSystem();
+
+    /**
+     * @return The code
+     */
+    String getCode();
+
+    /**
+     * @return The concept display, if the document gives one
+     */
+    String getDisplay();
+}
@@ -1,13 +1,18 @@
 package com.mckesson.cmt.cmt_standardcode_gateway_service.repository;
 
 import com.mckesson.cmt.cmt_standardcode_gateway_service.entities.StandardCodesResponse;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.Optional;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
 public interface StandardCodesResponseRepository extends JpaRepository<StandardCodesResponse, Integer> {
@@ -23,20 +28,186 @@ public interface StandardCodesResponseRepository extends JpaRepository<StandardC
     @Query("SELECT r FROM StandardCodesResponse r WHERE r.standardCodesMaster.masterUuid = :masterUuid AND r.effectiveEndDate IS NULL")
     Optional<StandardCodesResponse> findByMasterUuidAndNoEffectiveEndDate(@Param("masterUuid") UUID masterUuid);
 
+    /**
+     * Active responses of many masters in one query, matched the same way as
+     * {@link #findByMasterUuidAndNoEffectiveEndDate}, newest first, with their
+     * master fetched
+     */
+    @Query("""
+            SELECT r FROM StandardCodesResponse r JOIN FETCH r.standardCodesMaster m
+            WHERE m.masterUuid IN :masterUuids
+            AND r.effectiveEndDate IS NULL
+            ORDER BY r.id DESC
+            """)
+    List<StandardCodesResponse> findActiveByMasterUuids(@Param("masterUuids") Collection<UUID> masterUuids);
+
+    /**
+     * Version UUIDs of the active responses of an active master, newest first,
+     * without reading the documents
+     */
+    @Query("""
+            SELECT r.versionUuid FROM StandardCodesResponse r
+            WHERE r.standardCodesMaster.masterUuid = :masterUuid
+            AND r.standardCodesMaster.effectiveEndDate IS NULL
+            AND r.effectiveEndDate IS NULL
+            ORDER BY r.id DESC
+            """)
+    List<UUID> findActiveVersionUuidsByMasterUuid(@Param("masterUuid") UUID masterUuid);
+
+    /**
+     * The api_response document of a row as the text Postgres returns for it
+     */
+    @Query(value = """
+            SELECT api_response::text
+            FROM "code-bridge".standard_codes_responses
+            WHERE id = :id
+            """, nativeQuery = true)
+    String findPayloadTextById(@Param("id") Integer id);
+
+    /**
+     * Resolve UUIDs that may be master or version UUIDs in one round trip. Each
+     * matching response row is returned once, with the requested UUIDs that
+     * matched it, so callers never compare whole documents to deduplicate.
+     */
+    String RESPONSE_ROWS_BY_UUIDS = """
+            SELECT m.id AS id, m.matched_uuids AS matchedUuids, scr.api_response::text AS payload,
+                   scr.api_response_gzip AS payloadGzip
+            FROM (
+                SELECT u.id, string_agg(u.uuid::text, ',') AS matched_uuids
+                FROM (
+                    SELECT r.id, scm.master_uuid AS uuid
+                    FROM "code-bridge".standard_codes_responses r
+                    JOIN "code-bridge".standard_codes_master scm ON scm.id = r.standard_codes_master_id
+                    WHERE scm.master_uuid = ANY(:uuids)
+                    AND scm.effective_end_date IS NULL
+                    AND r.effective_end_date IS NULL
+                    UNION
+                    SELECT r.id, r.version_uuid AS uuid
+                    FROM "code-bridge".standard_codes_responses r
+                    WHERE r.version_uuid = ANY(:uuids)
+                ) u
+                GROUP BY u.id
+            ) m
+            JOIN "code-bridge".standard_codes_responses scr ON scr.id = m.id
+            ORDER BY m.id
+            """;
+
+    @Query(value = RESPONSE_ROWS_BY_UUIDS, nativeQuery = true)
+    List<StandardCodesResponseRow> findResponseRowsByUuids(@Param("uuids") UUID[] uuids);
+
+    /**
+     * Same rows as {@link #findResponseRowsByUuids} read through a database
+     * cursor. Must be consumed and closed inside a transaction.
+     */
+    @Query(value = RESPONSE_ROWS_BY_UUIDS, nativeQuery = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "25"))
+    Stream<StandardCodesResponseRow> streamResponseRowsByUuids(@Param("uuids") UUID[] uuids);
+
+    /**
+     * Codes of the active responses of active masters: the concepts listed
+     * under compose.include and every expansion entry that has a system and a
+     * code. Each code is returned once per master and display.
+     */
+    String ACTIVE_MEMBER_CODES = """
+            SELECT DISTINCT scm.master_uuid::text AS masterUuid, c.system AS codeSystem, c.code AS code,
+                   c.display AS display
+            FROM "code-bridge".standard_codes_responses r
+            JOIN "code-bridge".standard_codes_master scm ON scm.id = r.standard_codes_master_id
+            CROSS JOIN LATERAL (
+                SELECT inc ->> 'system' AS system, con ->> 'code' AS code, con ->> 'display' AS display
+                FROM jsonb_path_query(r.api_response, '$.compose.include[*]') AS inc,
+                     jsonb_path_query(inc, '$.concept[*]') AS con
+                UNION ALL
+                SELECT e ->> 'system', e ->> 'code', e ->> 'display'
+                FROM jsonb_path_query(r.api_response, '$.expansion.** ? (exists(@.system) && exists(@.code))') AS e
+            ) c
+            WHERE scm.effective_end_date IS NULL
+            AND r.effective_end_date IS NULL
+            AND c.code IS NOT NULL
+            """;
+
+    /**
+     * Read the codes of every active response through a database cursor,
+     * grouped by master. Must be consumed and closed inside a transaction.
+     *
+     * @return The codes, ordered by master UUID
+     */
+    @Query(value = ACTIVE_MEMBER_CODES + "ORDER BY masterUuid", nativeQuery = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "5000"))
+    Stream<StandardCodesMemberCodeRow> streamActiveMemberCodes();
+
+    /**
+     * Read the codes of the active responses of some masters
+     *
+     * @param masterUuids The master UUIDs
+     * @return The codes, ordered by master UUID
+     */
+    @Query(value = ACTIVE_MEMBER_CODES + "AND scm.master_uuid = ANY(:masterUuids) ORDER BY masterUuid",
+            nativeQuery = true)
+    List<StandardCodesMemberCodeRow> findActiveMemberCodes(@Param("masterUuids") UUID[] masterUuids);
+
+    String ACTIVE_RESPONSE_IDS = """
+            SELECT scm.master_uuid::text AS masterUuid, string_agg(r.id::text, ',' ORDER BY r.id) AS responseIds
+            FROM "code-bridge".standard_codes_responses r
+            JOIN "code-bridge".standard_codes_master scm ON scm.id = r.standard_codes_master_id
+            WHERE scm.effective_end_date IS NULL
+            AND r.effective_end_date IS NULL
+            """;
+
+    /**
+     * List the active response ids of every active master, to tell which
+     * masters changed without reading the documents
+     *
+     * @return One row per master with an active response
+     */
+    @Query(value = ACTIVE_RESPONSE_IDS + "GROUP BY scm.master_uuid", nativeQuery = true)
+    List<StandardCodesActiveResponsesRow> findActiveResponseIds();
+
+    /**
+     * Same as {@link #findActiveResponseIds} for some masters
+     *
+     * @param masterUuids The master UUIDs
+     * @return One row per given master with an active response
+     */
+    @Query(value = ACTIVE_RESPONSE_IDS + "AND scm.master_uuid = ANY(:masterUuids) GROUP BY scm.master_uuid",
+            nativeQuery = true)
+    List<StandardCodesActiveResponsesRow> findActiveResponseIds(@Param("masterUuids") UUID[] masterUuids);
+
+    /**
+     * Read the active responses of active masters after a row id, one batch in
+     * id order.
+     *
+     * @param afterId The id to start after, 0 for all
+     * @param limit   The most rows to return
+     * @return The responses with their master and version UUIDs
+     */
     @Query(value = """
-            SELECT DISTINCT scr.api_response
-            FROM "code-bridge".standard_codes_responses scr
-            JOIN "code-bridge".standard_codes_master scm ON scm.id = scr.standard_codes_master_id
-            WHERE scm.master_uuid = ANY(:uuids)
-            AND scm.effective_end_date IS NULL
-            AND scr.effective_end_date IS NULL
+            SELECT r.id AS id, scm.master_uuid::text AS valueSetId, r.version_uuid::text AS version,
+                   r.api_response::text AS payload
+            FROM "code-bridge".standard_codes_responses r
+            JOIN "code-bridge".standard_codes_master scm ON scm.id = r.standard_codes_master_id
+            WHERE scm.effective_end_date IS NULL
+            AND r.effective_end_date IS NULL
+            AND r.id > :afterId
+            ORDER BY r.id
+            LIMIT :limit
             """, nativeQuery = true)
-    List<String> findActiveResponsesByMasterUuids(@Param("uuids") UUID[] uuids);
+    List<ValueSetExportRow> findActiveResponsesForExport(@Param("afterId") int afterId, @Param("limit") int limit);
 
+    /**
+     * Read the active responses of active masters with their gzip copies
+     * through a database cursor, in id order, to write a response snapshot.
+     * Must be consumed and closed inside a transaction.
+     */
     @Query(value = """
-            SELECT DISTINCT api_response
-            FROM "code-bridge".standard_codes_responses
-            WHERE version_uuid = ANY(:uuids)
+            SELECT r.id AS id, scm.master_uuid::text AS masterUuid, r.version_uuid::text AS versionUuid,
+                   r.api_response::text AS payload, r.api_response_gzip AS payloadGzip
+            FROM "code-bridge".standard_codes_responses r
+            JOIN "code-bridge".standard_codes_master scm ON scm.id = r.standard_codes_master_id
+            WHERE scm.effective_end_date IS NULL
+            AND r.effective_end_date IS NULL
+            ORDER BY r.id
             """, nativeQuery = true)
-    List<String> findResponsesByVersionUuids(@Param("uuids") UUID[] uuids);
-}
\ No newline at end of file
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "50"))
+    Stream<StandardCodesSnapshotRow> streamActiveResponsesForSnapshot();
+}
@@ -0,0 +1,30 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.repository;
+
+/**
+ * Projection of a standard codes response row matched by one or more
+ * requested UUIDs
+ */
+public interface StandardCodesResponseRow {
+
+    /**
+     * @return The requested master and/or version UUIDs that matched the row,
+     *         comma separated
+     */
+    String getMatchedUuids();
+
+    /**
+     * @return The standard_codes_responses row id
+     */
+    Integer getId();
+
+    /**
+     * @return The stored api_response document as JSON text
+     */
+    String getPayload();
+
+    /**
+     * @return The gzip copy stored with the document, or null for rows written
+     *         before gzip copies were stored
+     */
+    byte[] getPayloadGzip();
+}
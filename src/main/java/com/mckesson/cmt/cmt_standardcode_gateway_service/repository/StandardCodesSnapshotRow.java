@@ -0,0 +1,34 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.repository;
+
+/**
+ * Projection of one active standard codes response written to the response
+ * snapshot file
+ */
+public interface StandardCodesSnapshotRow {
+
+    /**
+     * @return The standard_codes_responses row id
+     */
+    Integer getId();
+
+    /**
+     * @return The UUID of the master the response belongs to
+     */
+    String getMasterUuid();
+
+    /**
+     * @return The version UUID of the response
+     */
+    String getVersionUuid();
+
+    /**
+     * @return The stored api_response document as JSON text
+     */
+    String getPayload();
+
+    /**
+     * @return The gzip copy stored with the document, or null for rows written
+     *         before gzip copies were stored
+     */
+    byte[] getPayloadGzip();
+}
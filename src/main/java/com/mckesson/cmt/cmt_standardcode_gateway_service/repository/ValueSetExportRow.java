@@ -0,0 +1,27 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.repository;
+
+/**
+ * Projection of one current response document for bulk export
+ */
+public interface ValueSetExportRow {
+
+    /**
+     * @return The response row id; exports are ordered by it and resume after it
+     */
+    Integer getId();
+
+    /**
+     * @return The master UUID or OID the response belongs to
+     */
+    String getValueSetId();
+
+    /**
+     * @return The version UUID or version number of the response
+     */
+    String getVersion();
+
+    /**
+     * @return The stored api_response document as JSON text
+     */
+    String getPayload();
+}
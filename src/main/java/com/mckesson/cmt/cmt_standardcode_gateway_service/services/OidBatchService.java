@@ -1,28 +1,43 @@
 package com.mckesson.cmt.cmt_standardcode_gateway_service.services;
 
+import com.mckesson.cmt.cmt_standardcode_gateway_service.component.CodeSystemRegistry;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.component.OidRefreshPipeline;
 import com.mckesson.cmt.cmt_standardcode_gateway_service.dto.BatchUploadResult;
 import com.mckesson.cmt.cmt_standardcode_gateway_service.dto.OidCsvRecord;
 import com.mckesson.cmt.cmt_standardcode_gateway_service.entities.HliApiConfig;
 import com.mckesson.cmt.cmt_standardcode_gateway_service.entities.OidMaster;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.model.CodeSystemDefinition;
 import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.HliApiConfigRepository;
 import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.OidMasterRepository;
-import com.opencsv.bean.CsvToBean;
-import com.opencsv.bean.CsvToBeanBuilder;
+import com.opencsv.CSVParserBuilder;
+import com.opencsv.CSVReader;
+import com.opencsv.CSVReaderBuilder;
+import com.opencsv.bean.HeaderColumnNameMappingStrategy;
+import com.opencsv.exceptions.CsvException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
 import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -35,18 +50,31 @@ public class OidBatchService {
 
     private final OidMasterRepository oidMasterRepository;
     private final HliApiConfigRepository hliApiConfigRepository;
+    private final CodeSystemRegistry codeSystemRegistry;
+    private final OidRefreshPipeline oidRefreshPipeline;
 
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
     @Value("${hli.api.batch.default-size:100}")
     private int defaultBatchSize;
 
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final TransactionTemplate transactionTemplate;
+
     @Autowired
     public OidBatchService(
             OidMasterRepository oidMasterRepository,
-            HliApiConfigRepository hliApiConfigRepository) {
+            HliApiConfigRepository hliApiConfigRepository,
+            CodeSystemRegistry codeSystemRegistry,
+            OidRefreshPipeline oidRefreshPipeline,
+            PlatformTransactionManager transactionManager) {
         this.oidMasterRepository = oidMasterRepository;
         this.hliApiConfigRepository = hliApiConfigRepository;
+        this.codeSystemRegistry = codeSystemRegistry;
+        this.oidRefreshPipeline = oidRefreshPipeline;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     /**
@@ -59,13 +87,77 @@ public class OidBatchService {
      * @param username       The username performing the upload
      * @return Result of the batch upload operation
      */
-    @Transactional
     public BatchUploadResult processCsvUpload(
             MultipartFile file,
             Long hliApiConfigId,
             int batchSize,
             String username) throws Exception {
 
+        try (InputStream inputStream = file.getInputStream()) {
+            return processCsvStream(inputStream, hliApiConfigId, batchSize, username);
+        }
+    }
+
+    /**
+     * Stream a CSV document into OidMaster records. Rows are read one at a time,
+     * validated, and committed in chunks of {@code batchSize}, each chunk in its
+     * own transaction, so heap usage does not depend on the size of the input.
+     * Rows that fail to parse or validate are reported in the result and do not
+     * stop the import. Rows whose content hash matches the stored one are counted
+     * as unchanged and not written; created and changed OIDs are handed to the
+     * refresh pipeline as each chunk commits. This method returns as soon as
+     * the import is committed and does not wait for those fetches, which keep
+     * running in the background. Uploads submitted through {@code OidJobManager}
+     * wait for them before the job completes.
+     * 
+     * @param inputStream    The CSV content
+     * @param hliApiConfigId The HLI API Config ID to associate with the records
+     *                       (optional)
+     * @param batchSize      The number of rows committed per transaction
+     * @param username       The username performing the upload
+     * @return Result of the batch upload operation
+     */
+    public BatchUploadResult processCsvStream(
+            InputStream inputStream,
+            Long hliApiConfigId,
+            int batchSize,
+            String username) throws IOException {
+        String importId = UUID.randomUUID().toString();
+        try {
+            return processCsvStream(inputStream, hliApiConfigId, batchSize, username, importId,
+                    progress -> {
+                    }, () -> false);
+        } finally {
+            oidRefreshPipeline.close(importId);
+        }
+    }
+
+    /**
+     * Stream a CSV document into OidMaster records, reporting progress after
+     * every committed chunk and stopping before the next chunk once
+     * {@code cancelled} returns true. Chunks committed before cancellation are
+     * kept.
+     * 
+     * @param inputStream    The CSV content
+     * @param hliApiConfigId The HLI API Config ID to associate with the records
+     *                       (optional)
+     * @param batchSize      The number of rows committed per transaction
+     * @param username       The username performing the upload
+     * @param importId       The ID under which changed OIDs are published for
+     *                       fetching
+     * @param progress       Called with the running result after each chunk
+     * @param cancelled      Polled before each chunk is committed
+     * @return Result of the batch upload operation
+     */
+    public BatchUploadResult processCsvStream(
+            InputStream inputStream,
+            Long hliApiConfigId,
+            int batchSize,
+            String username,
+            String importId,
+            Consumer<BatchUploadResult> progress,
+            BooleanSupplier cancelled) throws IOException {
+
         log.info("Processing OID CSV upload, batch size: {}", batchSize);
 
         // Validate batch size
@@ -73,116 +165,198 @@ public class OidBatchService {
             batchSize = defaultBatchSize;
         }
 
-        // Get HLI API Config if provided
-        HliApiConfig hliApiConfig = null;
-        if (hliApiConfigId != null) {
-            hliApiConfig = hliApiConfigRepository.findById(hliApiConfigId)
-                    .orElseThrow(
-                            () -> new IllegalArgumentException("HLI API Config not found with ID: " + hliApiConfigId));
-        } else {
-            // If no config ID provided, get a default one if available
-            List<HliApiConfig> configs = hliApiConfigRepository.findAll();
-            if (!configs.isEmpty()) {
-                hliApiConfig = configs.get(0);
-                log.info("Using default HLI API Config with ID: {}", hliApiConfig.getId());
-            }
-        }
+        HliApiConfig hliApiConfig = resolveHliApiConfig(hliApiConfigId);
+        BatchUploadResult result = new BatchUploadResult();
 
-        // Parse CSV file using OpenCSV
-        List<OidCsvRecord> records;
-        try (Reader reader = new BufferedReader(new InputStreamReader(file.getInputStream()))) {
-            CsvToBean<OidCsvRecord> csvToBean = new CsvToBeanBuilder<OidCsvRecord>(reader)
-                    .withType(OidCsvRecord.class)
-                    .withIgnoreLeadingWhiteSpace(true)
-                    .withIgnoreEmptyLine(true)
-                    .build();
+        try (Reader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+                CSVReader csvReader = new CSVReaderBuilder(reader)
+                        .withCSVParser(new CSVParserBuilder().withIgnoreLeadingWhiteSpace(true).build())
+                        .build()) {
+            // Rows are mapped one at a time rather than through a CsvToBean
+            // iterator, which reads a row ahead, so each row is reported with
+            // the line number the parser read it from
+            HeaderColumnNameMappingStrategy<OidCsvRecord> mappingStrategy = new HeaderColumnNameMappingStrategy<>();
+            mappingStrategy.setType(OidCsvRecord.class);
+            mappingStrategy.captureHeader(csvReader);
+
+            List<OidCsvRecord> chunk = new ArrayList<>(batchSize);
+            long rowCount = 0;
+            int chunkNumber = 0;
+
+            String[] line;
+            while ((line = csvReader.readNext()) != null) {
+                if (line.length == 1 && line[0].isEmpty()) {
+                    continue;
+                }
+                rowCount++;
+                long lineNumber = csvReader.getLinesRead();
 
-            records = csvToBean.parse();
-        }
+                OidCsvRecord record;
+                try {
+                    record = mappingStrategy.populateNewBean(line);
+                } catch (CsvException | RuntimeException e) {
+                    // Record unparseable rows and keep reading
+                    String errorMsg = String.format("Row %d: %s", lineNumber, e.getMessage());
+                    log.warn("Skipping unparseable CSV row - {}", errorMsg);
+                    result.incrementFailed();
+                    result.addErrorMessage(errorMsg);
+                    continue;
+                }
 
-        if (records.isEmpty()) {
-            throw new IllegalArgumentException("CSV file does not contain any valid records");
-        }
+                if (!record.isValid()) {
+                    String errorMsg = String.format("Row %d: %s", lineNumber, record.getValidationErrorMessage());
+                    log.warn("Skipping invalid CSV row - {}", errorMsg);
+                    result.incrementSkipped();
+                    result.addErrorMessage(errorMsg);
+                    continue;
+                }
 
-        log.info("Parsed {} records from OID CSV file", records.size());
+                chunk.add(record);
+                if (chunk.size() >= batchSize) {
+                    if (cancelled.getAsBoolean()) {
+                        break;
+                    }
+                    commitChunk(chunk, ++chunkNumber, hliApiConfig, username, importId, result);
+                    progress.accept(result);
+                    chunk.clear();
+                }
+            }
 
-        // Validate all records first
-        List<OidCsvRecord> validRecords = new ArrayList<>();
-        List<String> validationErrors = new ArrayList<>();
+            if (cancelled.getAsBoolean()) {
+                log.info("CSV processing cancelled after {} chunks", chunkNumber);
+                return result;
+            }
 
-        for (int i = 0; i < records.size(); i++) {
-            OidCsvRecord record = records.get(i);
-            if (record.isValid()) {
-                validRecords.add(record);
-            } else {
-                String errorMsg = String.format("Row %d: %s", i + 2, record.getValidationErrorMessage());
-                validationErrors.add(errorMsg);
+            if (!chunk.isEmpty()) {
+                commitChunk(chunk, ++chunkNumber, hliApiConfig, username, importId, result);
+                progress.accept(result);
             }
+
+            log.info("Read {} rows in {} chunks", rowCount, chunkNumber);
+        } catch (CsvException e) {
+            throw new IllegalArgumentException("Unreadable CSV at line " + e.getLineNumber() + ": " + e.getMessage(), e);
         }
 
-        if (validRecords.isEmpty()) {
+        if (result.getCreatedCount() + result.getUpdatedCount() + result.getUnchangedCount() == 0
+                && result.getFailedCount() == 0) {
             throw new IllegalArgumentException(
-                    "No valid records found in CSV. Errors: " + String.join("; ", validationErrors));
+                    "No valid records found in CSV. Errors: " + String.join("; ", result.getErrorMessages()));
         }
 
-        log.info("Found {} valid records out of {}", validRecords.size(), records.size());
-
-        // Get existing OIDs to determine create vs update
-        List<String> oids = validRecords.stream().map(OidCsvRecord::getOid).collect(Collectors.toList());
-        Map<String, OidMaster> existingOidMap = oidMasterRepository.findByOidIn(oids).stream()
-                .collect(Collectors.toMap(OidMaster::getOid, oid -> oid, (existing, replacement) -> existing));
+        log.info("Completed CSV processing: {}", result);
+        return result;
+    }
 
-        // Split records into batches
-        List<List<OidCsvRecord>> batches = new ArrayList<>();
-        for (int i = 0; i < validRecords.size(); i += batchSize) {
-            batches.add(validRecords.subList(i, Math.min(i + batchSize, validRecords.size())));
+    /**
+     * Resolve the HLI API Config for an upload, falling back to the first
+     * configured one when no ID is provided
+     */
+    private HliApiConfig resolveHliApiConfig(Long hliApiConfigId) {
+        if (hliApiConfigId != null) {
+            return hliApiConfigRepository.findById(hliApiConfigId)
+                    .orElseThrow(
+                            () -> new IllegalArgumentException("HLI API Config not found with ID: " + hliApiConfigId));
         }
 
-        log.info("Processing {} batches with batch size {}", batches.size(), batchSize);
-
-        // Process each batch
-        BatchUploadResult result = new BatchUploadResult();
-        validationErrors.forEach(result::addErrorMessage);
-
-        for (int batchNum = 0; batchNum < batches.size(); batchNum++) {
-            List<OidCsvRecord> batch = batches.get(batchNum);
-            log.info("Processing batch {}/{} with {} records", batchNum + 1, batches.size(), batch.size());
-
-            List<OidMaster> entitiesToSave = new ArrayList<>();
+        // If no config ID provided, get a default one if available
+        List<HliApiConfig> configs = hliApiConfigRepository.findAll();
+        if (!configs.isEmpty()) {
+            HliApiConfig hliApiConfig = configs.get(0);
+            log.info("Using default HLI API Config with ID: {}", hliApiConfig.getId());
+            return hliApiConfig;
+        }
+        return null;
+    }
 
-            for (OidCsvRecord record : batch) {
-                try {
-                    OidMaster entity;
-                    boolean isUpdate = existingOidMap.containsKey(record.getOid());
-
-                    if (isUpdate) {
-                        // Update existing entity
-                        entity = existingOidMap.get(record.getOid());
-                        updateEntityFromRecord(entity, record, username);
-                        result.incrementUpdated();
-                    } else {
-                        // Create new entity
-                        entity = createEntityFromRecord(record, hliApiConfig, username);
-                        result.incrementCreated();
+    /**
+     * Create or update the OidMaster records for one chunk of rows and commit
+     * them in a single transaction. Counters are only folded into the overall
+     * result once the chunk has committed; if the commit fails every row in the
+     * chunk is reported as failed. The chunk's created and changed OIDs are
+     * published for fetching only after the commit, so fetching never sees
+     * uncommitted rows.
+     */
+    private void commitChunk(
+            List<OidCsvRecord> chunk,
+            int chunkNumber,
+            HliApiConfig hliApiConfig,
+            String username,
+            String importId,
+            BatchUploadResult result) {
+
+        log.info("Processing chunk {} with {} records", chunkNumber, chunk.size());
+
+        try {
+            BatchUploadResult chunkResult = transactionTemplate.execute(status -> {
+                BatchUploadResult committed = new BatchUploadResult();
+
+                // Get existing OIDs to determine create vs update
+                List<String> oids = chunk.stream().map(OidCsvRecord::getOid).collect(Collectors.toList());
+                Map<String, OidMaster> existingOidMap = oidMasterRepository.findByOidIn(oids).stream()
+                        .collect(Collectors.toMap(OidMaster::getOid, oid -> oid,
+                                (existing, replacement) -> existing));
+
+                // Keyed by OID so repeated rows for the same OID are saved once
+                Map<String, OidMaster> entitiesToSave = new LinkedHashMap<>();
+
+                for (OidCsvRecord record : chunk) {
+                    try {
+                        OidMaster entity = existingOidMap.get(record.getOid());
+                        String rowHash = record.computeRowHash(
+                                hliApiConfig != null ? hliApiConfig.getId() : null,
+                                resolveFhirIdentifier(oidRoot(record.getOid()), record.getMemberCodeSystem()),
+                                determineServiceMethodFromOid(record.getOid(), record.getMemberCodeSystem()));
+
+                        if (entity != null && rowHash.equals(entity.getRowHash())) {
+                            // Same content as the last import, nothing to write
+                            committed.incrementUnchanged();
+                            continue;
+                        }
+
+                        if (entity != null) {
+                            // Update existing entity
+                            updateEntityFromRecord(entity, record, username);
+                            committed.incrementUpdated();
+                        } else {
+                            // Create new entity; later rows for the same OID update it
+                            entity = createEntityFromRecord(record, hliApiConfig, username);
+                            existingOidMap.put(record.getOid(), entity);
+                            committed.incrementCreated();
+                        }
+
+                        entity.setRowHash(rowHash);
+                        entitiesToSave.put(record.getOid(), entity);
+                        committed.getChangedOids().add(record.getOid());
+                    } catch (Exception e) {
+                        log.error("Error processing record: {}", record, e);
+                        committed.incrementFailed();
+                        committed.addErrorMessage("Error processing OID " + record.getOid() + ": " + e.getMessage());
                     }
+                }
 
-                    entitiesToSave.add(entity);
-                } catch (Exception e) {
-                    log.error("Error processing record: {}", record, e);
-                    result.incrementFailed();
-                    result.addErrorMessage("Error processing OID " + record.getOid() + ": " + e.getMessage());
+                if (!entitiesToSave.isEmpty()) {
+                    oidMasterRepository.saveAll(entitiesToSave.values());
                 }
-            }
 
-            // Save batch
-            if (!entitiesToSave.isEmpty()) {
-                oidMasterRepository.saveAll(entitiesToSave);
-                log.info("Saved batch {}/{} with {} records", batchNum + 1, batches.size(), entitiesToSave.size());
+                // Release the chunk's entities so the persistence context stays small
+                entityManager.flush();
+                entityManager.clear();
+
+                return committed;
+            });
+
+            result.merge(chunkResult);
+            oidRefreshPipeline.publish(importId, chunkResult.getChangedOids());
+            log.info("Committed chunk {} ({} created, {} updated, {} unchanged)", chunkNumber,
+                    chunkResult.getCreatedCount(), chunkResult.getUpdatedCount(), chunkResult.getUnchangedCount());
+        } catch (Exception e) {
+            log.error("Error committing chunk {}", chunkNumber, e);
+            for (int i = 0; i < chunk.size(); i++) {
+                result.incrementFailed();
             }
+            result.addErrorMessage("Chunk " + chunkNumber + " (" + chunk.size() + " records) was rolled back: "
+                    + e.getMessage());
         }
-
-        log.info("Completed CSV processing: {}", result);
-        return result;
     }
 
     /**
@@ -304,42 +478,39 @@ public class OidBatchService {
             return;
         }
 
-        // Extract the OID root (before the colon if it exists)
-        String oidRoot = oid;
-        int colonIndex = oid.indexOf(':');
-        if (colonIndex > 0) {
-            oidRoot = oid.substring(0, colonIndex);
-        }
+        String oidRoot = oidRoot(oid);
 
         // Set HL7 URI based on the OID root
         entity.setHl7Uri("urn:oid:" + oidRoot);
 
         // Determine FHIR identifier based on the OID or member code system
-        if (oidRoot.equals("2.16.840.1.113883.6.1") ||
-                (memberCodeSystem != null && memberCodeSystem.toLowerCase().contains("loinc"))) {
-            entity.setFhirIdentifier("http://loinc.org");
-        } else if (oidRoot.equals("2.16.840.1.113883.6.96") ||
-                (memberCodeSystem != null && memberCodeSystem.toLowerCase().contains("snomed"))) {
-            entity.setFhirIdentifier("http://snomed.info/sct");
-        } else if (oidRoot.equals("2.16.840.1.113883.6.88") ||
-                (memberCodeSystem != null && memberCodeSystem.toLowerCase().contains("rxnorm"))) {
-            entity.setFhirIdentifier("http://www.nlm.nih.gov/research/umls/rxnorm");
-        } else if (oidRoot.equals("2.16.840.1.113883.6.90") ||
-                (memberCodeSystem != null && memberCodeSystem.toLowerCase().contains("icd-10"))) {
-            entity.setFhirIdentifier("http://hl7.org/fhir/sid/icd-10-cm");
-        } else if (oidRoot.equals("2.16.840.1.113883.6.103") ||
-                (memberCodeSystem != null && memberCodeSystem.toLowerCase().contains("icd-9"))) {
-            entity.setFhirIdentifier("http://hl7.org/fhir/sid/icd-9-cm");
-        } else if (oidRoot.equals("2.16.840.1.113883.6.12") ||
-                (memberCodeSystem != null && memberCodeSystem.toLowerCase().contains("cpt"))) {
-            entity.setFhirIdentifier("http://www.ama-assn.org/go/cpt");
-        } else if (oidRoot.equals("2.16.840.1.113883.6.285") ||
-                (memberCodeSystem != null && memberCodeSystem.toLowerCase().contains("hcpcs"))) {
-            entity.setFhirIdentifier("http://www.cms.gov/Medicare/Coding/HCPCSReleaseCodeSets");
-        } else {
-            // Default to a terminology URI based on the OID
-            entity.setFhirIdentifier("http://terminology.hl7.org/CodeSystem/oid-" + oidRoot);
+        entity.setFhirIdentifier(resolveFhirIdentifier(oidRoot, memberCodeSystem));
+    }
+
+    /**
+     * Extract the OID root (before the colon if it exists)
+     */
+    private static String oidRoot(String oid) {
+        if (oid == null) {
+            return null;
         }
+        int colonIndex = oid.indexOf(':');
+        return colonIndex > 0 ? oid.substring(0, colonIndex) : oid;
+    }
+
+    /**
+     * Resolve the FHIR identifier of an OID root from the code system registry
+     */
+    private String resolveFhirIdentifier(String oidRoot, String memberCodeSystem) {
+        if (oidRoot == null) {
+            return null;
+        }
+        CodeSystemDefinition codeSystem = codeSystemRegistry.resolve(oidRoot, memberCodeSystem);
+        if (codeSystem != null) {
+            return codeSystem.getFhirIdentifier();
+        }
+        // Default to a terminology URI based on the OID
+        return "http://terminology.hl7.org/CodeSystem/oid-" + oidRoot;
     }
 
     /**
@@ -347,35 +518,10 @@ public class OidBatchService {
      */
     private String determineServiceMethodFromOid(String oid, String memberCodeSystem) {
         if (oid == null) {
-            return "defaultProcessOid";
-        }
-
-        // Extract the OID root (before the colon if it exists)
-        String oidRoot = oid;
-        int colonIndex = oid.indexOf(':');
-        if (colonIndex > 0) {
-            oidRoot = oid.substring(0, colonIndex);
+            return CodeSystemRegistry.DEFAULT_SERVICE_METHOD;
         }
 
         // Determine service method based on OID or member code system
-        if (oidRoot.equals("2.16.840.1.113883.6.1") ||
-                (memberCodeSystem != null && memberCodeSystem.toLowerCase().contains("loinc"))) {
-            return "processLoincOid";
-        } else if (oidRoot.equals("2.16.840.1.113883.6.96") ||
-                (memberCodeSystem != null && memberCodeSystem.toLowerCase().contains("snomed"))) {
-            return "processSnomedOid";
-        } else if (oidRoot.equals("2.16.840.1.113883.6.88") ||
-                (memberCodeSystem != null && memberCodeSystem.toLowerCase().contains("rxnorm"))) {
-            return "processRxNormOid";
-        } else if (oidRoot.contains("2.16.840.1.113883.6.90") || oidRoot.contains("2.16.840.1.113883.6.103") ||
-                (memberCodeSystem != null && memberCodeSystem.toLowerCase().contains("icd"))) {
-            return "processIcdOid";
-        } else if (oidRoot.equals("2.16.840.1.113883.6.12") || oidRoot.equals("2.16.840.1.113883.6.285") ||
-                (memberCodeSystem != null && (memberCodeSystem.toLowerCase().contains("cpt") ||
-                        memberCodeSystem.toLowerCase().contains("hcpcs")))) {
-            return "processCptOid";
-        } else {
-            return "defaultProcessOid";
-        }
+        return codeSystemRegistry.serviceMethodName(oid, memberCodeSystem);
     }
 }
\ No newline at end of file
@@ -1,8 +1,10 @@
 package com.mckesson.cmt.cmt_standardcode_gateway_service.services;
 
+import com.mckesson.cmt.cmt_standardcode_gateway_service.component.CodeSystemRegistry;
 import com.mckesson.cmt.cmt_standardcode_gateway_service.dto.BatchUploadResult;
 import com.mckesson.cmt.cmt_standardcode_gateway_service.entities.HliApiConfig;
 import com.mckesson.cmt.cmt_standardcode_gateway_service.entities.OidMaster;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.model.CodeSystemDefinition;
 import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.HliApiConfigRepository;
 import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.OidMasterRepository;
 import org.slf4j.Logger;
@@ -28,13 +30,16 @@ public class OidBatchServiceDebug {
 
     private final OidMasterRepository oidMasterRepository;
     private final HliApiConfigRepository hliApiConfigRepository;
+    private final CodeSystemRegistry codeSystemRegistry;
 
     @Autowired
     public OidBatchServiceDebug(
             OidMasterRepository oidMasterRepository,
-            HliApiConfigRepository hliApiConfigRepository) {
+            HliApiConfigRepository hliApiConfigRepository,
+            CodeSystemRegistry codeSystemRegistry) {
         this.oidMasterRepository = oidMasterRepository;
         this.hliApiConfigRepository = hliApiConfigRepository;
+        this.codeSystemRegistry = codeSystemRegistry;
     }
 
     /**
@@ -316,27 +321,9 @@ public class OidBatchServiceDebug {
         entity.setHl7Uri("urn:oid:" + oidRoot);
 
         // Determine FHIR identifier based on the OID or member code system
-        if (oidRoot.equals("2.16.840.1.113883.6.1") ||
-                (memberCodeSystem != null && memberCodeSystem.toLowerCase().contains("loinc"))) {
-            entity.setFhirIdentifier("http://loinc.org");
-        } else if (oidRoot.equals("2.16.840.1.113883.6.96") ||
-                (memberCodeSystem != null && memberCodeSystem.toLowerCase().contains("snomed"))) {
-            entity.setFhirIdentifier("http://snomed.info/sct");
-        } else if (oidRoot.equals("2.16.840.1.113883.6.88") ||
-                (memberCodeSystem != null && memberCodeSystem.toLowerCase().contains("rxnorm"))) {
-            entity.setFhirIdentifier("http://www.nlm.nih.gov/research/umls/rxnorm");
-        } else if (oidRoot.equals("2.16.840.1.113883.6.90") ||
-                (memberCodeSystem != null && memberCodeSystem.toLowerCase().contains("icd-10"))) {
-            entity.setFhirIdentifier("http://hl7.org/fhir/sid/icd-10-cm");
-        } else if (oidRoot.equals("2.16.840.1.113883.6.103") ||
-                (memberCodeSystem != null && memberCodeSystem.toLowerCase().contains("icd-9"))) {
-            entity.setFhirIdentifier("http://hl7.org/fhir/sid/icd-9-cm");
-        } else if (oidRoot.equals("2.16.840.1.113883.6.12") ||
-                (memberCodeSystem != null && memberCodeSystem.toLowerCase().contains("cpt"))) {
-            entity.setFhirIdentifier("http://www.ama-assn.org/go/cpt");
-        } else if (oidRoot.equals("2.16.840.1.113883.6.285") ||
-                (memberCodeSystem != null && memberCodeSystem.toLowerCase().contains("hcpcs"))) {
-            entity.setFhirIdentifier("http://www.cms.gov/Medicare/Coding/HCPCSReleaseCodeSets");
+        CodeSystemDefinition codeSystem = codeSystemRegistry.resolve(oidRoot, memberCodeSystem);
+        if (codeSystem != null) {
+            entity.setFhirIdentifier(codeSystem.getFhirIdentifier());
         } else {
             // Default to a terminology URI based on the OID
             entity.setFhirIdentifier("http://terminology.hl7.org/CodeSystem/oid-" + oidRoot);
@@ -348,35 +335,10 @@ public class OidBatchServiceDebug {
      */
     private String determineServiceMethodFromOid(String oid, String memberCodeSystem) {
         if (oid == null) {
-            return "defaultProcessOid";
-        }
-
-        // Extract the OID root (before the colon if it exists)
-        String oidRoot = oid;
-        int colonIndex = oid.indexOf(':');
-        if (colonIndex > 0) {
-            oidRoot = oid.substring(0, colonIndex);
+            return CodeSystemRegistry.DEFAULT_SERVICE_METHOD;
         }
 
         // Determine service method based on OID or member code system
-        if (oidRoot.equals("2.16.840.1.113883.6.1") ||
-                (memberCodeSystem != null && memberCodeSystem.toLowerCase().contains("loinc"))) {
-            return "processLoincOid";
-        } else if (oidRoot.equals("2.16.840.1.113883.6.96") ||
-                (memberCodeSystem != null && memberCodeSystem.toLowerCase().contains("snomed"))) {
-            return "processSnomedOid";
-        } else if (oidRoot.equals("2.16.840.1.113883.6.88") ||
-                (memberCodeSystem != null && memberCodeSystem.toLowerCase().contains("rxnorm"))) {
-            return "processRxNormOid";
-        } else if (oidRoot.contains("2.16.840.1.113883.6.90") || oidRoot.contains("2.16.840.1.113883.6.103") ||
-                (memberCodeSystem != null && memberCodeSystem.toLowerCase().contains("icd"))) {
-            return "processIcdOid";
-        } else if (oidRoot.equals("2.16.840.1.113883.6.12") || oidRoot.equals("2.16.840.1.113883.6.285") ||
-                (memberCodeSystem != null && (memberCodeSystem.toLowerCase().contains("cpt") ||
-                        memberCodeSystem.toLowerCase().contains("hcpcs")))) {
-            return "processCptOid";
-        } else {
-            return "defaultProcessOid";
-        }
+        return codeSystemRegistry.serviceMethodName(oid, memberCodeSystem);
     }
 }
\ No newline at end of file
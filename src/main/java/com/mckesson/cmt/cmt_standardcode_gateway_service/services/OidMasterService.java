@@ -2,14 +2,21 @@ package com.mckesson.cmt.cmt_standardcode_gateway_service.services;
 
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.mckesson.cmt.cmt_standardcode_gateway_service.contract.StandardCodeResponse;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.dto.OidMasterSearchHit;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.dto.OidMasterSearchResult;
 import com.mckesson.cmt.cmt_standardcode_gateway_service.entities.OidMaster;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.exception.BadRequestException;
 import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.OidMasterRepository;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.OidMasterSearchRow;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.utils.SearchCursor;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
@@ -20,11 +27,23 @@ import java.util.Optional;
 @Service
 public class OidMasterService {
 
+    // Shorter terms have too few trigrams to narrow a substring search
+    private static final int MIN_SUBSTRING_TERM_LENGTH = 3;
+
     private final OidMasterRepository oidMasterRepository;
+    private final int searchDefaultPageSize;
+    private final int searchMaxPageSize;
+    private final int searchCandidateLimit;
 
     @Autowired
-    public OidMasterService(OidMasterRepository oidMasterRepository) {
+    public OidMasterService(OidMasterRepository oidMasterRepository,
+            @Value("${standard-codes.oid-search.default-page-size:50}") int searchDefaultPageSize,
+            @Value("${standard-codes.oid-search.max-page-size:500}") int searchMaxPageSize,
+            @Value("${standard-codes.oid-search.candidate-limit:2000}") int searchCandidateLimit) {
         this.oidMasterRepository = oidMasterRepository;
+        this.searchDefaultPageSize = searchDefaultPageSize;
+        this.searchMaxPageSize = searchMaxPageSize;
+        this.searchCandidateLimit = Math.max(searchCandidateLimit, searchMaxPageSize);
     }
 
     /**
@@ -106,6 +125,7 @@ public class OidMasterService {
             oidMaster.setLastModifiedBy(username);
             oidMaster.setLastModifiedDate(LocalDateTime.now());
         }
+        clearRowHash(oidMaster);
         return oidMasterRepository.save(oidMaster);
     }
 
@@ -122,6 +142,7 @@ public class OidMasterService {
         oidMaster.setCreatedDate(LocalDateTime.now());
         oidMaster.setIsActive(true);
         oidMaster.setStatus("ACTIVE");
+        clearRowHash(oidMaster);
         return oidMasterRepository.save(oidMaster);
     }
 
@@ -155,6 +176,7 @@ public class OidMasterService {
                     // Update audit fields
                     existingOidMaster.setLastModifiedBy(username);
                     existingOidMaster.setLastModifiedDate(LocalDateTime.now());
+                    clearRowHash(existingOidMaster);
 
                     return oidMasterRepository.save(existingOidMaster);
                 });
@@ -185,10 +207,22 @@ public class OidMasterService {
                     oidMaster.setStatus("INACTIVE");
                     oidMaster.setLastModifiedBy(username);
                     oidMaster.setLastModifiedDate(LocalDateTime.now());
+                    clearRowHash(oidMaster);
                     return oidMasterRepository.save(oidMaster);
                 });
     }
 
+    /**
+     * Forget the hash of the CSV row an OidMaster was last imported from. The
+     * record no longer matches that row once it is edited outside an import,
+     * so re-uploading the same row must write it again rather than skip it.
+     * 
+     * @param oidMaster The OidMaster being written
+     */
+    private void clearRowHash(OidMaster oidMaster) {
+        oidMaster.setRowHash(null);
+    }
+
     /**
      * Search for OidMaster records containing code or code group name like the
      * search term
@@ -200,6 +234,67 @@ public class OidMasterService {
         return oidMasterRepository.searchByCodeOrCodeGroupName(searchTerm);
     }
 
+    /**
+     * Ranked, case-insensitive search over code, code group name and content
+     * set using the prefix and trigram indexes on oid_master. Terms of at least
+     * three characters match anywhere in a column; shorter terms match prefixes
+     * only. Only the best-placed candidates of each index are ranked, so a very
+     * broad term pages through at most a few thousand matches.
+     *
+     * @param query      The search term
+     * @param cursor     The nextCursor of the previous page, or null for the
+     *                   first page
+     * @param limit      The page size, or null for the default
+     * @param activeOnly Whether to skip inactive OIDs
+     * @return One page of matches, best first, with the cursor of the next page
+     * @throws BadRequestException if the term is blank, the limit is out of
+     *                             range or the cursor is malformed
+     */
+    @Transactional(readOnly = true)
+    public OidMasterSearchResult search(String query, String cursor, Integer limit, boolean activeOnly) {
+        if (query == null || query.isBlank()) {
+            throw new BadRequestException("A search term is required");
+        }
+        int pageSize = limit != null ? limit : searchDefaultPageSize;
+        if (pageSize < 1 || pageSize > searchMaxPageSize) {
+            throw new BadRequestException("limit must be between 1 and " + searchMaxPageSize);
+        }
+        SearchCursor after = cursor != null && !cursor.isBlank() ? SearchCursor.decode(cursor)
+                : new SearchCursor(Integer.MAX_VALUE, 0);
+
+        String term = query.trim().toLowerCase();
+        String escaped = term.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        String prefix = escaped + "%";
+        boolean substring = term.length() >= MIN_SUBSTRING_TERM_LENGTH;
+
+        // One extra row tells whether there is a next page
+        List<OidMasterSearchRow> rows = oidMasterRepository.search(term, "%" + prefix, prefix, substring,
+                activeOnly, searchCandidateLimit, after.getScore(), after.getId(), pageSize + 1);
+
+        List<OidMasterSearchHit> hits = new ArrayList<>(Math.min(rows.size(), pageSize));
+        for (OidMasterSearchRow row : rows.subList(0, Math.min(rows.size(), pageSize))) {
+            OidMasterSearchHit hit = new OidMasterSearchHit();
+            hit.setId(row.getId());
+            hit.setOid(row.getOid());
+            hit.setCode(row.getCode());
+            hit.setCodeGroupName(row.getCodeGroupName());
+            hit.setCodeGroupContentSet(row.getCodeGroupContentSet());
+            hit.setCodeSubType(row.getCodeSubType());
+            hit.setIsActive(row.getIsActive());
+            hit.setScore(row.getScore());
+            hits.add(hit);
+        }
+
+        OidMasterSearchResult result = new OidMasterSearchResult();
+        result.setQuery(query);
+        result.setResults(hits);
+        if (rows.size() > pageSize) {
+            OidMasterSearchHit last = hits.get(hits.size() - 1);
+            result.setNextCursor(new SearchCursor(last.getScore(), last.getId()).encode());
+        }
+        return result;
+    }
+
     /**
      * Find OidMaster records by HLI API Config ID
      * 
@@ -2,6 +2,9 @@ package com.mckesson.cmt.cmt_standardcode_gateway_service.services;
 
 import com.mckesson.cmt.cmt_standardcode_gateway_service.client.HLIRestAPIClient;
 import com.mckesson.cmt.cmt_standardcode_gateway_service.component.BatchProcessor;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.component.ConsumerResponseProjector;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.component.OidRevisionIndex;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.component.ValueSetMembershipIndex;
 import com.mckesson.cmt.cmt_standardcode_gateway_service.contract.groups.GroupMemberHLIRes;
 import com.mckesson.cmt.cmt_standardcode_gateway_service.contract.groups.GroupMemberResDTO;
 import com.mckesson.cmt.cmt_standardcode_gateway_service.contract.groups.GroupMembersReqDTO;
@@ -11,6 +14,7 @@ import com.mckesson.cmt.cmt_standardcode_gateway_service.entities.OidHliApiRespo
 import com.mckesson.cmt.cmt_standardcode_gateway_service.entities.OidMaster;
 import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.HliApiConfigRepository;
 import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.OidBatchProcessLogRepository;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.OidHliApiResponseMemberRepository;
 import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.OidHliApiResponseRepository;
 import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.OidMasterRepository;
 
@@ -26,9 +30,13 @@ import reactor.core.publisher.Mono;
 import java.lang.reflect.Method;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 @Service
@@ -36,12 +44,17 @@ public class OidProcessingService {
 
     private static final Logger log = LoggerFactory.getLogger(OidProcessingService.class);
 
+    private static final int OID_LOOKUP_SLICE_SIZE = 1000;
+
     @Autowired
     private OidMasterRepository oidMasterRepository;
 
     @Autowired
     private OidHliApiResponseRepository oidHliApiResponseRepository;
 
+    @Autowired
+    private OidHliApiResponseMemberRepository oidHliApiResponseMemberRepository;
+
     @Autowired
     private OidBatchProcessLogRepository oidBatchProcessLogRepository;
 
@@ -54,12 +67,27 @@ public class OidProcessingService {
     @Autowired
     private BatchProcessor batchProcessor;
 
+    @Autowired
+    private OidRevisionIndex oidRevisionIndex;
+
+    @Autowired
+    private ConsumerResponseProjector consumerResponseProjector;
+
+    @Autowired
+    private ValueSetMembershipIndex valueSetMembershipIndex;
+
     @Value("${hli.api.batch-size:50}")
     private int batchSize;
 
     @Value("${hli.api.delay-ms:500}")
     private int delayMs;
 
+    // Batch logs of runs in progress, keyed by batch ID, for progress reporting
+    private final Map<String, OidBatchProcessLog> runningBatches = new ConcurrentHashMap<>();
+
+    // Batch IDs for which cancellation has been requested
+    private final Set<String> cancelledBatchIds = ConcurrentHashMap.newKeySet();
+
     /**
      * Process a list of OIDs
      * 
@@ -146,7 +174,18 @@ public class OidProcessingService {
      */
     @Transactional
     public void processAllPendingOids() {
-        log.info("Processing all pending OIDs");
+        processAllPendingOids(UUID.randomUUID().toString());
+    }
+
+    /**
+     * Process all pending OIDs, recording progress under the given batch ID so
+     * that the run can be polled and cancelled while it is in progress
+     * 
+     * @param batchId The batch ID to use for the batch process log
+     */
+    @Transactional
+    public void processAllPendingOids(String batchId) {
+        log.info("Processing all pending OIDs in batch {}", batchId);
 
         // Find all active OIDs
         List<OidMaster> allActiveOids = oidMasterRepository.findByIsActiveTrue();
@@ -156,7 +195,7 @@ public class OidProcessingService {
 
         if (!oidsToProcess.isEmpty()) {
             // Create batch process log
-            OidBatchProcessLog batchLog = createBatchProcessLog(oidsToProcess);
+            OidBatchProcessLog batchLog = createBatchProcessLog(oidsToProcess, batchId);
 
             try {
                 // Process OIDs in batches
@@ -175,6 +214,77 @@ public class OidProcessingService {
         }
     }
 
+    /**
+     * Refresh specific OIDs from HLI whether or not they already have a current
+     * response, e.g. after their master data changed in a CSV upload
+     * 
+     * @param oids    The OIDs to refresh
+     * @param batchId The batch ID to record for this run
+     */
+    @Transactional
+    public void processChangedOids(Collection<String> oids, String batchId) {
+        log.info("Processing {} changed OIDs with batch ID: {}", oids.size(), batchId);
+
+        // Look the OIDs up in slices to stay well under the bind parameter limit
+        List<String> oidList = new ArrayList<>(oids);
+        List<OidMaster> oidsToProcess = new ArrayList<>(oidList.size());
+        for (int from = 0; from < oidList.size(); from += OID_LOOKUP_SLICE_SIZE) {
+            int to = Math.min(from + OID_LOOKUP_SLICE_SIZE, oidList.size());
+            oidsToProcess.addAll(oidMasterRepository.findByOidIn(oidList.subList(from, to)));
+        }
+
+        if (oidsToProcess.isEmpty()) {
+            log.info("No OIDs need processing");
+            return;
+        }
+
+        OidBatchProcessLog batchLog = createBatchProcessLog(oidsToProcess, batchId);
+
+        try {
+            processPendingOidsWithBatchLog(oidsToProcess, batchLog);
+            updateBatchLogSuccess(batchLog, oidsToProcess.size());
+        } catch (Exception e) {
+            log.error("Error processing changed OIDs", e);
+            updateBatchLogFailure(batchLog, e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * Request cancellation of a batch. OIDs already sent to HLI are allowed to
+     * finish; no further batches are started. The request is recorded even if
+     * the batch has not registered yet, so a run that starts afterwards stops
+     * before its first batch.
+     * 
+     * @param batchId The batch ID of the run to cancel
+     * @return true if the batch was already running
+     */
+    public boolean requestCancellation(String batchId) {
+        log.info("Cancellation requested for batch {}", batchId);
+        cancelledBatchIds.add(batchId);
+        return runningBatches.containsKey(batchId);
+    }
+
+    /**
+     * Forget a cancellation request once the run it was made for is over,
+     * including runs that ended without registering a batch
+     * 
+     * @param batchId The batch ID of the finished run
+     */
+    public void clearCancellation(String batchId) {
+        cancelledBatchIds.remove(batchId);
+    }
+
+    /**
+     * Get the live batch process log of a run that is still in progress
+     * 
+     * @param batchId The batch ID to look up
+     * @return An Optional containing the batch log if the run is in progress
+     */
+    public Optional<OidBatchProcessLog> findRunningBatch(String batchId) {
+        return Optional.ofNullable(runningBatches.get(batchId));
+    }
+
     /**
      * Find OIDs that need processing (those without a current HLI response)
      * 
@@ -238,6 +348,11 @@ public class OidProcessingService {
                         oidMaster -> oidMaster.getServiceMethodName() != null ? oidMaster.getServiceMethodName()
                                 : "defaultProcessOid"))
                 .forEach((methodName, oids) -> {
+                    if (isCancelled(batchLog)) {
+                        log.info("Batch {} cancelled, skipping {} OIDs for {}", batchLog.getBatchId(), oids.size(),
+                                methodName);
+                        return;
+                    }
                     try {
                         // Invoke the specified service method for each group
                         invokeDynamicServiceMethod(methodName, oids, batchLog);
@@ -267,7 +382,8 @@ public class OidProcessingService {
                 oidsToProcess,
                 batchSize,
                 delayMs,
-                oidMaster -> processOidWithRequest(oidMaster, request, batchLog));
+                oidMaster -> processOidWithRequest(oidMaster, request, batchLog),
+                () -> isCancelled(batchLog));
     }
 
     /**
@@ -354,7 +470,8 @@ public class OidProcessingService {
                 oids,
                 batchSize,
                 delayMs,
-                oidMaster -> processOidWithRequest(oidMaster, request, batchLog));
+                oidMaster -> processOidWithRequest(oidMaster, request, batchLog),
+                () -> isCancelled(batchLog));
     }
 
     /**
@@ -387,7 +504,8 @@ public class OidProcessingService {
                 oids,
                 batchSize,
                 delayMs,
-                oidMaster -> processOidWithRequest(oidMaster, request, batchLog));
+                oidMaster -> processOidWithRequest(oidMaster, request, batchLog),
+                () -> isCancelled(batchLog));
     }
 
     /**
@@ -417,7 +535,8 @@ public class OidProcessingService {
                 oids,
                 batchSize,
                 delayMs,
-                oidMaster -> processOidWithRequest(oidMaster, request, batchLog));
+                oidMaster -> processOidWithRequest(oidMaster, request, batchLog),
+                () -> isCancelled(batchLog));
     }
 
     /**
@@ -497,7 +616,14 @@ public class OidProcessingService {
         newResponse.setVersion(newVersion);
         newResponse.setIsCurrent(true);
 
-        oidHliApiResponseRepository.save(newResponse);
+        oidHliApiResponseRepository.saveAndFlush(newResponse);
+        // Split the results into member rows so consumers can page them by key
+        oidHliApiResponseMemberRepository.storeMembers(newResponse.getId());
+        // Precompute the consumer response after commit; registered before the revision
+        // index invalidation so the reloaded revisions see it
+        consumerResponseProjector.storeAfterCommit(newResponse, response);
+        oidRevisionIndex.invalidateAfterCommit(oidMaster.getOid());
+        valueSetMembershipIndex.reloadAfterCommit(oidMaster.getOid());
 
         // Update OidMaster last updated
         oidMaster.setLastModifiedDate(LocalDateTime.now());
@@ -614,6 +740,17 @@ public class OidProcessingService {
      * @return The created OidBatchProcessLog
      */
     private OidBatchProcessLog createBatchProcessLog(List<OidMaster> oidsToProcess) {
+        return createBatchProcessLog(oidsToProcess, UUID.randomUUID().toString());
+    }
+
+    /**
+     * Create a batch process log with a caller-supplied batch ID
+     * 
+     * @param oidsToProcess The list of OidMaster entities to process
+     * @param batchId       The batch ID to record
+     * @return The created OidBatchProcessLog
+     */
+    private OidBatchProcessLog createBatchProcessLog(List<OidMaster> oidsToProcess, String batchId) {
         log.info("Creating batch process log for {} OIDs", oidsToProcess.size());
 
         // Get first OID's HLI API config
@@ -622,7 +759,7 @@ public class OidProcessingService {
 
         // Create batch process log
         OidBatchProcessLog batchLog = new OidBatchProcessLog();
-        batchLog.setBatchId(UUID.randomUUID().toString());
+        batchLog.setBatchId(batchId);
         batchLog.setHliApiConfig(hliApiConfig);
         batchLog.setBatchStartTime(LocalDateTime.now());
         batchLog.setTotalOids(oidsToProcess.size());
@@ -630,7 +767,12 @@ public class OidProcessingService {
         batchLog.setFailedOids(0);
         batchLog.setStatus("PROCESSING");
 
-        return oidBatchProcessLogRepository.save(batchLog);
+        OidBatchProcessLog saved = oidBatchProcessLogRepository.save(batchLog);
+        runningBatches.put(batchId, saved);
+        if (isCancelled(saved)) {
+            log.info("Batch {} was cancelled before it registered; no OIDs will be sent", batchId);
+        }
+        return saved;
     }
 
     /**
@@ -643,9 +785,10 @@ public class OidProcessingService {
         log.info("Updating batch log {} for successful completion", batchLog.getBatchId());
 
         batchLog.setBatchEndTime(LocalDateTime.now());
-        batchLog.setStatus("COMPLETED");
+        batchLog.setStatus(isCancelled(batchLog) ? "CANCELLED" : "COMPLETED");
 
         oidBatchProcessLogRepository.save(batchLog);
+        releaseBatch(batchLog);
     }
 
     /**
@@ -662,6 +805,7 @@ public class OidProcessingService {
         batchLog.setErrorMessage(errorMessage);
 
         oidBatchProcessLogRepository.save(batchLog);
+        releaseBatch(batchLog);
     }
 
     /**
@@ -683,4 +827,24 @@ public class OidProcessingService {
         batchLog.setFailedOids(batchLog.getFailedOids() + 1);
         oidBatchProcessLogRepository.save(batchLog);
     }
+
+    /**
+     * Check whether cancellation has been requested for a batch
+     * 
+     * @param batchLog The batch process log to check
+     * @return true if the batch has been cancelled
+     */
+    private boolean isCancelled(OidBatchProcessLog batchLog) {
+        return cancelledBatchIds.contains(batchLog.getBatchId());
+    }
+
+    /**
+     * Stop tracking a batch once it has reached a final status
+     * 
+     * @param batchLog The batch process log to release
+     */
+    private void releaseBatch(OidBatchProcessLog batchLog) {
+        runningBatches.remove(batchLog.getBatchId());
+        cancelledBatchIds.remove(batchLog.getBatchId());
+    }
 }
\ No newline at end of file
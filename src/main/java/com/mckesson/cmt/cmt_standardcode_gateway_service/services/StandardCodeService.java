@@ -1,23 +1,81 @@
 package com.mckesson.cmt.cmt_standardcode_gateway_service.services;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.component.ConsumerResponseProjector;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.component.OidRevisionIndex;
 import com.mckesson.cmt.cmt_standardcode_gateway_service.contract.Error;
 import com.mckesson.cmt.cmt_standardcode_gateway_service.contract.StandardCodeRequest;
 import com.mckesson.cmt.cmt_standardcode_gateway_service.contract.StandardCodeResponse;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.contract.groups.CodingInfo;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.entities.ApiConsumerResponse;
 import com.mckesson.cmt.cmt_standardcode_gateway_service.entities.OidMaster;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.exception.BadRequestException;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.ApiConsumerResponseRepository;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.OidHliApiResponseMemberRepository;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.OidMemberPageRow;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.utils.MemberCursor;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.lang.reflect.Method;
+import java.time.LocalDate;
 import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 
 @Service
 public class StandardCodeService {
     
     private static final Logger logger = LoggerFactory.getLogger(StandardCodeService.class);
+
+    private final OidRevisionIndex oidRevisionIndex;
+    private final OidHliApiResponseMemberRepository oidHliApiResponseMemberRepository;
+    private final ApiConsumerResponseRepository apiConsumerResponseRepository;
+    private final ConsumerResponseProjector consumerResponseProjector;
+    private final ObjectMapper objectMapper;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+
+    public StandardCodeService(OidRevisionIndex oidRevisionIndex,
+            OidHliApiResponseMemberRepository oidHliApiResponseMemberRepository,
+            ApiConsumerResponseRepository apiConsumerResponseRepository,
+            ConsumerResponseProjector consumerResponseProjector,
+            ObjectMapper objectMapper,
+            @Value("${standard-codes.members.default-page-size:1000}") int defaultPageSize,
+            @Value("${standard-codes.members.max-page-size:10000}") int maxPageSize) {
+        this.oidRevisionIndex = oidRevisionIndex;
+        this.oidHliApiResponseMemberRepository = oidHliApiResponseMemberRepository;
+        this.apiConsumerResponseRepository = apiConsumerResponseRepository;
+        this.consumerResponseProjector = consumerResponseProjector;
+        this.objectMapper = objectMapper.copy()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+    }
     
+    /**
+     * Get one page of the stored standard codes for each of a list of
+     * OID-revision pairs. All pairs are resolved against the cached revisions
+     * of their OIDs. First pages that hold every member are served from the
+     * consumer responses projected at ingest, fetched together by key; every
+     * other page is read in one query by member key, so the stored documents
+     * are never loaded whole.
+     *
+     * @param request The request; an empty revision means the latest one, otherwise
+     *                the revision is a day (YYYYMMDD or YYYY-MM-DD) and resolves to
+     *                the newest response stored on or before it. A pair's cursor
+     *                is the nextCursor of its previous page and pins that page's
+     *                stored response; count is the page size.
+     * @return The standard codes per pair in request order, with a nextCursor
+     *         where more members follow, or an error response naming every pair
+     *         that could not be resolved
+     */
     public StandardCodeResponse getStandardCodes(StandardCodeRequest request) {
         logger.info("Processing standard codes request with ID: {}", request.getRequestId());
         
@@ -31,15 +89,123 @@ public class StandardCodeService {
                     || request.getParameters().getOidRevisions().isEmpty()) {
                 return createErrorResponse(request, "INVALID_PARAMETER", "OID-revision pairs are required");
             }
-            
-            // Process each OID-revision pair and generate the response
-            List<StandardCodeResponse.StandardCodeData> dataList = new ArrayList<>();
-            
-            for (StandardCodeRequest.OidRevision oidRevision : request.getParameters().getOidRevisions()) {
-                // Here you would typically fetch data from a database or another service
-                // For this example, we'll generate mock data based on the OID
-                StandardCodeResponse.StandardCodeData data = generateMockData(oidRevision);
-                dataList.add(data);
+
+            List<StandardCodeRequest.OidRevision> oidRevisions = request.getParameters().getOidRevisions();
+
+            Integer count = request.getParameters().getCount();
+            int pageSize = count != null ? count : defaultPageSize;
+            if (pageSize < 1 || pageSize > maxPageSize) {
+                return createErrorResponse(request, "INVALID_PARAMETER",
+                        "count must be between 1 and " + maxPageSize);
+            }
+
+            // Normalise the requested revisions and cursors before touching the database
+            List<String> revisionDays = new ArrayList<>(oidRevisions.size());
+            List<MemberCursor> cursors = new ArrayList<>(oidRevisions.size());
+            Set<String> oids = new LinkedHashSet<>();
+            for (StandardCodeRequest.OidRevision oidRevision : oidRevisions) {
+                if (oidRevision.getOId() == null || oidRevision.getOId().isBlank()) {
+                    return createErrorResponse(request, "INVALID_PARAMETER", "Every OID-revision pair needs an OID");
+                }
+                try {
+                    revisionDays.add(normaliseRevision(oidRevision.getRevision()));
+                } catch (DateTimeParseException e) {
+                    return createErrorResponse(request, "INVALID_PARAMETER", "Invalid revision '"
+                            + oidRevision.getRevision() + "' for OID " + oidRevision.getOId()
+                            + "; expected YYYYMMDD or YYYY-MM-DD");
+                }
+                try {
+                    cursors.add(oidRevision.getCursor() == null || oidRevision.getCursor().isBlank() ? null
+                            : MemberCursor.decode(oidRevision.getCursor()));
+                } catch (BadRequestException e) {
+                    return createErrorResponse(request, "INVALID_PARAMETER",
+                            e.getMessage() + " for OID " + oidRevision.getOId());
+                }
+                oids.add(oidRevision.getOId());
+            }
+
+            // Resolve every pair to a stored response
+            Map<String, OidRevisionIndex.OidRevisions> revisionsByOid = oidRevisionIndex.getRevisions(oids);
+            List<OidRevisionIndex.Revision> resolved = new ArrayList<>(oidRevisions.size());
+            List<String> unresolved = new ArrayList<>();
+            for (int i = 0; i < oidRevisions.size(); i++) {
+                StandardCodeRequest.OidRevision oidRevision = oidRevisions.get(i);
+                OidRevisionIndex.OidRevisions revisions = revisionsByOid.get(oidRevision.getOId());
+                MemberCursor cursor = cursors.get(i);
+                OidRevisionIndex.Revision revision = null;
+                if (revisions != null) {
+                    revision = cursor != null ? revisions.find(cursor.getResponseId())
+                            : revisions.resolve(revisionDays.get(i));
+                }
+                if (revision == null && cursor != null) {
+                    return createErrorResponse(request, "INVALID_PARAMETER",
+                            "Cursor does not belong to OID " + oidRevision.getOId());
+                }
+                if (revision == null) {
+                    unresolved.add(revisionDays.get(i) == null ? oidRevision.getOId()
+                            : oidRevision.getOId() + "@" + revisionDays.get(i));
+                }
+                resolved.add(revision);
+            }
+            if (!unresolved.isEmpty()) {
+                return createErrorResponse(request, "NOT_FOUND",
+                        "No stored standard codes for: " + String.join(", ", unresolved));
+            }
+
+            // Whole member lists that fit one page come ready-made from api_consumer_response
+            Set<Integer> consumerResponseIds = new LinkedHashSet<>();
+            for (int i = 0; i < oidRevisions.size(); i++) {
+                OidRevisionIndex.Revision revision = resolved.get(i);
+                if (cursors.get(i) == null && revision.getConsumerResponseId() != null
+                        && revision.getMemberCount() != null && revision.getMemberCount() <= pageSize) {
+                    consumerResponseIds.add(revision.getConsumerResponseId());
+                }
+            }
+            Map<Integer, String> consumerJsonById = new HashMap<>();
+            if (!consumerResponseIds.isEmpty()) {
+                for (ApiConsumerResponse consumerResponse : apiConsumerResponseRepository.findAllById(consumerResponseIds)) {
+                    consumerJsonById.put(consumerResponse.getId(), consumerResponse.getConsumerResponse());
+                }
+            }
+
+            // Read every other distinct page in one query; one extra member tells whether another page follows
+            Map<PageKey, List<OidMemberPageRow>> pages = new LinkedHashMap<>();
+            for (int i = 0; i < oidRevisions.size(); i++) {
+                if (precomputed(resolved.get(i), cursors.get(i), consumerJsonById) == null) {
+                    pages.putIfAbsent(pageKey(resolved.get(i), cursors.get(i)), new ArrayList<>());
+                }
+            }
+            Integer[] responseIds = new Integer[pages.size()];
+            Integer[] afterOrdinals = new Integer[pages.size()];
+            int next = 0;
+            for (PageKey key : pages.keySet()) {
+                responseIds[next] = key.responseId();
+                afterOrdinals[next++] = key.afterOrdinal();
+            }
+            if (!pages.isEmpty()) {
+                for (OidMemberPageRow row : oidHliApiResponseMemberRepository.findPages(responseIds, afterOrdinals,
+                        pageSize + 1)) {
+                    pages.get(new PageKey(row.getResponseId(), row.getAfterOrdinal())).add(row);
+                }
+            }
+
+            List<StandardCodeResponse.StandardCodeData> dataList = new ArrayList<>(oidRevisions.size());
+            for (int i = 0; i < oidRevisions.size(); i++) {
+                String oid = oidRevisions.get(i).getOId();
+                OidRevisionIndex.Revision revision = resolved.get(i);
+                String codeSubType = revisionsByOid.get(oid).getCodeSubType();
+                String consumerJson = precomputed(revision, cursors.get(i), consumerJsonById);
+                if (consumerJson != null) {
+                    StandardCodeResponse.StandardCodeData data = objectMapper.readValue(consumerJson,
+                            StandardCodeResponse.StandardCodeData.class);
+                    // The type indicator was fixed at projection; use the OID's current
+                    // code sub type, as member pages do
+                    data.getResults().set(0, consumerResponseProjector.typeIndicator(codeSubType));
+                    dataList.add(data);
+                } else {
+                    dataList.add(toStandardCodeData(oid, revision, codeSubType,
+                            pages.get(pageKey(revision, cursors.get(i))), pageSize));
+                }
             }
             
             // Create successful response
@@ -80,86 +246,63 @@ public class StandardCodeService {
         
         return response;
     }
+
+    /**
+     * @return The revision as YYYYMMDD, or null for the latest
+     * @throws DateTimeParseException if the revision is not a valid day
+     */
+    private static String normaliseRevision(String revision) {
+        if (revision == null || revision.isBlank()) {
+            return null;
+        }
+        String trimmed = revision.trim();
+        LocalDate day = LocalDate.parse(trimmed,
+                trimmed.indexOf('-') >= 0 ? DateTimeFormatter.ISO_LOCAL_DATE : DateTimeFormatter.BASIC_ISO_DATE);
+        return day.format(DateTimeFormatter.BASIC_ISO_DATE);
+    }
     
-    private StandardCodeResponse.StandardCodeData generateMockData(StandardCodeRequest.OidRevision oidRevision) {
+    private StandardCodeResponse.StandardCodeData toStandardCodeData(String oid, OidRevisionIndex.Revision revision,
+            String codeSubType, List<OidMemberPageRow> page, int pageSize) throws JsonProcessingException {
         StandardCodeResponse.StandardCodeData data = new StandardCodeResponse.StandardCodeData();
-        data.setOId(oidRevision.getOId());
+        data.setOId(oid);
+        data.setRevision(revision.getRevisionDay());
         
-        // Use the provided revision or default to current date if empty
-        String revision = oidRevision.getRevision();
-        if (revision == null || revision.isEmpty()) {
-            revision = "20250428"; // Today's date in YYYYMMDD format
-        }
-        data.setRevision(revision);
-        
-        // Generate mock results based on the OID
         List<StandardCodeResponse.StandardCodeResult> results = new ArrayList<>();
         
         // First result always indicates whether it's a questionnaire
-        StandardCodeResponse.StandardCodeResult typeIndicator = new StandardCodeResponse.StandardCodeResult();
+        results.add(consumerResponseProjector.typeIndicator(codeSubType));
         
-        // Decide if this should be a questionnaire or flat list based on the OID
-        boolean isQuestionnaire = oidRevision.getOId().endsWith("240");
-        typeIndicator.setIsQuestionnaire(isQuestionnaire);
-        results.add(typeIndicator);
-        
-        // Add more mock results
-        if (isQuestionnaire) {
-            // Add a question with options
-            StandardCodeResponse.StandardCodeResult question = createMockQuestion(oidRevision.getOId());
-            results.add(question);
-        } else {
-            // Add a flat list item
-            StandardCodeResponse.StandardCodeResult item = createMockFlatListItem(oidRevision.getOId());
-            results.add(item);
+        for (OidMemberPageRow row : page.subList(0, Math.min(pageSize, page.size()))) {
+            results.add(consumerResponseProjector.toResult(objectMapper.readValue(row.getMember(), CodingInfo.class)));
         }
         
         data.setResults(results);
-        data.setNextCursor(null); // No pagination for this example
+        // More members follow when the page came back with the extra row
+        data.setNextCursor(page.size() > pageSize
+                ? new MemberCursor(revision.getResponseId(), page.get(pageSize - 1).getOrdinal()).encode()
+                : null);
         
         return data;
     }
     
-    private StandardCodeResponse.StandardCodeResult createMockQuestion(String oid) {
-        StandardCodeResponse.StandardCodeResult question = new StandardCodeResponse.StandardCodeResult();
-        question.setId(UUID.randomUUID().toString());
-        question.setName("Example question for " + oid);
-        question.setCode("99802-" + (Math.abs(oid.hashCode()) % 10));
-        question.setDefinition(null);
-        question.setCodeSystemId("loinc");
-        
-        // Add some mock options
-        List<StandardCodeResponse.Option> options = new ArrayList<>();
-        
-        StandardCodeResponse.Option option1 = new StandardCodeResponse.Option();
-        option1.setId(UUID.randomUUID().toString());
-        option1.setName("Option A");
-        option1.setCode("LA33217-3");
-        options.add(option1);
-        
-        StandardCodeResponse.Option option2 = new StandardCodeResponse.Option();
-        option2.setId(UUID.randomUUID().toString());
-        option2.setName("Option B");
-        option2.setCode("LA33218-1");
-        options.add(option2);
-        
-        question.setOptions(options);
-        
-        return question;
+    /**
+     * @return The ready-made consumer JSON for a first page that holds every
+     *         member, or null if the page has to be read from member rows
+     */
+    private static String precomputed(OidRevisionIndex.Revision revision, MemberCursor cursor,
+            Map<Integer, String> consumerJsonById) {
+        if (cursor != null || revision.getConsumerResponseId() == null) {
+            return null;
+        }
+        return consumerJsonById.get(revision.getConsumerResponseId());
     }
-    
-    private StandardCodeResponse.StandardCodeResult createMockFlatListItem(String oid) {
-        StandardCodeResponse.StandardCodeResult item = new StandardCodeResponse.StandardCodeResult();
-        item.setId(UUID.randomUUID().toString());
-        item.setName("Standard code for " + oid);
-        item.setCode("99802-" + (Math.abs(oid.hashCode()) % 10));
-        item.setDefinition(null);
-        item.setCodeSystemId("loinc");
-        item.setOptions(new ArrayList<>()); // Empty options for flat list
-        
-        return item;
+
+    private static PageKey pageKey(OidRevisionIndex.Revision revision, MemberCursor cursor) {
+        return new PageKey(revision.getResponseId(), cursor != null ? cursor.getOrdinal() : 0);
     }
 
+    private record PageKey(int responseId, int afterOrdinal) {
+    }
 
     public void processOid(OidMaster oidMaster) {
     String methodName = oidMaster.getServiceMethodName();
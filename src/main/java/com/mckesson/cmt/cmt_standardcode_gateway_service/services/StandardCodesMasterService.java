@@ -1,17 +1,31 @@
 package com.mckesson.cmt.cmt_standardcode_gateway_service.services;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.component.CodeValueSetIndex;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.component.StandardCodesResponseCache;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.component.StandardCodesResponseSnapshot;
 import com.mckesson.cmt.cmt_standardcode_gateway_service.entities.StandardCodesMaster;
 import com.mckesson.cmt.cmt_standardcode_gateway_service.entities.StandardCodesResponse;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.exception.BadRequestException;
 import com.mckesson.cmt.cmt_standardcode_gateway_service.exception.ResourceNotFoundException;
 import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.StandardCodesMasterRepository;
 import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.StandardCodesResponseRepository;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.utils.GzipUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @Slf4j
@@ -19,8 +33,18 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class StandardCodesMasterService {
 
+    private static final int MASTER_LOOKUP_SLICE_SIZE = 10000;
+
     private final StandardCodesMasterRepository masterRepository;
     private final StandardCodesResponseRepository responseRepository;
+    private final StandardCodesResponseCache responseCache;
+    private final StandardCodesResponseSnapshot responseSnapshot;
+    private final CodeValueSetIndex codeValueSetIndex;
+    private final ObjectMapper objectMapper;
+
+    // Stored documents are served without parsing, so optionally check them here
+    @Value("${standard-codes.response.validate-on-write:true}")
+    private boolean validateOnWrite;
 
     @Transactional(readOnly = true)
     public StandardCodesMaster getMasterByUuid(UUID masterUuid) {
@@ -73,11 +97,17 @@ public class StandardCodesMasterService {
         master.setStatus("inactive");
         master.setUpdatedDatetime(LocalDateTime.now());
         masterRepository.save(master);
+
+        // Its responses are no longer returned for the master UUID
+        responseSnapshot.invalidateAfterCommit(masterUuid);
+        responseCache.invalidateAfterCommit(List.of(masterUuid));
+        codeValueSetIndex.reloadMasterAfterCommit(masterUuid);
     }
 
     @Transactional
     public StandardCodesResponse addResponse(UUID masterUuid, StandardCodesResponse response) {
         StandardCodesMaster master = getMasterByUuid(masterUuid);
+        validateJson(response.getApiResponse());
 
         response.setVersionUuid(UUID.randomUUID());
         response.setMasterUuid(masterUuid);
@@ -85,7 +115,12 @@ public class StandardCodesMasterService {
         response.setCreatedDatetime(LocalDateTime.now());
         response.setUpdatedDatetime(LocalDateTime.now());
 
-        return responseRepository.save(response);
+        StandardCodesResponse saved = responseRepository.saveAndFlush(response);
+        storeGzip(saved);
+        responseSnapshot.invalidateAfterCommit(masterUuid);
+        responseCache.invalidateAfterCommit(List.of(masterUuid));
+        codeValueSetIndex.reloadMasterAfterCommit(masterUuid);
+        return saved;
     }
 
     @Transactional(readOnly = true)
@@ -100,22 +135,118 @@ public class StandardCodesMasterService {
                         () -> new ResourceNotFoundException("No active response found for master UUID: " + masterUuid));
     }
 
+    /**
+     * Publish a new version of a response. A version is never changed once
+     * written, since it is served with a long-lived Cache-Control, so the given
+     * version is ended and a new version carrying the document replaces it
+     * under the same master.
+     *
+     * @param versionUuid The active version to supersede
+     * @param apiResponse The new response document
+     * @return The new version
+     */
     @Transactional
     public StandardCodesResponse updateResponse(UUID versionUuid, String apiResponse) {
-        StandardCodesResponse response = responseRepository.findByVersionUuid(versionUuid)
+        StandardCodesResponse current = responseRepository.findByVersionUuid(versionUuid)
                 .orElseThrow(
                         () -> new ResourceNotFoundException("Response not found with version UUID: " + versionUuid));
-
-        response.setApiResponse(apiResponse);
-        response.setUpdatedDatetime(LocalDateTime.now());
-
-        return responseRepository.save(response);
+        if (current.getEffectiveEndDate() != null) {
+            throw new BadRequestException("Response version " + versionUuid + " has already been superseded");
+        }
+        validateJson(apiResponse);
+
+        LocalDateTime now = LocalDateTime.now();
+        current.setEffectiveEndDate(now);
+        current.setUpdatedDatetime(now);
+        responseRepository.save(current);
+
+        StandardCodesResponse next = new StandardCodesResponse();
+        next.setVersionUuid(UUID.randomUUID());
+        next.setMasterUuid(current.getMasterUuid());
+        next.setStandardCodesMaster(current.getStandardCodesMaster());
+        next.setVersion(current.getVersion());
+        next.setApiResponse(apiResponse);
+        next.setEffectiveStartDate(now);
+        next.setCreatedDatetime(now);
+        next.setUpdatedDatetime(now);
+
+        StandardCodesResponse saved = responseRepository.saveAndFlush(next);
+        storeGzip(saved);
+
+        // The superseded version keeps its document, only the master moves on
+        if (current.getMasterUuid() != null) {
+            responseSnapshot.invalidateAfterCommit(current.getMasterUuid());
+            responseCache.invalidateAfterCommit(List.of(current.getMasterUuid()));
+            codeValueSetIndex.reloadMasterAfterCommit(current.getMasterUuid());
+        }
+        return saved;
     }
 
-    @Transactional
+    /**
+     * Get the active response of each master in one query (one per 10,000
+     * distinct UUIDs)
+     *
+     * @param masterUuids The master UUIDs
+     * @return The active responses, in the order of the given UUIDs
+     * @throws ResourceNotFoundException listing every UUID without an active response
+     */
+    @Transactional(readOnly = true)
     public List<StandardCodesResponse> getResponsesByMasterUuids(List<UUID> masterUuids) {
+        if (masterUuids.isEmpty()) {
+            return List.of();
+        }
+
+        // One query per slice keeps the IN list under the driver's bind parameter limit
+        List<UUID> distinctUuids = new ArrayList<>(new LinkedHashSet<>(masterUuids));
+        Map<UUID, StandardCodesResponse> byMasterUuid = new HashMap<>();
+        for (int from = 0; from < distinctUuids.size(); from += MASTER_LOOKUP_SLICE_SIZE) {
+            List<UUID> slice = distinctUuids.subList(from,
+                    Math.min(from + MASTER_LOOKUP_SLICE_SIZE, distinctUuids.size()));
+            // Newest first, so the first response seen per master is kept
+            for (StandardCodesResponse response : responseRepository.findActiveByMasterUuids(slice)) {
+                byMasterUuid.putIfAbsent(response.getStandardCodesMaster().getMasterUuid(), response);
+            }
+        }
+
+        List<UUID> missing = masterUuids.stream()
+                .filter(uuid -> !byMasterUuid.containsKey(uuid))
+                .distinct()
+                .toList();
+        if (!missing.isEmpty()) {
+            throw new ResourceNotFoundException("No active response found for master UUIDs: " + missing);
+        }
+
         return masterUuids.stream()
-                .map(this::getActiveResponse)
+                .map(byMasterUuid::get)
                 .toList();
     }
-}
\ No newline at end of file
+
+    /**
+     * Store the gzip copy of a saved response. It is compressed from the text
+     * Postgres returns for the jsonb column, which is normalized, so it decodes
+     * to exactly the bytes served uncompressed.
+     */
+    private void storeGzip(StandardCodesResponse response) {
+        String storedJson = responseRepository.findPayloadTextById(response.getId());
+        if (storedJson != null) {
+            response.setApiResponseGzip(GzipUtils.compress(storedJson.getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+
+    /**
+     * Check that a response document is well-formed JSON by streaming over its
+     * tokens, without building a tree
+     */
+    private void validateJson(String apiResponse) {
+        if (!validateOnWrite || apiResponse == null) {
+            return;
+        }
+        try (JsonParser parser = objectMapper.getFactory().createParser(apiResponse)) {
+            while (parser.nextToken() != null) {
+                // Consume every token
+            }
+        } catch (IOException e) {
+            throw new BadRequestException("Response is not valid JSON: " + e.getMessage(), e);
+        }
+    }
+}
@@ -1,16 +1,33 @@
 package com.mckesson.cmt.cmt_standardcode_gateway_service.services;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.component.CacheStatisticsRecorder;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.component.StandardCodesResponseCache;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.component.StandardCodesResponseCache.LoadStamp;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.component.StandardCodesResponseSnapshot;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.model.CachedPayload;
 import com.mckesson.cmt.cmt_standardcode_gateway_service.model.JsonResponse;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.model.RawJsonBytes;
 import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.StandardCodesResponseRepository;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.StandardCodesResponseRow;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.utils.JsonProjection;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.time.ZonedDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
@@ -18,40 +35,66 @@ import java.util.*;
 public class StandardCodesResponseService {
 
     private final StandardCodesResponseRepository responseRepository;
-    private final ObjectMapper objectMapper;
+    private final StandardCodesResponseCache responseCache;
+    private final StandardCodesResponseSnapshot responseSnapshot;
+    private final PlatformTransactionManager transactionManager;
+    private final CacheStatisticsRecorder cacheStatisticsRecorder;
+
+    // Database reads in progress per UUID, shared by concurrent requests
+    private final ConcurrentMap<UUID, CompletableFuture<List<CachedPayload>>> inFlightLoads = new ConcurrentHashMap<>();
 
-    @Transactional(readOnly = true)
     public JsonResponse getResponses(List<UUID> uuids) {
-        log.debug("Processing {} UUIDs", uuids.size());
+        return getResponses(uuids, null);
+    }
 
-        // Get responses from both queries
-        List<String> masterResponses = responseRepository.findActiveResponsesByMasterUuids(
-                uuids.toArray(UUID[]::new));
-        log.debug("Found {} responses from master UUIDs", masterResponses.size());
+    /**
+     * Get the documents matching the given UUIDs, optionally projected
+     *
+     * @param uuids      The requested master or version UUIDs
+     * @param projection The elements to keep in each document, or null for whole documents
+     * @return The documents in request order
+     */
+    // No surrounding transaction: a request waiting on another request's load
+    // must not hold a database connection meanwhile
+    public JsonResponse getResponses(List<UUID> uuids, JsonProjection projection) {
+        log.debug("Processing {} UUIDs", uuids.size());
+        long startNanos = System.nanoTime();
 
-        List<String> versionResponses = responseRepository.findResponsesByVersionUuids(
-                uuids.toArray(UUID[]::new));
-        log.debug("Found {} responses from version UUIDs", versionResponses.size());
+        Map<UUID, List<CachedPayload>> payloadsByUuid = new HashMap<>(responseCache.getAllPresent(uuids));
+        log.debug("Found {} of {} UUIDs in the response cache", payloadsByUuid.size(), uuids.size());
 
-        // Combine both response lists while avoiding duplicates
-        Set<String> uniqueResponses = new HashSet<>();
-        uniqueResponses.addAll(masterResponses);
-        uniqueResponses.addAll(versionResponses);
+        List<UUID> misses = uuids.stream()
+                .filter(uuid -> !payloadsByUuid.containsKey(uuid))
+                .distinct()
+                .toList();
+        List<UUID> unresolved = misses;
+        if (!misses.isEmpty()) {
+            payloadsByUuid.putAll(findInSnapshot(misses));
+            unresolved = misses.stream()
+                    .filter(uuid -> !payloadsByUuid.containsKey(uuid))
+                    .toList();
+        }
+        if (!unresolved.isEmpty()) {
+            payloadsByUuid.putAll(loadPayloads(unresolved));
+        }
 
-        // Convert responses to JsonNodes
-        List<JsonNode> jsonNodes = new ArrayList<>();
-        for (String response : uniqueResponses) {
-            try {
-                JsonNode node = objectMapper.readTree(response);
-                if (node != null) {
-                    jsonNodes.add(node);
-                }
-            } catch (Exception e) {
-                log.error("Error parsing JSON response: {}", e.getMessage());
+        // Combine the documents in request order, dropping rows matched by more than one UUID
+        Map<Integer, CachedPayload> uniquePayloads = new LinkedHashMap<>();
+        for (UUID uuid : uuids) {
+            for (CachedPayload payload : payloadsByUuid.getOrDefault(uuid, List.of())) {
+                uniquePayloads.putIfAbsent(payload.getResponseId(), payload);
             }
         }
 
+        // Splice the stored documents into the envelope as-is; jsonb is always
+        // valid JSON, so there is nothing to gain from parsing it here
+        List<JsonNode> jsonNodes = new ArrayList<>(uniquePayloads.size());
+        for (CachedPayload payload : uniquePayloads.values()) {
+            jsonNodes.add(RawJsonBytes.node(project(payload.getJson(), projection)));
+        }
+
         log.debug("Total unique responses found: {}", jsonNodes.size());
+        cacheStatisticsRecorder.recordResponseTime(unresolved.isEmpty(), System.nanoTime() - startNanos);
 
         return JsonResponse.builder()
                 .responseId(UUID.randomUUID().toString())
@@ -61,4 +104,200 @@ public class StandardCodesResponseService {
                 .responses(jsonNodes)
                 .build();
     }
-}
\ No newline at end of file
+
+    /**
+     * Get the version UUID of the current response of a master. It identifies
+     * the master's current document, so it serves as the master's ETag.
+     *
+     * @param masterUuid The master UUID
+     * @return The newest active version UUID, if the master has an active response
+     */
+    // No surrounding transaction, so a snapshot hit does not take a database connection
+    public Optional<UUID> findCurrentVersionUuid(UUID masterUuid) {
+        UUID versionUuid = responseSnapshot.findCurrentVersionUuid(masterUuid);
+        if (versionUuid != null) {
+            return Optional.of(versionUuid);
+        }
+        return responseRepository.findActiveVersionUuidsByMasterUuid(masterUuid).stream().findFirst();
+    }
+
+    /**
+     * Get the stored document of a single response version
+     *
+     * @param versionUuid The version UUID
+     * @return The document and its gzip copy, if the version exists
+     */
+    public Optional<CachedPayload> findVersionPayload(UUID versionUuid) {
+        List<CachedPayload> payloads = responseCache.getAllPresent(List.of(versionUuid)).get(versionUuid);
+        if (payloads == null) {
+            payloads = findInSnapshot(List.of(versionUuid)).get(versionUuid);
+        }
+        if (payloads == null) {
+            payloads = loadPayloads(List.of(versionUuid)).getOrDefault(versionUuid, List.of());
+        }
+        return payloads.stream().findFirst();
+    }
+
+    /**
+     * Write the documents matching the given UUIDs as newline-delimited JSON,
+     * one stored document per line. Documents in the cache or the response
+     * snapshot are written first and the rest are written as they are read
+     * from a database cursor, so memory use does not grow with the number of
+     * UUIDs. Streamed documents are not added to the response cache for the
+     * same reason.
+     *
+     * @param uuids      The requested master or version UUIDs
+     * @param projection The elements to keep in each document, or null for whole documents
+     * @param out        The stream to write to
+     * @return The number of documents written
+     */
+    public int streamResponses(List<UUID> uuids, JsonProjection projection, OutputStream out) throws IOException {
+        log.debug("Streaming responses for {} UUIDs", uuids.size());
+        long startNanos = System.nanoTime();
+
+        Set<Integer> writtenIds = new HashSet<>();
+        Map<UUID, List<CachedPayload>> cached = responseCache.getAllPresent(uuids);
+        List<UUID> misses = new ArrayList<>();
+        for (UUID uuid : new LinkedHashSet<>(uuids)) {
+            List<CachedPayload> payloads = cached.get(uuid);
+            if (payloads == null) {
+                payloads = responseSnapshot.get(uuid);
+            }
+            if (payloads == null) {
+                misses.add(uuid);
+                continue;
+            }
+            for (CachedPayload payload : payloads) {
+                if (writtenIds.add(payload.getResponseId())) {
+                    writeLine(out, project(payload.getJson(), projection));
+                }
+            }
+        }
+
+        if (!misses.isEmpty()) {
+            TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+            transactionTemplate.setReadOnly(true);
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    try (Stream<StandardCodesResponseRow> rows = responseRepository
+                            .streamResponseRowsByUuids(misses.toArray(UUID[]::new))) {
+                        rows.filter(row -> writtenIds.add(row.getId()))
+                                .forEach(row -> writeLine(out,
+                                        project(row.getPayload().getBytes(StandardCharsets.UTF_8), projection)));
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+
+        log.debug("Streamed {} responses for {} UUIDs", writtenIds.size(), uuids.size());
+        cacheStatisticsRecorder.recordResponseTime(misses.isEmpty(), System.nanoTime() - startNanos);
+        return writtenIds.size();
+    }
+
+    private static byte[] project(byte[] json, JsonProjection projection) {
+        return projection != null ? projection.apply(json) : json;
+    }
+
+    private static void writeLine(OutputStream out, byte[] json) {
+        // jsonb text output never contains a raw newline, so each document is one line
+        try {
+            out.write(json);
+            out.write('\n');
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Look up UUIDs missing from the cache in the response snapshot and cache
+     * the documents found in L1 only, so a snapshot older than the database
+     * is not shared with other replicas
+     */
+    private Map<UUID, List<CachedPayload>> findInSnapshot(List<UUID> uuids) {
+        LoadStamp stamp = responseCache.beginLocalLoad();
+        Map<UUID, List<CachedPayload>> found = responseSnapshot.getAllPresent(uuids);
+        if (!found.isEmpty()) {
+            log.debug("Found {} of {} UUIDs in the response snapshot", found.size(), uuids.size());
+            responseCache.putAll(found, stamp);
+        }
+        return found;
+    }
+
+    /**
+     * Read the documents of UUIDs missing from the cache. A UUID that another
+     * request is already reading is not read again; this request waits for
+     * that read and shares its documents. The remaining UUIDs are read in one
+     * query.
+     */
+    private Map<UUID, List<CachedPayload>> loadPayloads(List<UUID> uuids) {
+        Map<UUID, CompletableFuture<List<CachedPayload>>> owned = new HashMap<>();
+        Map<UUID, CompletableFuture<List<CachedPayload>>> joined = new HashMap<>();
+        for (UUID uuid : uuids) {
+            CompletableFuture<List<CachedPayload>> load = new CompletableFuture<>();
+            CompletableFuture<List<CachedPayload>> existing = inFlightLoads.putIfAbsent(uuid, load);
+            if (existing == null) {
+                owned.put(uuid, load);
+            } else {
+                joined.put(uuid, existing);
+            }
+        }
+
+        Map<UUID, List<CachedPayload>> loaded = new HashMap<>();
+        if (!owned.isEmpty()) {
+            try {
+                Map<UUID, List<CachedPayload>> read = readPayloads(owned.keySet());
+                owned.forEach((uuid, load) -> load.complete(read.getOrDefault(uuid, List.of())));
+                loaded.putAll(read);
+            } catch (RuntimeException e) {
+                owned.values().forEach(load -> load.completeExceptionally(e));
+                throw e;
+            } finally {
+                // The documents are cached by now, so later requests find them there
+                owned.forEach(inFlightLoads::remove);
+            }
+        }
+
+        if (!joined.isEmpty()) {
+            log.debug("Sharing in-flight reads of {} UUIDs", joined.size());
+        }
+        for (Map.Entry<UUID, CompletableFuture<List<CachedPayload>>> entry : joined.entrySet()) {
+            List<CachedPayload> payloads;
+            try {
+                payloads = entry.getValue().join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+            if (!payloads.isEmpty()) {
+                loaded.put(entry.getKey(), payloads);
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Read the documents of the given UUIDs in one query and cache the ones
+     * found. UUIDs without a matching response are not cached.
+     */
+    private Map<UUID, List<CachedPayload>> readPayloads(Collection<UUID> uuids) {
+        LoadStamp stamp = responseCache.beginLoad(uuids);
+        UUID[] uuidArray = uuids.toArray(UUID[]::new);
+
+        List<StandardCodesResponseRow> rows = responseRepository.findResponseRowsByUuids(uuidArray);
+        log.debug("Found {} responses for {} UUIDs", rows.size(), uuids.size());
+
+        Map<UUID, List<CachedPayload>> loaded = new HashMap<>();
+        for (StandardCodesResponseRow row : rows) {
+            CachedPayload payload = new CachedPayload(row.getId(),
+                    row.getPayload().getBytes(StandardCharsets.UTF_8), row.getPayloadGzip());
+            for (String matchedUuid : row.getMatchedUuids().split(",")) {
+                loaded.computeIfAbsent(UUID.fromString(matchedUuid), uuid -> new ArrayList<>()).add(payload);
+            }
+        }
+
+        responseCache.putAll(loaded, stamp);
+        return loaded;
+    }
+}
@@ -0,0 +1,245 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.component.ConsumerResponseProjector;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.component.OidRevisionIndex;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.contract.StandardCodeResponse;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.contract.groups.CodingInfo;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.dto.ValueSetDiff;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.exception.ResourceNotFoundException;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.OidHliApiResponseMemberRepository;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.OidMemberKeyRow;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.OidMemberPageRow;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes the members added, removed and changed between two stored HLI
+ * responses of an OID, so consumers can sync a value set incrementally instead
+ * of downloading every version in full.
+ *
+ * <p>
+ * Both responses' member keys are read sorted by (code system id, code) and
+ * compared in one merge; only the members that differ are then read in full.
+ * Members without a code system id or code have no key to pair them by, so
+ * they are matched by content instead and reported only as added or removed.
+ * Stored responses never change, so each diff is cached by its pair of
+ * response ids.
+ */
+@Service
+public class ValueSetDiffService {
+
+    private static final Logger log = LoggerFactory.getLogger(ValueSetDiffService.class);
+
+    private final OidRevisionIndex oidRevisionIndex;
+    private final OidHliApiResponseMemberRepository oidHliApiResponseMemberRepository;
+    private final ConsumerResponseProjector consumerResponseProjector;
+    private final ObjectMapper objectMapper;
+    private final Cache<Long, ValueSetDiff> cache;
+
+    public ValueSetDiffService(OidRevisionIndex oidRevisionIndex,
+            OidHliApiResponseMemberRepository oidHliApiResponseMemberRepository,
+            ConsumerResponseProjector consumerResponseProjector,
+            ObjectMapper objectMapper,
+            @Value("${standard-codes.diff.max-cached-members:1000000}") long maxCachedMembers) {
+        this.oidRevisionIndex = oidRevisionIndex;
+        this.oidHliApiResponseMemberRepository = oidHliApiResponseMemberRepository;
+        this.consumerResponseProjector = consumerResponseProjector;
+        this.objectMapper = objectMapper.copy()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxCachedMembers)
+                .<Long, ValueSetDiff>weigher((key, diff) -> 1 + diff.getAdded().size() + diff.getRemoved().size()
+                        + diff.getChanged().size())
+                .build();
+    }
+
+    /**
+     * Diff two stored versions of an OID
+     *
+     * @param oid         The OID
+     * @param fromVersion The older version
+     * @param toVersion   The newer version, or null for the current one
+     * @return The members added, removed and changed from one to the other
+     * @throws ResourceNotFoundException if the OID or a version is not stored
+     */
+    public ValueSetDiff diff(String oid, int fromVersion, Integer toVersion) {
+        OidRevisionIndex.OidRevisions revisions = oidRevisionIndex.getRevisions(List.of(oid)).get(oid);
+        if (revisions == null) {
+            throw new ResourceNotFoundException("OID not found: " + oid);
+        }
+        OidRevisionIndex.Revision from = revisions.findVersion(fromVersion);
+        if (from == null) {
+            throw new ResourceNotFoundException("Version " + fromVersion + " of OID " + oid + " is not stored");
+        }
+        OidRevisionIndex.Revision to = toVersion != null ? revisions.findVersion(toVersion) : revisions.resolve(null);
+        if (to == null) {
+            throw new ResourceNotFoundException(toVersion != null
+                    ? "Version " + toVersion + " of OID " + oid + " is not stored"
+                    : "No current response is stored for OID " + oid);
+        }
+
+        long key = (long) from.getResponseId() << 32 | to.getResponseId();
+        return cache.get(key, k -> compute(oid, revisions.getCodeSubType(), from, to));
+    }
+
+    private ValueSetDiff compute(String oid, String codeSubType, OidRevisionIndex.Revision from,
+            OidRevisionIndex.Revision to) {
+        long start = System.currentTimeMillis();
+        List<Integer> removed = new ArrayList<>();
+        List<Integer> added = new ArrayList<>();
+        List<Integer> changed = new ArrayList<>();
+
+        if (!from.getResponseId().equals(to.getResponseId())) {
+            List<OidMemberKeyRow> unkeyedBefore = new ArrayList<>();
+            List<OidMemberKeyRow> unkeyedAfter = new ArrayList<>();
+            List<OidMemberKeyRow> before = keyed(
+                    oidHliApiResponseMemberRepository.findMemberKeys(from.getResponseId()), unkeyedBefore);
+            List<OidMemberKeyRow> after = keyed(
+                    oidHliApiResponseMemberRepository.findMemberKeys(to.getResponseId()), unkeyedAfter);
+
+            int i = 0;
+            int j = 0;
+            while (i < before.size() || j < after.size()) {
+                int c = i == before.size() ? 1 : j == after.size() ? -1 : compareKeys(before.get(i), after.get(j));
+                if (c < 0) {
+                    removed.add(before.get(i++).getOrdinal());
+                } else if (c > 0) {
+                    added.add(after.get(j++).getOrdinal());
+                } else {
+                    if (!before.get(i).getMemberHash().equals(after.get(j).getMemberHash())) {
+                        changed.add(after.get(j).getOrdinal());
+                    }
+                    i++;
+                    j++;
+                }
+            }
+
+            matchByContent(unkeyedBefore, unkeyedAfter, removed, added);
+        }
+
+        ValueSetDiff diff = new ValueSetDiff();
+        diff.setOid(oid);
+        diff.setFromVersion(from.getVersion());
+        diff.setFromRevision(from.getRevisionDay());
+        diff.setToVersion(to.getVersion());
+        diff.setToRevision(to.getRevisionDay());
+        diff.setRemoved(members(from.getResponseId(), removed));
+        diff.setAdded(members(to.getResponseId(), added));
+        diff.setChanged(members(to.getResponseId(), changed));
+
+        log.info("Diffed OID {} versions {} and {}: {} added, {} removed, {} changed in {} ms", oid,
+                from.getVersion(), to.getVersion(), added.size(), removed.size(), changed.size(),
+                System.currentTimeMillis() - start);
+        return diff;
+    }
+
+    /**
+     * Read members by position and map them to the consumer shape, in ordinal
+     * order
+     */
+    private List<StandardCodeResponse.StandardCodeResult> members(Integer responseId, List<Integer> ordinals) {
+        if (ordinals.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<StandardCodeResponse.StandardCodeResult> results = new ArrayList<>(ordinals.size());
+        for (OidMemberPageRow row : oidHliApiResponseMemberRepository.findMembers(responseId,
+                ordinals.toArray(Integer[]::new))) {
+            try {
+                results.add(consumerResponseProjector.toResult(objectMapper.readValue(row.getMember(),
+                        CodingInfo.class)));
+            } catch (JsonProcessingException e) {
+                throw new UncheckedIOException("Failed to read member " + row.getOrdinal() + " of HLI response "
+                        + responseId, e);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Split off the members missing a code system id or code, keeping the
+     * sort order of the rest
+     */
+    private static List<OidMemberKeyRow> keyed(List<OidMemberKeyRow> rows, List<OidMemberKeyRow> unkeyed) {
+        List<OidMemberKeyRow> keyed = new ArrayList<>(rows.size());
+        for (OidMemberKeyRow row : rows) {
+            if (row.getCodeSystemId() == null || row.getCode() == null) {
+                unkeyed.add(row);
+            } else {
+                keyed.add(row);
+            }
+        }
+        return keyed;
+    }
+
+    /**
+     * Pair identical members in ordinal order; the ones left over were
+     * removed or added
+     */
+    private static void matchByContent(List<OidMemberKeyRow> before, List<OidMemberKeyRow> after,
+            List<Integer> removed, List<Integer> added) {
+        Map<String, Deque<Integer>> unmatched = new HashMap<>();
+        before.stream()
+                .sorted((a, b) -> Integer.compare(a.getOrdinal(), b.getOrdinal()))
+                .forEach(row -> unmatched.computeIfAbsent(row.getMemberHash(), hash -> new ArrayDeque<>())
+                        .add(row.getOrdinal()));
+
+        after.stream()
+                .sorted((a, b) -> Integer.compare(a.getOrdinal(), b.getOrdinal()))
+                .forEach(row -> {
+                    Deque<Integer> ordinals = unmatched.get(row.getMemberHash());
+                    if (ordinals != null && !ordinals.isEmpty()) {
+                        ordinals.poll();
+                    } else {
+                        added.add(row.getOrdinal());
+                    }
+                });
+
+        unmatched.values().forEach(removed::addAll);
+    }
+
+    /**
+     * Compare the keys of keyed members the way Postgres sorts them with
+     * COLLATE "C": by code system id, then code
+     */
+    private static int compareKeys(OidMemberKeyRow a, OidMemberKeyRow b) {
+        int c = compareBytes(a.getCodeSystemId(), b.getCodeSystemId());
+        return c != 0 ? c : compareBytes(a.getCode(), b.getCode());
+    }
+
+    /**
+     * Order of the UTF-8 encodings, which is code point order; String
+     * compareTo differs from it only for characters outside the BMP
+     */
+    private static int compareBytes(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int ca = a.codePointAt(i);
+            int cb = b.codePointAt(j);
+            if (ca != cb) {
+                return Integer.compare(ca, cb);
+            }
+            i += Character.charCount(ca);
+            j += Character.charCount(cb);
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    }
+}
@@ -0,0 +1,251 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.services;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.exception.BadRequestException;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.exception.ServiceUnavailableException;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.OidHliApiResponseRepository;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.StandardCodesResponseRepository;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.ValueSetExportRow;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Bulk export of every current response document, read in keyset batches of
+ * {@code batch-size} rows so memory use does not grow with the number of value
+ * sets. Each batch is its own short read-only transaction, so a download does
+ * not hold a pooled connection while the client reads. Rows are exported in id
+ * order and every row carries its id, so an interrupted export is resumed by
+ * asking for the rows after the last id received.
+ *
+ * <p>
+ * A download stops at a row boundary after {@code max-duration-ms}, before
+ * the async request timeout cuts it off; clients request again after the last
+ * id until a download is empty. At most {@code max-concurrent} exports run at
+ * once.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ValueSetExportService {
+
+    private final StandardCodesResponseRepository standardCodesResponseRepository;
+    private final OidHliApiResponseRepository oidHliApiResponseRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${standard-codes.export.batch-size:100}")
+    private int batchSize;
+
+    @Value("${standard-codes.export.max-concurrent:2}")
+    private int maxConcurrentExports;
+
+    @Value("${standard-codes.export.max-duration-ms:540000}")
+    private long maxDurationMillis;
+
+    private Semaphore exportSlots;
+
+    @PostConstruct
+    public void init() {
+        exportSlots = new Semaphore(maxConcurrentExports);
+    }
+
+    /**
+     * Which stored responses to export
+     */
+    public enum Source {
+        // Active responses of active standard codes masters
+        STANDARD_CODES("masterUuid", "versionUuid"),
+        // Current successful HLI responses of OIDs
+        OID("oid", "version");
+
+        private final String valueSetField;
+        private final String versionField;
+
+        Source(String valueSetField, String versionField) {
+            this.valueSetField = valueSetField;
+            this.versionField = versionField;
+        }
+
+        /**
+         * @param name The source as given in a request, e.g. standard-codes
+         * @throws BadRequestException if the source is unknown
+         */
+        public static Source parse(String name) {
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException("Unknown export source: '" + name + "'");
+            }
+        }
+    }
+
+    /**
+     * How the documents are written
+     */
+    public enum Format {
+        // One JSON object per line: the row id, value set, version and the document
+        NDJSON,
+        // One <value set>.<row id>.json entry per document
+        ZIP;
+
+        /**
+         * @param name The format as given in a request
+         * @throws BadRequestException if the format is unknown
+         */
+        public static Format parse(String name) {
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException("Unknown export format: '" + name + "'");
+            }
+        }
+    }
+
+    /**
+     * Take one of the concurrent export slots
+     *
+     * @return The slot, to be given back once the export has finished or will
+     *         no longer start
+     * @throws ServiceUnavailableException if every slot is in use
+     */
+    public ExportSlot acquireSlot() {
+        if (!exportSlots.tryAcquire()) {
+            throw new ServiceUnavailableException(
+                    "Too many exports are running; retry once one of the " + maxConcurrentExports + " finishes");
+        }
+        return new ExportSlot();
+    }
+
+    /**
+     * One taken export slot. The export marks it started before writing and
+     * gives it back when done; if the request ends first, for example because
+     * the async task was rejected or timed out while queued, the slot is given
+     * back without the export ever starting. Either way it is released once.
+     */
+    public final class ExportSlot {
+        private static final int PENDING = 0;
+        private static final int STARTED = 1;
+        private static final int RELEASED = 2;
+
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+
+        private ExportSlot() {
+        }
+
+        /**
+         * @return true if the export may run; false if the slot was already
+         *         given back because the request ended
+         */
+        public boolean start() {
+            return state.compareAndSet(PENDING, STARTED);
+        }
+
+        /**
+         * Give the slot back after the export has finished
+         */
+        public void release() {
+            if (state.getAndSet(RELEASED) != RELEASED) {
+                exportSlots.release();
+            }
+        }
+
+        /**
+         * Give the slot back if the export never started; a running export
+         * keeps it until it finishes
+         */
+        public void releaseIfNotStarted() {
+            if (state.compareAndSet(PENDING, RELEASED)) {
+                exportSlots.release();
+            }
+        }
+    }
+
+    /**
+     * Write the current responses after a row id, stopping at a row boundary
+     * once {@code max-duration-ms} has passed
+     *
+     * @param source  Which responses to export
+     * @param format  How to write them
+     * @param afterId The row id to resume after, 0 for a full export
+     * @param out     The stream to write to
+     * @return The number of documents written
+     * @throws IOException if writing to the stream fails
+     */
+    public int export(Source source, Format format, int afterId, OutputStream out) throws IOException {
+        long start = System.currentTimeMillis();
+        long deadline = start + maxDurationMillis;
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+
+        int count = 0;
+        int lastId = afterId;
+        ZipOutputStream zip = format == Format.ZIP ? new ZipOutputStream(out, StandardCharsets.UTF_8) : null;
+        List<ValueSetExportRow> batch;
+        do {
+            int after = lastId;
+            batch = transactionTemplate.execute(status -> source == Source.OID
+                    ? oidHliApiResponseRepository.findCurrentResponsesForExport(after, batchSize)
+                    : standardCodesResponseRepository.findActiveResponsesForExport(after, batchSize));
+            for (ValueSetExportRow row : batch) {
+                if (zip != null) {
+                    writeEntry(zip, row);
+                } else {
+                    writeLine(out, source, row);
+                }
+                lastId = row.getId();
+                count++;
+            }
+            // Once per batch, so the client sees progress without a flush per row
+            (zip != null ? zip : out).flush();
+        } while (batch.size() == batchSize && System.currentTimeMillis() < deadline);
+        if (zip != null) {
+            zip.finish();
+        }
+
+        if (batch.size() == batchSize) {
+            log.info("Stopped exporting {} responses after id {} once {} ms had passed; {} written", source, lastId,
+                    maxDurationMillis, count);
+        } else {
+            log.info("Exported {} {} responses after id {} as {} in {} ms", count, source, afterId, format,
+                    System.currentTimeMillis() - start);
+        }
+        return count;
+    }
+
+    private static void writeLine(OutputStream out, Source source, ValueSetExportRow row) throws IOException {
+        // The stored document is copied as is; jsonb text never contains a raw newline
+        String head = "{\"id\":" + row.getId()
+                + ",\"" + source.valueSetField + "\":\"" + quote(row.getValueSetId())
+                + "\",\"" + source.versionField + "\":\"" + quote(row.getVersion())
+                + "\",\"response\":";
+        out.write(head.getBytes(StandardCharsets.UTF_8));
+        out.write(row.getPayload().getBytes(StandardCharsets.UTF_8));
+        out.write('}');
+        out.write('\n');
+    }
+
+    private static String quote(String value) {
+        return value != null ? new String(JsonStringEncoder.getInstance().quoteAsString(value)) : "";
+    }
+
+    private static void writeEntry(ZipOutputStream zip, ValueSetExportRow row) throws IOException {
+        // The row id keeps entry names unique and shows where to resume
+        zip.putNextEntry(new ZipEntry(row.getValueSetId() + "." + row.getId() + ".json"));
+        zip.write(row.getPayload().getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+    }
+}
@@ -0,0 +1,39 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Utility class to gzip response documents once so they can be served
+ * compressed without compressing on every request
+ */
+public class GzipUtils {
+
+    private GzipUtils() {
+    }
+
+    /**
+     * Gzip a document at the best compression level. The cost is paid once per
+     * version, so the smallest output is worth the extra CPU.
+     *
+     * @param data the bytes to compress
+     * @return the gzip encoded bytes
+     */
+    public static byte[] compress(byte[] data) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.max(64, data.length / 8));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(buffer, 8192) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gzip.write(data);
+        } catch (IOException e) {
+            // Writing to a byte array does not fail
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+}
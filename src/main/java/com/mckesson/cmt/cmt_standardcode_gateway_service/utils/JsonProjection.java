@@ -0,0 +1,152 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.utils;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.filter.FilteringParserDelegate;
+import com.fasterxml.jackson.core.filter.TokenFilter;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.exception.BadRequestException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps only the selected elements of a JSON document, in the spirit of the
+ * FHIR {@code _elements} parameter but allowing nested paths. The document is
+ * filtered token by token while it is copied, so no tree is built.
+ *
+ * <p>
+ * Paths are dot separated ({@code compose.include.concept.code}) or JSON
+ * pointers ({@code /compose/include/concept/code}). Arrays are traversed
+ * implicitly: a path that continues below an array applies to every element,
+ * and {@code []}, {@code *} and numeric pointer segments are ignored. A path
+ * keeps the whole value it ends at. {@code resourceType} is always kept.
+ */
+public class JsonProjection {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final PathFilter root = new PathFilter();
+
+    private JsonProjection() {
+    }
+
+    /**
+     * Compile the requested elements into a projection
+     *
+     * @param elements the element paths to keep
+     * @return the projection, or null if no elements were requested
+     * @throws BadRequestException if a path is blank
+     */
+    public static JsonProjection of(List<String> elements) {
+        if (elements == null || elements.isEmpty()) {
+            return null;
+        }
+
+        JsonProjection projection = new JsonProjection();
+        projection.root.add(List.of("resourceType"));
+        for (String element : elements) {
+            // Allow a single comma separated value, as FHIR sends _elements
+            for (String path : element.split(",")) {
+                List<String> segments = parse(path.trim());
+                if (segments.isEmpty()) {
+                    throw new BadRequestException("Invalid element path: '" + element + "'");
+                }
+                projection.root.add(segments);
+            }
+        }
+        return projection;
+    }
+
+    /**
+     * Apply the projection to a document
+     *
+     * @param json the UTF-8 encoded JSON document
+     * @return the projected document as UTF-8 JSON
+     */
+    public byte[] apply(byte[] json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.min(json.length, 8192));
+        try (JsonParser parser = new FilteringParserDelegate(JSON_FACTORY.createParser(json), root,
+                TokenFilter.Inclusion.INCLUDE_ALL_AND_PATH, true);
+                JsonGenerator generator = JSON_FACTORY.createGenerator(out)) {
+            if (parser.nextToken() == null) {
+                // Nothing matched; keep the result a JSON object
+                generator.writeStartObject();
+                generator.writeEndObject();
+            } else {
+                generator.copyCurrentStructure(parser);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to project stored JSON document", e);
+        }
+        return out.toByteArray();
+    }
+
+    private static List<String> parse(String path) {
+        List<String> segments = new ArrayList<>();
+        if (path.startsWith("/")) {
+            for (String segment : path.substring(1).split("/")) {
+                segment = segment.replace("~1", "/").replace("~0", "~");
+                if (!segment.isEmpty() && !segment.equals("*") && !segment.equals("-")
+                        && !segment.chars().allMatch(Character::isDigit)) {
+                    segments.add(segment);
+                }
+            }
+        } else {
+            for (String segment : path.split("\\.")) {
+                segment = segment.endsWith("[]") ? segment.substring(0, segment.length() - 2) : segment;
+                if (!segment.isEmpty() && !segment.equals("*")) {
+                    segments.add(segment);
+                }
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * One level of the path trie. A node without children keeps everything
+     * below it; scalars are only kept when a path ends at them.
+     */
+    private static final class PathFilter extends TokenFilter {
+
+        private final Map<String, PathFilter> children = new HashMap<>();
+        private boolean leaf;
+
+        void add(List<String> segments) {
+            PathFilter node = this;
+            for (String segment : segments) {
+                if (node.leaf) {
+                    // A shorter path already keeps this whole subtree
+                    return;
+                }
+                node = node.children.computeIfAbsent(segment, key -> new PathFilter());
+            }
+            node.leaf = true;
+            node.children.clear();
+        }
+
+        @Override
+        public TokenFilter includeProperty(String name) {
+            PathFilter child = children.get(name);
+            if (child == null) {
+                return null;
+            }
+            return child.leaf ? TokenFilter.INCLUDE_ALL : child;
+        }
+
+        @Override
+        public TokenFilter includeElement(int index) {
+            return this;
+        }
+
+        @Override
+        protected boolean _includeScalar() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.utils;
+
+import com.mckesson.cmt.cmt_standardcode_gateway_service.exception.BadRequestException;
+
+/**
+ * Opaque cursor into the members of a stored HLI response. It pins the stored
+ * response, so later pages come from the same revision even after a newer one
+ * is loaded, and the last member returned, so the next page is a key seek.
+ *
+ * <p>
+ * Encoded by {@link OpaqueCursor} with the fields {@code <responseId>:<ordinal>}.
+ */
+public class MemberCursor {
+
+    private final int responseId;
+    private final int ordinal;
+
+    public MemberCursor(int responseId, int ordinal) {
+        this.responseId = responseId;
+        this.ordinal = ordinal;
+    }
+
+    public int getResponseId() {
+        return responseId;
+    }
+
+    public int getOrdinal() {
+        return ordinal;
+    }
+
+    /**
+     * @return The cursor as an opaque string
+     */
+    public String encode() {
+        return OpaqueCursor.encode(responseId, ordinal);
+    }
+
+    /**
+     * Decode a cursor returned by {@link #encode()}
+     *
+     * @param cursor the opaque cursor
+     * @return the decoded cursor
+     * @throws BadRequestException if the cursor is malformed or of an unknown
+     *                             format version
+     */
+    public static MemberCursor decode(String cursor) {
+        String[] fields = OpaqueCursor.decode(cursor, "[1-9][0-9]{0,8}", "[0-9]{1,9}");
+        return new MemberCursor(Integer.parseInt(fields[0]), Integer.parseInt(fields[1]));
+    }
+}
@@ -0,0 +1,63 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.utils;
+
+import com.mckesson.cmt.cmt_standardcode_gateway_service.exception.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.StringJoiner;
+
+/**
+ * Encoding shared by the keyset cursors: URL-safe base64 of
+ * {@code 1:<field>:<field>...}. The leading format version lets the encoding
+ * change without breaking cursors in flight.
+ */
+final class OpaqueCursor {
+
+    private static final String FORMAT_VERSION = "1";
+
+    private OpaqueCursor() {
+    }
+
+    /**
+     * @param fields The numeric fields of the cursor, in order
+     * @return The cursor as an opaque string
+     */
+    static String encode(long... fields) {
+        StringJoiner plain = new StringJoiner(":").add(FORMAT_VERSION);
+        for (long field : fields) {
+            plain.add(Long.toString(field));
+        }
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(plain.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Decode a cursor returned by {@link #encode(long...)}
+     *
+     * @param cursor        the opaque cursor
+     * @param fieldPatterns one regular expression per expected field
+     * @return the fields, in order
+     * @throws BadRequestException if the cursor is malformed, of an unknown
+     *                             format version or a field does not match
+     *                             its pattern
+     */
+    static String[] decode(String cursor, String... fieldPatterns) {
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.US_ASCII).split(":");
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid cursor: '" + cursor + "'", e);
+        }
+        if (parts.length != fieldPatterns.length + 1 || !parts[0].equals(FORMAT_VERSION)) {
+            throw new BadRequestException("Invalid cursor: '" + cursor + "'");
+        }
+        String[] fields = new String[fieldPatterns.length];
+        for (int i = 0; i < fieldPatterns.length; i++) {
+            if (!parts[i + 1].matches(fieldPatterns[i])) {
+                throw new BadRequestException("Invalid cursor: '" + cursor + "'");
+            }
+            fields[i] = parts[i + 1];
+        }
+        return fields;
+    }
+}
@@ -0,0 +1,50 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.utils;
+
+import com.mckesson.cmt.cmt_standardcode_gateway_service.exception.BadRequestException;
+
+/**
+ * Opaque keyset cursor into ranked OID master search results: the score and id
+ * of the last row returned, so the next page continues after it without an
+ * offset.
+ *
+ * <p>
+ * Encoded by {@link OpaqueCursor} with the fields {@code <score>:<id>}.
+ */
+public class SearchCursor {
+
+    private final int score;
+    private final long id;
+
+    public SearchCursor(int score, long id) {
+        this.score = score;
+        this.id = id;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * @return The cursor as an opaque string
+     */
+    public String encode() {
+        return OpaqueCursor.encode(score, id);
+    }
+
+    /**
+     * Decode a cursor returned by {@link #encode()}
+     *
+     * @param cursor the opaque cursor
+     * @return the decoded cursor
+     * @throws BadRequestException if the cursor is malformed or of an unknown
+     *                             format version
+     */
+    public static SearchCursor decode(String cursor) {
+        String[] fields = OpaqueCursor.decode(cursor, "[0-9]{1,9}", "[0-9]{1,18}");
+        return new SearchCursor(Integer.parseInt(fields[0]), Long.parseLong(fields[1]));
+    }
+}
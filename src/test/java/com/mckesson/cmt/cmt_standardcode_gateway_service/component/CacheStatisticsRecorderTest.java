@@ -0,0 +1,101 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.component;
+
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.CacheStatisticsRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Hourly statistics written through a repository stand-in that can be made to
+ * fail
+ */
+class CacheStatisticsRecorderTest {
+
+    private static final int CONSUMER_MISSES = 5;
+    private static final int AVG_CACHED = 7;
+    private static final int AVG_UNCACHED = 8;
+    private static final int P95 = 9;
+    private static final int P99 = 10;
+
+    private final List<Object[]> writes = new ArrayList<>();
+    private boolean failNextWrite;
+
+    private final StandardCodesResponseCache responseCache = new StandardCodesResponseCache(
+            new SimpleMeterRegistry(), new NoSharedResponseCache(), 1 << 20, 60);
+    private final CacheStatisticsRecorder recorder = new CacheStatisticsRecorder(responseCache, repository(), true);
+
+    @Test
+    void hourIsWrittenWithAveragesAndPercentiles() {
+        recorder.recordResponseTime(true, millis(10));
+        recorder.recordResponseTime(true, millis(30));
+        recorder.recordResponseTime(false, millis(50));
+
+        recorder.recordHour();
+
+        Object[] hour = writes.get(0);
+        assertEquals(20, hour[AVG_CACHED]);
+        assertEquals(50, hour[AVG_UNCACHED]);
+        assertEquals(50, hour[P95]);
+        assertEquals(50, hour[P99]);
+    }
+
+    @Test
+    void successfulWriteStartsTheNextHourEmpty() {
+        recorder.recordResponseTime(true, millis(10));
+        recorder.recordHour();
+
+        recorder.recordHour();
+
+        Object[] hour = writes.get(1);
+        assertNull(hour[AVG_CACHED]);
+        assertNull(hour[AVG_UNCACHED]);
+        assertNull(hour[P95]);
+    }
+
+    @Test
+    void failedWriteKeepsTheHourForTheNextRun() {
+        responseCache.getAllPresent(List.of(UUID.randomUUID()));
+        recorder.recordResponseTime(true, millis(10));
+        recorder.recordResponseTime(false, millis(40));
+        failNextWrite = true;
+        recorder.recordHour();
+
+        responseCache.getAllPresent(List.of(UUID.randomUUID()));
+        recorder.recordResponseTime(true, millis(20));
+        recorder.recordHour();
+
+        assertEquals(2, writes.size());
+        Object[] hour = writes.get(1);
+        assertEquals(2L, hour[CONSUMER_MISSES]);
+        assertEquals(15, hour[AVG_CACHED]);
+        assertEquals(40, hour[AVG_UNCACHED]);
+        assertEquals(40, hour[P99]);
+    }
+
+    private static long millis(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    private CacheStatisticsRepository repository() {
+        return (CacheStatisticsRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { CacheStatisticsRepository.class }, (proxy, method, args) -> {
+                    if (!method.getName().equals("addHourlyCounters")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    writes.add(args);
+                    if (failNextWrite) {
+                        failNextWrite = false;
+                        throw new IllegalStateException("database unavailable");
+                    }
+                    return 1;
+                });
+    }
+}
@@ -0,0 +1,270 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.component;
+
+import com.mckesson.cmt.cmt_standardcode_gateway_service.dto.ValueSetReference;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.StandardCodesActiveResponsesRow;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.StandardCodesMemberCodeRow;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.StandardCodesResponseRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Code to value set lookups, with standard codes masters loaded from a
+ * repository stand-in holding their active members
+ */
+class CodeValueSetIndexTest {
+
+    private static final String LOINC = "http://loinc.org";
+    private static final String OID_A = "2.16.840.1.113883.3.464.1003.101.12.1001";
+    private static final String OID_B = "2.16.840.1.113883.3.464.1003.101.12.1002";
+    private static final String MASTER = UUID.randomUUID().toString();
+
+    // Master UUID -> active members as {system, code, display}
+    private final Map<String, List<String[]>> activeMembers = new LinkedHashMap<>();
+    private final Map<String, String> activeResponseIds = new LinkedHashMap<>();
+    private final List<String> queries = new ArrayList<>();
+    private boolean failQueries;
+
+    private final ConceptNameIndex conceptNameIndex = new ConceptNameIndex(true);
+    private final CodeValueSetIndex index = new CodeValueSetIndex(repository(), new CodeSystemRegistry(null),
+            conceptNameIndex, transactionManager(), true);
+
+    @Test
+    void codeIsFoundInEveryValueSetHoldingItInIndexingOrder() {
+        updateOid(OID_B, "1234-5", "2345-7");
+        updateOid(OID_A, "1234-5");
+
+        assertEquals(List.of(OID_B, OID_A), ids(index.find(LOINC, "1234-5")));
+        assertEquals(List.of(OID_B), ids(index.find(LOINC, "2345-7")));
+        assertTrue(index.find(LOINC, "9999-9").isEmpty());
+        assertTrue(index.find("http://snomed.info/sct", "1234-5").isEmpty());
+    }
+
+    @Test
+    void codeSystemMayBeGivenAsUriOidRootOrName() {
+        updateOid(OID_A, "1234-5");
+
+        assertEquals(List.of(OID_A), ids(index.find("2.16.840.1.113883.6.1", "1234-5")));
+        assertEquals(List.of(OID_A), ids(index.find("LOINC", "1234-5")));
+    }
+
+    @Test
+    void changedValueSetKeepsOnlyItsNewCodes() {
+        updateOid(OID_A, "1234-5", "2345-7");
+        updateOid(OID_B, "2345-7");
+
+        updateOid(OID_A, "2345-7", "3456-9");
+
+        assertTrue(index.find(LOINC, "1234-5").isEmpty());
+        assertEquals(List.of(OID_A, OID_B), ids(index.find(LOINC, "2345-7")));
+        assertEquals(List.of(OID_A), ids(index.find(LOINC, "3456-9")));
+    }
+
+    @Test
+    void droppedValueSetIsNoLongerFound() {
+        updateOid(OID_A, "1234-5");
+        updateOid(OID_B, "1234-5");
+
+        index.update(CodeValueSetIndex.OID, OID_A, null, null);
+
+        assertEquals(List.of(OID_B), ids(index.find(LOINC, "1234-5")));
+    }
+
+    @Test
+    void firstRefreshLoadsAllActiveMasters() {
+        storeMaster(MASTER, "1", new String[] { LOINC, "1234-5", "Glucose" });
+
+        assertFalse(index.isLoaded());
+        index.refresh();
+
+        assertTrue(index.isLoaded());
+        ValueSetReference found = index.find("LOINC", "1234-5").get(0);
+        assertEquals(CodeValueSetIndex.STANDARD_CODES_MASTER, found.getType());
+        assertEquals(MASTER, found.getId());
+        assertEquals(List.of("findActiveResponseIds", "streamActiveMemberCodes"), queries);
+    }
+
+    @Test
+    void laterRefreshReloadsOnlyChangedMasters() {
+        String unchanged = UUID.randomUUID().toString();
+        storeMaster(MASTER, "1", new String[] { LOINC, "1234-5", "Glucose" });
+        storeMaster(unchanged, "2", new String[] { LOINC, "1234-5", "Glucose" });
+        index.refresh();
+        queries.clear();
+
+        storeMaster(MASTER, "1,3", new String[] { LOINC, "2345-7", "Glucose [Mass/volume]" });
+        index.refresh();
+
+        assertEquals(List.of("findActiveResponseIds", "findActiveResponseIds[" + MASTER + "]",
+                "findActiveMemberCodes[" + MASTER + "]"), queries);
+        assertEquals(List.of(unchanged), ids(index.find(LOINC, "1234-5")));
+        assertEquals(List.of(MASTER), ids(index.find(LOINC, "2345-7")));
+    }
+
+    @Test
+    void masterWithoutActiveResponsesIsDroppedOnRefresh() {
+        storeMaster(MASTER, "1", new String[] { LOINC, "1234-5", "Glucose" });
+        index.refresh();
+
+        activeMembers.remove(MASTER);
+        activeResponseIds.remove(MASTER);
+        index.refresh();
+
+        assertTrue(index.find(LOINC, "1234-5").isEmpty());
+    }
+
+    @Test
+    void failedRefreshKeepsTheIndexedCodes() {
+        storeMaster(MASTER, "1", new String[] { LOINC, "1234-5", "Glucose" });
+        index.refresh();
+
+        storeMaster(MASTER, "1,3", new String[] { LOINC, "2345-7", "Glucose [Mass/volume]" });
+        failQueries = true;
+        index.refresh();
+
+        assertEquals(List.of(MASTER), ids(index.find(LOINC, "1234-5")));
+    }
+
+    @Test
+    void displayNamesArePassedToTheTypeAhead() {
+        storeMaster(MASTER, "1", new String[] { LOINC, "1234-5", "Glucose [Moles/volume] in Blood" });
+        index.refresh();
+
+        conceptNameIndex.rebuild();
+
+        assertEquals("1234-5", conceptNameIndex.suggest("moles", 5).get(0).getCode());
+    }
+
+    @Test
+    void disabledIndexFindsNothing() {
+        CodeValueSetIndex disabled = new CodeValueSetIndex(repository(), new CodeSystemRegistry(null),
+                conceptNameIndex, transactionManager(), false);
+        MembershipSet members = new MembershipSet.Builder(1).add(disabled.systemId(LOINC), "1234-5").build(0);
+
+        disabled.update(CodeValueSetIndex.OID, OID_A, members, null);
+        disabled.refresh();
+
+        assertTrue(disabled.find(LOINC, "1234-5").isEmpty());
+        assertTrue(queries.isEmpty());
+    }
+
+    private void updateOid(String oid, String... codes) {
+        MembershipSet.Builder builder = new MembershipSet.Builder(1);
+        for (String code : codes) {
+            builder.add(index.systemId(LOINC), code);
+        }
+        index.update(CodeValueSetIndex.OID, oid, builder.build(0), null);
+    }
+
+    private void storeMaster(String masterUuid, String responseIds, String[]... members) {
+        activeMembers.put(masterUuid, List.of(members));
+        activeResponseIds.put(masterUuid, responseIds);
+    }
+
+    private static List<String> ids(List<ValueSetReference> references) {
+        return references.stream().map(ValueSetReference::getId).toList();
+    }
+
+    private PlatformTransactionManager transactionManager() {
+        return new PlatformTransactionManager() {
+            @Override
+            public TransactionStatus getTransaction(TransactionDefinition definition) {
+                return new SimpleTransactionStatus();
+            }
+
+            @Override
+            public void commit(TransactionStatus status) {
+            }
+
+            @Override
+            public void rollback(TransactionStatus status) {
+            }
+        };
+    }
+
+    private StandardCodesResponseRepository repository() {
+        return (StandardCodesResponseRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { StandardCodesResponseRepository.class }, (proxy, method, args) -> {
+                    List<String> masterUuids = args != null
+                            ? Arrays.stream((UUID[]) args[0]).map(UUID::toString).toList()
+                            : new ArrayList<>(activeMembers.keySet());
+                    queries.add(method.getName() + (args != null ? masterUuids.toString() : ""));
+                    if (failQueries) {
+                        throw new IllegalStateException("database unavailable");
+                    }
+                    if (method.getName().equals("findActiveResponseIds")) {
+                        return masterUuids.stream()
+                                .filter(activeResponseIds::containsKey)
+                                .map(this::responseIdsRow)
+                                .toList();
+                    }
+                    if (method.getName().equals("streamActiveMemberCodes")) {
+                        return memberCodeRows(masterUuids).stream();
+                    }
+                    if (method.getName().equals("findActiveMemberCodes")) {
+                        return memberCodeRows(masterUuids);
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private StandardCodesActiveResponsesRow responseIdsRow(String masterUuid) {
+        String responseIds = activeResponseIds.get(masterUuid);
+        return new StandardCodesActiveResponsesRow() {
+            @Override
+            public String getMasterUuid() {
+                return masterUuid;
+            }
+
+            @Override
+            public String getResponseIds() {
+                return responseIds;
+            }
+        };
+    }
+
+    // Grouped by master, like the queries
+    private List<StandardCodesMemberCodeRow> memberCodeRows(List<String> masterUuids) {
+        List<StandardCodesMemberCodeRow> rows = new ArrayList<>();
+        for (String masterUuid : masterUuids) {
+            for (String[] member : activeMembers.getOrDefault(masterUuid, List.of())) {
+                rows.add(new StandardCodesMemberCodeRow() {
+                    @Override
+                    public String getMasterUuid() {
+                        return masterUuid;
+                    }
+
+                    @Override
+                    public String getCodeSystem() {
+                        return member[0];
+                    }
+
+                    @Override
+                    public String getCode() {
+                        return member[1];
+                    }
+
+                    @Override
+                    public String getDisplay() {
+                        return member[2];
+                    }
+                });
+            }
+        }
+        return rows;
+    }
+}
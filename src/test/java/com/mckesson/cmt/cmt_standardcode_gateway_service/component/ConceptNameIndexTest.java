@@ -0,0 +1,133 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.component;
+
+import com.mckesson.cmt.cmt_standardcode_gateway_service.dto.ConceptSuggestion;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConceptNameIndexTest {
+
+    private static final int LOINC = 0;
+    private static final String LOINC_URI = "http://loinc.org";
+    private static final String OID = CodeValueSetIndex.OID;
+
+    private final ConceptNameIndex index = new ConceptNameIndex(true);
+
+    @Test
+    void anyWordOfTheDisplayMatchesItsPrefix() {
+        index.update(OID, "vs-1", names(
+                "1234-5", "Glucose [Moles/volume] in Blood",
+                "2345-7", "Hemoglobin A1c"));
+        index.rebuild();
+
+        assertEquals(List.of("1234-5"), codes(index.suggest("gluc", 10)));
+        assertEquals(List.of("1234-5"), codes(index.suggest("moles/vol", 10)));
+        assertEquals(List.of("1234-5"), codes(index.suggest("IN   blood", 10)));
+        assertEquals(List.of("2345-7"), codes(index.suggest("a1", 10)));
+        assertTrue(index.suggest("lucose", 10).isEmpty());
+    }
+
+    @Test
+    void conceptsInMoreValueSetsComeFirst() {
+        index.update(OID, "vs-1", names("1234-5", "Glucose in Blood", "2339-0", "Glucose in Serum"));
+        index.update(OID, "vs-2", names("2339-0", "Glucose in Serum"));
+        index.update(OID, "vs-3", names("2339-0", "Glucose in Serum", "3456-9", "Glucose in Urine"));
+        index.rebuild();
+
+        List<ConceptSuggestion> suggestions = index.suggest("glucose", 10);
+
+        assertEquals("2339-0", suggestions.get(0).getCode());
+        assertEquals(3, suggestions.get(0).getValueSetCount());
+        assertEquals(LOINC_URI, suggestions.get(0).getSystem());
+        assertEquals(Set.of("1234-5", "3456-9"), Set.copyOf(codes(suggestions.subList(1, 3))));
+    }
+
+    @Test
+    void conceptIsSuggestedOnceWhateverWordsMatch() {
+        index.update(OID, "vs-1", names("1234-5", "Glucose glucose Glucometer"));
+        index.rebuild();
+
+        assertEquals(1, index.suggest("gluc", 10).size());
+    }
+
+    @Test
+    void limitCapsTheSuggestions() {
+        index.update(OID, "vs-1", names("1", "Glucose a", "2", "Glucose b", "3", "Glucose c"));
+        index.rebuild();
+
+        assertEquals(2, index.suggest("glucose", 2).size());
+        assertTrue(index.suggest("glucose", 0).isEmpty());
+        assertTrue(index.suggest("  ", 10).isEmpty());
+    }
+
+    @Test
+    void changesAreSearchableAfterTheNextRebuild() {
+        index.update(OID, "vs-1", names("1234-5", "Glucose"));
+        assertTrue(index.suggest("glucose", 10).isEmpty());
+
+        index.rebuild();
+
+        assertEquals(1, index.size());
+        assertEquals(1, index.suggest("glucose", 10).size());
+    }
+
+    @Test
+    void conceptLeavesWithTheLastValueSetHoldingIt() {
+        index.update(OID, "vs-1", names("1234-5", "Glucose"));
+        index.update(OID, "vs-2", names("1234-5", "Glucose", "2345-7", "Hemoglobin"));
+        index.rebuild();
+
+        index.update(OID, "vs-2", names("2345-7", "Hemoglobin"));
+        index.rebuild();
+        assertEquals(1, index.suggest("glucose", 10).get(0).getValueSetCount());
+
+        index.update(OID, "vs-1", null);
+        index.rebuild();
+        assertTrue(index.suggest("glucose", 10).isEmpty());
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void latestDisplayNamesTheConcept() {
+        index.update(OID, "vs-1", names("1234-5", "Glucose"));
+        index.update(OID, "vs-2", names("1234-5", "Glucose [Moles/volume] in Blood"));
+        index.rebuild();
+
+        assertEquals("Glucose [Moles/volume] in Blood", index.suggest("glucose", 10).get(0).getDisplay());
+        assertEquals(2, index.suggest("moles", 10).get(0).getValueSetCount());
+    }
+
+    @Test
+    void conceptWithoutDisplayIsNotSearchable() {
+        index.update(OID, "vs-1", names("1234-5", null));
+        index.rebuild();
+
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void disabledIndexSuggestsNothing() {
+        ConceptNameIndex disabled = new ConceptNameIndex(false);
+
+        disabled.update(OID, "vs-1", names("1234-5", "Glucose"));
+        disabled.rebuild();
+
+        assertTrue(disabled.suggest("glucose", 10).isEmpty());
+    }
+
+    private static ConceptNameIndex.ConceptNames names(String... codesAndDisplays) {
+        ConceptNameIndex.ConceptNames names = new ConceptNameIndex.ConceptNames();
+        for (int i = 0; i < codesAndDisplays.length; i += 2) {
+            names.add(LOINC, LOINC_URI, codesAndDisplays[i], codesAndDisplays[i + 1]);
+        }
+        return names;
+    }
+
+    private static List<String> codes(List<ConceptSuggestion> suggestions) {
+        return suggestions.stream().map(ConceptSuggestion::getCode).toList();
+    }
+}
@@ -0,0 +1,196 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.contract.StandardCodeResponse;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.contract.groups.CodingInfo;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.contract.groups.GroupMemberHLIRes;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.contract.groups.Property;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.entities.ApiConsumerResponse;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.entities.OidHliApiResponse;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.entities.OidMaster;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.ApiConsumerResponseRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Projection of HLI members into the consumer contract, saved through a
+ * repository stand-in
+ */
+class ConsumerResponseProjectorTest {
+
+    private static final String OID = "2.16.840.1.113883.3.464.1003.101.12.1001";
+
+    private final List<String> calls = new ArrayList<>();
+    private final List<ApiConsumerResponse> saved = new ArrayList<>();
+    private boolean failSave;
+
+    private final ConsumerResponseProjector projector = new ConsumerResponseProjector(repository(),
+            new ObjectMapper(), transactionManager());
+
+    @Test
+    void typeIndicatorComesFirstThenOneResultPerMember() {
+        StandardCodeResponse.StandardCodeData data = projector.project(OID, "20260301", "ValueSet",
+                List.of(member("1234-5", "Glucose"), member("2345-7", "Glucose [Mass/volume]")));
+
+        assertEquals(OID, data.getOId());
+        assertEquals("20260301", data.getRevision());
+        assertNull(data.getNextCursor());
+        assertEquals(3, data.getResults().size());
+        assertFalse(data.getResults().get(0).getIsQuestionnaire());
+        assertNull(data.getResults().get(0).getCode());
+        assertEquals("1234-5", data.getResults().get(1).getCode());
+        assertEquals("2345-7", data.getResults().get(2).getCode());
+    }
+
+    @Test
+    void questionnaireIsRecognisedFromTheCodeSubType() {
+        assertTrue(projector.typeIndicator("LOINC Questionnaire").getIsQuestionnaire());
+        assertFalse(projector.typeIndicator(null).getIsQuestionnaire());
+    }
+
+    @Test
+    void memberIsMappedWithItsDefinitionProperty() {
+        CodingInfo member = member("1234-5", "Glucose");
+        member.setProperties(List.of(property("COMPONENT", "Glucose"), property("Definition", "Blood sugar")));
+
+        StandardCodeResponse.StandardCodeResult result = projector.toResult(member);
+
+        assertEquals("id-1234-5", result.getId());
+        assertEquals("Glucose", result.getName());
+        assertEquals("http://loinc.org", result.getCodeSystemId());
+        assertEquals("Blood sugar", result.getDefinition());
+        assertTrue(result.getOptions().isEmpty());
+        assertNull(projector.toResult(member("2345-7", "Other")).getDefinition());
+    }
+
+    @Test
+    void withoutATransactionTheResponseIsStoredImmediately() {
+        projector.storeAfterCommit(hliResponse(), hliBody(member("1234-5", "Glucose")));
+
+        assertEquals(List.of("clearCurrent", "save"), calls);
+        ApiConsumerResponse consumerResponse = saved.get(0);
+        assertEquals(3, consumerResponse.getVersion());
+        assertEquals(40, consumerResponse.getHliResponseId());
+        assertEquals(1, consumerResponse.getMemberCount());
+        assertTrue(consumerResponse.getConsumerResponse().contains("\"1234-5\""));
+        assertTrue(consumerResponse.getConsumerResponse().contains("\"20260301\""));
+    }
+
+    @Test
+    void insideATransactionTheResponseIsStoredAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            projector.storeAfterCommit(hliResponse(), hliBody(member("1234-5", "Glucose")));
+            assertTrue(calls.isEmpty());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(1, saved.size());
+    }
+
+    @Test
+    void responseWithoutResultsIsStoredWithNoMembers() {
+        projector.storeAfterCommit(hliResponse(), new GroupMemberHLIRes());
+
+        assertEquals(0, saved.get(0).getMemberCount());
+    }
+
+    @Test
+    void failedProjectionIsNotThrown() {
+        failSave = true;
+
+        projector.storeAfterCommit(hliResponse(), hliBody(member("1234-5", "Glucose")));
+
+        assertTrue(saved.isEmpty());
+    }
+
+    private static OidHliApiResponse hliResponse() {
+        OidMaster oidMaster = new OidMaster();
+        oidMaster.setOid(OID);
+        oidMaster.setCodeSubType("ValueSet");
+        OidHliApiResponse hliResponse = new OidHliApiResponse();
+        hliResponse.setId(40);
+        hliResponse.setVersion(3);
+        hliResponse.setOidMaster(oidMaster);
+        hliResponse.setCreatedAt(LocalDateTime.of(2026, 3, 1, 9, 30));
+        return hliResponse;
+    }
+
+    private static GroupMemberHLIRes hliBody(CodingInfo... members) {
+        GroupMemberHLIRes body = new GroupMemberHLIRes();
+        body.setResults(List.of(members));
+        return body;
+    }
+
+    private static CodingInfo member(String code, String name) {
+        CodingInfo member = new CodingInfo();
+        member.setId("id-" + code);
+        member.setCode(code);
+        member.setName(name);
+        member.setCodeSystemId("http://loinc.org");
+        return member;
+    }
+
+    private static Property property(String name, String value) {
+        Property property = new Property();
+        property.setName(name);
+        property.setValue(value);
+        return property;
+    }
+
+    private PlatformTransactionManager transactionManager() {
+        return new PlatformTransactionManager() {
+            @Override
+            public TransactionStatus getTransaction(TransactionDefinition definition) {
+                return new SimpleTransactionStatus();
+            }
+
+            @Override
+            public void commit(TransactionStatus status) {
+            }
+
+            @Override
+            public void rollback(TransactionStatus status) {
+            }
+        };
+    }
+
+    private ApiConsumerResponseRepository repository() {
+        return (ApiConsumerResponseRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { ApiConsumerResponseRepository.class }, (proxy, method, args) -> {
+                    if (method.getName().equals("clearCurrent")) {
+                        calls.add("clearCurrent");
+                        return 1;
+                    }
+                    if (method.getName().equals("save")) {
+                        calls.add("save");
+                        if (failSave) {
+                            throw new IllegalStateException("database unavailable");
+                        }
+                        ApiConsumerResponse consumerResponse = (ApiConsumerResponse) args[0];
+                        consumerResponse.setId(saved.size() + 1);
+                        saved.add(consumerResponse);
+                        return consumerResponse;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
@@ -0,0 +1,389 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.component;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process stand-in for a Redis server, speaking enough of RESP2 for the
+ * shared response cache and the Lettuce handshake: PING, AUTH, SELECT,
+ * CLIENT, GET, MGET, SET (with EX/PX), DEL, INCR, PEXPIRE, EXISTS, INFO,
+ * PUBLISH, SUBSCRIBE, UNSUBSCRIBE and QUIT. HELLO is refused so clients fall
+ * back to RESP2. Keys live in a concurrent map and expire lazily.
+ */
+public class EmbeddedRespServer implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(EmbeddedRespServer.class);
+
+    private final Map<String, Entry> data = new ConcurrentHashMap<>();
+    private final Map<String, Set<Connection>> subscribers = new ConcurrentHashMap<>();
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private final ServerSocket serverSocket;
+    private volatile boolean running = true;
+
+    /**
+     * Start listening on the loopback interface
+     *
+     * @param port The port to listen on, or 0 for any free port
+     */
+    public EmbeddedRespServer(int port) throws IOException {
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        Thread acceptThread = new Thread(this::acceptLoop, "embedded-resp-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return The raw value of a key, or null if absent or expired
+     */
+    public byte[] get(String key) {
+        Entry entry = data.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt <= System.currentTimeMillis()) {
+            data.remove(key, entry);
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * @return The number of connections subscribed to a channel
+     */
+    public int subscriberCount(String channel) {
+        return subscribers.getOrDefault(channel, Set.of()).size();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+        for (Connection connection : connections) {
+            connection.close();
+        }
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Connection connection = new Connection(serverSocket.accept());
+                connections.add(connection);
+                Thread handler = new Thread(() -> serve(connection), "embedded-resp-conn");
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                if (running) {
+                    log.warn("Embedded RESP server failed to accept a connection: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void serve(Connection connection) {
+        try {
+            InputStream in = new BufferedInputStream(connection.socket.getInputStream(), 64 * 1024);
+            while (running) {
+                List<byte[]> args = readCommand(in);
+                boolean open;
+                synchronized (connection) {
+                    open = handleSafely(connection, args);
+                    // Flush once the client has no more pipelined commands waiting
+                    if (!open || in.available() == 0) {
+                        connection.out.flush();
+                    }
+                }
+                if (!open) {
+                    return;
+                }
+            }
+        } catch (EOFException | SocketException e) {
+            // Client went away
+        } catch (IOException e) {
+            log.debug("Embedded RESP connection failed: {}", e.getMessage());
+        } finally {
+            subscribers.values().forEach(channel -> channel.remove(connection));
+            connections.remove(connection);
+            connection.close();
+        }
+    }
+
+    private boolean handleSafely(Connection connection, List<byte[]> args) throws IOException {
+        try {
+            return handle(connection, args);
+        } catch (IndexOutOfBoundsException e) {
+            writeError(connection.out, "ERR wrong number of arguments");
+            return true;
+        } catch (NumberFormatException e) {
+            writeError(connection.out, "ERR value is not an integer or out of range");
+            return true;
+        }
+    }
+
+    /**
+     * @return false if the connection should be closed
+     */
+    private boolean handle(Connection connection, List<byte[]> args) throws IOException {
+        OutputStream out = connection.out;
+        String command = text(args.get(0)).toUpperCase();
+        switch (command) {
+            case "PING":
+                writeSimple(out, "PONG");
+                return true;
+            case "AUTH":
+            case "SELECT":
+            case "CLIENT":
+                writeSimple(out, "OK");
+                return true;
+            case "QUIT":
+                writeSimple(out, "OK");
+                return false;
+            case "GET":
+                writeBulk(out, get(text(args.get(1))));
+                return true;
+            case "MGET":
+                writeArrayHeader(out, args.size() - 1);
+                for (int i = 1; i < args.size(); i++) {
+                    writeBulk(out, get(text(args.get(i))));
+                }
+                return true;
+            case "SET":
+                set(args, out);
+                return true;
+            case "INCR": {
+                String key = text(args.get(1));
+                byte[] current = get(key);
+                long value = (current != null ? Long.parseLong(text(current)) : 0) + 1;
+                Entry previous = data.get(key);
+                long expiresAt = previous != null && current != null ? previous.expiresAt : Long.MAX_VALUE;
+                data.put(key, new Entry(Long.toString(value).getBytes(StandardCharsets.US_ASCII), expiresAt));
+                writeInteger(out, value);
+                return true;
+            }
+            case "PEXPIRE": {
+                String key = text(args.get(1));
+                byte[] current = get(key);
+                if (current != null) {
+                    data.put(key, new Entry(current, System.currentTimeMillis() + Long.parseLong(text(args.get(2)))));
+                }
+                writeInteger(out, current != null ? 1 : 0);
+                return true;
+            }
+            case "DEL":
+            case "EXISTS": {
+                long count = 0;
+                for (int i = 1; i < args.size(); i++) {
+                    String key = text(args.get(i));
+                    boolean present = get(key) != null;
+                    if (present && command.equals("DEL")) {
+                        data.remove(key);
+                    }
+                    count += present ? 1 : 0;
+                }
+                writeInteger(out, count);
+                return true;
+            }
+            case "INFO":
+                writeBulk(out, ("# Memory\r\nused_memory:" + usedMemory() + "\r\n")
+                        .getBytes(StandardCharsets.UTF_8));
+                return true;
+            case "PUBLISH":
+                writeInteger(out, publish(text(args.get(1)), args.get(2)));
+                return true;
+            case "SUBSCRIBE":
+                for (int i = 1; i < args.size(); i++) {
+                    String channel = text(args.get(i));
+                    subscribers.computeIfAbsent(channel, key -> ConcurrentHashMap.newKeySet()).add(connection);
+                    writeSubscription(out, "subscribe", channel, ++connection.subscriptions);
+                }
+                return true;
+            case "UNSUBSCRIBE":
+                for (int i = 1; i < args.size(); i++) {
+                    String channel = text(args.get(i));
+                    subscribers.getOrDefault(channel, Set.of()).remove(connection);
+                    writeSubscription(out, "unsubscribe", channel, --connection.subscriptions);
+                }
+                return true;
+            default:
+                writeError(out, "ERR unknown command '" + command + "'");
+                return true;
+        }
+    }
+
+    private void set(List<byte[]> args, OutputStream out) throws IOException {
+        long expiresAt = Long.MAX_VALUE;
+        for (int i = 3; i + 1 < args.size(); i += 2) {
+            String option = text(args.get(i)).toUpperCase();
+            long amount = Long.parseLong(text(args.get(i + 1)));
+            if (option.equals("PX")) {
+                expiresAt = System.currentTimeMillis() + amount;
+            } else if (option.equals("EX")) {
+                expiresAt = System.currentTimeMillis() + amount * 1000;
+            } else {
+                writeError(out, "ERR syntax error");
+                return;
+            }
+        }
+        data.put(text(args.get(1)), new Entry(args.get(2), expiresAt));
+        writeSimple(out, "OK");
+    }
+
+    private long publish(String channel, byte[] message) {
+        long delivered = 0;
+        for (Connection subscriber : subscribers.getOrDefault(channel, Set.of())) {
+            synchronized (subscriber) {
+                try {
+                    writeArrayHeader(subscriber.out, 3);
+                    writeBulk(subscriber.out, "message".getBytes(StandardCharsets.UTF_8));
+                    writeBulk(subscriber.out, channel.getBytes(StandardCharsets.UTF_8));
+                    writeBulk(subscriber.out, message);
+                    subscriber.out.flush();
+                    delivered++;
+                } catch (IOException e) {
+                    subscriber.close();
+                }
+            }
+        }
+        return delivered;
+    }
+
+    private long usedMemory() {
+        long bytes = 0;
+        for (Map.Entry<String, Entry> entry : data.entrySet()) {
+            bytes += entry.getKey().length() + entry.getValue().value.length;
+        }
+        return bytes;
+    }
+
+    private static List<byte[]> readCommand(InputStream in) throws IOException {
+        int type = in.read();
+        if (type == -1) {
+            throw new EOFException("Connection closed");
+        }
+        if (type != '*') {
+            throw new IOException("Expected a command array");
+        }
+        int count = Integer.parseInt(readLine(in));
+        List<byte[]> args = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (in.read() != '$') {
+                throw new IOException("Expected a bulk string argument");
+            }
+            int length = Integer.parseInt(readLine(in));
+            byte[] arg = in.readNBytes(length);
+            if (arg.length < length) {
+                throw new EOFException("Connection closed inside a bulk string");
+            }
+            readLine(in);
+            args.add(arg);
+        }
+        return args;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(32);
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\r') {
+                in.read();
+                return line.toString(StandardCharsets.UTF_8);
+            }
+            line.write(b);
+        }
+        throw new EOFException("Connection closed inside a line");
+    }
+
+    private static String text(byte[] arg) {
+        return new String(arg, StandardCharsets.UTF_8);
+    }
+
+    private static void writeSimple(OutputStream out, String value) throws IOException {
+        out.write(("+" + value + "\r\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void writeError(OutputStream out, String message) throws IOException {
+        out.write(("-" + message + "\r\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void writeInteger(OutputStream out, long value) throws IOException {
+        out.write((":" + value + "\r\n").getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void writeArrayHeader(OutputStream out, int size) throws IOException {
+        out.write(("*" + size + "\r\n").getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void writeBulk(OutputStream out, byte[] value) throws IOException {
+        if (value == null) {
+            out.write("$-1\r\n".getBytes(StandardCharsets.US_ASCII));
+            return;
+        }
+        out.write(("$" + value.length + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.write(value);
+        out.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static void writeSubscription(OutputStream out, String kind, String channel, int count)
+            throws IOException {
+        writeArrayHeader(out, 3);
+        writeBulk(out, kind.getBytes(StandardCharsets.UTF_8));
+        writeBulk(out, channel.getBytes(StandardCharsets.UTF_8));
+        writeInteger(out, count);
+    }
+
+    private static final class Connection {
+        private final Socket socket;
+        private final OutputStream out;
+        private int subscriptions;
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            socket.setTcpNoDelay(true);
+            this.out = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024);
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final byte[] value;
+        private final long expiresAt;
+
+        Entry(byte[] value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
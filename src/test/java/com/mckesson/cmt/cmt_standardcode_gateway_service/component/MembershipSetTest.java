@@ -0,0 +1,91 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.component;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MembershipSetTest {
+
+    private static final int LOINC = 1;
+    private static final int SNOMED = 2;
+
+    @Test
+    void containsItsMembersOnly() {
+        MembershipSet set = new MembershipSet.Builder(7)
+                .add(LOINC, "1234-5")
+                .add(SNOMED, "22298006")
+                .build(0);
+
+        assertEquals(7, set.getResponseId());
+        assertEquals(2, set.size());
+        assertTrue(set.contains(LOINC, "1234-5"));
+        assertTrue(set.contains(SNOMED, "22298006"));
+        assertFalse(set.contains(LOINC, "9999-9"));
+    }
+
+    @Test
+    void codeOfAnotherSystemIsNotAMember() {
+        MembershipSet set = new MembershipSet.Builder(1).add(LOINC, "1234-5").build(0);
+
+        assertFalse(set.contains(SNOMED, "1234-5"));
+    }
+
+    @Test
+    void duplicatesAndNullCodesAreDropped() {
+        MembershipSet set = new MembershipSet.Builder(1)
+                .add(LOINC, "1234-5")
+                .add(LOINC, "1234-5")
+                .add(LOINC, null)
+                .add(SNOMED, "1234-5")
+                .build(0);
+
+        assertEquals(2, set.size());
+        assertTrue(set.contains(LOINC, "1234-5"));
+        assertTrue(set.contains(SNOMED, "1234-5"));
+    }
+
+    @Test
+    void emptySetContainsNothing() {
+        MembershipSet set = new MembershipSet.Builder(3).build(1);
+
+        assertEquals(3, set.getResponseId());
+        assertEquals(0, set.size());
+        assertFalse(set.contains(LOINC, "1234-5"));
+    }
+
+    @Test
+    void bloomFilterDoesNotChangeAnswers() {
+        MembershipSet.Builder plain = new MembershipSet.Builder(1);
+        MembershipSet.Builder filtered = new MembershipSet.Builder(1);
+        for (int i = 0; i < 5000; i++) {
+            plain.add(i % 3, "code-" + i);
+            filtered.add(i % 3, "code-" + i);
+        }
+        MembershipSet withoutBloom = plain.build(0);
+        MembershipSet withBloom = filtered.build(1024);
+
+        for (int i = 0; i < 5000; i++) {
+            assertTrue(withBloom.contains(i % 3, "code-" + i));
+        }
+        for (int i = 5000; i < 20000; i++) {
+            assertEquals(withoutBloom.contains(i % 3, "code-" + i), withBloom.contains(i % 3, "code-" + i));
+            assertFalse(withBloom.contains(i % 3, "code-" + i));
+        }
+    }
+
+    @Test
+    void membersAreIndexedInHashOrder() {
+        MembershipSet set = new MembershipSet.Builder(1)
+                .add(LOINC, "b")
+                .add(LOINC, "a")
+                .add(SNOMED, "c")
+                .build(0);
+
+        for (int i = 1; i < set.size(); i++) {
+            assertTrue(MembershipSet.hash(set.systemAt(i - 1), set.codeAt(i - 1))
+                    <= MembershipSet.hash(set.systemAt(i), set.codeAt(i)));
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.component;
+
+import com.mckesson.cmt.cmt_standardcode_gateway_service.services.OidProcessingService;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Import chunks fetched by a pipeline whose HLI fetches block until released
+ */
+class OidRefreshPipelineTest {
+
+    private final BlockingProcessingService service = new BlockingProcessingService();
+    private OidRefreshPipeline pipeline;
+
+    @AfterEach
+    void stop() {
+        service.release.countDown();
+        pipeline.stop();
+    }
+
+    @Test
+    void publishedChunksAreFetchedBeforeCompletion() throws InterruptedException {
+        pipeline = start(2);
+        service.release.countDown();
+
+        pipeline.publish("import-1", List.of("1.2.3"));
+        pipeline.publish("import-1", List.of("1.2.4", "1.2.5"));
+        pipeline.close("import-1");
+
+        assertTrue(pipeline.awaitCompletion("import-1", 5, TimeUnit.SECONDS));
+        assertEquals(3, service.fetchedOids.get());
+        assertEquals(0, pipeline.getPendingChunks("import-1"));
+    }
+
+    @Test
+    void cancelReachesEveryBatchInFlight() throws InterruptedException {
+        pipeline = start(2);
+        service.expectStarts(2);
+
+        pipeline.publish("import-1", List.of("1.2.3"));
+        pipeline.publish("import-1", List.of("1.2.4"));
+        assertTrue(service.started.await(5, TimeUnit.SECONDS));
+
+        pipeline.cancel("import-1");
+
+        assertEquals(2, service.cancelledBatchIds.size());
+        assertTrue(service.cancelledBatchIds.stream().allMatch(batchId -> batchId.startsWith("import-1-")));
+    }
+
+    @Test
+    void queuedChunksOfCancelledImportAreSkipped() throws InterruptedException {
+        pipeline = start(1);
+        service.expectStarts(1);
+
+        pipeline.publish("import-1", List.of("1.2.3"));
+        assertTrue(service.started.await(5, TimeUnit.SECONDS));
+        pipeline.publish("import-1", List.of("1.2.4"));
+        pipeline.cancel("import-1");
+        pipeline.publish("import-1", List.of("1.2.5"));
+        service.release.countDown();
+        pipeline.close("import-1");
+
+        assertTrue(pipeline.awaitCompletion("import-1", 5, TimeUnit.SECONDS));
+        assertEquals(1, service.fetchedOids.get());
+    }
+
+    @Test
+    void cancellingOneImportLeavesOthersRunning() throws InterruptedException {
+        pipeline = start(2);
+        service.expectStarts(2);
+
+        pipeline.publish("import-1", List.of("1.2.3"));
+        pipeline.publish("import-2", List.of("1.2.4"));
+        assertTrue(service.started.await(5, TimeUnit.SECONDS));
+
+        pipeline.cancel("import-1");
+
+        assertEquals(1, service.cancelledBatchIds.size());
+        assertTrue(service.cancelledBatchIds.iterator().next().startsWith("import-1-"));
+    }
+
+    @Test
+    void awaitCompletionGivesUpAfterTimeout() throws InterruptedException {
+        pipeline = start(1);
+
+        pipeline.publish("import-1", List.of("1.2.3"));
+
+        assertFalse(pipeline.awaitCompletion("import-1", 50, TimeUnit.MILLISECONDS));
+        assertEquals(1, pipeline.getPendingChunks("import-1"));
+    }
+
+    private OidRefreshPipeline start(int workers) {
+        OidRefreshPipeline started = new OidRefreshPipeline(service, true, 10, workers);
+        started.start();
+        return started;
+    }
+
+    /**
+     * Fetches that wait for {@link #release}, recording cancellation requests
+     */
+    private static final class BlockingProcessingService extends OidProcessingService {
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final AtomicInteger fetchedOids = new AtomicInteger();
+        private final Set<String> cancelledBatchIds = ConcurrentHashMap.newKeySet();
+        private volatile CountDownLatch started = new CountDownLatch(0);
+
+        void expectStarts(int count) {
+            started = new CountDownLatch(count);
+        }
+
+        @Override
+        public void processChangedOids(Collection<String> oids, String batchId) {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            fetchedOids.addAndGet(oids.size());
+        }
+
+        @Override
+        public boolean requestCancellation(String batchId) {
+            return cancelledBatchIds.add(batchId);
+        }
+
+        @Override
+        public void clearCancellation(String batchId) {
+        }
+    }
+}
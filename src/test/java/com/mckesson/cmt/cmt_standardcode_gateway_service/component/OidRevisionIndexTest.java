@@ -0,0 +1,247 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.component;
+
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.OidHliApiResponseRepository;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.OidRevisionRow;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.OidRevisionStamp;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Revision resolution, and cached revisions checked against a repository
+ * stand-in holding the stored responses
+ */
+class OidRevisionIndexTest {
+
+    private static final String OID = "2.16.840.1.113883.3.464.1003.101.12.1001";
+
+    private final List<StoredResponse> stored = new ArrayList<>();
+    private String codeSubType = "ValueSet";
+    private int revisionLoads;
+
+    private final OidRevisionIndex index = new OidRevisionIndex(repository(), 100, 30);
+
+    @Test
+    void latestIsTheCurrentResponse() {
+        OidRevisionIndex.OidRevisions revisions = revisions(
+                new OidRevisionIndex.Revision(10, 1, "20260101", false, null, null),
+                new OidRevisionIndex.Revision(11, 2, "20260301", true, null, null));
+
+        assertEquals(11, revisions.resolve(null).getResponseId());
+    }
+
+    @Test
+    void latestFallsBackToTheNewestVersionWhenNoneIsCurrent() {
+        OidRevisionIndex.OidRevisions revisions = revisions(
+                new OidRevisionIndex.Revision(10, 1, "20260101", false, null, null),
+                new OidRevisionIndex.Revision(11, 2, "20260301", false, null, null));
+
+        assertEquals(11, revisions.resolve(null).getResponseId());
+    }
+
+    @Test
+    void revisionDayResolvesToTheNewestResponseStoredOnOrBeforeIt() {
+        OidRevisionIndex.OidRevisions revisions = revisions(
+                new OidRevisionIndex.Revision(10, 1, "20260101", false, null, null),
+                new OidRevisionIndex.Revision(11, 2, "20260301", true, null, null));
+
+        assertNull(revisions.resolve("20251231"));
+        assertEquals(10, revisions.resolve("20260101").getResponseId());
+        assertEquals(10, revisions.resolve("20260228").getResponseId());
+        assertEquals(11, revisions.resolve("20260301").getResponseId());
+        assertEquals(11, revisions.resolve("20991231").getResponseId());
+    }
+
+    @Test
+    void responsesAreFoundByIdAndVersion() {
+        OidRevisionIndex.OidRevisions revisions = revisions(
+                new OidRevisionIndex.Revision(10, 1, "20260101", true, 5, 3));
+
+        assertEquals(1, revisions.find(10).getVersion());
+        assertNull(revisions.find(11));
+        assertEquals(10, revisions.findVersion(1).getResponseId());
+        assertNull(revisions.findVersion(2));
+        assertNull(revisions(new OidRevisionIndex.Revision[0]).resolve(null));
+    }
+
+    @Test
+    void unchangedOidIsServedFromTheCache() {
+        stored.add(new StoredResponse(10, 1, "20260101", null));
+
+        index.getRevisions(List.of(OID));
+        index.getRevisions(List.of(OID));
+
+        assertEquals(1, revisionLoads);
+    }
+
+    @Test
+    void responseStoredByAnotherReplicaIsSeenOnTheNextLookup() {
+        stored.add(new StoredResponse(10, 1, "20260101", null));
+        assertEquals(10, index.getRevisions(List.of(OID)).get(OID).resolve(null).getResponseId());
+
+        // Stored elsewhere, so this replica's cache was never invalidated
+        stored.add(new StoredResponse(11, 2, "20260301", null));
+
+        assertEquals(11, index.getRevisions(List.of(OID)).get(OID).resolve(null).getResponseId());
+        assertEquals(2, revisionLoads);
+    }
+
+    @Test
+    void changedCodeSubTypeAndNewConsumerResponseAreSeen() {
+        stored.add(new StoredResponse(10, 1, "20260101", null));
+        index.getRevisions(List.of(OID));
+
+        codeSubType = "Grouping";
+        assertEquals("Grouping", index.getRevisions(List.of(OID)).get(OID).getCodeSubType());
+
+        stored.set(0, new StoredResponse(10, 1, "20260101", 7));
+        assertEquals(7, index.getRevisions(List.of(OID)).get(OID).resolve(null).getConsumerResponseId());
+        assertEquals(3, revisionLoads);
+    }
+
+    @Test
+    void unknownOidIsAbsent() {
+        Map<String, OidRevisionIndex.OidRevisions> found = index.getRevisions(List.of("1.2.3"));
+
+        assertFalse(found.containsKey("1.2.3"));
+    }
+
+    @Test
+    void oidWithoutSuccessfulResponsesHasNoRevisions() {
+        Map<String, OidRevisionIndex.OidRevisions> found = index.getRevisions(List.of(OID));
+        index.getRevisions(List.of(OID));
+
+        assertTrue(found.containsKey(OID));
+        assertNull(found.get(OID).resolve(null));
+        assertEquals(1, revisionLoads);
+    }
+
+    private static OidRevisionIndex.OidRevisions revisions(OidRevisionIndex.Revision... revisions) {
+        OidRevisionIndex.OidRevisions oidRevisions = new OidRevisionIndex.OidRevisions(OID, "ValueSet");
+        for (OidRevisionIndex.Revision revision : revisions) {
+            oidRevisions.add(revision);
+        }
+        return oidRevisions;
+    }
+
+    private OidHliApiResponseRepository repository() {
+        return (OidHliApiResponseRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { OidHliApiResponseRepository.class }, (proxy, method, args) -> {
+                    List<String> oids = Arrays.asList((String[]) args[0]);
+                    if (method.getName().equals("findRevisionsByOids")) {
+                        revisionLoads++;
+                        return oids.contains(OID) ? revisionRows() : List.of();
+                    }
+                    if (method.getName().equals("findRevisionStampsByOids")) {
+                        return oids.contains(OID) ? List.of(stamp()) : List.of();
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private List<OidRevisionRow> revisionRows() {
+        if (stored.isEmpty()) {
+            return List.of(new StoredResponse(null, null, null, null).toRow(false));
+        }
+        int newest = stored.stream().mapToInt(response -> response.id).max().getAsInt();
+        return stored.stream()
+                .sorted(Comparator.comparing(response -> response.version))
+                .map(response -> response.toRow(response.id == newest))
+                .toList();
+    }
+
+    private OidRevisionStamp stamp() {
+        StoredResponse newest = stored.stream().max(Comparator.comparing(response -> response.id)).orElse(null);
+        String subType = codeSubType;
+        return new OidRevisionStamp() {
+            @Override
+            public String getOid() {
+                return OID;
+            }
+
+            @Override
+            public String getCodeSubType() {
+                return subType;
+            }
+
+            @Override
+            public Integer getLatestResponseId() {
+                return newest != null ? newest.id : null;
+            }
+
+            @Override
+            public Integer getConsumerResponseId() {
+                return newest != null ? newest.consumerResponseId : null;
+            }
+        };
+    }
+
+    private final class StoredResponse {
+        private final Integer id;
+        private final Integer version;
+        private final String revisionDay;
+        private final Integer consumerResponseId;
+
+        StoredResponse(Integer id, Integer version, String revisionDay, Integer consumerResponseId) {
+            this.id = id;
+            this.version = version;
+            this.revisionDay = revisionDay;
+            this.consumerResponseId = consumerResponseId;
+        }
+
+        OidRevisionRow toRow(boolean current) {
+            String subType = codeSubType;
+            return new OidRevisionRow() {
+                @Override
+                public String getOid() {
+                    return OID;
+                }
+
+                @Override
+                public String getCodeSubType() {
+                    return subType;
+                }
+
+                @Override
+                public Integer getResponseId() {
+                    return id;
+                }
+
+                @Override
+                public Integer getVersion() {
+                    return version;
+                }
+
+                @Override
+                public String getRevisionDay() {
+                    return revisionDay;
+                }
+
+                @Override
+                public Boolean getIsCurrent() {
+                    return current;
+                }
+
+                @Override
+                public Integer getConsumerResponseId() {
+                    return consumerResponseId;
+                }
+
+                @Override
+                public Integer getMemberCount() {
+                    return consumerResponseId != null ? 3 : null;
+                }
+            };
+        }
+    }
+}
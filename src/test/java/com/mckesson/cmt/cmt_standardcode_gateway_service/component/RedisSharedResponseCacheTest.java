@@ -0,0 +1,172 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.component;
+
+import com.mckesson.cmt.cmt_standardcode_gateway_service.model.CachedPayload;
+import io.lettuce.core.ClientOptions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Two replicas' shared tiers against the embedded Redis stand-in
+ */
+class RedisSharedResponseCacheTest {
+
+    private static final String KEY_PREFIX = "test:";
+    private static final UUID MASTER = UUID.randomUUID();
+
+    private EmbeddedRespServer server;
+    private LettuceConnectionFactory factoryA;
+    private LettuceConnectionFactory factoryB;
+    private RedisSharedResponseCache replicaA;
+    private RedisSharedResponseCache replicaB;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = new EmbeddedRespServer(0);
+        factoryA = connect(server.getPort());
+        factoryB = connect(server.getPort());
+        replicaA = new RedisSharedResponseCache(factoryA, 60_000, KEY_PREFIX, 200);
+        replicaB = new RedisSharedResponseCache(factoryB, 60_000, KEY_PREFIX, 200);
+    }
+
+    @AfterEach
+    void stop() {
+        replicaA.close();
+        replicaB.close();
+        factoryA.destroy();
+        factoryB.destroy();
+        server.close();
+    }
+
+    @Test
+    void documentsWrittenByOneReplicaAreReadByAnother() {
+        List<CachedPayload> documents = List.of(
+                new CachedPayload(1, json("a"), new byte[] { 1, 2, 3 }),
+                new CachedPayload(2, json("b")));
+        replicaA.putAll(Map.of(MASTER, documents), replicaA.getGenerations(List.of(MASTER)));
+
+        List<CachedPayload> found = replicaB.getAll(List.of(MASTER)).get(MASTER);
+        assertNotNull(found);
+        assertEquals(2, found.size());
+        assertEquals(1, found.get(0).getResponseId());
+        assertArrayEquals(json("a"), found.get(0).getJson());
+        assertArrayEquals(new byte[] { 1, 2, 3 }, found.get(0).getGzip());
+        assertEquals(2, found.get(1).getResponseId());
+        assertEquals(0, found.get(1).gzipLength());
+    }
+
+    @Test
+    void invalidationDropsDocuments() {
+        replicaA.putAll(Map.of(MASTER, documents("a")), replicaA.getGenerations(List.of(MASTER)));
+
+        replicaB.invalidate(List.of(MASTER));
+
+        assertTrue(replicaA.getAll(List.of(MASTER)).isEmpty());
+        assertEquals("1", new String(server.get(KEY_PREFIX + "gen:" + MASTER), StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    void loadThatRacedWithAnotherReplicasInvalidationIsNotServed() {
+        Map<UUID, Long> generations = replicaA.getGenerations(List.of(MASTER));
+        replicaB.invalidate(List.of(MASTER));
+        replicaA.putAll(Map.of(MASTER, documents("stale")), generations);
+
+        assertTrue(replicaA.getAll(List.of(MASTER)).isEmpty());
+        assertTrue(replicaB.getAll(List.of(MASTER)).isEmpty());
+
+        // A load that started after the invalidation is served
+        replicaA.putAll(Map.of(MASTER, documents("fresh")), replicaA.getGenerations(List.of(MASTER)));
+        assertArrayEquals(json("fresh"), replicaB.getAll(List.of(MASTER)).get(MASTER).get(0).getJson());
+    }
+
+    @Test
+    void invalidationIsPublishedToOtherReplicasOnly() throws InterruptedException {
+        BlockingQueue<Collection<UUID>> receivedByA = new LinkedBlockingQueue<>();
+        BlockingQueue<Collection<UUID>> receivedByB = new LinkedBlockingQueue<>();
+        replicaA.addInvalidationListener(receivedByA::add);
+        replicaB.addInvalidationListener(receivedByB::add);
+        awaitSubscribers(2);
+
+        replicaB.invalidate(List.of(MASTER));
+
+        assertEquals(List.of(MASTER), receivedByA.poll(5, TimeUnit.SECONDS));
+        assertNull(receivedByB.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void failedServerIsSkippedAndMissedInvalidationsAreSentLater() throws Exception {
+        int port = server.getPort();
+        replicaA.putAll(Map.of(MASTER, documents("a")), replicaA.getGenerations(List.of(MASTER)));
+        server.close();
+
+        assertThrows(RuntimeException.class, () -> replicaA.getAll(List.of(MASTER)));
+
+        // Skipped after the failure instead of failing again
+        assertEquals(Map.of(), replicaA.getAll(List.of(MASTER)));
+        assertNull(replicaA.getGenerations(List.of(MASTER)));
+        assertEquals(-1, replicaA.usedMemoryBytes());
+        replicaA.invalidate(List.of(MASTER));
+
+        server = new EmbeddedRespServer(port);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (server.get(KEY_PREFIX + "gen:" + MASTER) == null && System.nanoTime() < deadline) {
+            Thread.sleep(100);
+            try {
+                replicaA.getAll(List.of(MASTER));
+            } catch (RuntimeException e) {
+                // Still reconnecting
+            }
+        }
+        assertNotNull(server.get(KEY_PREFIX + "gen:" + MASTER));
+    }
+
+    private void awaitSubscribers(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (server.subscriberCount(KEY_PREFIX + "invalidations") < count && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(count, server.subscriberCount(KEY_PREFIX + "invalidations"));
+    }
+
+    static LettuceConnectionFactory connect(int port) {
+        LettuceClientConfiguration clientConfig = LettuceClientConfiguration.builder()
+                .commandTimeout(Duration.ofMillis(500))
+                .clientOptions(ClientOptions.builder()
+                        .disconnectedBehavior(ClientOptions.DisconnectedBehavior.REJECT_COMMANDS)
+                        .build())
+                .build();
+        LettuceConnectionFactory factory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration("127.0.0.1", port), clientConfig);
+        factory.afterPropertiesSet();
+        return factory;
+    }
+
+    static List<CachedPayload> documents(String value) {
+        return List.of(new CachedPayload(1, json(value)));
+    }
+
+    static byte[] json(String value) {
+        return ("{\"value\":\"" + value + "\"}").getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,100 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.component;
+
+import com.mckesson.cmt.cmt_standardcode_gateway_service.component.StandardCodesResponseCache.LoadStamp;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static com.mckesson.cmt.cmt_standardcode_gateway_service.component.RedisSharedResponseCacheTest.connect;
+import static com.mckesson.cmt.cmt_standardcode_gateway_service.component.RedisSharedResponseCacheTest.documents;
+import static com.mckesson.cmt.cmt_standardcode_gateway_service.component.RedisSharedResponseCacheTest.json;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Two replicas' two-tier caches sharing the embedded Redis stand-in as L2
+ */
+class StandardCodesResponseCacheTest {
+
+    private static final UUID MASTER = UUID.randomUUID();
+
+    private EmbeddedRespServer server;
+    private LettuceConnectionFactory factoryA;
+    private LettuceConnectionFactory factoryB;
+    private RedisSharedResponseCache sharedA;
+    private RedisSharedResponseCache sharedB;
+    private StandardCodesResponseCache replicaA;
+    private StandardCodesResponseCache replicaB;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = new EmbeddedRespServer(0);
+        factoryA = connect(server.getPort());
+        factoryB = connect(server.getPort());
+        sharedA = new RedisSharedResponseCache(factoryA, 60_000, "test:", 200);
+        sharedB = new RedisSharedResponseCache(factoryB, 60_000, "test:", 200);
+        replicaA = new StandardCodesResponseCache(new SimpleMeterRegistry(), sharedA, 1 << 20, 60);
+        replicaB = new StandardCodesResponseCache(new SimpleMeterRegistry(), sharedB, 1 << 20, 60);
+    }
+
+    @AfterEach
+    void stop() {
+        sharedA.close();
+        sharedB.close();
+        factoryA.destroy();
+        factoryB.destroy();
+        server.close();
+    }
+
+    @Test
+    void documentLoadedByOneReplicaIsServedToAnotherFromL2() {
+        LoadStamp stamp = replicaA.beginLoad(List.of(MASTER));
+        replicaA.putAll(Map.of(MASTER, documents("a")), stamp);
+
+        assertArrayEquals(json("a"), replicaB.getAllPresent(List.of(MASTER)).get(MASTER).get(0).getJson());
+        assertEquals(1, replicaB.getSharedHitCount());
+        assertEquals(0, replicaA.getSharedHitCount());
+    }
+
+    @Test
+    void invalidationOnOneReplicaDropsTheOtherReplicasL1Copy() throws InterruptedException {
+        awaitSubscribers(2);
+        replicaA.putAll(Map.of(MASTER, documents("a")), replicaA.beginLoad(List.of(MASTER)));
+        assertFalse(replicaB.getAllPresent(List.of(MASTER)).isEmpty());
+
+        replicaB.invalidate(List.of(MASTER));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!replicaA.getAllPresent(List.of(MASTER)).isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(replicaA.getAllPresent(List.of(MASTER)).isEmpty());
+    }
+
+    @Test
+    void loadThatRacedWithAnotherReplicasInvalidationIsNotShared() {
+        LoadStamp stamp = replicaA.beginLoad(List.of(MASTER));
+        replicaB.invalidate(List.of(MASTER));
+        replicaA.putAll(Map.of(MASTER, documents("stale")), stamp);
+
+        assertTrue(replicaB.getAllPresent(List.of(MASTER)).isEmpty());
+    }
+
+    private void awaitSubscribers(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (server.subscriberCount("test:invalidations") < count && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(count, server.subscriberCount("test:invalidations"));
+    }
+}
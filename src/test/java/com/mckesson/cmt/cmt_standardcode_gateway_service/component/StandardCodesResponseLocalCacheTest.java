@@ -0,0 +1,68 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.component;
+
+import com.mckesson.cmt.cmt_standardcode_gateway_service.component.StandardCodesResponseCache.LoadStamp;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static com.mckesson.cmt.cmt_standardcode_gateway_service.component.RedisSharedResponseCacheTest.documents;
+import static com.mckesson.cmt.cmt_standardcode_gateway_service.component.RedisSharedResponseCacheTest.json;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The in-process tier on its own, without a shared tier
+ */
+class StandardCodesResponseLocalCacheTest {
+
+    private static final UUID MASTER = UUID.randomUUID();
+    private static final UUID VERSION = UUID.randomUUID();
+
+    private final StandardCodesResponseCache cache = new StandardCodesResponseCache(new SimpleMeterRegistry(),
+            new NoSharedResponseCache(), 1 << 20, 60);
+
+    @Test
+    void loadedDocumentsAreServedUntilInvalidated() {
+        cache.putAll(Map.of(MASTER, documents("a")), cache.beginLoad(List.of(MASTER)));
+
+        assertArrayEquals(json("a"), cache.getAllPresent(List.of(MASTER)).get(MASTER).get(0).getJson());
+
+        cache.invalidate(List.of(MASTER));
+
+        assertTrue(cache.getAllPresent(List.of(MASTER)).isEmpty());
+    }
+
+    @Test
+    void loadThatStartedBeforeAnInvalidationIsNotCached() {
+        LoadStamp stamp = cache.beginLoad(List.of(MASTER));
+        cache.invalidate(List.of(VERSION));
+        cache.putAll(Map.of(MASTER, documents("stale")), stamp);
+
+        assertTrue(cache.getAllPresent(List.of(MASTER)).isEmpty());
+    }
+
+    @Test
+    void invalidationOutsideATransactionIsImmediate() {
+        cache.putAll(Map.of(MASTER, documents("a")), cache.beginLoad(List.of(MASTER)));
+
+        cache.invalidateAfterCommit(List.of(MASTER));
+
+        assertTrue(cache.getAllPresent(List.of(MASTER)).isEmpty());
+    }
+
+    @Test
+    void hitsAndMissesAreCountedPerRequestedUuid() {
+        cache.putAll(Map.of(MASTER, documents("a")), cache.beginLocalLoad());
+
+        Map<UUID, ?> found = cache.getAllPresent(List.of(MASTER, VERSION, MASTER));
+
+        assertEquals(1, found.size());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(-1, cache.getSharedUsedMemoryBytes());
+    }
+}
@@ -0,0 +1,299 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.component;
+
+import com.mckesson.cmt.cmt_standardcode_gateway_service.model.CachedPayload;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.StandardCodesActiveResponsesRow;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.StandardCodesResponseRepository;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.StandardCodesSnapshotRow;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Snapshot files written from and caught up against a repository stand-in
+ * holding the active responses
+ */
+class StandardCodesResponseSnapshotTest {
+
+    private static final UUID MASTER_A = UUID.randomUUID();
+    private static final UUID MASTER_B = UUID.randomUUID();
+    private static final long NEVER = Long.MAX_VALUE / 2;
+
+    @TempDir
+    Path dir;
+
+    private final List<StoredResponse> active = new ArrayList<>();
+    private final List<String> queries = new ArrayList<>();
+    private boolean failQueries;
+
+    @Test
+    void writtenSnapshotAnswersVersionsAndMasters() {
+        StoredResponse older = store(MASTER_A, 1, "{\"id\":\"a1\"}", null);
+        StoredResponse newer = store(MASTER_A, 3, "{\"id\":\"a3\"}", null);
+        StoredResponse other = store(MASTER_B, 2, "{\"id\":\"b2\"}", null);
+        StandardCodesResponseSnapshot snapshot = snapshot(0);
+
+        snapshot.refresh();
+
+        assertEquals(List.of("{\"id\":\"a1\"}", "{\"id\":\"a3\"}"), json(snapshot.get(MASTER_A)));
+        assertEquals(List.of(3), snapshot.get(newer.versionUuid).stream()
+                .map(CachedPayload::getResponseId).toList());
+        assertEquals(List.of("{\"id\":\"b2\"}"), json(snapshot.get(other.versionUuid)));
+        assertEquals(newer.versionUuid, snapshot.findCurrentVersionUuid(MASTER_A));
+        assertEquals(other.versionUuid, snapshot.findCurrentVersionUuid(MASTER_B));
+        assertNull(snapshot.findCurrentVersionUuid(older.versionUuid));
+        assertNull(snapshot.get(UUID.randomUUID()));
+        assertEquals(List.of("streamActiveResponsesForSnapshot"), queries);
+    }
+
+    @Test
+    void storedGzipCopyIsKept() {
+        byte[] gzip = { 31, -117, 8, 0 };
+        StoredResponse response = store(MASTER_A, 1, "{}", gzip);
+        StandardCodesResponseSnapshot snapshot = snapshot(0);
+
+        snapshot.refresh();
+
+        CachedPayload payload = snapshot.get(response.versionUuid).get(0);
+        assertEquals(gzip.length, payload.gzipLength());
+        assertArrayEquals(gzip, payload.getGzip());
+    }
+
+    @Test
+    void onlyUuidsTheSnapshotCanAnswerArePresent() {
+        StoredResponse response = store(MASTER_A, 1, "{}", null);
+        StandardCodesResponseSnapshot snapshot = snapshot(0);
+        snapshot.refresh();
+
+        Map<UUID, List<CachedPayload>> found = snapshot.getAllPresent(
+                List.of(MASTER_A, response.versionUuid, UUID.randomUUID()));
+
+        assertEquals(2, found.size());
+        assertTrue(found.containsKey(MASTER_A));
+    }
+
+    @Test
+    void changedMasterIsReadFromTheDatabaseUntilTheNextSnapshot() {
+        StoredResponse response = store(MASTER_A, 1, "{\"v\":1}", null);
+        StandardCodesResponseSnapshot snapshot = snapshot(0);
+        snapshot.refresh();
+
+        store(MASTER_A, 2, "{\"v\":2}", null);
+        snapshot.invalidate(MASTER_A);
+
+        assertNull(snapshot.get(MASTER_A));
+        assertNull(snapshot.findCurrentVersionUuid(MASTER_A));
+        // Versions never change, so they are still answered
+        assertEquals(1, snapshot.get(response.versionUuid).size());
+
+        snapshot.refresh();
+
+        assertEquals(List.of("{\"v\":1}", "{\"v\":2}"), json(snapshot.get(MASTER_A)));
+    }
+
+    @Test
+    void restartedReplicaAnswersMastersOnlyOnceCaughtUp() {
+        StoredResponse response = store(MASTER_A, 1, "{}", null);
+        store(MASTER_B, 2, "{}", null);
+        snapshot(0).refresh();
+
+        // Changed on another replica while this one was down
+        store(MASTER_B, 4, "{}", null);
+        StandardCodesResponseSnapshot restarted = snapshot(NEVER);
+
+        assertEquals(1, restarted.get(response.versionUuid).size());
+        assertNull(restarted.get(MASTER_A));
+
+        queries.clear();
+        restarted.refresh();
+
+        assertEquals(List.of("findActiveResponseIds"), queries);
+        assertEquals(1, restarted.get(MASTER_A).size());
+        assertNull(restarted.get(MASTER_B));
+    }
+
+    @Test
+    void failedCatchUpKeepsAnsweringVersions() {
+        StoredResponse response = store(MASTER_A, 1, "{}", null);
+        snapshot(0).refresh();
+        StandardCodesResponseSnapshot restarted = snapshot(NEVER);
+
+        failQueries = true;
+        restarted.refresh();
+
+        assertEquals(1, restarted.get(response.versionUuid).size());
+        assertNull(restarted.get(MASTER_A));
+    }
+
+    @Test
+    void snapshotIsRewrittenOnlyAfterTheWriteInterval() {
+        store(MASTER_A, 1, "{}", null);
+        StandardCodesResponseSnapshot snapshot = snapshot(NEVER);
+
+        snapshot.refresh();
+        snapshot.refresh();
+
+        assertEquals(List.of("streamActiveResponsesForSnapshot", "findActiveResponseIds"), queries);
+    }
+
+    @Test
+    void unreadableFileIsIgnored() throws IOException {
+        Files.write(dir.resolve("responses.snapshot"), "not a snapshot".getBytes(StandardCharsets.UTF_8));
+
+        StandardCodesResponseSnapshot snapshot = snapshot(0);
+
+        assertNull(snapshot.get(MASTER_A));
+        assertTrue(snapshot.getAllPresent(List.of(MASTER_A)).isEmpty());
+    }
+
+    @Test
+    void disabledSnapshotIsNeitherWrittenNorRead() {
+        store(MASTER_A, 1, "{}", null);
+        StandardCodesResponseSnapshot snapshot = new StandardCodesResponseSnapshot(repository(), transactionManager(),
+                false, dir.resolve("responses.snapshot").toString(), 0);
+
+        snapshot.refresh();
+
+        assertNull(snapshot.get(MASTER_A));
+        assertTrue(queries.isEmpty());
+        assertTrue(Files.notExists(dir.resolve("responses.snapshot")));
+    }
+
+    private StandardCodesResponseSnapshot snapshot(long writeIntervalMs) {
+        return new StandardCodesResponseSnapshot(repository(), transactionManager(), true,
+                dir.resolve("responses.snapshot").toString(), writeIntervalMs);
+    }
+
+    private StoredResponse store(UUID masterUuid, int id, String json, byte[] gzip) {
+        StoredResponse response = new StoredResponse(masterUuid, UUID.randomUUID(), id, json, gzip);
+        active.add(response);
+        return response;
+    }
+
+    private static List<String> json(List<CachedPayload> payloads) {
+        return payloads.stream().map(payload -> new String(payload.getJson(), StandardCharsets.UTF_8)).toList();
+    }
+
+    private PlatformTransactionManager transactionManager() {
+        return new PlatformTransactionManager() {
+            @Override
+            public TransactionStatus getTransaction(TransactionDefinition definition) {
+                return new SimpleTransactionStatus();
+            }
+
+            @Override
+            public void commit(TransactionStatus status) {
+            }
+
+            @Override
+            public void rollback(TransactionStatus status) {
+            }
+        };
+    }
+
+    private StandardCodesResponseRepository repository() {
+        return (StandardCodesResponseRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { StandardCodesResponseRepository.class }, (proxy, method, args) -> {
+                    queries.add(method.getName());
+                    if (failQueries) {
+                        throw new IllegalStateException("database unavailable");
+                    }
+                    // In id order, like the queries
+                    List<StoredResponse> byId = active.stream()
+                            .sorted(Comparator.comparing(response -> response.id))
+                            .toList();
+                    if (method.getName().equals("streamActiveResponsesForSnapshot")) {
+                        return byId.stream().map(StoredResponse::toRow);
+                    }
+                    if (method.getName().equals("findActiveResponseIds") && args == null) {
+                        return byId.stream()
+                                .collect(Collectors.groupingBy(response -> response.masterUuid,
+                                        Collectors.mapping(response -> Integer.toString(response.id),
+                                                Collectors.joining(","))))
+                                .entrySet().stream()
+                                .map(entry -> responseIdsRow(entry.getKey(), entry.getValue()))
+                                .toList();
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static StandardCodesActiveResponsesRow responseIdsRow(UUID masterUuid, String responseIds) {
+        return new StandardCodesActiveResponsesRow() {
+            @Override
+            public String getMasterUuid() {
+                return masterUuid.toString();
+            }
+
+            @Override
+            public String getResponseIds() {
+                return responseIds;
+            }
+        };
+    }
+
+    private static final class StoredResponse {
+        private final UUID masterUuid;
+        private final UUID versionUuid;
+        private final int id;
+        private final String json;
+        private final byte[] gzip;
+
+        StoredResponse(UUID masterUuid, UUID versionUuid, int id, String json, byte[] gzip) {
+            this.masterUuid = masterUuid;
+            this.versionUuid = versionUuid;
+            this.id = id;
+            this.json = json;
+            this.gzip = gzip;
+        }
+
+        StandardCodesSnapshotRow toRow() {
+            return new StandardCodesSnapshotRow() {
+                @Override
+                public Integer getId() {
+                    return id;
+                }
+
+                @Override
+                public String getMasterUuid() {
+                    return masterUuid.toString();
+                }
+
+                @Override
+                public String getVersionUuid() {
+                    return versionUuid.toString();
+                }
+
+                @Override
+                public String getPayload() {
+                    return json;
+                }
+
+                @Override
+                public byte[] getPayloadGzip() {
+                    return gzip;
+                }
+            };
+        }
+    }
+}
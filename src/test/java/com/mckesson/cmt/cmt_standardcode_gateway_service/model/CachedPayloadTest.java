@@ -0,0 +1,34 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CachedPayloadTest {
+
+    private static final byte[] JSON = "{\"resourceType\":\"ValueSet\"}".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void storedGzipCopyIsServedAsIs() {
+        byte[] gzip = { 1, 2, 3 };
+        CachedPayload payload = new CachedPayload(1, JSON, gzip);
+
+        assertSame(gzip, payload.getGzip());
+        assertEquals(3, payload.gzipLength());
+    }
+
+    @Test
+    void documentWithoutGzipCopyIsCompressedOnce() {
+        CachedPayload payload = new CachedPayload(1, JSON);
+        assertEquals(0, payload.gzipLength());
+
+        byte[] gzip = payload.getGzip();
+
+        assertTrue(payload.gzipLength() > 0);
+        assertSame(gzip, payload.getGzip());
+    }
+}
@@ -0,0 +1,61 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.model;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RawJsonBytesTest {
+
+    private static final String FIRST = "{\"resourceType\":\"ValueSet\",\"name\":\"Café\"}";
+    private static final String SECOND = "{\"resourceType\":\"ValueSet\",\"id\":2}";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void documentsAreSplicedVerbatimIntoUtf8Output() throws JsonProcessingException {
+        byte[] written = objectMapper.writeValueAsBytes(envelope(FIRST, SECOND));
+
+        assertEquals("{\"count\":2,\"responses\":[" + FIRST + "," + SECOND + "]}",
+                new String(written, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void documentsAreSplicedVerbatimIntoCharacterOutput() throws JsonProcessingException {
+        String written = objectMapper.writeValueAsString(envelope(FIRST, SECOND));
+
+        assertEquals("{\"count\":2,\"responses\":[" + FIRST + "," + SECOND + "]}", written);
+    }
+
+    @Test
+    void documentLargerThanTheGeneratorBufferIsWrittenWhole() throws JsonProcessingException {
+        String large = "{\"text\":\"" + "x".repeat(100_000) + "\"}";
+
+        byte[] written = objectMapper.writeValueAsBytes(envelope(large));
+
+        assertEquals("{\"count\":1,\"responses\":[" + large + "]}", new String(written, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void valueIsTheDecodedDocument() {
+        RawJsonBytes raw = new RawJsonBytes(FIRST.getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(FIRST, raw.getValue());
+        assertEquals(FIRST.length(), raw.charLength());
+    }
+
+    private ObjectNode envelope(String... documents) {
+        ObjectNode envelope = objectMapper.createObjectNode();
+        envelope.put("count", documents.length);
+        ArrayNode responses = envelope.putArray("responses");
+        for (String document : documents) {
+            responses.add(RawJsonBytes.node(document.getBytes(StandardCharsets.UTF_8)));
+        }
+        return envelope;
+    }
+}
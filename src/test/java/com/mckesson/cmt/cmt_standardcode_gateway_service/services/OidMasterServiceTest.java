@@ -0,0 +1,241 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.services;
+
+import com.mckesson.cmt.cmt_standardcode_gateway_service.dto.OidMasterSearchHit;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.dto.OidMasterSearchResult;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.exception.BadRequestException;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.OidMasterRepository;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.OidMasterSearchRow;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Ranked OID master search paged through a repository stand-in that scores
+ * and seeks like the search query, without trigram similarity
+ */
+class OidMasterServiceTest {
+
+    private final List<StoredOid> stored = new ArrayList<>();
+    private final List<Object[]> queries = new ArrayList<>();
+
+    private final OidMasterService service = new OidMasterService(repository(), 2, 3, 1000);
+
+    @Test
+    void exactCodeRanksBeforePrefixesAndSubstrings() {
+        store(1, "xglucose", "Other", true);
+        store(2, "glucose-panel", "Labs", true);
+        store(3, "a1c", "Glucose tests", true);
+        store(4, "glucose", "Labs", true);
+
+        List<OidMasterSearchHit> hits = service.search("glucose", null, 3, false).getResults();
+
+        assertEquals(List.of(4L, 2L, 3L), hits.stream().map(OidMasterSearchHit::getId).toList());
+        assertEquals(3000, hits.get(0).getScore());
+    }
+
+    @Test
+    void pagesFollowEachOtherWithoutGapsOrRepeats() {
+        for (long id = 1; id <= 5; id++) {
+            store(id, "glucose-" + id, "Labs", true);
+        }
+        store(6, "glucose", "Labs", true);
+
+        List<Long> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            OidMasterSearchResult page = service.search("glucose", cursor, null, false);
+            page.getResults().forEach(hit -> seen.add(hit.getId()));
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(List.of(6L, 1L, 2L, 3L, 4L, 5L), seen);
+        assertEquals(3, pages);
+    }
+
+    @Test
+    void lastPageHasNoCursor() {
+        store(1, "glucose", "Labs", true);
+        store(2, "glucose-panel", "Labs", true);
+
+        OidMasterSearchResult result = service.search("glucose", null, 2, false);
+
+        assertEquals(2, result.getResults().size());
+        assertNull(result.getNextCursor());
+    }
+
+    @Test
+    void termIsTrimmedLowerCasedAndEscaped() {
+        OidMasterSearchResult result = service.search("  50%_A\\b ", null, null, true);
+
+        Object[] query = queries.get(0);
+        assertEquals("50%_a\\b", query[0]);
+        assertEquals("%50\\%\\_a\\\\b%", query[1]);
+        assertEquals("50\\%\\_a\\\\b%", query[2]);
+        assertEquals(true, query[4]);
+        assertEquals("  50%_A\\b ", result.getQuery());
+    }
+
+    @Test
+    void shortTermMatchesPrefixesOnly() {
+        service.search("gl", null, null, false);
+        service.search("glu", null, null, false);
+
+        assertEquals(false, queries.get(0)[3]);
+        assertEquals(true, queries.get(1)[3]);
+    }
+
+    @Test
+    void inactiveOidsCanBeSkipped() {
+        store(1, "glucose", "Labs", false);
+        store(2, "glucose-panel", "Labs", true);
+
+        assertEquals(2, service.search("glucose", null, null, false).getResults().size());
+        assertEquals(List.of(2L), service.search("glucose", null, null, true).getResults().stream()
+                .map(OidMasterSearchHit::getId).toList());
+    }
+
+    @Test
+    void candidatesCoverAtLeastTheLargestPage() {
+        OidMasterService narrow = new OidMasterService(repository(), 2, 3, 1);
+
+        narrow.search("glucose", null, null, false);
+
+        assertEquals(3, queries.get(0)[5]);
+        assertEquals(3, queries.get(0)[8]);
+    }
+
+    @Test
+    void invalidRequestsAreRejected() {
+        assertThrows(BadRequestException.class, () -> service.search(" ", null, null, false));
+        assertThrows(BadRequestException.class, () -> service.search("glucose", null, 0, false));
+        assertThrows(BadRequestException.class, () -> service.search("glucose", null, 4, false));
+        assertThrows(BadRequestException.class, () -> service.search("glucose", "not-a-cursor", null, false));
+        assertTrue(queries.isEmpty());
+    }
+
+    @Test
+    void noMatchesIsAnEmptyLastPage() {
+        OidMasterSearchResult result = service.search("glucose", null, null, false);
+
+        assertTrue(result.getResults().isEmpty());
+        assertNull(result.getNextCursor());
+        assertFalse(queries.isEmpty());
+    }
+
+    private void store(long id, String code, String codeGroupName, boolean active) {
+        stored.add(new StoredOid(id, code, codeGroupName, active));
+    }
+
+    private OidMasterRepository repository() {
+        return (OidMasterRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { OidMasterRepository.class }, (proxy, method, args) -> {
+                    if (!method.getName().equals("search")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    queries.add(args);
+                    String term = (String) args[0];
+                    boolean substring = (Boolean) args[3];
+                    boolean activeOnly = (Boolean) args[4];
+                    int afterScore = (Integer) args[6];
+                    long afterId = (Long) args[7];
+                    int limit = (Integer) args[8];
+                    return stored.stream()
+                            .filter(oid -> !activeOnly || oid.active)
+                            .map(oid -> oid.toRow(term, substring))
+                            .filter(row -> row.getScore() >= 0)
+                            .filter(row -> row.getScore() < afterScore
+                                    || (row.getScore() == afterScore && row.getId() > afterId))
+                            .sorted(Comparator.comparing(OidMasterSearchRow::getScore).reversed()
+                                    .thenComparing(OidMasterSearchRow::getId))
+                            .limit(limit)
+                            .toList();
+                });
+    }
+
+    private static final class StoredOid {
+        private final long id;
+        private final String code;
+        private final String codeGroupName;
+        private final boolean active;
+
+        StoredOid(long id, String code, String codeGroupName, boolean active) {
+            this.id = id;
+            this.code = code;
+            this.codeGroupName = codeGroupName;
+            this.active = active;
+        }
+
+        /**
+         * @return The row, scored like the query; a negative score if it is
+         *         not a candidate
+         */
+        OidMasterSearchRow toRow(String term, boolean substring) {
+            String lowerCode = code.toLowerCase();
+            String lowerName = codeGroupName.toLowerCase();
+            int score;
+            if (lowerCode.equals(term)) {
+                score = 3000;
+            } else if (lowerCode.startsWith(term)) {
+                score = 2000;
+            } else if (lowerName.startsWith(term)) {
+                score = 1000;
+            } else if (substring && (lowerCode.contains(term) || lowerName.contains(term))) {
+                score = 0;
+            } else {
+                score = -1;
+            }
+            return new OidMasterSearchRow() {
+                @Override
+                public Long getId() {
+                    return id;
+                }
+
+                @Override
+                public String getOid() {
+                    return "2.16.840.1.113883.3.464.1003." + id;
+                }
+
+                @Override
+                public String getCode() {
+                    return code;
+                }
+
+                @Override
+                public String getCodeGroupName() {
+                    return codeGroupName;
+                }
+
+                @Override
+                public String getCodeGroupContentSet() {
+                    return null;
+                }
+
+                @Override
+                public String getCodeSubType() {
+                    return "ValueSet";
+                }
+
+                @Override
+                public Boolean getIsActive() {
+                    return active;
+                }
+
+                @Override
+                public Integer getScore() {
+                    return score;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.entities.StandardCodesMaster;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.entities.StandardCodesResponse;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.exception.ResourceNotFoundException;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.StandardCodesResponseRepository;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Active response lookups by master UUID against a repository stand-in
+ */
+class StandardCodesMasterServiceTest {
+
+    private static final UUID MASTER_A = UUID.randomUUID();
+    private static final UUID MASTER_B = UUID.randomUUID();
+
+    private final List<StandardCodesResponse> active = new ArrayList<>();
+    private final List<Collection<UUID>> queries = new ArrayList<>();
+
+    private final StandardCodesMasterService service = new StandardCodesMasterService(null, repository(), null,
+            null, null, new ObjectMapper());
+
+    @Test
+    void responsesAreInRequestOrderIncludingRepeats() {
+        StandardCodesResponse a = store(MASTER_A, 1);
+        StandardCodesResponse b = store(MASTER_B, 2);
+
+        List<StandardCodesResponse> found = service.getResponsesByMasterUuids(List.of(MASTER_B, MASTER_A, MASTER_B));
+
+        assertEquals(List.of(b, a, b), found);
+        assertEquals(1, queries.size());
+        assertEquals(2, queries.get(0).size());
+    }
+
+    @Test
+    void newestActiveResponseIsTakenPerMaster() {
+        store(MASTER_A, 1);
+        StandardCodesResponse newest = store(MASTER_A, 3);
+
+        assertEquals(List.of(newest), service.getResponsesByMasterUuids(List.of(MASTER_A)));
+    }
+
+    @Test
+    void everyMasterWithoutAnActiveResponseIsReported() {
+        store(MASTER_A, 1);
+        UUID missingOne = UUID.randomUUID();
+        UUID missingTwo = UUID.randomUUID();
+
+        ResourceNotFoundException e = assertThrows(ResourceNotFoundException.class,
+                () -> service.getResponsesByMasterUuids(List.of(MASTER_A, missingOne, missingTwo)));
+
+        assertTrue(e.getMessage().contains(missingOne.toString()));
+        assertTrue(e.getMessage().contains(missingTwo.toString()));
+        assertFalse(e.getMessage().contains(MASTER_A.toString()));
+    }
+
+    @Test
+    void noMastersNeedNoQuery() {
+        assertTrue(service.getResponsesByMasterUuids(List.of()).isEmpty());
+        assertTrue(queries.isEmpty());
+    }
+
+    private StandardCodesResponse store(UUID masterUuid, int id) {
+        StandardCodesMaster master = new StandardCodesMaster();
+        master.setMasterUuid(masterUuid);
+        StandardCodesResponse response = new StandardCodesResponse();
+        response.setId(id);
+        response.setMasterUuid(masterUuid);
+        response.setVersionUuid(UUID.randomUUID());
+        response.setStandardCodesMaster(master);
+        active.add(response);
+        return response;
+    }
+
+    private StandardCodesResponseRepository repository() {
+        return (StandardCodesResponseRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { StandardCodesResponseRepository.class }, (proxy, method, args) -> {
+                    if (!method.getName().equals("findActiveByMasterUuids")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    @SuppressWarnings("unchecked")
+                    Collection<UUID> masterUuids = (Collection<UUID>) args[0];
+                    queries.add(List.copyOf(masterUuids));
+                    // Newest first, like the query
+                    return active.stream()
+                            .filter(response -> masterUuids.contains(response.getMasterUuid()))
+                            .sorted(Comparator.comparing(StandardCodesResponse::getId).reversed())
+                            .toList();
+                });
+    }
+}
@@ -0,0 +1,283 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.component.CacheStatisticsRecorder;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.component.NoSharedResponseCache;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.component.StandardCodesResponseCache;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.component.StandardCodesResponseSnapshot;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.model.CachedPayload;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.model.JsonResponse;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.StandardCodesResponseRepository;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.StandardCodesResponseRow;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.StringJoiner;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Response lookups against a repository stand-in that matches requested UUIDs
+ * to stored responses the way the UUID query does
+ */
+class StandardCodesResponseServiceTest {
+
+    private static final UUID MASTER_A = UUID.randomUUID();
+    private static final UUID VERSION_A = UUID.randomUUID();
+    private static final UUID MASTER_B = UUID.randomUUID();
+    private static final UUID VERSION_B = UUID.randomUUID();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<StoredResponse> stored = new ArrayList<>(List.of(
+            new StoredResponse(MASTER_A, VERSION_A, 1, "{\"resourceType\":\"ValueSet\",\"id\":\"a\"}"),
+            new StoredResponse(MASTER_B, VERSION_B, 2, "{\"resourceType\":\"ValueSet\",\"id\":\"b\"}")));
+    private final List<UUID[]> queries = new CopyOnWriteArrayList<>();
+    private final AtomicInteger transactions = new AtomicInteger();
+    private final CountDownLatch readOfMasterAStarted = new CountDownLatch(1);
+    // Set to hold reads of MASTER_A until counted down
+    private volatile CountDownLatch releaseReadOfMasterA;
+
+    private final StandardCodesResponseCache responseCache = new StandardCodesResponseCache(
+            new SimpleMeterRegistry(), new NoSharedResponseCache(), 1 << 20, 60);
+    private final StandardCodesResponseService service = new StandardCodesResponseService(repository(),
+            responseCache, new StandardCodesResponseSnapshot(null, null, false, "unused.snapshot", 0),
+            transactionManager(), new CacheStatisticsRecorder(responseCache, null, false));
+
+    @Test
+    void responseMatchedByItsMasterAndVersionIsReturnedOnce() throws JsonProcessingException {
+        JsonResponse response = service.getResponses(List.of(MASTER_A, VERSION_A));
+
+        assertEquals("[" + stored.get(0).json + "]", objectMapper.writeValueAsString(response.getResponses()));
+        assertEquals(1, queries.size());
+        assertEquals(2, queries.get(0).length);
+    }
+
+    @Test
+    void responsesAreInRequestOrder() throws JsonProcessingException {
+        JsonResponse response = service.getResponses(List.of(VERSION_B, MASTER_A));
+
+        assertEquals("[" + stored.get(1).json + "," + stored.get(0).json + "]",
+                objectMapper.writeValueAsString(response.getResponses()));
+    }
+
+    @Test
+    void repeatedUuidIsQueriedOnce() {
+        JsonResponse response = service.getResponses(List.of(MASTER_A, MASTER_A));
+
+        assertEquals(1, response.getResponses().size());
+        assertEquals(1, queries.get(0).length);
+    }
+
+    @Test
+    void unknownUuidIsLeftOut() {
+        JsonResponse response = service.getResponses(List.of(UUID.randomUUID(), MASTER_B));
+
+        assertEquals(1, response.getResponses().size());
+        assertEquals("SUCCESS", response.getStatus());
+    }
+
+    @Test
+    void loadedResponsesAreServedFromTheCache() {
+        service.getResponses(List.of(MASTER_A));
+        service.getResponses(List.of(MASTER_A));
+
+        assertEquals(1, queries.size());
+    }
+
+    @Test
+    void streamedResponsesAreOneDocumentPerLine() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        int written = service.streamResponses(List.of(MASTER_A, VERSION_A, MASTER_B), null, out);
+
+        assertEquals(2, written);
+        assertEquals(stored.get(0).json + "\n" + stored.get(1).json + "\n", out.toString(StandardCharsets.UTF_8));
+        assertEquals(1, transactions.get());
+    }
+
+    @Test
+    void cachedResponsesAreStreamedWithoutReadingTheDatabase() throws IOException {
+        service.getResponses(List.of(MASTER_A));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        service.streamResponses(List.of(MASTER_A), null, out);
+
+        assertEquals(stored.get(0).json + "\n", out.toString(StandardCharsets.UTF_8));
+        assertEquals(1, queries.size());
+        assertEquals(0, transactions.get());
+    }
+
+    @Test
+    void streamedResponsesAreNotCached() throws IOException {
+        service.streamResponses(List.of(MASTER_B), null, new ByteArrayOutputStream());
+        service.getResponses(List.of(MASTER_B));
+
+        assertEquals(2, queries.size());
+    }
+
+    @Test
+    void currentVersionOfAMasterIsItsNewestActiveVersion() {
+        assertEquals(Optional.of(VERSION_A), service.findCurrentVersionUuid(MASTER_A));
+        assertTrue(service.findCurrentVersionUuid(UUID.randomUUID()).isEmpty());
+    }
+
+    @Test
+    void versionPayloadIsReadOnceAndThenCached() {
+        CachedPayload payload = service.findVersionPayload(VERSION_B).orElseThrow();
+        service.findVersionPayload(VERSION_B);
+
+        assertArrayEquals(stored.get(1).json.getBytes(StandardCharsets.UTF_8), payload.getJson());
+        assertEquals(1, queries.size());
+    }
+
+    @Test
+    void unknownVersionHasNoPayload() {
+        assertTrue(service.findVersionPayload(UUID.randomUUID()).isEmpty());
+    }
+
+    @Test
+    void concurrentRequestsShareOneReadOfTheSameUuid() throws Exception {
+        releaseReadOfMasterA = new CountDownLatch(1);
+        CompletableFuture<JsonResponse> first = CompletableFuture
+                .supplyAsync(() -> service.getResponses(List.of(MASTER_A)));
+        assertTrue(readOfMasterAStarted.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<JsonResponse> second = CompletableFuture
+                .supplyAsync(() -> service.getResponses(List.of(MASTER_A, MASTER_B)));
+        // The second request reads MASTER_B itself once it has joined the read of MASTER_A
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (queries.size() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        releaseReadOfMasterA.countDown();
+
+        assertEquals(1, first.get(5, TimeUnit.SECONDS).getResponses().size());
+        assertEquals(2, second.get(5, TimeUnit.SECONDS).getResponses().size());
+        assertEquals(2, queries.size());
+        assertEquals(1, queries.stream().filter(uuids -> Arrays.asList(uuids).contains(MASTER_A)).count());
+    }
+
+    private PlatformTransactionManager transactionManager() {
+        return new PlatformTransactionManager() {
+            @Override
+            public TransactionStatus getTransaction(TransactionDefinition definition) {
+                transactions.incrementAndGet();
+                return new SimpleTransactionStatus();
+            }
+
+            @Override
+            public void commit(TransactionStatus status) {
+            }
+
+            @Override
+            public void rollback(TransactionStatus status) {
+            }
+        };
+    }
+
+    private StandardCodesResponseRepository repository() {
+        return (StandardCodesResponseRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { StandardCodesResponseRepository.class }, (proxy, method, args) -> {
+                    if (method.getName().equals("findResponseRowsByUuids")) {
+                        List<StandardCodesResponseRow> rows = findRows((UUID[]) args[0]);
+                        holdReadOfMasterA((UUID[]) args[0]);
+                        return rows;
+                    }
+                    if (method.getName().equals("streamResponseRowsByUuids")) {
+                        return findRows((UUID[]) args[0]).stream();
+                    }
+                    if (method.getName().equals("findActiveVersionUuidsByMasterUuid")) {
+                        return stored.stream()
+                                .filter(response -> response.masterUuid.equals(args[0]))
+                                .map(response -> response.versionUuid)
+                                .toList();
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private void holdReadOfMasterA(UUID[] uuids) throws InterruptedException {
+        CountDownLatch release = releaseReadOfMasterA;
+        if (release != null && Arrays.asList(uuids).contains(MASTER_A)) {
+            readOfMasterAStarted.countDown();
+            release.await(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private List<StandardCodesResponseRow> findRows(UUID[] uuids) {
+        queries.add(uuids);
+        List<StandardCodesResponseRow> rows = new ArrayList<>();
+        for (StoredResponse response : stored) {
+            StringJoiner matched = new StringJoiner(",");
+            for (UUID uuid : new LinkedHashSet<>(Arrays.asList(uuids))) {
+                if (uuid.equals(response.masterUuid) || uuid.equals(response.versionUuid)) {
+                    matched.add(uuid.toString());
+                }
+            }
+            if (matched.length() > 0) {
+                rows.add(response.toRow(matched.toString()));
+            }
+        }
+        return rows;
+    }
+
+    private static final class StoredResponse {
+        private final UUID masterUuid;
+        private final UUID versionUuid;
+        private final int id;
+        private final String json;
+
+        StoredResponse(UUID masterUuid, UUID versionUuid, int id, String json) {
+            this.masterUuid = masterUuid;
+            this.versionUuid = versionUuid;
+            this.id = id;
+            this.json = json;
+        }
+
+        StandardCodesResponseRow toRow(String matchedUuids) {
+            return new StandardCodesResponseRow() {
+                @Override
+                public String getMatchedUuids() {
+                    return matchedUuids;
+                }
+
+                @Override
+                public Integer getId() {
+                    return id;
+                }
+
+                @Override
+                public String getPayload() {
+                    return json;
+                }
+
+                @Override
+                public byte[] getPayloadGzip() {
+                    return null;
+                }
+            };
+        }
+    }
+}
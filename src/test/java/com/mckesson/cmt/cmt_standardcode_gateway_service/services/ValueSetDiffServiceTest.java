@@ -0,0 +1,354 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.component.ConsumerResponseProjector;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.component.OidRevisionIndex;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.contract.StandardCodeResponse;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.dto.ValueSetDiff;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.exception.ResourceNotFoundException;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.OidHliApiResponseMemberRepository;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.OidHliApiResponseRepository;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.OidMemberKeyRow;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.OidMemberPageRow;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.OidRevisionRow;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.OidRevisionStamp;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Version diffs over repository stand-ins holding two stored responses of one
+ * OID and their members
+ */
+class ValueSetDiffServiceTest {
+
+    private static final String OID = "2.16.840.1.113883.3.464.1003.101.12.1001";
+    private static final String LOINC = "http://loinc.org";
+    private static final int RESPONSE_1 = 10;
+    private static final int RESPONSE_2 = 11;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    // Response id -> members in ordinal order
+    private final Map<Integer, List<StoredMember>> members = new HashMap<>();
+    private final List<String> memberQueries = new ArrayList<>();
+
+    private final ValueSetDiffService service = new ValueSetDiffService(
+            new OidRevisionIndex(revisionRepository(), 100, 30), memberRepository(),
+            new ConsumerResponseProjector(null, objectMapper, null), objectMapper, 1000);
+
+    @Test
+    void membersAreAddedRemovedAndChangedByCodeSystemAndCode() {
+        store(RESPONSE_1,
+                member(LOINC, "1234-5", "Glucose"),
+                member(LOINC, "2345-7", "Hemoglobin"),
+                member(LOINC, "3456-9", "Urea"));
+        store(RESPONSE_2,
+                member(LOINC, "4567-1", "Creatinine"),
+                member(LOINC, "3456-9", "Urea"),
+                member(LOINC, "1234-5", "Glucose [Moles/volume]"));
+
+        ValueSetDiff diff = service.diff(OID, 1, 2);
+
+        assertEquals(List.of("2345-7"), codes(diff.getRemoved()));
+        assertEquals(List.of("4567-1"), codes(diff.getAdded()));
+        assertEquals(List.of("1234-5"), codes(diff.getChanged()));
+        assertEquals("Glucose [Moles/volume]", diff.getChanged().get(0).getName());
+        assertEquals(1, diff.getFromVersion());
+        assertEquals("20260101", diff.getFromRevision());
+        assertEquals(2, diff.getToVersion());
+    }
+
+    @Test
+    void sameCodeInAnotherCodeSystemIsAnotherMember() {
+        store(RESPONSE_1, member(LOINC, "1234-5", "Glucose"));
+        store(RESPONSE_2, member("http://snomed.info/sct", "1234-5", "Glucose"));
+
+        ValueSetDiff diff = service.diff(OID, 1, 2);
+
+        assertEquals(List.of(LOINC), diff.getRemoved().stream()
+                .map(StandardCodeResponse.StandardCodeResult::getCodeSystemId).toList());
+        assertEquals(1, diff.getAdded().size());
+        assertTrue(diff.getChanged().isEmpty());
+    }
+
+    @Test
+    void membersWithoutAKeyAreMatchedByContent() {
+        store(RESPONSE_1,
+                member(null, "free-1", "Kept without a system"),
+                member(LOINC, null, "Dropped without a code"),
+                member(LOINC, "1234-5", "Glucose"));
+        store(RESPONSE_2,
+                member(LOINC, "1234-5", "Glucose"),
+                member(LOINC, null, "Added without a code"),
+                member(null, "free-1", "Kept without a system"));
+
+        ValueSetDiff diff = service.diff(OID, 1, 2);
+
+        assertEquals(List.of("Dropped without a code"), names(diff.getRemoved()));
+        assertEquals(List.of("Added without a code"), names(diff.getAdded()));
+        assertTrue(diff.getChanged().isEmpty());
+    }
+
+    @Test
+    void repeatedIdenticalMembersArePairedOneForOne() {
+        store(RESPONSE_1, member(LOINC, null, "Twice"), member(LOINC, null, "Twice"));
+        store(RESPONSE_2, member(LOINC, null, "Twice"));
+
+        ValueSetDiff diff = service.diff(OID, 1, 2);
+
+        assertEquals(List.of("Twice"), names(diff.getRemoved()));
+        assertTrue(diff.getAdded().isEmpty());
+    }
+
+    @Test
+    void diffToTheCurrentVersionIsCachedByResponsePair() {
+        store(RESPONSE_1, member(LOINC, "1234-5", "Glucose"));
+        store(RESPONSE_2, member(LOINC, "2345-7", "Hemoglobin"));
+
+        ValueSetDiff first = service.diff(OID, 1, null);
+        int queries = memberQueries.size();
+        ValueSetDiff second = service.diff(OID, 1, 2);
+
+        assertEquals(2, first.getToVersion());
+        assertEquals(first, second);
+        assertEquals(queries, memberQueries.size());
+    }
+
+    @Test
+    void versionAgainstItselfHasNoChanges() {
+        store(RESPONSE_1, member(LOINC, "1234-5", "Glucose"));
+
+        ValueSetDiff diff = service.diff(OID, 1, 1);
+
+        assertTrue(diff.getAdded().isEmpty());
+        assertTrue(diff.getRemoved().isEmpty());
+        assertTrue(diff.getChanged().isEmpty());
+        assertTrue(memberQueries.isEmpty());
+    }
+
+    @Test
+    void unknownOidOrVersionIsNotFound() {
+        assertThrows(ResourceNotFoundException.class, () -> service.diff("1.2.3", 1, 2));
+        assertThrows(ResourceNotFoundException.class, () -> service.diff(OID, 3, 2));
+        assertThrows(ResourceNotFoundException.class, () -> service.diff(OID, 1, 3));
+    }
+
+    private void store(int responseId, StoredMember... stored) {
+        List<StoredMember> ordered = new ArrayList<>();
+        for (int ordinal = 0; ordinal < stored.length; ordinal++) {
+            ordered.add(stored[ordinal].at(ordinal));
+        }
+        members.put(responseId, ordered);
+    }
+
+    private StoredMember member(String codeSystemId, String code, String name) {
+        Map<String, Object> member = new LinkedHashMap<>();
+        member.put("id", code);
+        member.put("name", name);
+        member.put("code", code);
+        member.put("codeSystemId", codeSystemId);
+        member.put("valid", true);
+        try {
+            return new StoredMember(0, codeSystemId, code, objectMapper.writeValueAsString(member));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static List<String> codes(List<StandardCodeResponse.StandardCodeResult> results) {
+        return results.stream().map(StandardCodeResponse.StandardCodeResult::getCode).toList();
+    }
+
+    private static List<String> names(List<StandardCodeResponse.StandardCodeResult> results) {
+        return results.stream().map(StandardCodeResponse.StandardCodeResult::getName).toList();
+    }
+
+    private OidHliApiResponseRepository revisionRepository() {
+        return (OidHliApiResponseRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { OidHliApiResponseRepository.class }, (proxy, method, args) -> {
+                    boolean known = Arrays.asList((String[]) args[0]).contains(OID);
+                    if (method.getName().equals("findRevisionsByOids")) {
+                        return known ? List.of(revision(RESPONSE_1, 1, "20260101", false),
+                                revision(RESPONSE_2, 2, "20260301", true)) : List.of();
+                    }
+                    if (method.getName().equals("findRevisionStampsByOids")) {
+                        return known ? List.of(stamp()) : List.of();
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private OidHliApiResponseMemberRepository memberRepository() {
+        return (OidHliApiResponseMemberRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { OidHliApiResponseMemberRepository.class }, (proxy, method, args) -> {
+                    Integer responseId = (Integer) args[0];
+                    List<StoredMember> stored = members.getOrDefault(responseId, List.of());
+                    memberQueries.add(method.getName() + " " + responseId);
+                    if (method.getName().equals("findMemberKeys")) {
+                        // Sorted by code system id and code, nulls last, like the query
+                        Comparator<String> nullsLast = Comparator.nullsLast(Comparator.naturalOrder());
+                        return stored.stream()
+                                .sorted(Comparator.comparing((StoredMember member) -> member.codeSystemId, nullsLast)
+                                        .thenComparing(member -> member.code, nullsLast)
+                                        .thenComparing(member -> member.ordinal))
+                                .map(StoredMember::toKeyRow)
+                                .toList();
+                    }
+                    if (method.getName().equals("findMembers")) {
+                        List<Integer> ordinals = Arrays.asList((Integer[]) args[1]);
+                        return stored.stream()
+                                .filter(member -> ordinals.contains(member.ordinal))
+                                .map(member -> member.toPageRow(responseId))
+                                .toList();
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static OidRevisionRow revision(int responseId, int version, String revisionDay, boolean current) {
+        return new OidRevisionRow() {
+            @Override
+            public String getOid() {
+                return OID;
+            }
+
+            @Override
+            public String getCodeSubType() {
+                return "ValueSet";
+            }
+
+            @Override
+            public Integer getResponseId() {
+                return responseId;
+            }
+
+            @Override
+            public Integer getVersion() {
+                return version;
+            }
+
+            @Override
+            public String getRevisionDay() {
+                return revisionDay;
+            }
+
+            @Override
+            public Boolean getIsCurrent() {
+                return current;
+            }
+
+            @Override
+            public Integer getConsumerResponseId() {
+                return null;
+            }
+
+            @Override
+            public Integer getMemberCount() {
+                return null;
+            }
+        };
+    }
+
+    private static OidRevisionStamp stamp() {
+        return new OidRevisionStamp() {
+            @Override
+            public String getOid() {
+                return OID;
+            }
+
+            @Override
+            public String getCodeSubType() {
+                return "ValueSet";
+            }
+
+            @Override
+            public Integer getLatestResponseId() {
+                return RESPONSE_2;
+            }
+
+            @Override
+            public Integer getConsumerResponseId() {
+                return null;
+            }
+        };
+    }
+
+    private static final class StoredMember {
+        private final int ordinal;
+        private final String codeSystemId;
+        private final String code;
+        private final String json;
+
+        StoredMember(int ordinal, String codeSystemId, String code, String json) {
+            this.ordinal = ordinal;
+            this.codeSystemId = codeSystemId;
+            this.code = code;
+            this.json = json;
+        }
+
+        StoredMember at(int ordinal) {
+            return new StoredMember(ordinal, codeSystemId, code, json);
+        }
+
+        OidMemberKeyRow toKeyRow() {
+            return new OidMemberKeyRow() {
+                @Override
+                public Integer getOrdinal() {
+                    return ordinal;
+                }
+
+                @Override
+                public String getCodeSystemId() {
+                    return codeSystemId;
+                }
+
+                @Override
+                public String getCode() {
+                    return code;
+                }
+
+                @Override
+                public String getMemberHash() {
+                    // The document itself stands in for its hash
+                    return json;
+                }
+            };
+        }
+
+        OidMemberPageRow toPageRow(Integer responseId) {
+            return new OidMemberPageRow() {
+                @Override
+                public Integer getResponseId() {
+                    return responseId;
+                }
+
+                @Override
+                public Integer getAfterOrdinal() {
+                    return null;
+                }
+
+                @Override
+                public Integer getOrdinal() {
+                    return ordinal;
+                }
+
+                @Override
+                public String getMember() {
+                    return json;
+                }
+            };
+        }
+    }
+}
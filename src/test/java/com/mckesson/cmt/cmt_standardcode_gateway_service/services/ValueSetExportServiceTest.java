@@ -0,0 +1,260 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.services;
+
+import com.mckesson.cmt.cmt_standardcode_gateway_service.exception.BadRequestException;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.exception.ServiceUnavailableException;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.OidHliApiResponseRepository;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.StandardCodesResponseRepository;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.repository.ValueSetExportRow;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Keyset batched exports read from repository stand-ins that page their rows
+ * by id like the export queries
+ */
+class ValueSetExportServiceTest {
+
+    private final List<ValueSetExportRow> standardCodesRows = new ArrayList<>();
+    private final List<ValueSetExportRow> oidRows = new ArrayList<>();
+    private final List<String> queries = new ArrayList<>();
+    private int transactions;
+
+    private final ValueSetExportService service = service(2, 1, 60_000);
+
+    @Test
+    void exportIsReadInBatchesAfterTheLastId() throws IOException {
+        for (int id = 10; id <= 50; id += 10) {
+            standardCodesRows.add(row(id, "master-" + id, "version-" + id, "{\"id\":" + id + "}"));
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int written = service.export(ValueSetExportService.Source.STANDARD_CODES,
+                ValueSetExportService.Format.NDJSON, 0, out);
+
+        assertEquals(5, written);
+        assertEquals(List.of("standard-codes after 0", "standard-codes after 20", "standard-codes after 40"),
+                queries);
+        assertEquals(3, transactions);
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(5, lines.length);
+        assertEquals("{\"id\":10,\"masterUuid\":\"master-10\",\"versionUuid\":\"version-10\",\"response\":{\"id\":10}}",
+                lines[0]);
+    }
+
+    @Test
+    void exportResumesAfterTheGivenId() throws IOException {
+        for (int id = 10; id <= 50; id += 10) {
+            standardCodesRows.add(row(id, "master-" + id, "1", "{}"));
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int written = service.export(ValueSetExportService.Source.STANDARD_CODES,
+                ValueSetExportService.Format.NDJSON, 30, out);
+
+        assertEquals(2, written);
+        assertTrue(out.toString(StandardCharsets.UTF_8).startsWith("{\"id\":40,"));
+    }
+
+    @Test
+    void fullLastBatchIsFollowedByAnEmptyOne() throws IOException {
+        for (int id = 1; id <= 4; id++) {
+            standardCodesRows.add(row(id, "master-" + id, "1", "{}"));
+        }
+
+        int written = service.export(ValueSetExportService.Source.STANDARD_CODES,
+                ValueSetExportService.Format.NDJSON, 0, new ByteArrayOutputStream());
+
+        assertEquals(4, written);
+        assertEquals(3, queries.size());
+    }
+
+    @Test
+    void oidExportNamesItsFieldsAndQuotesValues() throws IOException {
+        oidRows.add(row(7, "2.16.840.1.113883.3.464\"1", "3", "{\"resourceType\":\"ValueSet\"}"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.export(ValueSetExportService.Source.OID, ValueSetExportService.Format.NDJSON, 0, out);
+
+        assertEquals("{\"id\":7,\"oid\":\"2.16.840.1.113883.3.464\\\"1\",\"version\":\"3\","
+                + "\"response\":{\"resourceType\":\"ValueSet\"}}\n", out.toString(StandardCharsets.UTF_8));
+        assertEquals(List.of("oid after 0"), queries);
+    }
+
+    @Test
+    void zipHasOneEntryPerDocumentNamedByValueSetAndId() throws IOException {
+        oidRows.add(row(7, "1.2.3", "1", "{\"a\":1}"));
+        oidRows.add(row(9, "1.2.4", "1", "{\"b\":2}"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.export(ValueSetExportService.Source.OID, ValueSetExportService.Format.ZIP, 0, out);
+
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            ZipEntry entry = zip.getNextEntry();
+            assertEquals("1.2.3.7.json", entry.getName());
+            assertEquals("{\"a\":1}", new String(zip.readAllBytes(), StandardCharsets.UTF_8));
+            assertEquals("1.2.4.9.json", zip.getNextEntry().getName());
+        }
+    }
+
+    @Test
+    void exportStopsAtABatchBoundaryOnceItsTimeIsUp() throws IOException {
+        ValueSetExportService timed = service(2, 1, 0);
+        for (int id = 1; id <= 5; id++) {
+            standardCodesRows.add(row(id, "master-" + id, "1", "{}"));
+        }
+
+        int first = timed.export(ValueSetExportService.Source.STANDARD_CODES,
+                ValueSetExportService.Format.NDJSON, 0, new ByteArrayOutputStream());
+        int second = timed.export(ValueSetExportService.Source.STANDARD_CODES,
+                ValueSetExportService.Format.NDJSON, 2, new ByteArrayOutputStream());
+
+        assertEquals(2, first);
+        assertEquals(2, second);
+        assertEquals(List.of("standard-codes after 0", "standard-codes after 2"), queries);
+    }
+
+    @Test
+    void slotsAreLimitedAndGivenBack() {
+        ValueSetExportService.ExportSlot slot = service.acquireSlot();
+        assertThrows(ServiceUnavailableException.class, service::acquireSlot);
+
+        assertTrue(slot.start());
+        slot.release();
+        slot.release();
+
+        service.acquireSlot();
+        assertThrows(ServiceUnavailableException.class, service::acquireSlot);
+    }
+
+    @Test
+    void slotOfAnExportThatNeverStartedIsGivenBackOnce() {
+        ValueSetExportService.ExportSlot slot = service.acquireSlot();
+
+        slot.releaseIfNotStarted();
+        assertFalse(slot.start());
+        slot.release();
+
+        service.acquireSlot();
+        assertThrows(ServiceUnavailableException.class, service::acquireSlot);
+    }
+
+    @Test
+    void runningExportKeepsItsSlotWhenTheRequestEnds() {
+        ValueSetExportService.ExportSlot slot = service.acquireSlot();
+        assertTrue(slot.start());
+
+        slot.releaseIfNotStarted();
+
+        assertThrows(ServiceUnavailableException.class, service::acquireSlot);
+        slot.release();
+        service.acquireSlot();
+    }
+
+    @Test
+    void sourceAndFormatAreParsedFromRequestNames() {
+        assertEquals(ValueSetExportService.Source.STANDARD_CODES, ValueSetExportService.Source.parse(" standard-codes"));
+        assertEquals(ValueSetExportService.Source.OID, ValueSetExportService.Source.parse("oid"));
+        assertEquals(ValueSetExportService.Format.ZIP, ValueSetExportService.Format.parse("zip"));
+        assertThrows(BadRequestException.class, () -> ValueSetExportService.Source.parse("codes"));
+        assertThrows(BadRequestException.class, () -> ValueSetExportService.Format.parse("csv"));
+    }
+
+    private ValueSetExportService service(int batchSize, int maxConcurrent, long maxDurationMillis) {
+        ValueSetExportService exportService = new ValueSetExportService(standardCodesRepository(), oidRepository(),
+                transactionManager());
+        ReflectionTestUtils.setField(exportService, "batchSize", batchSize);
+        ReflectionTestUtils.setField(exportService, "maxConcurrentExports", maxConcurrent);
+        ReflectionTestUtils.setField(exportService, "maxDurationMillis", maxDurationMillis);
+        exportService.init();
+        return exportService;
+    }
+
+    private static ValueSetExportRow row(int id, String valueSetId, String version, String payload) {
+        return new ValueSetExportRow() {
+            @Override
+            public Integer getId() {
+                return id;
+            }
+
+            @Override
+            public String getValueSetId() {
+                return valueSetId;
+            }
+
+            @Override
+            public String getVersion() {
+                return version;
+            }
+
+            @Override
+            public String getPayload() {
+                return payload;
+            }
+        };
+    }
+
+    private List<ValueSetExportRow> page(String source, List<ValueSetExportRow> rows, Object[] args) {
+        int afterId = (Integer) args[0];
+        int limit = (Integer) args[1];
+        queries.add(source + " after " + afterId);
+        return rows.stream().filter(row -> row.getId() > afterId).limit(limit).toList();
+    }
+
+    private StandardCodesResponseRepository standardCodesRepository() {
+        return (StandardCodesResponseRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { StandardCodesResponseRepository.class }, (proxy, method, args) -> {
+                    if (!method.getName().equals("findActiveResponsesForExport")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    return page("standard-codes", standardCodesRows, args);
+                });
+    }
+
+    private OidHliApiResponseRepository oidRepository() {
+        return (OidHliApiResponseRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { OidHliApiResponseRepository.class }, (proxy, method, args) -> {
+                    if (!method.getName().equals("findCurrentResponsesForExport")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    return page("oid", oidRows, args);
+                });
+    }
+
+    private PlatformTransactionManager transactionManager() {
+        return new PlatformTransactionManager() {
+            @Override
+            public TransactionStatus getTransaction(TransactionDefinition definition) {
+                assertTrue(definition.isReadOnly());
+                transactions++;
+                return new SimpleTransactionStatus();
+            }
+
+            @Override
+            public void commit(TransactionStatus status) {
+            }
+
+            @Override
+            public void rollback(TransactionStatus status) {
+            }
+        };
+    }
+}
@@ -0,0 +1,44 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GzipUtilsTest {
+
+    @Test
+    void compressedDocumentDecompressesToTheOriginal() throws IOException {
+        byte[] json = "{\"resourceType\":\"ValueSet\",\"name\":\"Café\"}".getBytes(StandardCharsets.UTF_8);
+
+        assertArrayEquals(json, decompress(GzipUtils.compress(json)));
+    }
+
+    @Test
+    void repetitiveDocumentShrinks() throws IOException {
+        byte[] json = ("{\"concept\":[" + "{\"code\":\"1234-5\",\"display\":\"Glucose\"},".repeat(1000) + "{}]}")
+                .getBytes(StandardCharsets.UTF_8);
+
+        byte[] compressed = GzipUtils.compress(json);
+
+        assertTrue(compressed.length < json.length / 10);
+        assertArrayEquals(json, decompress(compressed));
+    }
+
+    @Test
+    void emptyDocumentRoundTrips() throws IOException {
+        assertArrayEquals(new byte[0], decompress(GzipUtils.compress(new byte[0])));
+    }
+
+    private static byte[] decompress(byte[] gzip) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+            return in.readAllBytes();
+        }
+    }
+}
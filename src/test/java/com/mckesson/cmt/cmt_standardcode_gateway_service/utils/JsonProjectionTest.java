@@ -0,0 +1,88 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mckesson.cmt.cmt_standardcode_gateway_service.exception.BadRequestException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JsonProjectionTest {
+
+    private static final String VALUE_SET = """
+            {"resourceType":"ValueSet","id":"vs-1","name":"Glucose tests",
+             "compose":{"include":[
+               {"system":"http://loinc.org","concept":[{"code":"1234-5","display":"Glucose"},{"code":"2345-7"}]},
+               {"system":"http://snomed.info/sct","concept":[{"code":"22298006","display":"Infarct"}]}]}}
+            """;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void nestedPathKeepsOnlyThatElementAndItsParents() throws IOException {
+        assertProjected("""
+                {"resourceType":"ValueSet","compose":{"include":[
+                  {"concept":[{"code":"1234-5"},{"code":"2345-7"}]},
+                  {"concept":[{"code":"22298006"}]}]}}
+                """, "compose.include.concept.code");
+    }
+
+    @Test
+    void jsonPointerSelectsTheSameElements() throws IOException {
+        assertProjected(project("compose.include[].concept.code"), "/compose/include/0/concept/*/code");
+    }
+
+    @Test
+    void pathEndingAtAnObjectKeepsAllOfIt() throws IOException {
+        JsonNode projected = objectMapper.readTree(project("compose"));
+
+        assertEquals(objectMapper.readTree(VALUE_SET).get("compose"), projected.get("compose"));
+        assertNull(projected.get("id"));
+    }
+
+    @Test
+    void commaSeparatedElementsAreAllKept() throws IOException {
+        assertProjected("{\"resourceType\":\"ValueSet\",\"id\":\"vs-1\",\"name\":\"Glucose tests\"}", "id,name");
+    }
+
+    @Test
+    void shorterPathWinsOverALongerOne() throws IOException {
+        assertProjected(project("compose.include"), "compose.include.system", "compose.include");
+    }
+
+    @Test
+    void documentWithoutMatchesBecomesAnEmptyObject() {
+        JsonProjection projection = JsonProjection.of(List.of("missing"));
+
+        byte[] projected = projection.apply("{\"id\":\"vs-1\"}".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals("{}", new String(projected, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void noElementsMeansNoProjection() {
+        assertNull(JsonProjection.of(null));
+        assertNull(JsonProjection.of(List.of()));
+    }
+
+    @Test
+    void blankPathIsRejected() {
+        assertThrows(BadRequestException.class, () -> JsonProjection.of(List.of(" ")));
+        assertThrows(BadRequestException.class, () -> JsonProjection.of(List.of("id,/")));
+    }
+
+    private void assertProjected(String expected, String... elements) throws IOException {
+        assertEquals(objectMapper.readTree(expected), objectMapper.readTree(project(elements)));
+    }
+
+    private static String project(String... elements) {
+        byte[] projected = JsonProjection.of(List.of(elements)).apply(VALUE_SET.getBytes(StandardCharsets.UTF_8));
+        return new String(projected, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,59 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.utils;
+
+import com.mckesson.cmt.cmt_standardcode_gateway_service.exception.BadRequestException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MemberCursorTest {
+
+    @Test
+    void decodedCursorHasTheEncodedFields() {
+        MemberCursor cursor = MemberCursor.decode(new MemberCursor(42, 1500).encode());
+
+        assertEquals(42, cursor.getResponseId());
+        assertEquals(1500, cursor.getOrdinal());
+    }
+
+    @Test
+    void cursorIsUrlSafe() {
+        String encoded = new MemberCursor(Integer.MAX_VALUE, Integer.MAX_VALUE).encode();
+
+        assertTrue(encoded.matches("[A-Za-z0-9_-]+"), encoded);
+        assertEquals(Integer.MAX_VALUE, MemberCursor.decode(encoded).getOrdinal());
+    }
+
+    @Test
+    void surroundingWhitespaceIsIgnored() {
+        assertEquals(7, MemberCursor.decode(" " + new MemberCursor(7, 0).encode() + "\n").getResponseId());
+    }
+
+    @Test
+    void malformedCursorIsRejected() {
+        assertRejected("not a cursor!");
+        assertRejected(encode("1:42"));
+        assertRejected(encode("1:42:0:0"));
+        assertRejected(encode("1:0:5"));
+        assertRejected(encode("1:42:-1"));
+        assertRejected(encode("1:abc:5"));
+        assertRejected(encode("1:9999999999:5"));
+    }
+
+    @Test
+    void unknownFormatVersionIsRejected() {
+        assertRejected(encode("2:42:5"));
+    }
+
+    private static void assertRejected(String cursor) {
+        assertThrows(BadRequestException.class, () -> MemberCursor.decode(cursor), cursor);
+    }
+
+    private static String encode(String plain) {
+        return Base64.getUrlEncoder().encodeToString(plain.getBytes(StandardCharsets.US_ASCII));
+    }
+}
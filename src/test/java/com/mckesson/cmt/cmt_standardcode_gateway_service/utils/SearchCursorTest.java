@@ -0,0 +1,44 @@
+package com.mckesson.cmt.cmt_standardcode_gateway_service.utils;
+
+import com.mckesson.cmt.cmt_standardcode_gateway_service.exception.BadRequestException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SearchCursorTest {
+
+    @Test
+    void decodedCursorHasTheEncodedFields() {
+        SearchCursor cursor = SearchCursor.decode(new SearchCursor(3412, 9_000_000_000L).encode());
+
+        assertEquals(3412, cursor.getScore());
+        assertEquals(9_000_000_000L, cursor.getId());
+    }
+
+    @Test
+    void zeroScoreRoundTrips() {
+        assertEquals(0, SearchCursor.decode(new SearchCursor(0, 1).encode()).getScore());
+    }
+
+    @Test
+    void malformedCursorIsRejected() {
+        assertRejected("%%%");
+        assertRejected(encode("1:100"));
+        assertRejected(encode("1:-5:7"));
+        assertRejected(encode("1:100:x"));
+        assertRejected(encode("1:1234567890:7"));
+        assertRejected(encode("2:100:7"));
+    }
+
+    private static void assertRejected(String cursor) {
+        assertThrows(BadRequestException.class, () -> SearchCursor.decode(cursor), cursor);
+    }
+
+    private static String encode(String plain) {
+        return Base64.getUrlEncoder().encodeToString(plain.getBytes(StandardCharsets.US_ASCII));
+    }
+}